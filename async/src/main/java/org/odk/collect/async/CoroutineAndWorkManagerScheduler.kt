@@ -43,6 +43,20 @@ class CoroutineAndWorkManagerScheduler(foregroundContext: CoroutineContext, back
         workManager.enqueueUniquePeriodicWork(tag, ExistingPeriodicWorkPolicy.REPLACE, workRequest)
     }
 
+    override fun lowPriorityDeferred(tag: String, spec: TaskSpec) {
+        val constraints = Constraints.Builder()
+            .setRequiresBatteryNotLow(true)
+            .setRequiresStorageNotLow(true)
+            .build()
+
+        val workRequest = OneTimeWorkRequest.Builder(spec.getWorkManagerAdapter())
+            .addTag(tag)
+            .setConstraints(constraints)
+            .build()
+
+        workManager.beginUniqueWork(tag, ExistingWorkPolicy.APPEND_OR_REPLACE, workRequest).enqueue()
+    }
+
     override fun cancelDeferred(tag: String) {
         workManager.cancelUniqueWork(tag)
     }
@@ -45,6 +45,10 @@ open class CoroutineScheduler(private val foregroundContext: CoroutineContext, p
         throw UnsupportedOperationException()
     }
 
+    override fun lowPriorityDeferred(tag: String, spec: TaskSpec) {
+        throw UnsupportedOperationException()
+    }
+
     override fun cancelDeferred(tag: String) {
         throw UnsupportedOperationException()
     }
@@ -46,6 +46,16 @@ interface Scheduler {
      */
     fun networkDeferred(tag: String, spec: TaskSpec, repeatPeriod: Long)
 
+    /**
+     * Schedule a low priority task to run in the background even if the app isn't running. The
+     * task will only be run when the battery and storage aren't low.
+     *
+     * @param tag used to identify this task in future. If a task with the same tag is already
+     * scheduled or running this task will be run after it
+     * @param spec defines the task to be run
+     */
+    fun lowPriorityDeferred(tag: String, spec: TaskSpec)
+
     /**
      * Cancel deferred task scheduled with tag
      */
@@ -51,6 +51,26 @@ public class FormLoaderTaskTest {
         assertThat(wrapper, notNullValue());
     }
 
+    @Test
+    public void loadFormWithSecondaryCSV_inParallel() throws Exception {
+        final String formPath = storagePathProvider.getOdkDirPath(StorageSubdirectory.FORMS) + File.separator + SECONDARY_INSTANCE_EXTERNAL_CSV_FORM;
+        FormLoaderTask formLoaderTask = new FormLoaderTask(formPath, null, null, true);
+        FormLoaderTask.FECWrapper wrapper = formLoaderTask.execute(formPath).get();
+        Assert.assertNotNull(wrapper);
+    }
+
+    @Test
+    public void loadSearchFromExternalCSV_inParallel_createsDatabase() throws Exception {
+        final String formPath = storagePathProvider.getOdkDirPath(StorageSubdirectory.FORMS) + File.separator + SIMPLE_SEARCH_EXTERNAL_CSV_FORM;
+        FormLoaderTask formLoaderTask = new FormLoaderTask(formPath, null, null, true);
+        FormLoaderTask.FECWrapper wrapper = formLoaderTask.execute(formPath).get();
+        Assert.assertNotNull(wrapper);
+        Assert.assertNotNull(wrapper.getController());
+
+        File mediaFolder = wrapper.getController().getMediaFolder();
+        Assert.assertTrue(new File(mediaFolder + File.separator + SIMPLE_SEARCH_EXTERNAL_DB_FILE).exists());
+    }
+
     @Test
     public void loadSearchFromexternalCsvLeavesFileUnchanged() throws Exception {
         final String formPath = storagePathProvider.getOdkDirPath(StorageSubdirectory.FORMS) + File.separator + SIMPLE_SEARCH_EXTERNAL_CSV_FORM;
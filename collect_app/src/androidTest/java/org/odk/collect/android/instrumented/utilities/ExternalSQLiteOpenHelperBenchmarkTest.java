@@ -0,0 +1,137 @@
+package org.odk.collect.android.instrumented.utilities;
+
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.external.ExternalDataReaderImpl;
+import org.odk.collect.android.external.ExternalDataUtil;
+import org.odk.collect.android.storage.StorageInitializer;
+import org.odk.collect.android.storage.StoragePathProvider;
+import org.odk.collect.android.storage.StorageSubdirectory;
+import org.odk.collect.android.support.ResetStateRule;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+
+import au.com.bytecode.opencsv.CSVReader;
+import timber.log.Timber;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.odk.collect.android.external.ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME;
+
+/**
+ * Imports a 20,000 row CSV with the compiled statement import and with a ContentValues per row,
+ * the way the import used to work, and logs the rows per second of each. Only the row counts are
+ * asserted on. Compare the logged rates between runs on the same device.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ExternalSQLiteOpenHelperBenchmarkTest {
+
+    private static final int ROWS = 20000;
+    private static final String[] HEADER = {"name", "facility_key", "district", "region", "label::English"};
+
+    @Rule
+    public ResetStateRule resetStateRule = new ResetStateRule();
+
+    private File mediaDir;
+    private File csvFile;
+
+    @Before
+    public void setUp() throws IOException {
+        new StorageInitializer().createOdkDirsOnStorage();
+
+        mediaDir = new File(new StoragePathProvider().getOdkDirPath(StorageSubdirectory.FORMS), "benchmark-media");
+        mediaDir.mkdir();
+        csvFile = new File(mediaDir, "facilities.csv");
+
+        try (Writer out = new BufferedWriter(new FileWriter(csvFile))) {
+            out.write(String.join(",", HEADER));
+            for (int i = 0; i < ROWS; i++) {
+                out.write("\nfacility" + i + ",key" + i + ",district" + (i % 100) + ",region" + (i % 10) + ",\"Facility " + i + "\"");
+            }
+        }
+    }
+
+    @Test
+    public void import_importsAllRowsAndReportsRowsPerSecond() throws IOException {
+        File contentValuesDbFile = new File(mediaDir, "content-values.db");
+        long start = System.nanoTime();
+        importWithContentValues(contentValuesDbFile);
+        double contentValuesRowsPerSecond = rowsPerSecond(start);
+
+        Map<String, File> externalDataMap = new HashMap<>();
+        externalDataMap.put("facilities", csvFile);
+        start = System.nanoTime();
+        new ExternalDataReaderImpl(null).doImport(externalDataMap);
+        double compiledStatementRowsPerSecond = rowsPerSecond(start);
+
+        Timber.i("ContentValues import: %.0f rows/sec, compiled statement import: %.0f rows/sec",
+                contentValuesRowsPerSecond, compiledStatementRowsPerSecond);
+
+        assertThat(countRows(contentValuesDbFile), is((long) ROWS));
+        assertThat(countRows(new File(mediaDir, "facilities.db")), is((long) ROWS));
+    }
+
+    private static double rowsPerSecond(long startNanos) {
+        return ROWS / ((System.nanoTime() - startNanos) / 1e9);
+    }
+
+    private static long countRows(File dbFile) {
+        SQLiteDatabase db = SQLiteDatabase.openDatabase(dbFile.getAbsolutePath(), null, SQLiteDatabase.OPEN_READONLY);
+        try {
+            return DatabaseUtils.queryNumEntries(db, EXTERNAL_DATA_TABLE_NAME);
+        } finally {
+            db.close();
+        }
+    }
+
+    /**
+     * The import as it was before compiled statements were used.
+     */
+    private void importWithContentValues(File dbFile) throws IOException {
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(dbFile, null);
+        Map<String, String> columnNamesCache = new HashMap<>();
+
+        StringBuilder sb = new StringBuilder("CREATE TABLE " + EXTERNAL_DATA_TABLE_NAME + " (");
+        for (String header : HEADER) {
+            sb.append(ExternalDataUtil.toSafeColumnName(header, columnNamesCache)).append(" text collate nocase, ");
+        }
+        sb.append(ExternalDataUtil.SORT_COLUMN_NAME).append(" real);");
+        db.execSQL(sb.toString());
+
+        db.beginTransaction();
+        try (CSVReader reader = new CSVReader(new InputStreamReader(new FileInputStream(csvFile), "UTF-8"))) {
+            String[] headerRow = reader.readNext();
+            String[] row;
+            int rowCount = 0;
+            while ((row = reader.readNext()) != null) {
+                ContentValues values = new ContentValues();
+                values.put(ExternalDataUtil.SORT_COLUMN_NAME, rowCount + 1);
+                for (int i = 0; i < row.length && i < headerRow.length; i++) {
+                    values.put(ExternalDataUtil.toSafeColumnName(headerRow[i].trim(), columnNamesCache), row[i]);
+                }
+                db.insertOrThrow(EXTERNAL_DATA_TABLE_NAME, null, values);
+                rowCount++;
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            db.close();
+        }
+    }
+}
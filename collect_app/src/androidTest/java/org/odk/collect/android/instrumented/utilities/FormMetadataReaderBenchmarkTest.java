@@ -0,0 +1,61 @@
+package org.odk.collect.android.instrumented.utilities;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.utilities.FileUtils;
+import org.odk.collect.android.utilities.FormMetadataReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+
+import timber.log.Timber;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.odk.collect.android.support.FileUtils.copyFileFromAssets;
+
+/**
+ * Checks that {@link FormMetadataReader} gets the same metadata as the full parse the disk sync
+ * used before for a few large forms from the test assets, and logs how long each way takes per
+ * form, averaged over five runs.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FormMetadataReaderBenchmarkTest {
+    private static final String[] FORMS = {"nigeria-wards.xml", "all-widgets.xml", "fieldlist-updates_nocsv.xml", "Birds-encrypted.xml", "repeat_group_form.xml"};
+    private static final int RUNS = 5;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void read_returnsTheSameMetadataAsTheFullParse_andReportsTimes() throws IOException {
+        for (String formName : FORMS) {
+            File form = new File(temporaryFolder.getRoot(), formName);
+            copyFileFromAssets("forms/" + formName, form.getAbsolutePath());
+
+            HashMap<String, String> read = FormMetadataReader.read(form);
+            HashMap<String, String> parsed = FileUtils.getMetadataFromFormDefinition(form);
+            assertThat(read, is(parsed));
+
+            long readMillis = 0;
+            long parseMillis = 0;
+            for (int run = 0; run < RUNS; run++) {
+                long start = System.nanoTime();
+                FormMetadataReader.read(form);
+                readMillis += (System.nanoTime() - start) / 1000000;
+
+                start = System.nanoTime();
+                FileUtils.getMetadataFromFormDefinition(form);
+                parseMillis += (System.nanoTime() - start) / 1000000;
+            }
+
+            Timber.i("%s (%d KB): read %d ms, full parse %d ms", formName, form.length() / 1024,
+                    readMillis / RUNS, parseMillis / RUNS);
+        }
+    }
+}
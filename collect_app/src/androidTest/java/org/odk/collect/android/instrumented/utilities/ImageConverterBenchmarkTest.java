@@ -0,0 +1,133 @@
+package org.odk.collect.android.instrumented.utilities;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Debug;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.javarosa.form.api.FormEntryPrompt;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.RuleChain;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.application.Collect;
+import org.odk.collect.android.storage.StoragePathProvider;
+import org.odk.collect.android.storage.StorageSubdirectory;
+import org.odk.collect.android.support.ResetStateRule;
+import org.odk.collect.android.utilities.FileUtils;
+import org.odk.collect.android.utilities.ImageConverter;
+import org.odk.collect.android.widgets.ImageWidget;
+
+import java.io.File;
+import java.util.ArrayList;
+
+import timber.log.Timber;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Converts a 12 megapixel photo at each image size setting and logs the average time and the
+ * largest growth of the Java and native heaps over three runs. Each result is checked against the
+ * setting's size limit, while the time and memory are only logged so that a change can be
+ * compared with a run on the same device before it.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ImageConverterBenchmarkTest {
+    private static final String TEST_IMAGE_PATH = new StoragePathProvider().getOdkDirPath(StorageSubdirectory.INSTANCES) + File.separator + "benchmark" + File.separator + "testImage.jpg";
+    private static final String[] IMAGE_SIZE_MODES = {"very_small", "small", "medium", "large", "original_image_size"};
+    private static final int[] MAX_PIXELS = {640, 1024, 2048, 3072, Integer.MAX_VALUE};
+    private static final int WIDTH = 4000;
+    private static final int HEIGHT = 3000;
+    private static final int RUNS = 3;
+
+    @Rule
+    public RuleChain copyFormChain = RuleChain
+            .outerRule(new ResetStateRule());
+
+    @Before
+    public void setUp() {
+        new File(TEST_IMAGE_PATH).getParentFile().mkdirs();
+    }
+
+    @Test
+    public void execute_reportsLatencyAndPeakMemoryForEachImageSize() throws InterruptedException {
+        ImageWidget widget = getTestImageWidget();
+
+        for (int i = 0; i < IMAGE_SIZE_MODES.length; i++) {
+            long totalMillis = 0;
+            long peakBytes = 0;
+            for (int run = 0; run < RUNS; run++) {
+                saveTestBitmap();
+                System.gc();
+
+                MemorySampler sampler = new MemorySampler();
+                sampler.start();
+                long start = System.nanoTime();
+                ImageConverter.execute(TEST_IMAGE_PATH, widget, Collect.getInstance(), IMAGE_SIZE_MODES[i]);
+                totalMillis += (System.nanoTime() - start) / 1000000;
+                peakBytes = Math.max(peakBytes, sampler.finish());
+            }
+
+            Timber.i("%s (%dx%d): %d ms, peak %.1f MB", IMAGE_SIZE_MODES[i], WIDTH, HEIGHT,
+                    totalMillis / RUNS, peakBytes / (1024.0 * 1024.0));
+
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeFile(TEST_IMAGE_PATH, options);
+            assertThat(Math.max(options.outWidth, options.outHeight), lessThanOrEqualTo(MAX_PIXELS[i]));
+        }
+    }
+
+    private void saveTestBitmap() {
+        Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.RGB_565);
+        FileUtils.saveBitmapToFile(bitmap, TEST_IMAGE_PATH);
+        bitmap.recycle();
+    }
+
+    private ImageWidget getTestImageWidget() {
+        FormEntryPrompt formEntryPrompt = mock(FormEntryPrompt.class);
+        when(formEntryPrompt.getBindAttributes()).thenReturn(new ArrayList<>());
+
+        ImageWidget imageWidget = mock(ImageWidget.class);
+        when(imageWidget.getFormEntryPrompt()).thenReturn(formEntryPrompt);
+        return imageWidget;
+    }
+
+    /**
+     * Polls the Java and native heaps, where bitmap pixels live depending on the Android
+     * version, and keeps the largest increase over what was allocated when it started.
+     */
+    private static class MemorySampler extends Thread {
+        private final long baseline = getAllocatedBytes();
+        private volatile boolean finished;
+        private long peak;
+
+        @Override
+        public void run() {
+            while (!finished) {
+                peak = Math.max(peak, getAllocatedBytes() - baseline);
+                try {
+                    Thread.sleep(2);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        long finish() throws InterruptedException {
+            finished = true;
+            join();
+            return Math.max(peak, getAllocatedBytes() - baseline);
+        }
+
+        private static long getAllocatedBytes() {
+            Runtime runtime = Runtime.getRuntime();
+            return runtime.totalMemory() - runtime.freeMemory() + Debug.getNativeHeapAllocatedSize();
+        }
+    }
+}
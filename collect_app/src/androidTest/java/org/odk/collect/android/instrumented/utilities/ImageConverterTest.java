@@ -310,6 +310,19 @@ public class ImageConverterTest {
         assertEquals(3000, image.getHeight());
     }
 
+    @Test
+    public void rotateImage_resetsExifOrientation() {
+        Map<String, String> attributes = new HashMap<>();
+        attributes.put(ExifInterface.TAG_ORIENTATION, String.valueOf(ExifInterface.ORIENTATION_ROTATE_90));
+
+        saveTestBitmap(3000, 4000, attributes);
+        ImageConverter.execute(TEST_IMAGE_PATH, getTestImageWidget(), Collect.getInstance(), IMAGE_SIZE_ORIGINAL);
+
+        ExifInterface exifData = getTestImageExif();
+        assertNotNull(exifData);
+        assertEquals(ExifInterface.ORIENTATION_NORMAL, exifData.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_UNDEFINED));
+    }
+
     @Test
     public void rotateImage2() {
         Map<String, String> attributes = new HashMap<>();
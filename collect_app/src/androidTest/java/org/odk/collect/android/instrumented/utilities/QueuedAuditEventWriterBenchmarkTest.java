@@ -0,0 +1,119 @@
+package org.odk.collect.android.instrumented.utilities;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.formentry.audit.AuditEvent;
+import org.odk.collect.android.formentry.audit.QueuedAuditEventWriter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import timber.log.Timber;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.odk.collect.android.formentry.audit.AuditEvent.AuditEventType.FORM_START;
+import static org.odk.collect.android.formentry.audit.AuditEventCSVLine.toCSVLine;
+
+/**
+ * Appends 2,000 batches of five events to an audit log that already has 100,000 lines (about
+ * 10 MB), once through {@link QueuedAuditEventWriter} and once the way batches used to be written,
+ * reading the header and opening a new FileWriter each time. Logs the events per second of both
+ * and checks that neither lost a line.
+ */
+@RunWith(AndroidJUnit4.class)
+public class QueuedAuditEventWriterBenchmarkTest {
+
+    private static final String HEADER = "event,node,start,end,latitude,longitude,accuracy,old-value,new-value";
+    private static final int EXISTING_LINES = 100000;
+    private static final int BATCHES = 2000;
+    private static final int EVENTS_PER_BATCH = 5;
+
+    private File perBatchFile;
+    private File queuedFile;
+
+    @Before
+    public void setUp() throws IOException {
+        perBatchFile = File.createTempFile("audit-per-batch", ".csv");
+        queuedFile = File.createTempFile("audit-queued", ".csv");
+
+        for (File file : new File[]{perBatchFile, queuedFile}) {
+            try (Writer out = new BufferedWriter(new FileWriter(file))) {
+                out.write(HEADER + "\n");
+                for (int i = 0; i < EXISTING_LINES; i++) {
+                    out.write("question,/data/group[" + i + "]/question,1548106927319,1548106930112,54.4112062,18.5896652,30.716999053955078,old value " + i + ",new value " + i + "\n");
+                }
+            }
+        }
+    }
+
+    @Test
+    public void writeEvents_writesAllEventsAndReportsEventsPerSecond() throws IOException {
+        List<AuditEvent> batch = new ArrayList<>();
+        for (int i = 0; i < EVENTS_PER_BATCH; i++) {
+            AuditEvent event = new AuditEvent(1548106927319L + i, FORM_START);
+            event.setLocationCoordinates("54.4112062", "18.5896652", "30.716999053955078");
+            batch.add(event);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < BATCHES; i++) {
+            writePerBatch(batch);
+        }
+        double perBatchEventsPerSecond = eventsPerSecond(start);
+
+        QueuedAuditEventWriter writer = new QueuedAuditEventWriter(queuedFile, true, true, false, false);
+        start = System.nanoTime();
+        for (int i = 0; i < BATCHES; i++) {
+            writer.writeEvents(batch);
+        }
+        writer.awaitWritten();
+        double queuedEventsPerSecond = eventsPerSecond(start);
+
+        Timber.i("FileWriter per batch: %.0f events/sec, queued writer: %.0f events/sec",
+                perBatchEventsPerSecond, queuedEventsPerSecond);
+
+        assertThat(countLines(perBatchFile), is(1 + EXISTING_LINES + BATCHES * EVENTS_PER_BATCH));
+        assertThat(countLines(queuedFile), is(1 + EXISTING_LINES + BATCHES * EVENTS_PER_BATCH));
+    }
+
+    private static double eventsPerSecond(long startNanos) {
+        return BATCHES * EVENTS_PER_BATCH / ((System.nanoTime() - startNanos) / 1e9);
+    }
+
+    private static int countLines(File file) throws IOException {
+        int lines = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            while (reader.readLine() != null) {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Writes a batch the way it was written before the queued writer: the header is read to
+     * check whether it needs updating and a new FileWriter is opened for every batch.
+     */
+    private void writePerBatch(List<AuditEvent> batch) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(perBatchFile))) {
+            reader.readLine();
+        }
+
+        try (FileWriter fw = new FileWriter(perBatchFile, true)) {
+            for (AuditEvent event : batch) {
+                fw.write(toCSVLine(event, true, true, false) + "\n");
+            }
+        }
+    }
+}
@@ -72,6 +72,11 @@ public class TestScheduler implements Scheduler {
         deferredTasks.add(new DeferredTask(tag, spec, repeatPeriod));
     }
 
+    @Override
+    public void lowPriorityDeferred(@NotNull String tag, @NotNull TaskSpec spec) {
+        deferredTasks.add(new DeferredTask(tag, spec, null));
+    }
+
     @Override
     public void cancelDeferred(@NotNull String tag) {
         deferredTasks.removeIf(t -> t.getTag().equals(tag));
@@ -183,7 +183,7 @@ abstract class AppListActivity extends CollectAbstractActivity {
             @Override
             public boolean onQueryTextChange(String newText) {
                 filterText = newText;
-                updateAdapter();
+                onFilterTextChanged();
                 return false;
             }
         });
@@ -251,6 +251,14 @@ abstract class AppListActivity extends CollectAbstractActivity {
 
     protected abstract void updateAdapter();
 
+    /**
+     * Called for every change to the search text while it's typed. Lists that are expensive to
+     * filter can override this to wait for typing to pause before calling {@link #updateAdapter()}.
+     */
+    protected void onFilterTextChanged() {
+        updateAdapter();
+    }
+
     protected abstract String getSortingOrderKey();
 
     protected boolean areCheckedItems() {
@@ -32,6 +32,7 @@ import androidx.loader.content.Loader;
 
 import org.odk.collect.android.R;
 import org.odk.collect.android.adapters.FormListAdapter;
+import org.odk.collect.android.backgroundwork.FormCacheWarmUpManager;
 import org.odk.collect.android.dao.FormsDao;
 import org.odk.collect.android.formmanagement.BlankFormListMenuDelegate;
 import org.odk.collect.android.formmanagement.BlankFormsListViewModel;
@@ -45,6 +46,7 @@ import org.odk.collect.android.provider.FormsProviderAPI.FormsColumns;
 import org.odk.collect.android.tasks.DiskSyncTask;
 import org.odk.collect.android.utilities.ApplicationConstants;
 import org.odk.collect.android.utilities.DialogUtils;
+import org.odk.collect.android.utilities.FileHashCache;
 import org.odk.collect.android.utilities.MultiClickGuard;
 import org.odk.collect.android.views.ObviousProgressBar;
 
@@ -72,6 +74,12 @@ public class FillBlankFormActivity extends FormListActivity implements
     @Inject
     BlankFormsListViewModel.Factory blankFormsListViewModelFactory;
 
+    @Inject
+    FormCacheWarmUpManager formCacheWarmUpManager;
+
+    @Inject
+    FileHashCache fileHashCache;
+
     BlankFormListMenuDelegate menuDelegate;
 
     @Override
@@ -140,7 +148,7 @@ public class FillBlankFormActivity extends FormListActivity implements
         diskSyncTask = (DiskSyncTask) getLastCustomNonConfigurationInstance();
         if (diskSyncTask == null) {
             Timber.i("Starting new disk sync task");
-            diskSyncTask = new DiskSyncTask();
+            diskSyncTask = new DiskSyncTask(formCacheWarmUpManager, fileHashCache);
             diskSyncTask.setDiskSyncListener(this);
             diskSyncTask.execute((Void[]) null);
         }
@@ -273,6 +273,12 @@ public class FormEntryActivity extends CollectAbstractActivity implements Animat
 
     private FormLoaderTask formLoaderTask;
 
+    /**
+     * The form this activity is filling in. It's not set when a sent form is only loaded to be
+     * shown in {@link ViewOnlyFormHierarchyActivity}.
+     */
+    private FormController openFormController;
+
     private TextView nextButton;
     private TextView backButton;
 
@@ -504,6 +510,7 @@ public class FormEntryActivity extends CollectAbstractActivity implements Animat
 
     // Precondition: the instance directory must be ready so that the audit file can be created
     private void formControllerAvailable(@NonNull FormController formController) {
+        openFormController = formController;
         menuDelegate.formLoaded(formController);
 
         identityPromptViewModel.formLoaded(formController);
@@ -571,7 +578,7 @@ public class FormEntryActivity extends CollectAbstractActivity implements Animat
                     onScreenRefresh();
                 } else {
                     Timber.w("Reloading form and restoring state.");
-                    formLoaderTask = new FormLoaderTask(instancePath, startingXPath, waitingXPath);
+                    formLoaderTask = new FormLoaderTask(instancePath, startingXPath, waitingXPath, true);
                     showIfNotShowing(FormLoadingDialogFragment.class, getSupportFragmentManager());
                     formLoaderTask.execute(formPath);
                 }
@@ -681,7 +688,7 @@ public class FormEntryActivity extends CollectAbstractActivity implements Animat
             return;
         }
 
-        formLoaderTask = new FormLoaderTask(instancePath, null, null);
+        formLoaderTask = new FormLoaderTask(instancePath, null, null, true);
         showIfNotShowing(FormLoadingDialogFragment.class, getSupportFragmentManager());
         formLoaderTask.execute(formPath);
     }
@@ -2090,6 +2097,12 @@ public class FormEntryActivity extends CollectAbstractActivity implements Animat
         releaseOdkView();
         compositeDisposable.dispose();
 
+        // Background work such as the form cache warm up waits for form entry to be over. Another
+        // form may already have been opened by the time this activity is destroyed.
+        if (isFinishing() && openFormController == getFormController()) {
+            Collect.getInstance().setFormController(null);
+        }
+
         try {
             unregisterReceiver(locationProvidersReceiver);
         } catch (IllegalArgumentException e) {
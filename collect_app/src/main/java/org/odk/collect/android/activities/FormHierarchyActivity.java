@@ -14,7 +14,10 @@
 
 package org.odk.collect.android.activities;
 
+import android.content.Context;
 import android.content.DialogInterface;
+import android.graphics.drawable.Drawable;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.view.Menu;
 import android.view.MenuItem;
@@ -47,12 +50,17 @@ import org.odk.collect.android.formentry.ODKView;
 import org.odk.collect.android.formentry.repeats.DeleteRepeatDialogFragment;
 import org.odk.collect.android.javarosawrapper.FormController;
 import org.odk.collect.android.logic.HierarchyElement;
+import org.odk.collect.android.logic.HierarchyModel;
 import org.odk.collect.android.utilities.DialogUtils;
 import org.odk.collect.android.utilities.FormEntryPromptUtils;
 import org.odk.collect.android.utilities.MultiClickGuard;
+import org.odk.collect.android.views.ObviousProgressBar;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 
 import javax.inject.Inject;
 
@@ -65,10 +73,22 @@ public class FormHierarchyActivity extends CollectAbstractActivity implements De
     public static final int RESULT_ADD_REPEAT = 2;
     /**
      * The questions and repeats at the current level.
-     * Recreated every time {@link #refreshView()} is called.
+     * Recreated every time a level is shown by {@link #refreshView()}.
      */
     private List<HierarchyElement> elementsToDisplay;
 
+    /**
+     * Builds the current level if it isn't in the form session's {@link HierarchyModel}. It reads
+     * the form on another thread, so while it runs the repeat actions are hidden and it's stopped
+     * before anything else can change the form (see {@link #stopLoadingLevel()}).
+     */
+    private LoadLevelTask loadLevelTask;
+
+    /**
+     * Whether the list has been scrolled to the question the hierarchy was opened from.
+     */
+    private boolean scrolledToStartIndex;
+
     /**
      * The label shown at the top of a hierarchy screen for a repeat instance. Set by
      * {@link #getCurrentPath()}.
@@ -114,6 +134,8 @@ public class FormHierarchyActivity extends CollectAbstractActivity implements De
     protected Button jumpBeginningButton;
     protected Button jumpEndButton;
     protected RecyclerView recyclerView;
+    private TextView emptyView;
+    private ObviousProgressBar progressBar;
 
     @Inject
     FormEntryViewModel.Factory formEntryViewModelFactory;
@@ -131,7 +153,8 @@ public class FormHierarchyActivity extends CollectAbstractActivity implements De
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
         recyclerView.addItemDecoration(new DividerItemDecoration(this, DividerItemDecoration.VERTICAL));
 
-        TextView emptyView = findViewById(android.R.id.empty);
+        emptyView = findViewById(android.R.id.empty);
+        progressBar = findViewById(R.id.progressBar);
         Toolbar toolbar = findViewById(R.id.toolbar);
         setSupportActionBar(toolbar);
 
@@ -160,26 +183,22 @@ public class FormHierarchyActivity extends CollectAbstractActivity implements De
         restoreInstanceState(savedInstanceState);
 
         refreshView();
+    }
 
-        // Scroll to the last question the user was looking at
-        // TODO: avoid another iteration through all displayed elements
-        if (recyclerView != null && recyclerView.getAdapter() != null && recyclerView.getAdapter().getItemCount() > 0) {
-            emptyView.setVisibility(View.GONE);
-            recyclerView.post(() -> {
-                int position = 0;
-                // Iterate over all the elements currently displayed looking for a match with the
-                // startIndex which can either represent a question or a field list.
-                for (HierarchyElement hierarchyElement : elementsToDisplay) {
-                    FormIndex indexToCheck = hierarchyElement.getFormIndex();
-                    if (startIndex.equals(indexToCheck)
-                            || (formController.indexIsInFieldList(startIndex) && indexToCheck.toString().startsWith(startIndex.toString()))) {
-                        position = elementsToDisplay.indexOf(hierarchyElement);
-                        break;
-                    }
-                }
-                ((LinearLayoutManager) recyclerView.getLayoutManager()).scrollToPositionWithOffset(position, 0);
-            });
-        }
+    @Override
+    protected void onDestroy() {
+        stopLoadingLevel();
+        super.onDestroy();
+    }
+
+    /**
+     * Form entry can change the form as soon as the hierarchy is left, so the level being built
+     * is stopped first.
+     */
+    @Override
+    public void finish() {
+        stopLoadingLevel();
+        super.finish();
     }
 
     @Override
@@ -223,10 +242,13 @@ public class FormHierarchyActivity extends CollectAbstractActivity implements De
         boolean isGroupSizeLocked = shouldShowPicker
                 ? isGroupSizeLocked(repeatGroupPickerIndex) : isGroupSizeLocked(screenIndex);
 
-        boolean shouldShowDelete = isInRepeat && !shouldShowPicker && !isGroupSizeLocked;
+        // Adding or deleting a repeat changes the form, which can't happen while a level is built
+        boolean isLoadingLevel = loadLevelTask != null;
+
+        boolean shouldShowDelete = isInRepeat && !shouldShowPicker && !isGroupSizeLocked && !isLoadingLevel;
         showDeleteButton(shouldShowDelete);
 
-        boolean shouldShowAdd = shouldShowPicker && !isGroupSizeLocked;
+        boolean shouldShowAdd = shouldShowPicker && !isGroupSizeLocked && !isLoadingLevel;
         showAddButton(shouldShowAdd);
 
         boolean shouldShowGoUp = !isAtBeginning;
@@ -491,8 +513,6 @@ public class FormHierarchyActivity extends CollectAbstractActivity implements De
             // in the event of an error.
             currentIndex = formController.getFormIndex();
 
-            elementsToDisplay = new ArrayList<>();
-
             jumpToHierarchyStartIndex();
             updateOptionsMenu();
 
@@ -506,116 +526,196 @@ public class FormHierarchyActivity extends CollectAbstractActivity implements De
                 groupPathTextView.setText(getCurrentPath());
             }
 
-            // Refresh the current event in case we did step forward.
-            event = formController.getEvent();
+            // The level is listed from here, which is inside the screen's group if it has one
+            FormIndex levelStartIndex = formController.getFormIndex();
+            formController.jumpToIndex(currentIndex);
 
-            // Ref to the parent group that's currently being displayed.
-            //
-            // Because of the guard conditions below, we will skip
-            // everything until we exit this group.
-            TreeReference visibleGroupRef = null;
+            stopLoadingLevel();
 
-            while (event != FormEntryController.EVENT_END_OF_FORM) {
-                // get the ref to this element
-                TreeReference currentRef = formController.getFormIndex().getReference();
+            HierarchyModel hierarchyModel = formController.getHierarchyModel();
+            List<HierarchyElement> level = hierarchyModel.getLevel(screenIndex, repeatGroupPickerIndex);
+            if (level != null) {
+                showLevel(level, isGoingUp);
+            } else {
+                progressBar.show();
+                loadLevelTask = new LoadLevelTask(this, formController, levelStartIndex, contextGroupRef,
+                        screenIndex, repeatGroupPickerIndex, isGoingUp);
+                loadLevelTask.execute();
+                updateOptionsMenu();
+            }
+        } catch (Exception e) {
+            Timber.e(e);
+            createErrorDialog(e.getMessage());
+        }
+    }
 
-                // retrieve the current group
-                TreeReference curGroup = (visibleGroupRef == null) ? contextGroupRef : visibleGroupRef;
+    private void onLevelLoaded(LoadLevelTask task, List<HierarchyElement> level) {
+        if (task != loadLevelTask) {
+            return;
+        }
 
-                if (curGroup != null && !curGroup.isParentOf(currentRef, false)) {
-                    // We have left the current group
-                    if (visibleGroupRef == null) {
-                        // We are done.
-                        break;
-                    } else {
-                        // exit the inner group
-                        visibleGroupRef = null;
-                    }
-                }
+        loadLevelTask = null;
+        updateOptionsMenu();
 
-                if (visibleGroupRef != null) {
-                    // We're in a group within the one we want to list
-                    // skip this question/group/repeat and move to the next index.
-                    event =
-                            formController.stepToNextEvent(FormController.STEP_INTO_GROUP);
-                    continue;
-                }
+        if (level == null) {
+            progressBar.hide(View.GONE);
+            createErrorDialog(task.errorMessage);
+        } else {
+            showLevel(level, task.isGoingUp);
+        }
+    }
 
-                switch (event) {
-                    case FormEntryController.EVENT_QUESTION: {
-                        // Nothing but repeat group instances should show up in the picker.
-                        if (shouldShowRepeatGroupPicker()) {
-                            break;
-                        }
+    /**
+     * Stops the level being built and waits until it's no longer reading the form. Building stops
+     * at the next element, so this doesn't wait for the rest of the level.
+     */
+    private void stopLoadingLevel() {
+        if (loadLevelTask != null) {
+            loadLevelTask.stop();
+            loadLevelTask = null;
+        }
+    }
 
-                        FormEntryPrompt fp = formController.getQuestionPrompt();
-                        String label = fp.getShortText();
-                        String answerDisplay = FormEntryPromptUtils.getAnswerText(fp, this, formController);
-                        elementsToDisplay.add(
-                                new HierarchyElement(FormEntryPromptUtils.markQuestionIfIsRequired(label, fp.isRequired()), answerDisplay, null,
-                                        HierarchyElement.Type.QUESTION, fp.getIndex()));
-                        break;
-                    }
-                    case FormEntryController.EVENT_GROUP: {
-                        if (!formController.isGroupRelevant()) {
-                            break;
-                        }
-                        // Nothing but repeat group instances should show up in the picker.
-                        if (shouldShowRepeatGroupPicker()) {
-                            break;
-                        }
+    private void showLevel(List<HierarchyElement> level, boolean isGoingUp) {
+        progressBar.hide(View.GONE);
+
+        // The model's elements are shared so icons are only added to copies
+        elementsToDisplay = new ArrayList<>();
+        for (HierarchyElement element : level) {
+            Drawable icon = null;
+            if (element.getType() == HierarchyElement.Type.VISIBLE_GROUP) {
+                icon = ContextCompat.getDrawable(this, R.drawable.ic_folder_open);
+            } else if (element.getType() == HierarchyElement.Type.REPEATABLE_GROUP) {
+                icon = ContextCompat.getDrawable(this, R.drawable.ic_repeat);
+            }
 
-                        FormIndex index = formController.getFormIndex();
+            elementsToDisplay.add(new HierarchyElement(element.getPrimaryText(), element.getSecondaryText(),
+                    icon, element.getType(), element.getFormIndex()));
+        }
 
-                        // Only display groups with a specific appearance attribute.
-                        if (!formController.isDisplayableGroup(index)) {
-                            break;
-                        }
+        recyclerView.setAdapter(new HierarchyListAdapter(elementsToDisplay, this::onElementClick));
 
-                        // Don't render other groups' children.
-                        if (contextGroupRef != null && !contextGroupRef.isParentOf(currentRef, false)) {
-                            break;
-                        }
+        // Prevent a redundant middle screen (common on many forms
+        // that use presentation groups to display labels).
+        if (isDisplayingSingleGroup() && !screenIndex.isBeginningOfFormIndex()) {
+            if (isGoingUp) {
+                // Back out once more.
+                goUpLevel();
+            } else {
+                // Enter automatically.
+                Collect.getInstance().getFormController().jumpToIndex(elementsToDisplay.get(0).getFormIndex());
+                refreshView();
+            }
+            return;
+        }
+
+        emptyView.setVisibility(elementsToDisplay.isEmpty() ? View.VISIBLE : View.GONE);
+        if (!scrolledToStartIndex) {
+            scrolledToStartIndex = true;
+            scrollToStartIndex();
+        }
+    }
+
+    /**
+     * Scrolls to the last question the user was looking at.
+     */
+    private void scrollToStartIndex() {
+        FormController formController = Collect.getInstance().getFormController();
+        recyclerView.post(() -> {
+            int position = 0;
+            // Iterate over all the elements currently displayed looking for a match with the
+            // startIndex which can either represent a question or a field list.
+            for (HierarchyElement hierarchyElement : elementsToDisplay) {
+                FormIndex indexToCheck = hierarchyElement.getFormIndex();
+                if (startIndex.equals(indexToCheck)
+                        || (formController.indexIsInFieldList(startIndex) && indexToCheck.toString().startsWith(startIndex.toString()))) {
+                    position = elementsToDisplay.indexOf(hierarchyElement);
+                    break;
+                }
+            }
+            ((LinearLayoutManager) recyclerView.getLayoutManager()).scrollToPositionWithOffset(position, 0);
+        });
+    }
 
-                        visibleGroupRef = currentRef;
+    /**
+     * Lists the questions, groups and repeats of one level of the hierarchy, starting from the
+     * FormController's current index. Groups and repeat instances are stepped over rather than
+     * into, so their contents are only read when they're opened.
+     *
+     * @param contextGroupRef        the group of the level or null for the start of the form
+     * @param repeatGroupPickerIndex the repeat whose instances should be listed or null to list
+     *                               everything in the level
+     * @param isCancelled            checked before each element, returning what has been listed
+     *                               so far once it's true
+     */
+    static List<HierarchyElement> buildLevel(FormController formController, TreeReference contextGroupRef,
+                                             FormIndex repeatGroupPickerIndex, Context context, BooleanSupplier isCancelled) {
+        List<HierarchyElement> elements = new ArrayList<>();
+        boolean shouldShowRepeatGroupPicker = repeatGroupPickerIndex != null;
+        int event = formController.getEvent();
+
+        while (event != FormEntryController.EVENT_END_OF_FORM && !isCancelled.getAsBoolean()) {
+            // get the ref to this element
+            TreeReference currentRef = formController.getFormIndex().getReference();
+
+            if (contextGroupRef != null && !contextGroupRef.isParentOf(currentRef, false)) {
+                // We have left the current group so we are done.
+                break;
+            }
 
-                        FormEntryCaption caption = formController.getCaptionPrompt();
-                        HierarchyElement groupElement = new HierarchyElement(
-                                caption.getShortText(), getString(R.string.group_label),
-                                ContextCompat.getDrawable(this, R.drawable.ic_folder_open),
-                                HierarchyElement.Type.VISIBLE_GROUP, caption.getIndex());
-                        elementsToDisplay.add(groupElement);
+            switch (event) {
+                case FormEntryController.EVENT_QUESTION: {
+                    // Nothing but repeat group instances should show up in the picker.
+                    if (shouldShowRepeatGroupPicker) {
+                        break;
+                    }
 
-                        // Skip to the next item outside the group.
-                        event = formController.stepOverGroup();
-                        continue;
+                    FormEntryPrompt fp = formController.getQuestionPrompt();
+                    String label = fp.getShortText();
+                    String answerDisplay = FormEntryPromptUtils.getAnswerText(fp, context, formController);
+                    elements.add(
+                            new HierarchyElement(FormEntryPromptUtils.markQuestionIfIsRequired(label, fp.isRequired()), answerDisplay, null,
+                                    HierarchyElement.Type.QUESTION, fp.getIndex()));
+                    break;
+                }
+                case FormEntryController.EVENT_GROUP: {
+                    if (!formController.isGroupRelevant()) {
+                        break;
                     }
-                    case FormEntryController.EVENT_PROMPT_NEW_REPEAT: {
-                        // this would display the 'add new repeat' dialog
-                        // ignore it.
+                    // Nothing but repeat group instances should show up in the picker.
+                    if (shouldShowRepeatGroupPicker) {
                         break;
                     }
-                    case FormEntryController.EVENT_REPEAT: {
-                        if (!formController.isGroupRelevant()) {
-                            break;
-                        }
 
-                        visibleGroupRef = currentRef;
+                    FormIndex index = formController.getFormIndex();
 
-                        FormEntryCaption fc = formController.getCaptionPrompt();
+                    // Only display groups with a specific appearance attribute.
+                    if (!formController.isDisplayableGroup(index)) {
+                        break;
+                    }
 
-                        // Don't render other groups' children.
-                        if (contextGroupRef != null && !contextGroupRef.isParentOf(currentRef, false)) {
-                            break;
-                        }
+                    FormEntryCaption caption = formController.getCaptionPrompt();
+                    HierarchyElement groupElement = new HierarchyElement(
+                            caption.getShortText(), context.getString(R.string.group_label), null,
+                            HierarchyElement.Type.VISIBLE_GROUP, caption.getIndex());
+                    elements.add(groupElement);
 
-                        if (shouldShowRepeatGroupPicker()) {
-                            // Don't render other groups' instances.
-                            String repeatGroupPickerRef = repeatGroupPickerIndex.getReference().toString(false);
-                            if (!currentRef.toString(false).equals(repeatGroupPickerRef)) {
-                                break;
-                            }
+                    // Skip to the next item outside the group.
+                    event = formController.stepPastGroup();
+                    continue;
+                }
+                case FormEntryController.EVENT_PROMPT_NEW_REPEAT: {
+                    // this would display the 'add new repeat' dialog
+                    // ignore it.
+                    break;
+                }
+                case FormEntryController.EVENT_REPEAT: {
+                    FormEntryCaption fc = formController.getCaptionPrompt();
 
+                    if (shouldShowRepeatGroupPicker) {
+                        // Don't render other groups' instances.
+                        String repeatGroupPickerRef = repeatGroupPickerIndex.getReference().toString(false);
+                        if (currentRef.toString(false).equals(repeatGroupPickerRef) && formController.isGroupRelevant()) {
                             int itemNumber = fc.getMultiplicity() + 1;
 
                             // e.g. `friends > 1`
@@ -629,48 +729,32 @@ public class FormHierarchyActivity extends CollectAbstractActivity implements De
                                     // e.g. `1. Alice`
                                     repeatLabel = itemNumber + ".\u200E " + itemLabel;
                                 }
+                                formController.jumpToIndex(fc.getIndex());
                             }
 
                             HierarchyElement instance = new HierarchyElement(
                                     repeatLabel, null,
                                     null, HierarchyElement.Type.REPEAT_INSTANCE, fc.getIndex());
-                            elementsToDisplay.add(instance);
-                        } else if (fc.getMultiplicity() == 0) {
-                            // Display the repeat header for the group.
-                            HierarchyElement group = new HierarchyElement(
-                                    fc.getShortText(), getString(R.string.repeatable_group_label),
-                                    ContextCompat.getDrawable(this, R.drawable.ic_repeat),
-                                    HierarchyElement.Type.REPEATABLE_GROUP, fc.getIndex());
-                            elementsToDisplay.add(group);
+                            elements.add(instance);
                         }
-
-                        break;
+                    } else if (fc.getMultiplicity() == 0 && formController.isGroupRelevant()) {
+                        // Display the repeat header for the group.
+                        HierarchyElement group = new HierarchyElement(
+                                fc.getShortText(), context.getString(R.string.repeatable_group_label), null,
+                                HierarchyElement.Type.REPEATABLE_GROUP, fc.getIndex());
+                        elements.add(group);
                     }
-                }
-
-                event = formController.stepToNextEvent(FormController.STEP_INTO_GROUP);
-            }
-
-            recyclerView.setAdapter(new HierarchyListAdapter(elementsToDisplay, this::onElementClick));
-
-            formController.jumpToIndex(currentIndex);
 
-            // Prevent a redundant middle screen (common on many forms
-            // that use presentation groups to display labels).
-            if (isDisplayingSingleGroup() && !screenIndex.isBeginningOfFormIndex()) {
-                if (isGoingUp) {
-                    // Back out once more.
-                    goUpLevel();
-                } else {
-                    // Enter automatically.
-                    formController.jumpToIndex(elementsToDisplay.get(0).getFormIndex());
-                    refreshView();
+                    // The instance's contents are shown in a level of their own
+                    event = formController.stepPastGroup();
+                    continue;
                 }
             }
-        } catch (Exception e) {
-            Timber.e(e);
-            createErrorDialog(e.getMessage());
+
+            event = formController.stepToNextEvent(FormController.STEP_INTO_GROUP);
         }
+
+        return elements;
     }
 
     /**
@@ -811,4 +895,109 @@ public class FormHierarchyActivity extends CollectAbstractActivity implements De
             goUpLevel();
         }
     }
+
+    /**
+     * Builds a level of the hierarchy with a FormController of its own over the same form, so
+     * that the current index of the form session isn't moved while it's being built.
+     *
+     * The form is read on the background thread while the main thread can also read it, which is
+     * safe because neither of them changes it: building a level only evaluates labels, answers and
+     * relevance, and while it runs the hierarchy only reads the form to update the menu and moves
+     * the index of the session's own FormEntryModel. Everything that changes the form, like adding
+     * or deleting a repeat and going back to form entry, calls {@link #stop()} first.
+     */
+    private static class LoadLevelTask extends AsyncTask<Void, Void, List<HierarchyElement>> {
+        private static final int NOT_STARTED = 0;
+        private static final int READING = 1;
+        private static final int DONE = 2;
+
+        private final FormHierarchyActivity activity;
+        private final HierarchyModel hierarchyModel;
+        private final FormController levelFormController;
+        private final FormIndex levelStartIndex;
+        private final TreeReference contextGroupRef;
+        private final FormIndex screenIndex;
+        private final FormIndex repeatGroupPickerIndex;
+        private final boolean isGoingUp;
+        private final int version;
+
+        private final AtomicInteger state = new AtomicInteger(NOT_STARTED);
+        private final CountDownLatch doneReading = new CountDownLatch(1);
+
+        private String errorMessage;
+
+        LoadLevelTask(FormHierarchyActivity activity, FormController formController, FormIndex levelStartIndex,
+                      TreeReference contextGroupRef, FormIndex screenIndex, FormIndex repeatGroupPickerIndex,
+                      boolean isGoingUp) {
+            this.activity = activity;
+            this.hierarchyModel = formController.getHierarchyModel();
+            this.levelFormController = new FormController(formController.getMediaFolder(),
+                    new FormEntryController(new FormEntryModel(formController.getFormDef())), formController.getInstanceFile());
+            this.levelStartIndex = levelStartIndex;
+            this.contextGroupRef = contextGroupRef;
+            this.screenIndex = screenIndex;
+            this.repeatGroupPickerIndex = repeatGroupPickerIndex;
+            this.isGoingUp = isGoingUp;
+            this.version = hierarchyModel.getVersion();
+        }
+
+        /**
+         * Cancels the task and, if it's reading the form, waits until it's done. The level is
+         * built one element at a time and cancelling is checked between them, so that's at most
+         * the time it takes to read one element.
+         */
+        void stop() {
+            cancel(false);
+
+            // A task that hasn't started reading never will
+            if (state.compareAndSet(NOT_STARTED, DONE)) {
+                return;
+            }
+
+            try {
+                doneReading.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        protected List<HierarchyElement> doInBackground(Void... voids) {
+            if (!state.compareAndSet(NOT_STARTED, READING)) {
+                return null;
+            }
+
+            try {
+                if (isCancelled()) {
+                    return null;
+                }
+
+                long start = System.currentTimeMillis();
+                levelFormController.jumpToIndex(levelStartIndex);
+                List<HierarchyElement> level = buildLevel(levelFormController, contextGroupRef, repeatGroupPickerIndex, activity, this::isCancelled);
+                if (isCancelled()) {
+                    // Only part of the level was built
+                    return null;
+                }
+                hierarchyModel.putLevel(screenIndex, repeatGroupPickerIndex, level, levelFormController, version);
+
+                Timber.i("Hierarchy level of %d elements built in %d ms", level.size(), System.currentTimeMillis() - start);
+                return level;
+            } catch (Exception e) {
+                Timber.e(e);
+                errorMessage = e.getMessage();
+                return null;
+            } finally {
+                state.set(DONE);
+                doneReading.countDown();
+            }
+        }
+
+        @Override
+        protected void onPostExecute(List<HierarchyElement> level) {
+            if (!activity.isFinishing()) {
+                activity.onLevelLoaded(this, level);
+            }
+        }
+    }
 }
@@ -40,6 +40,7 @@ import org.odk.collect.android.dao.FormsDao;
 import org.odk.collect.android.forms.Form;
 import org.odk.collect.android.geo.MapFragment;
 import org.odk.collect.android.geo.MapPoint;
+import org.odk.collect.android.geo.MapPointIndex;
 import org.odk.collect.android.geo.MapProvider;
 import org.odk.collect.android.injection.DaggerUtils;
 import org.odk.collect.android.database.DatabaseInstancesRepository;
@@ -68,6 +69,11 @@ public class FormMapActivity extends BaseGeoMapActivity {
     public static final String MAP_CENTER_KEY = "map_center";
     public static final String MAP_ZOOM_KEY = "map_zoom";
 
+    /**
+     * How many zoom levels tapping a cluster zooms in by.
+     */
+    private static final double CLUSTER_ZOOM_STEP = 2;
+
     private FormMapViewModel viewModel;
 
     @Inject
@@ -82,6 +88,17 @@ public class FormMapActivity extends BaseGeoMapActivity {
      */
     final Map<Integer, MappableFormInstance> instancesByFeatureId = new HashMap<>();
 
+    /**
+     * Markers that stand for several nearby instances, by feature ID.
+     */
+    private final Map<Integer, MapPointIndex.Cluster<MappableFormInstance>> clustersByFeatureId = new HashMap<>();
+
+    /**
+     * Feature IDs of the markers on the map by what they show, so that markers that are still
+     * needed after the viewport or the instances change can stay on the map.
+     */
+    private final Map<String, Integer> featureIdsByKey = new HashMap<>();
+
     /**
      * Points to be mapped. Note: kept separately from {@link #instancesByFeatureId} so we can
      * quickly zoom to bounding box.
@@ -142,9 +159,9 @@ public class FormMapActivity extends BaseGeoMapActivity {
         summarySheet.addBottomSheetCallback(new BottomSheetBehavior.BottomSheetCallback() {
             @Override
             public void onStateChanged(@NonNull View bottomSheet, int newState) {
-                if (newState == BottomSheetBehavior.STATE_HIDDEN && viewModel.getSelectedSubmissionId() != -1) {
-                    updateSubmissionMarker(viewModel.getSelectedSubmissionId(), getSubmissionStatusFor(viewModel.getSelectedSubmissionId()), false);
-                    viewModel.setSelectedSubmissionId(-1);
+                if (newState == BottomSheetBehavior.STATE_HIDDEN && viewModel.getSelectedInstanceId() != -1) {
+                    shrinkMarkerFor(viewModel.getSelectedInstanceId());
+                    viewModel.setSelectedInstanceId(-1);
                 }
             }
 
@@ -211,10 +228,14 @@ public class FormMapActivity extends BaseGeoMapActivity {
 
         map.setFeatureClickListener(this::onFeatureClicked);
         map.setClickListener(this::onClick);
+        map.setViewportChangedListener(this::updateMapFeatures);
         updateInstanceGeometry();
 
-        if (viewModel.getSelectedSubmissionId() != -1) {
-            onFeatureClicked(viewModel.getSelectedSubmissionId());
+        if (viewModel.getSelectedInstanceId() != -1) {
+            Integer featureId = getFeatureIdFor(viewModel.getSelectedInstanceId());
+            if (featureId != null) {
+                onFeatureClicked(featureId);
+            }
         }
     }
 
@@ -230,6 +251,10 @@ public class FormMapActivity extends BaseGeoMapActivity {
             return;
         }
 
+        points.clear();
+        for (MappableFormInstance instance : viewModel.getMappableFormInstances()) {
+            points.add(new MapPoint(instance.getLatitude(), instance.getLongitude()));
+        }
         updateMapFeatures();
 
         if (!viewportInitialized && !points.isEmpty()) {
@@ -242,23 +267,64 @@ public class FormMapActivity extends BaseGeoMapActivity {
     }
 
     /**
-     * Clears the existing features on the map and places features for the current form's instances.
+     * Places features for the current form's instances in the map viewport, grouping nearby
+     * instances into clusters if there are too many to show, and removes the features that
+     * are no longer needed. Features that are still needed are left as they are.
      */
     private void updateMapFeatures() {
-        points.clear();
-        map.clearFeatures();
-        instancesByFeatureId.clear();
+        if (map == null) {
+            return;
+        }
+
+        Map<String, Integer> unusedFeatureIds = new HashMap<>(featureIdsByKey);
+        featureIdsByKey.clear();
+
+        for (MapPointIndex.Cluster<MappableFormInstance> cluster : viewModel.getInstanceClusters(map.getViewport(), map.getZoom())) {
+            if (cluster.size() == 1) {
+                MappableFormInstance instance = cluster.getItem(0);
+                String key = getFeatureKey(instance);
+                Integer featureId = unusedFeatureIds.remove(key);
+                if (featureId == null) {
+                    featureId = map.addMarker(cluster.getPoint(), false, MapFragment.BOTTOM);
+                    updateSubmissionMarker(featureId, instance.getStatus(), instance.getDatabaseId() == viewModel.getSelectedInstanceId());
+                }
+                instancesByFeatureId.put(featureId, instance);
+                featureIdsByKey.put(key, featureId);
+            } else {
+                String key = "cluster/" + cluster.getKey();
+                Integer featureId = unusedFeatureIds.remove(key);
+                if (featureId == null) {
+                    featureId = map.addMarker(cluster.getPoint(), false, MapFragment.CENTER);
+                    map.setMarkerIcon(featureId, R.drawable.ic_map_cluster);
+                }
+                clustersByFeatureId.put(featureId, cluster);
+                featureIdsByKey.put(key, featureId);
+            }
+        }
 
-        List<MappableFormInstance> instances = viewModel.getMappableFormInstances();
-        for (MappableFormInstance instance : instances) {
-            MapPoint point = new MapPoint(instance.getLatitude(), instance.getLongitude());
-            int featureId = map.addMarker(point, false, MapFragment.BOTTOM);
+        for (int featureId : unusedFeatureIds.values()) {
+            map.removeFeature(featureId);
+            instancesByFeatureId.remove(featureId);
+            clustersByFeatureId.remove(featureId);
+        }
+    }
 
-            updateSubmissionMarker(featureId, instance.getStatus(), featureId == viewModel.getSelectedSubmissionId());
+    /**
+     * Identifies the marker for an instance by everything that the marker shows so that the
+     * marker is replaced if the instance is moved or its status changes.
+     */
+    private static String getFeatureKey(MappableFormInstance instance) {
+        return "instance/" + instance.getDatabaseId() + "/" + instance.getStatus()
+                + "/" + instance.getLatitude() + "/" + instance.getLongitude();
+    }
 
-            instancesByFeatureId.put(featureId, instance);
-            points.add(point);
+    private Integer getFeatureIdFor(long instanceId) {
+        for (Map.Entry<Integer, MappableFormInstance> entry : instancesByFeatureId.entrySet()) {
+            if (entry.getValue().getDatabaseId() == instanceId) {
+                return entry.getKey();
+            }
         }
+        return null;
     }
 
     private void updateSubmissionMarker(int featureId, String status, boolean enlarged) {
@@ -277,26 +343,31 @@ public class FormMapActivity extends BaseGeoMapActivity {
     }
 
     /**
-     * Reacts to a tap on a feature by showing a submission summary.
+     * Reacts to a tap on a feature by showing a submission summary, or by zooming in if the
+     * feature is a cluster of several instances.
      */
     public void onFeatureClicked(int featureId) {
         summarySheet.setState(BottomSheetBehavior.STATE_HIDDEN);
 
-        if (!isSummaryForGivenSubmissionDisplayed(featureId)) {
-            removeEnlargedMarkerIfExist(featureId);
+        MapPointIndex.Cluster<MappableFormInstance> cluster = clustersByFeatureId.get(featureId);
+        if (cluster != null) {
+            map.zoomToPoint(cluster.getPoint(), map.getZoom() + CLUSTER_ZOOM_STEP, true);
+            return;
+        }
 
-            FormMapViewModel.MappableFormInstance mappableFormInstance = instancesByFeatureId.get(featureId);
-            if (mappableFormInstance != null) {
-                map.zoomToPoint(new MapPoint(mappableFormInstance.getLatitude(), mappableFormInstance.getLongitude()), map.getZoom(), true);
-                updateSubmissionMarker(featureId, mappableFormInstance.getStatus(), true);
-                setUpSummarySheetDetails(mappableFormInstance);
-            }
-            viewModel.setSelectedSubmissionId(featureId);
+        FormMapViewModel.MappableFormInstance mappableFormInstance = instancesByFeatureId.get(featureId);
+        if (mappableFormInstance != null && !isSummaryForGivenSubmissionDisplayed(mappableFormInstance.getDatabaseId())) {
+            removeEnlargedMarkerIfExist(mappableFormInstance.getDatabaseId());
+
+            map.zoomToPoint(new MapPoint(mappableFormInstance.getLatitude(), mappableFormInstance.getLongitude()), map.getZoom(), true);
+            updateSubmissionMarker(featureId, mappableFormInstance.getStatus(), true);
+            setUpSummarySheetDetails(mappableFormInstance);
+            viewModel.setSelectedInstanceId(mappableFormInstance.getDatabaseId());
         }
     }
 
-    private boolean isSummaryForGivenSubmissionDisplayed(int newSubmissionId) {
-        return viewModel.getSelectedSubmissionId() == newSubmissionId && summarySheet.getState() != BottomSheetBehavior.STATE_HIDDEN;
+    private boolean isSummaryForGivenSubmissionDisplayed(long newInstanceId) {
+        return viewModel.getSelectedInstanceId() == newInstanceId && summarySheet.getState() != BottomSheetBehavior.STATE_HIDDEN;
     }
 
     protected void restoreFromInstanceState(Bundle state) {
@@ -395,14 +466,20 @@ public class FormMapActivity extends BaseGeoMapActivity {
         return new Intent(Intent.ACTION_EDIT, uri);
     }
 
-    private void removeEnlargedMarkerIfExist(int newSubmissionId) {
-        if (viewModel.getSelectedSubmissionId() != -1 && viewModel.getSelectedSubmissionId() != newSubmissionId) {
-            updateSubmissionMarker(viewModel.getSelectedSubmissionId(), getSubmissionStatusFor(viewModel.getSelectedSubmissionId()), false);
+    private void removeEnlargedMarkerIfExist(long newInstanceId) {
+        if (viewModel.getSelectedInstanceId() != -1 && viewModel.getSelectedInstanceId() != newInstanceId) {
+            shrinkMarkerFor(viewModel.getSelectedInstanceId());
         }
     }
 
-    private String getSubmissionStatusFor(int submissionId) {
-        return instancesByFeatureId.get(submissionId).getStatus();
+    /**
+     * Shows the normal marker for an instance if it's on the map.
+     */
+    private void shrinkMarkerFor(long instanceId) {
+        Integer featureId = getFeatureIdFor(instanceId);
+        if (featureId != null) {
+            updateSubmissionMarker(featureId, instancesByFeatureId.get(featureId).getStatus(), false);
+        }
     }
 
     /**
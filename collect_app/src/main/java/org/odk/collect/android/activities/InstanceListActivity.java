@@ -1,5 +1,7 @@
 package org.odk.collect.android.activities;
 
+import android.os.Handler;
+
 import org.odk.collect.android.provider.InstanceProviderAPI.InstanceColumns;
 
 import static org.odk.collect.android.utilities.ApplicationConstants.SortingOrder.BY_DATE_ASC;
@@ -10,6 +12,24 @@ import static org.odk.collect.android.utilities.ApplicationConstants.SortingOrde
 import static org.odk.collect.android.utilities.ApplicationConstants.SortingOrder.BY_STATUS_DESC;
 
 abstract class InstanceListActivity extends AppListActivity {
+    private static final long FILTER_DELAY_MILLIS = 300;
+
+    private final Handler filterHandler = new Handler();
+    private final Runnable applyFilter = this::updateAdapter;
+
+    @Override
+    protected void onFilterTextChanged() {
+        // Filtering runs a LIKE query over every instance so only do it once typing pauses
+        filterHandler.removeCallbacks(applyFilter);
+        filterHandler.postDelayed(applyFilter, FILTER_DELAY_MILLIS);
+    }
+
+    @Override
+    protected void onDestroy() {
+        filterHandler.removeCallbacks(applyFilter);
+        super.onDestroy();
+    }
+
     protected String getSortingOrder() {
         String sortingOrder = InstanceColumns.DISPLAY_NAME + " COLLATE NOCASE ASC, " + InstanceColumns.STATUS + " DESC";
         switch (getSelectedSortingOrder()) {
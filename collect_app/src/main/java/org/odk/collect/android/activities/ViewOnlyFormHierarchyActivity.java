@@ -19,6 +19,7 @@ import android.widget.Button;
 
 import org.javarosa.core.model.FormIndex;
 import org.odk.collect.android.R;
+import org.odk.collect.android.application.Collect;
 import org.odk.collect.android.javarosawrapper.FormController;
 
 /**
@@ -62,6 +63,17 @@ public class ViewOnlyFormHierarchyActivity extends FormHierarchyActivity {
         // Do nothing
     }
 
+    /**
+     * The sent form was only loaded to be shown here so it's closed once this is finished.
+     */
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (isFinishing()) {
+            Collect.getInstance().setFormController(null);
+        }
+    }
+
     /**
      * Prevents logging an audit event when the user exits the activity.
      */
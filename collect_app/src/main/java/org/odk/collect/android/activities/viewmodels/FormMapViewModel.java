@@ -6,6 +6,9 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.odk.collect.android.forms.Form;
+import org.odk.collect.android.geo.MapBounds;
+import org.odk.collect.android.geo.MapPoint;
+import org.odk.collect.android.geo.MapPointIndex;
 import org.odk.collect.android.instances.Instance;
 import org.odk.collect.android.instances.InstancesRepository;
 
@@ -16,6 +19,11 @@ import java.util.List;
 import timber.log.Timber;
 
 public class FormMapViewModel extends ViewModel {
+    /**
+     * The most markers that are shown individually before nearby instances are clustered.
+     */
+    private static final int MAX_MARKERS = 200;
+
     /**
      * The form that is mapped.
      */
@@ -25,13 +33,18 @@ public class FormMapViewModel extends ViewModel {
      * The count of all filled instances of this form, including unmappable ones.
      */
     private int totalInstanceCount;
-    private int selectedSubmissionId = -1;
+    private long selectedInstanceId = -1;
 
     /**
      * The filled instances of this form that can be mapped.
      */
     private List<MappableFormInstance> mappableFormInstances;
 
+    /**
+     * The same instances indexed by location.
+     */
+    private MapPointIndex<MappableFormInstance> instanceIndex;
+
     private final InstancesRepository instancesRepository;
 
     public FormMapViewModel(Form form, InstancesRepository instancesRepository) {
@@ -51,7 +64,9 @@ public class FormMapViewModel extends ViewModel {
      * Returns the count of all filled instances of this form, including unmappable ones.
      */
     public int getTotalInstanceCount() {
-        initializeFormInstances();
+        if (mappableFormInstances == null) {
+            initializeFormInstances();
+        }
         return totalInstanceCount;
     }
 
@@ -61,24 +76,45 @@ public class FormMapViewModel extends ViewModel {
         // Ideally we could observe database changes instead of re-computing this every time.
         totalInstanceCount = instances.size();
         mappableFormInstances = getMappableFormInstances(instances);
+
+        instanceIndex = new MapPointIndex<>();
+        for (MappableFormInstance instance : mappableFormInstances) {
+            instanceIndex.add(new MapPoint(instance.getLatitude(), instance.getLongitude()), instance);
+        }
     }
 
-    public int getSelectedSubmissionId() {
-        return selectedSubmissionId;
+    /**
+     * Returns the database ID of the instance whose summary is shown, or -1 if there is none.
+     */
+    public long getSelectedInstanceId() {
+        return selectedInstanceId;
     }
 
-    public void setSelectedSubmissionId(int selectedSubmissionId) {
-        this.selectedSubmissionId = selectedSubmissionId;
+    public void setSelectedInstanceId(long selectedInstanceId) {
+        this.selectedInstanceId = selectedInstanceId;
     }
 
     /**
-     * Returns a list of filled instances of this form that can be mapped.
+     * Reloads and returns a list of filled instances of this form that can be mapped.
      */
     public List<MappableFormInstance> getMappableFormInstances() {
         initializeFormInstances();
         return mappableFormInstances;
     }
 
+    /**
+     * Returns the mappable instances in the given viewport as of the last load, grouped into
+     * clusters of nearby instances if there are too many to show individually.
+     *
+     * @param viewport the region shown on the map, or null if it isn't known yet
+     */
+    public List<MapPointIndex.Cluster<MappableFormInstance>> getInstanceClusters(MapBounds viewport, double zoom) {
+        if (instanceIndex == null) {
+            initializeFormInstances();
+        }
+        return instanceIndex.getClusters(viewport, zoom, MAX_MARKERS);
+    }
+
     private List<MappableFormInstance> getMappableFormInstances(List<Instance> allInstances) {
         List<MappableFormInstance> mappableFormInstances = new ArrayList<>();
         for (Instance instance : allInstances) {
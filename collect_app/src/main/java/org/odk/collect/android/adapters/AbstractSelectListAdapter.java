@@ -39,6 +39,7 @@ import org.javarosa.form.api.FormEntryPrompt;
 import org.odk.collect.android.R;
 import org.odk.collect.android.audio.AudioHelper;
 import org.odk.collect.android.external.ExternalSelectChoice;
+import org.odk.collect.android.external.FilterableChoices;
 import org.odk.collect.android.formentry.questions.AudioVideoImageTextLabel;
 import org.odk.collect.android.formentry.questions.NoButtonsItem;
 import org.odk.collect.android.utilities.QuestionFontSizeUtils;
@@ -49,7 +50,6 @@ import org.odk.collect.audioclips.Clip;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Locale;
 
 import timber.log.Timber;
 
@@ -70,6 +70,8 @@ public abstract class AbstractSelectListAdapter extends RecyclerView.Adapter<Abs
     protected final int playColor;
     protected final int numColumns;
     protected boolean noButtonsMode;
+    private ChoiceSearchIndex searchIndex;
+    private int[] filteredPositions;
 
     AbstractSelectListAdapter(Context context, List<SelectChoice> items, FormEntryPrompt prompt,
                               ReferenceManager referenceManager, AudioHelper audioHelper,
@@ -100,39 +102,63 @@ public abstract class AbstractSelectListAdapter extends RecyclerView.Adapter<Abs
         return new Filter() {
             @Override
             protected FilterResults performFiltering(CharSequence charSequence) {
-                String searchStr = charSequence.toString().toLowerCase(Locale.US);
+                int[] positions = charSequence.length() == 0 ? null : search(charSequence.toString());
                 FilterResults filterResults = new FilterResults();
-                if (searchStr.isEmpty()) {
-                    filterResults.values = items;
-                    filterResults.count = items.size();
-                } else {
-                    List<SelectChoice> filteredList = new ArrayList<>();
-                    for (SelectChoice item : items) {
-                        if (prompt.getSelectChoiceText(item).toLowerCase(Locale.US).contains(searchStr)) {
-                            filteredList.add(item);
-                        }
-                    }
-                    filterResults.values = filteredList;
-                    filterResults.count = filteredList.size();
-                }
-
+                filterResults.values = positions;
+                filterResults.count = positions != null ? positions.length : items.size();
                 return filterResults;
             }
 
             @Override
             protected void publishResults(CharSequence charSequence, FilterResults filterResults) {
-                filteredItems = (List<SelectChoice>) filterResults.values;
+                filteredPositions = (int[]) filterResults.values;
+                if (filteredPositions == null) {
+                    filteredItems = items;
+                } else {
+                    filteredItems = new ArrayList<>(filteredPositions.length);
+                    for (int position : filteredPositions) {
+                        filteredItems.add(items.get(position));
+                    }
+                }
                 notifyDataSetChanged();
             }
         };
     }
 
+    private int[] search(String query) {
+        // Indexing a list that's read from a data set a page at a time would read every page
+        if (items instanceof FilterableChoices) {
+            return ((FilterableChoices) items).filter(query);
+        }
+        return getSearchIndex().search(query);
+    }
+
+    /**
+     * Builds the search index the first time it's needed, from the choice labels
+     * in the current language.  Adapters are recreated when the language changes.
+     */
+    private synchronized ChoiceSearchIndex getSearchIndex() {
+        if (searchIndex == null) {
+            List<String> labels = new ArrayList<>(items.size());
+            for (SelectChoice item : items) {
+                labels.add(prompt.getSelectChoiceText(item));
+            }
+            searchIndex = new ChoiceSearchIndex(labels);
+        }
+        return searchIndex;
+    }
+
+    /** Returns the position in items of the item shown at the given position. */
+    int getItemPosition(int index) {
+        return filteredPositions != null ? filteredPositions[index] : index;
+    }
+
     abstract CompoundButton createButton(int index, ViewGroup parent);
 
     void setUpButton(TextView button, int index) {
         button.setTextSize(TypedValue.COMPLEX_UNIT_DIP, QuestionFontSizeUtils.getQuestionFontSize());
         button.setText(StringUtils.textToHtml(prompt.getSelectChoiceText(filteredItems.get(index))));
-        button.setTag(items.indexOf(filteredItems.get(index)));
+        button.setTag(getItemPosition(index));
         button.setGravity(isRTL() ? Gravity.END : Gravity.START);
         button.setTextAlignment(isRTL() ? View.TEXT_ALIGNMENT_TEXT_END : View.TEXT_ALIGNMENT_TEXT_START);
     }
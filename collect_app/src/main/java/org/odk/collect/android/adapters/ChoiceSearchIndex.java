@@ -0,0 +1,149 @@
+package org.odk.collect.android.adapters;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the choice labels that contain a search string.  Labels are normalized
+ * once, when the index is built, so that searching doesn't have to lowercase
+ * every label on every keystroke, and searches ignore case, accents and other
+ * diacritics.
+ *
+ * Searches for three or more characters only look at the labels that contain
+ * every trigram of the search string, which is what keeps long lists fast to
+ * filter.  Shorter searches scan the normalized labels.
+ */
+class ChoiceSearchIndex {
+    private static final int GRAM_LENGTH = 3;
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    private final String[] labels;
+    private final Map<String, int[]> postings = new HashMap<>();
+
+    ChoiceSearchIndex(List<String> labels) {
+        this.labels = new String[labels.size()];
+        Map<String, IntList> grams = new HashMap<>();
+        for (int i = 0; i < labels.size(); i++) {
+            String label = normalize(labels.get(i));
+            this.labels[i] = label;
+            for (int start = 0; start + GRAM_LENGTH <= label.length(); start++) {
+                String gram = label.substring(start, start + GRAM_LENGTH);
+                IntList positions = grams.get(gram);
+                if (positions == null) {
+                    positions = new IntList();
+                    grams.put(gram, positions);
+                }
+                positions.addIfNotLast(i);
+            }
+        }
+        for (Map.Entry<String, IntList> entry : grams.entrySet()) {
+            postings.put(entry.getKey(), entry.getValue().toArray());
+        }
+    }
+
+    /**
+     * Returns the positions of the labels that contain the search string, in
+     * the order the labels were given.
+     */
+    int[] search(String query) {
+        String normalized = normalize(query);
+        if (normalized.isEmpty()) {
+            int[] all = new int[labels.length];
+            for (int i = 0; i < all.length; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+
+        int[] candidates = normalized.length() < GRAM_LENGTH ? null : getCandidates(normalized);
+        IntList matches = new IntList();
+        if (candidates == null) {
+            for (int i = 0; i < labels.length; i++) {
+                if (labels[i].contains(normalized)) {
+                    matches.add(i);
+                }
+            }
+        } else {
+            for (int i : candidates) {
+                if (labels[i].contains(normalized)) {
+                    matches.add(i);
+                }
+            }
+        }
+        return matches.toArray();
+    }
+
+    /** Intersects the posting lists of the trigrams in the query, rarest first. */
+    private int[] getCandidates(String query) {
+        int[][] lists = new int[query.length() - GRAM_LENGTH + 1][];
+        for (int start = 0; start < lists.length; start++) {
+            int[] positions = postings.get(query.substring(start, start + GRAM_LENGTH));
+            if (positions == null) {
+                return new int[0];
+            }
+            lists[start] = positions;
+        }
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.length, b.length));
+
+        int[] result = lists[0];
+        for (int i = 1; i < lists.length && result.length > 0; i++) {
+            result = intersect(result, lists[i]);
+        }
+        return result;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        IntList result = new IntList();
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result.add(a[i]);
+                i++;
+                j++;
+            }
+        }
+        return result.toArray();
+    }
+
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return COMBINING_MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.US);
+    }
+
+    /** A growable list of ints, so that posting lists aren't made of boxed Integers. */
+    private static class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        /** Adds a position unless it was just added, since a label can repeat a trigram. */
+        void addIfNotLast(int value) {
+            if (size == 0 || values[size - 1] != value) {
+                add(value);
+            }
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
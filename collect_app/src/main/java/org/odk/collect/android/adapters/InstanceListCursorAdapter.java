@@ -33,7 +33,9 @@ import org.odk.collect.android.provider.InstanceProviderAPI.InstanceColumns;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 
 import timber.log.Timber;
 
@@ -41,6 +43,10 @@ public class InstanceListCursorAdapter extends SimpleCursorAdapter {
     private final Context context;
     private final boolean shouldCheckDisabled;
 
+    // Many instances usually share a form so it's only looked up once per load instead of for
+    // every row that's shown
+    private final Map<String, FormState> formStates = new HashMap<>();
+
     public InstanceListCursorAdapter(Context context, int layout, Cursor c, String[] from, int[] to, boolean shouldCheckDisabled) {
         super(context, layout, c, from, to);
         this.context = context;
@@ -62,26 +68,15 @@ public class InstanceListCursorAdapter extends SimpleCursorAdapter {
         }
 
         String formId = getCursor().getString(getCursor().getColumnIndex(InstanceColumns.JR_FORM_ID));
-        Cursor cursor = new FormsDao().getFormsCursorForFormId(formId);
-
-        boolean formExists = false;
-        boolean isFormEncrypted = false;
-        if (cursor != null) {
-            try {
-                if (cursor.moveToFirst()) {
-                    int base64RSAPublicKeyColumnIndex = cursor.getColumnIndex(FormsColumns.BASE64_RSA_PUBLIC_KEY);
-                    String base64RSAPublicKey = cursor.getString(base64RSAPublicKeyColumnIndex);
-                    isFormEncrypted = base64RSAPublicKey != null && !base64RSAPublicKey.isEmpty();
-                    formExists = true;
-                }
-            } finally {
-                cursor.close();
-            }
+        FormState formState = formStates.get(formId);
+        if (formState == null) {
+            formState = getFormState(formId);
+            formStates.put(formId, formState);
         }
 
         long date = getCursor().getLong(getCursor().getColumnIndex(InstanceColumns.DELETED_DATE));
 
-        if (date != 0 || !formExists || isFormEncrypted) {
+        if (date != 0 || !formState.exists || formState.encrypted) {
             String disabledMessage;
 
             if (date != 0) {
@@ -92,7 +87,7 @@ public class InstanceListCursorAdapter extends SimpleCursorAdapter {
                     Timber.e(e);
                     disabledMessage = context.getString(R.string.submission_deleted);
                 }
-            } else if (!formExists) {
+            } else if (!formState.exists) {
                 disabledMessage = context.getString(R.string.deleted_form);
             } else {
                 disabledMessage = context.getString(R.string.encrypted_form);
@@ -106,6 +101,34 @@ public class InstanceListCursorAdapter extends SimpleCursorAdapter {
         return view;
     }
 
+    @Override
+    public Cursor swapCursor(Cursor c) {
+        // Forms may have been added or deleted since the last load
+        formStates.clear();
+        return super.swapCursor(c);
+    }
+
+    private FormState getFormState(String formId) {
+        boolean formExists = false;
+        boolean isFormEncrypted = false;
+
+        Cursor cursor = new FormsDao().getFormsCursorForFormId(formId);
+        if (cursor != null) {
+            try {
+                if (cursor.moveToFirst()) {
+                    int base64RSAPublicKeyColumnIndex = cursor.getColumnIndex(FormsColumns.BASE64_RSA_PUBLIC_KEY);
+                    String base64RSAPublicKey = cursor.getString(base64RSAPublicKeyColumnIndex);
+                    isFormEncrypted = base64RSAPublicKey != null && !base64RSAPublicKey.isEmpty();
+                    formExists = true;
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+
+        return new FormState(formExists, isFormEncrypted);
+    }
+
     private void setEnabled(View view) {
         final TextView formTitle = view.findViewById(R.id.form_title);
         final TextView formSubtitle = view.findViewById(R.id.form_subtitle);
@@ -169,4 +192,14 @@ public class InstanceListCursorAdapter extends SimpleCursorAdapter {
 
         return -1;
     }
+
+    private static class FormState {
+        final boolean exists;
+        final boolean encrypted;
+
+        FormState(boolean exists, boolean encrypted) {
+            this.exists = exists;
+            this.encrypted = encrypted;
+        }
+    }
 }
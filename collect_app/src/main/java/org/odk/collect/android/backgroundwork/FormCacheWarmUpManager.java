@@ -0,0 +1,8 @@
+package org.odk.collect.android.backgroundwork;
+
+public interface FormCacheWarmUpManager {
+
+    void scheduleWarmUp();
+
+    void cancelWarmUp();
+}
@@ -0,0 +1,154 @@
+package org.odk.collect.android.backgroundwork;
+
+import android.content.Context;
+
+import androidx.work.WorkerParameters;
+
+import org.javarosa.core.model.FormDef;
+import org.javarosa.core.reference.ReferenceManager;
+import org.javarosa.xform.util.XFormUtils;
+import org.jetbrains.annotations.NotNull;
+import org.odk.collect.android.application.Collect;
+import org.odk.collect.android.external.ExternalDataManager;
+import org.odk.collect.android.external.ExternalDataManagerImpl;
+import org.odk.collect.android.external.ExternalDataReaderImpl;
+import org.odk.collect.android.forms.Form;
+import org.odk.collect.android.forms.FormsRepository;
+import org.odk.collect.android.injection.DaggerUtils;
+import org.odk.collect.android.storage.StoragePathProvider;
+import org.odk.collect.android.tasks.FormLoaderTask;
+import org.odk.collect.android.utilities.FileUtils;
+import org.odk.collect.android.utilities.FormDefCache;
+import org.odk.collect.async.TaskSpec;
+import org.odk.collect.async.WorkerAdapter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import javax.inject.Inject;
+
+import timber.log.Timber;
+
+import static org.odk.collect.android.forms.FormUtils.REFERENCE_MANAGER_LOCK;
+import static org.odk.collect.android.forms.FormUtils.setupReferenceManagerForForm;
+
+/**
+ * Parses forms that aren't in the FormDef cache yet, writes them to the cache and imports their
+ * external CSVs so that the first time a new or changed form is opened is as fast as any other.
+ */
+public class FormCacheWarmUpTaskSpec implements TaskSpec {
+
+    @Inject
+    FormsRepository formsRepository;
+
+    @Inject
+    StoragePathProvider storagePathProvider;
+
+    private volatile boolean stopped;
+
+    @NotNull
+    @Override
+    public Supplier<Boolean> getTask(@NotNull Context context) {
+        DaggerUtils.getComponent(context).inject(this);
+
+        return () -> {
+            for (Form form : formsRepository.getAll()) {
+                if (stopped) {
+                    Timber.i("Form cache warm up stopped");
+                    break;
+                }
+
+                if (!form.isDeleted() && !warmUp(new File(storagePathProvider.getAbsoluteFormFilePath(form.getFormFilePath())))) {
+                    Timber.i("Form cache warm up skipped because a form is open");
+                    break;
+                }
+            }
+
+            return true;
+        };
+    }
+
+    /**
+     * Parsing a form sets up the global {@link ReferenceManager} for it, so nothing is parsed
+     * while a form is being loaded or filled in. That form's jr:// references would otherwise
+     * point to the wrong media directory.
+     *
+     * @return false if the form couldn't be warmed up because another form is open
+     */
+    private boolean warmUp(File formXml) {
+        if (!formXml.exists() || FormDefCache.isCached(formXml)) {
+            return true;
+        }
+
+        try {
+            final long start = System.currentTimeMillis();
+            final File formMediaDir = FileUtils.getFormMediaDir(formXml);
+
+            FormDef formDef;
+            synchronized (REFERENCE_MANAGER_LOCK) {
+                if (Collect.getInstance().getFormController() != null || FormLoaderTask.isLoadingForm()) {
+                    return false;
+                }
+
+                setupReferenceManagerForForm(ReferenceManager.instance(), formMediaDir);
+
+                formDef = XFormUtils.getFormFromFormXml(formXml.getAbsolutePath(), FileUtils.getOrCreateLastSavedSrc(formXml));
+                if (formDef == null) {
+                    return true;
+                }
+                FormDefCache.writeCache(formDef, formXml.getPath());
+            }
+
+            Map<String, File> externalDataMap = FormLoaderTask.getExternalDataSets(formMediaDir);
+            if (!externalDataMap.isEmpty()) {
+                new ExternalDataReaderImpl(null).doImport(externalDataMap);
+
+                ExternalDataManager externalDataManager = new ExternalDataManagerImpl(formMediaDir);
+                try {
+                    FormLoaderTask.indexSearchedColumns(formDef, externalDataManager, formMediaDir);
+                } finally {
+                    externalDataManager.close();
+                }
+            }
+
+            Timber.i("Warmed up %s in %.3f seconds.", formXml.getName(), (System.currentTimeMillis() - start) / 1000F);
+        } catch (IOException | RuntimeException | StackOverflowError e) {
+            // The form will be parsed again and the error reported when it's opened
+            Timber.w(e);
+        }
+
+        return true;
+    }
+
+    void stop() {
+        stopped = true;
+    }
+
+    @NotNull
+    @Override
+    public Class<? extends WorkerAdapter> getWorkManagerAdapter() {
+        return Adapter.class;
+    }
+
+    public static class Adapter extends WorkerAdapter {
+
+        private final FormCacheWarmUpTaskSpec spec;
+
+        public Adapter(@NotNull Context context, @NotNull WorkerParameters workerParams) {
+            this(new FormCacheWarmUpTaskSpec(), context, workerParams);
+        }
+
+        private Adapter(FormCacheWarmUpTaskSpec spec, Context context, WorkerParameters workerParams) {
+            super(spec, context, workerParams);
+            this.spec = spec;
+        }
+
+        @Override
+        public void onStopped() {
+            super.onStopped();
+            spec.stop();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package org.odk.collect.android.backgroundwork;
+
+import org.odk.collect.async.Scheduler;
+
+public class SchedulerFormCacheWarmUpManager implements FormCacheWarmUpManager {
+
+    private static final String FORM_CACHE_WARM_UP_TAG = "formCacheWarmUp";
+
+    private final Scheduler scheduler;
+
+    public SchedulerFormCacheWarmUpManager(Scheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public void scheduleWarmUp() {
+        scheduler.lowPriorityDeferred(FORM_CACHE_WARM_UP_TAG, new FormCacheWarmUpTaskSpec());
+    }
+
+    @Override
+    public void cancelWarmUp() {
+        scheduler.cancelDeferred(FORM_CACHE_WARM_UP_TAG);
+    }
+}
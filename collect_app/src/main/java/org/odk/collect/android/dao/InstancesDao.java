@@ -40,7 +40,7 @@ public class InstancesDao {
     public Cursor getSentInstancesCursor() {
         String selection = InstanceColumns.STATUS + " =? ";
         String[] selectionArgs = {Instance.STATUS_SUBMITTED};
-        String sortOrder = InstanceColumns.DISPLAY_NAME + " ASC";
+        String sortOrder = InstanceColumns.DISPLAY_NAME + " COLLATE NOCASE ASC, " + InstanceColumns.STATUS + " DESC";
 
         return getInstancesCursor(null, selection, selectionArgs, sortOrder);
     }
@@ -133,7 +133,7 @@ public class InstancesDao {
     public Cursor getFinalizedInstancesCursor() {
         String selection = InstanceColumns.STATUS + "=? or " + InstanceColumns.STATUS + "=?";
         String[] selectionArgs = {Instance.STATUS_COMPLETE, Instance.STATUS_SUBMISSION_FAILED};
-        String sortOrder = InstanceColumns.DISPLAY_NAME + " ASC";
+        String sortOrder = InstanceColumns.DISPLAY_NAME + " COLLATE NOCASE ASC, " + InstanceColumns.STATUS + " DESC";
 
         return getInstancesCursor(null, selection, selectionArgs, sortOrder);
     }
@@ -181,7 +181,7 @@ public class InstancesDao {
         String[] selectionArgs = {Instance.STATUS_COMPLETE,
                 Instance.STATUS_SUBMISSION_FAILED,
                 Instance.STATUS_SUBMITTED};
-        String sortOrder = InstanceColumns.DISPLAY_NAME + " ASC";
+        String sortOrder = InstanceColumns.DISPLAY_NAME + " COLLATE NOCASE ASC, " + InstanceColumns.STATUS + " DESC";
 
         return getInstancesCursor(null, selection, selectionArgs, sortOrder);
     }
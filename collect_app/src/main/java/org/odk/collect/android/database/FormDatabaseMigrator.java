@@ -38,6 +38,7 @@ public class FormDatabaseMigrator implements DatabaseMigrator {
 
     public void onCreate(SQLiteDatabase db) {
         createFormsTableV10(db);
+        upgradeToVersion11(db);
     }
 
     @SuppressWarnings({"checkstyle:FallThrough"})
@@ -60,12 +61,15 @@ public class FormDatabaseMigrator implements DatabaseMigrator {
                 upgradeToVersion9(db);
             case 9:
                 upgradeToVersion10(db);
+            case 10:
+                upgradeToVersion11(db);
         }
     }
 
     public void onDowngrade(SQLiteDatabase db) throws SQLException {
         SQLiteUtils.dropTable(db, FORMS_TABLE_NAME);
         createFormsTableV10(db);
+        upgradeToVersion11(db);
     }
 
     private void upgradeToVersion2(SQLiteDatabase db) {
@@ -236,6 +240,16 @@ public class FormDatabaseMigrator implements DatabaseMigrator {
         SQLiteUtils.dropTable(db, temporaryTable);
     }
 
+    /**
+     * Upgrade to version 11. Adds indexes for the lookups by form id and version, hash and path
+     * that form downloads, disk sync and opening forms do.
+     */
+    private void upgradeToVersion11(SQLiteDatabase db) {
+        SQLiteUtils.createIndex(db, "forms_jr_form_id_idx", FORMS_TABLE_NAME, JR_FORM_ID, JR_VERSION);
+        SQLiteUtils.createIndex(db, "forms_md5_hash_idx", FORMS_TABLE_NAME, MD5_HASH);
+        SQLiteUtils.createIndex(db, "forms_form_file_path_idx", FORMS_TABLE_NAME, FORM_FILE_PATH);
+    }
+
     private void createFormsTableV4(SQLiteDatabase db, String tableName) {
         db.execSQL("CREATE TABLE IF NOT EXISTS " + tableName + " ("
                 + _ID + " integer primary key, "
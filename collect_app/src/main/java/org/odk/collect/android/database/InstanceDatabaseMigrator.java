@@ -37,6 +37,7 @@ public class InstanceDatabaseMigrator implements DatabaseMigrator {
     public void onCreate(SQLiteDatabase db) {
         createInstancesTableV5(db, INSTANCES_TABLE_NAME);
         upgradeToVersion6(db, INSTANCES_TABLE_NAME);
+        upgradeToVersion7(db);
     }
 
     @SuppressWarnings({"checkstyle:FallThrough"})
@@ -52,6 +53,8 @@ public class InstanceDatabaseMigrator implements DatabaseMigrator {
                 upgradeToVersion5(db);
             case 5:
                 upgradeToVersion6(db, INSTANCES_TABLE_NAME);
+            case 6:
+                upgradeToVersion7(db);
                 break;
             default:
                 Timber.i("Unknown version %d", oldVersion);
@@ -64,6 +67,7 @@ public class InstanceDatabaseMigrator implements DatabaseMigrator {
         upgradeToVersion6(db, temporaryTableName);
 
         dropObsoleteColumns(db, CURRENT_VERSION_COLUMN_NAMES, temporaryTableName);
+        upgradeToVersion7(db);
     }
 
     private void upgradeToVersion2(SQLiteDatabase db) {
@@ -132,6 +136,21 @@ public class InstanceDatabaseMigrator implements DatabaseMigrator {
         SQLiteUtils.addColumn(db, name, GEOMETRY_TYPE, "text");
     }
 
+    /**
+     * Upgrade to version 7. Adds indexes for the lookups by path and form and one matching the
+     * default sort of the instance lists. The lists filter by one or more statuses, and an index
+     * led by status could only read the rows of a single status in name order, so the name comes
+     * first and the status is checked from the index.
+     * {@link org.odk.collect.android.provider.InstanceProviderAPI.InstanceColumns#DELETED_DATE}
+     * isn't indexed because nearly every row matches the "IS NULL" it's filtered with.
+     */
+    private void upgradeToVersion7(SQLiteDatabase db) {
+        SQLiteUtils.createIndex(db, "instances_display_name_idx", INSTANCES_TABLE_NAME,
+                DISPLAY_NAME + " COLLATE NOCASE", STATUS + " DESC");
+        SQLiteUtils.createIndex(db, "instances_instance_file_path_idx", INSTANCES_TABLE_NAME, INSTANCE_FILE_PATH);
+        SQLiteUtils.createIndex(db, "instances_jr_form_id_idx", INSTANCES_TABLE_NAME, JR_FORM_ID, JR_VERSION);
+    }
+
     private void createInstancesTableV5(SQLiteDatabase db, String name) {
         db.execSQL("CREATE TABLE IF NOT EXISTS " + name + " ("
                 + _ID + " integer primary key, "
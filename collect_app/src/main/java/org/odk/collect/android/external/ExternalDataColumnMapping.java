@@ -0,0 +1,109 @@
+package org.odk.collect.android.external;
+
+import android.database.sqlite.SQLiteStatement;
+
+import org.odk.collect.android.R;
+import org.odk.collect.android.application.Collect;
+import org.odk.collect.android.exception.ExternalDataException;
+import org.odk.collect.android.utilities.TranslationHandler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps the columns of an external data CSV to the columns of the table it's imported into. The
+ * mapping is worked out once from the header so that rows can be bound to compiled statements
+ * without looking up column names for every cell.
+ */
+class ExternalDataColumnMapping {
+
+    private final int[] rowIndexes;
+    private final List<String> safeColumnNames = new ArrayList<>();
+    private final int sortColumnPosition;
+    private final String keyColumnName;
+    private final int keyRowIndex;
+
+    ExternalDataColumnMapping(String[] headerRow, Map<String, String> columnNamesCache) {
+        List<Integer> columnIndexes = new ArrayList<>();
+        int sortColumnPosition = -1;
+        String keyColumnName = null;
+        int keyRowIndex = -1;
+
+        for (int i = 0; i < headerRow.length; i++) {
+            String columnName = headerRow[i].trim();
+            if (columnName.length() == 0) {
+                continue;
+            }
+            String safeColumnName = ExternalDataUtil.toSafeColumnName(columnName, columnNamesCache);
+            if (safeColumnName.equals(ExternalDataUtil.SORT_COLUMN_NAME)) {
+                sortColumnPosition = safeColumnNames.size();
+            }
+            if (keyColumnName == null && headerRow[i].endsWith("_key")) {
+                keyColumnName = safeColumnName;
+                keyRowIndex = i;
+            }
+            columnIndexes.add(i);
+            safeColumnNames.add(safeColumnName);
+        }
+
+        rowIndexes = new int[columnIndexes.size()];
+        for (int position = 0; position < rowIndexes.length; position++) {
+            rowIndexes[position] = columnIndexes.get(position);
+        }
+
+        // Rows are numbered in the order they appear if the CSV doesn't define its own sort order
+        if (sortColumnPosition == -1) {
+            safeColumnNames.add(ExternalDataUtil.SORT_COLUMN_NAME);
+        }
+
+        this.sortColumnPosition = sortColumnPosition;
+        this.keyColumnName = keyColumnName;
+        this.keyRowIndex = keyRowIndex;
+    }
+
+    /**
+     * @return the names of all the columns in the table including the sort column
+     */
+    List<String> getSafeColumnNames() {
+        return safeColumnNames;
+    }
+
+    /**
+     * @return the first column whose header ends with "_key" or null if there isn't one
+     */
+    String getKeyColumnName() {
+        return keyColumnName;
+    }
+
+    String getKey(String[] row) {
+        return row[keyRowIndex];
+    }
+
+    /**
+     * Binds the values of a row to {@link #getSafeColumnNames()}.size() consecutive parameters
+     * starting at firstIndex.
+     *
+     * @param rowNumber the 1-based number of the row used as its sort order if the CSV doesn't
+     *                  have a sort column
+     */
+    void bindRow(SQLiteStatement statement, String[] row, int rowNumber, int firstIndex) {
+        for (int position = 0; position < rowIndexes.length; position++) {
+            String columnValue = row[rowIndexes[position]];
+            if (position == sortColumnPosition) {
+                try {
+                    statement.bindDouble(firstIndex + position, Double.parseDouble(columnValue));
+                } catch (NumberFormatException e) {
+                    throw new ExternalDataException(TranslationHandler.getString(Collect.getInstance(), R.string.ext_sortBy_numeric_error, columnValue));
+                }
+            } else if (columnValue == null) {
+                statement.bindNull(firstIndex + position);
+            } else {
+                statement.bindString(firstIndex + position, columnValue);
+            }
+        }
+        if (sortColumnPosition == -1) {
+            statement.bindLong(firstIndex + rowIndexes.length, rowNumber);
+        }
+    }
+}
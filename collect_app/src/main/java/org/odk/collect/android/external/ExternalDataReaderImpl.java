@@ -21,11 +21,18 @@ package org.odk.collect.android.external;
 import android.database.sqlite.SQLiteDatabase;
 
 import org.apache.commons.io.FileUtils;
+import org.odk.collect.android.exception.ExternalDataException;
 import org.odk.collect.android.tasks.FormLoaderTask;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import timber.log.Timber;
 
@@ -36,14 +43,31 @@ import timber.log.Timber;
  */
 public class ExternalDataReaderImpl implements ExternalDataReader {
 
+    private static final Map<String, Object> IMPORT_LOCKS = new ConcurrentHashMap<>();
+
     private final FormLoaderTask formLoaderTask;
+    private final ExecutorService executor;
 
     public ExternalDataReaderImpl(FormLoaderTask formLoaderTask) {
+        this(formLoaderTask, null);
+    }
+
+    /**
+     * @param executor if not null, data sets are imported concurrently on it. Each data set has
+     *                 its own database so the imports don't contend with each other.
+     */
+    public ExternalDataReaderImpl(FormLoaderTask formLoaderTask, ExecutorService executor) {
         this.formLoaderTask = formLoaderTask;
+        this.executor = executor;
     }
 
     @Override
     public void doImport(Map<String, File> externalDataMap) {
+        if (executor != null) {
+            doImportInParallel(externalDataMap);
+            return;
+        }
+
         for (Map.Entry<String, File> stringFileEntry : externalDataMap.entrySet()) {
             String dataSetName = stringFileEntry.getKey();
             File dataSetFile = stringFileEntry.getValue();
@@ -56,12 +80,53 @@ public class ExternalDataReaderImpl implements ExternalDataReader {
         }
     }
 
+    private void doImportInParallel(Map<String, File> externalDataMap) {
+        List<Future<Boolean>> imports = new ArrayList<>();
+        for (Map.Entry<String, File> stringFileEntry : externalDataMap.entrySet()) {
+            String dataSetName = stringFileEntry.getKey();
+            File dataSetFile = stringFileEntry.getValue();
+            if (dataSetFile.exists()) {
+                imports.add(executor.submit(() -> doImportDataSetAndContinue(dataSetName, dataSetFile)));
+            }
+        }
+
+        for (Future<Boolean> dataSetImport : imports) {
+            try {
+                dataSetImport.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new ExternalDataException(e.getCause().getMessage(), e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Imports of the same data set are serialized because the form cache warm up can import a
+     * data set in the background while the form is being opened.
+     */
     private boolean doImportDataSetAndContinue(String dataSetName, File dataSetFile) {
         File dbFile = new File(dataSetFile.getParentFile().getAbsolutePath(),
                 dataSetName + ".db");
+        synchronized (IMPORT_LOCKS.computeIfAbsent(dbFile.getAbsolutePath(), path -> new Object())) {
+            return doImportDataSetAndContinue(dbFile, dataSetFile);
+        }
+    }
+
+    private boolean doImportDataSetAndContinue(File dbFile, File dataSetFile) {
         if (dbFile.exists()) {
             // Determine if we need to reimport
             if (ExternalSQLiteOpenHelper.shouldUpdateDBforDataSet(dbFile, dataSetFile)) {
+                // Applying only the rows that changed is much faster than a full import
+                if (ExternalSQLiteOpenHelper.updateChangedRows(dbFile, dataSetFile)) {
+                    ExternalSQLiteOpenHelper.onDataSetImported(dbFile);
+                    return true;
+                }
+
                 boolean deleted = dbFile.delete();
                 if (!deleted) {
                     Timber.e("%s has changed but we could not delete the previous DB at %s",
@@ -75,6 +140,7 @@ public class ExternalDataReaderImpl implements ExternalDataReader {
         ExternalSQLiteOpenHelper externalSQLiteOpenHelper = new ExternalSQLiteOpenHelper(
                 dbFile);
         externalSQLiteOpenHelper.importFromCSV(dataSetFile, this, formLoaderTask);
+        ExternalSQLiteOpenHelper.onDataSetImported(dbFile);
 
         if (formLoaderTask != null && formLoaderTask.isCancelled()) {
             Timber.w(
@@ -162,7 +162,7 @@ public final class ExternalDataUtil {
         }
     }
 
-    public static ArrayList<SelectChoice> populateExternalChoices(FormEntryPrompt formEntryPrompt,
+    public static List<SelectChoice> populateExternalChoices(FormEntryPrompt formEntryPrompt,
             XPathFuncExpr xpathfuncexpr) throws FileNotFoundException {
         try {
             List<SelectChoice> selectChoices = formEntryPrompt.getSelectChoices();
@@ -197,12 +197,14 @@ public final class ExternalDataUtil {
                                     value, imageColumn));
 
                     Object eval = xpathfuncexpr.eval(formInstance, evaluationContext);
-                    if (eval.getClass().isAssignableFrom(ArrayList.class)) {
+                    if (eval instanceof List) {
                         @SuppressWarnings("unchecked")
-                        List<SelectChoice> dynamicChoices = (ArrayList<SelectChoice>) eval;
-                        for (SelectChoice dynamicChoice : dynamicChoices) {
-                            returnedChoices.add(dynamicChoice);
+                        List<SelectChoice> dynamicChoices = (List<SelectChoice>) eval;
+                        if (selectChoices.size() == 1) {
+                            // returned as is so that the choices are only built as they're accessed
+                            return dynamicChoices;
                         }
+                        returnedChoices.addAll(dynamicChoices);
                     } else {
                         throw new ExternalDataException(
                                 TranslationHandler.getString(Collect.getInstance(), R.string.ext_search_return_error,
@@ -20,8 +20,13 @@ package org.odk.collect.android.external;
 
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.text.TextUtils;
 
 import org.odk.collect.android.R;
 import org.odk.collect.android.application.Collect;
@@ -39,9 +44,13 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import au.com.bytecode.opencsv.CSVReader;
 import timber.log.Timber;
@@ -57,6 +66,14 @@ public class ExternalSQLiteOpenHelper extends SQLiteOpenHelper {
     private static final char DELIMITING_CHAR = ",".charAt(0);
     private static final char QUOTE_CHAR = "\"".charAt(0);
     private static final char ESCAPE_CHAR = "\0".charAt(0);
+    private static final long PROGRESS_INTERVAL_MS = 500;
+
+    private static final Map<String, Integer> IMPORT_GENERATIONS = new ConcurrentHashMap<>();
+
+    private final File dbFile;
+    private final Map<String, SQLiteStatement> pullDataStatements = new HashMap<>();
+    private int pullDataGeneration;
+    private final Set<String> searchIndexedColumns = new HashSet<>();
 
     private File dataSetFile;
     private ExternalDataReader externalDataReader;
@@ -64,6 +81,89 @@ public class ExternalSQLiteOpenHelper extends SQLiteOpenHelper {
 
     ExternalSQLiteOpenHelper(File dbFile) {
         super(new DatabaseContext(dbFile.getParentFile().getAbsolutePath()), dbFile.getName(), null, VERSION);
+        this.dbFile = dbFile;
+    }
+
+    /**
+     * Should be called whenever the data in a database file has been replaced or changed so that
+     * anything derived from the previous data can be discarded.
+     */
+    static void onDataSetImported(File dbFile) {
+        IMPORT_GENERATIONS.merge(dbFile.getAbsolutePath(), 1, Integer::sum);
+    }
+
+    /**
+     * @return a number that changes every time the data set in this database is imported again
+     */
+    public int getImportGeneration() {
+        return IMPORT_GENERATIONS.getOrDefault(dbFile.getAbsolutePath(), 0);
+    }
+
+    /**
+     * Returns the value of queriedColumn in the first row where referenceColumn equals
+     * referenceValue. The query is compiled once for each pair of columns and reused. If the data
+     * set has been imported again since the last lookup the database is reopened first.
+     *
+     * @return the value or null if no row matches
+     * @throws SQLiteException if either column doesn't exist
+     */
+    public synchronized String pullData(String queriedColumn, String referenceColumn, String referenceValue) {
+        int generation = getImportGeneration();
+        if (generation != pullDataGeneration) {
+            close();
+            pullDataGeneration = generation;
+        }
+
+        String safeQueriedColumn = ExternalDataUtil.toSafeColumnName(queriedColumn);
+        String safeReferenceColumn = ExternalDataUtil.toSafeColumnName(referenceColumn);
+        String statementKey = safeQueriedColumn + " " + safeReferenceColumn;
+
+        SQLiteStatement statement = pullDataStatements.get(statementKey);
+        if (statement == null) {
+            statement = getReadableDatabase().compileStatement("SELECT " + safeQueriedColumn
+                    + " FROM " + ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME + " WHERE " + safeReferenceColumn + " = ? LIMIT 1;");
+            pullDataStatements.put(statementKey, statement);
+        }
+
+        statement.bindString(1, referenceValue);
+        try {
+            return statement.simpleQueryForString();
+        } catch (SQLiteDoneException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Indexes the given columns so that equality and prefix searches on them don't have to scan
+     * the whole table. This is done when a form is loaded, right after its data sets are imported,
+     * and the indexes are kept in the database until the data set is imported again.
+     */
+    public synchronized void createSearchIndexes(Collection<String> safeColumnNames) {
+        for (String safeColumnName : safeColumnNames) {
+            if (searchIndexedColumns.contains(safeColumnName)) {
+                continue;
+            }
+
+            try {
+                getWritableDatabase().execSQL("CREATE INDEX IF NOT EXISTS " + safeColumnName + "_search_idx ON "
+                        + ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME + " (" + safeColumnName + ");");
+                searchIndexedColumns.add(safeColumnName);
+            } catch (SQLiteException e) {
+                // The search itself reports columns that don't exist
+                Timber.w(e);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        for (SQLiteStatement statement : pullDataStatements.values()) {
+            statement.close();
+        }
+        pullDataStatements.clear();
+        searchIndexedColumns.clear();
+
+        super.close();
     }
 
     void importFromCSV(File dataSetFile, ExternalDataReader externalDataReader,
@@ -82,6 +182,19 @@ public class ExternalSQLiteOpenHelper extends SQLiteOpenHelper {
         }
     }
 
+    /**
+     * The database is only written to when it's created by an import so it doesn't need to be
+     * synced to disk as it's written. The rollback journal is kept in memory so a failed import is
+     * still rolled back and runs again next time.
+     */
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        if (externalDataReader != null) {
+            DatabaseUtils.stringForQuery(db, "PRAGMA journal_mode = MEMORY", null);
+            db.execSQL("PRAGMA synchronous = OFF");
+        }
+    }
+
     @Override
     public void onCreate(SQLiteDatabase db) {
         if (externalDataReader == null) {
@@ -188,8 +301,50 @@ public class ExternalSQLiteOpenHelper extends SQLiteOpenHelper {
             }
 
             // populate the database
+            importRows(db, tableName, headerRow, reader, columnNamesCache);
+
+            if (isCancelled()) {
+                Timber.w("User canceled reading data from %s", dataSetFile.toString());
+                onProgress(TranslationHandler.getString(Collect.getInstance(), R.string.ext_import_cancelled_message));
+            } else {
+
+                onProgress(TranslationHandler.getString(Collect.getInstance(), R.string.ext_import_finalizing_message));
+
+                // now create the indexes
+                for (String createIndexCommand : createIndexesCommands) {
+                    Timber.w(createIndexCommand);
+                    db.execSQL(createIndexCommand);
+                }
+
+                Timber.w("Read all data from %s", dataSetFile.toString());
+                onProgress(TranslationHandler.getString(Collect.getInstance(), R.string.ext_import_completed_message));
+            }
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    Timber.e(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Inserts the remaining rows from the reader using a single compiled statement. The mapping
+     * from CSV columns to table columns is worked out once from the header rather than per cell.
+     */
+    private void importRows(SQLiteDatabase db, String tableName, String[] headerRow, CSVReader reader,
+                            Map<String, String> columnNamesCache) throws IOException {
+        ExternalDataColumnMapping columnMapping = new ExternalDataColumnMapping(headerRow, columnNamesCache);
+        List<String> safeColumnNames = columnMapping.getSafeColumnNames();
+
+        SQLiteStatement insertStatement = db.compileStatement("INSERT INTO " + tableName
+                + " (" + TextUtils.join(", ", safeColumnNames) + ") VALUES (" + parameters(safeColumnNames.size()) + ");");
+        try {
             String[] row = reader.readNext();
             int rowCount = 0;
+            long lastProgressTime = System.currentTimeMillis();
             while (row != null && !isCancelled()) {
                 // SCTO-894 - first we should make sure that this is not an empty line
                 if (!ExternalDataUtil.containsAnyData(row)) {
@@ -205,55 +360,145 @@ public class ExternalSQLiteOpenHelper extends SQLiteOpenHelper {
                     row = ExternalDataUtil.fillUpNullValues(row, headerRow);
                 }
 
-                ContentValues values = new ContentValues();
-                if (!sortColumnAlreadyPresent) {
-                    values.put(ExternalDataUtil.SORT_COLUMN_NAME, rowCount + 1);
-                }
+                insertStatement.clearBindings();
+                columnMapping.bindRow(insertStatement, row, rowCount + 1, 1);
+                insertStatement.executeInsert();
 
-                for (int i = 0; i < row.length && i < headerRow.length; i++) {
-                    String columnName = headerRow[i].trim();
-                    String columnValue = row[i];
-                    if (columnName.length() == 0) {
-                        continue;
-                    }
-                    String safeColumnName = ExternalDataUtil.toSafeColumnName(columnName,
-                            columnNamesCache);
-                    if (safeColumnName.equals(ExternalDataUtil.SORT_COLUMN_NAME)) {
-                        try {
-                            values.put(safeColumnName, Double.parseDouble(columnValue));
-                        } catch (NumberFormatException e) {
-                            throw new ExternalDataException(TranslationHandler.getString(Collect.getInstance(), R.string.ext_sortBy_numeric_error, columnValue));
-                        }
-                    } else {
-                        values.put(safeColumnName, columnValue);
-                    }
-                }
-                db.insertOrThrow(tableName, null, values);
                 row = reader.readNext();
                 rowCount++;
-                if (rowCount % 100 == 0) {
+
+                long now = System.currentTimeMillis();
+                if (now - lastProgressTime >= PROGRESS_INTERVAL_MS) {
+                    lastProgressTime = now;
                     onProgress(TranslationHandler.getString(Collect.getInstance(), R.string.ext_import_progress_message,
                             dataSetFile.getName(), " (" + rowCount + " records so far)"));
                 }
             }
+        } finally {
+            insertStatement.close();
+        }
+    }
 
-            if (isCancelled()) {
-                Timber.w("User canceled reading data from %s", dataSetFile.toString());
-                onProgress(TranslationHandler.getString(Collect.getInstance(), R.string.ext_import_cancelled_message));
-            } else {
+    /**
+     * Brings the data table of an existing database up to date with a changed CSV by only
+     * inserting, updating and deleting the rows that changed. Rows are matched using the first
+     * column whose header ends with "_key". All changes are made in one transaction.
+     *
+     * @return false if the changes couldn't be applied and the data set needs to be imported from
+     * scratch. This is the case when the CSV has no key column, its columns have changed or keys
+     * aren't unique.
+     */
+    static boolean updateChangedRows(File dbFile, File dataSetFile) {
+        final String tableName = ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME;
+        final long start = System.currentTimeMillis();
 
-                onProgress(TranslationHandler.getString(Collect.getInstance(), R.string.ext_import_finalizing_message));
+        SQLiteDatabase db = null;
+        CSVReader reader = null;
+        try {
+            reader = new CSVReader(new InputStreamReader(new FileInputStream(dataSetFile), "UTF-8"),
+                    DELIMITING_CHAR, QUOTE_CHAR, ESCAPE_CHAR);
+            String[] headerRow = reader.readNext();
+            if (headerRow == null) {
+                return false;
+            }
+            headerRow[0] = removeByteOrderMark(headerRow[0]);
 
-                // now create the indexes
-                for (String createIndexCommand : createIndexesCommands) {
-                    Timber.w(createIndexCommand);
-                    db.execSQL(createIndexCommand);
+            List<String> conflictingColumns = ExternalDataUtil.findMatchingColumnsAfterSafeningNames(headerRow);
+            if (!ExternalDataUtil.containsAnyData(headerRow) || (conflictingColumns != null && !conflictingColumns.isEmpty())) {
+                return false;
+            }
+
+            ExternalDataColumnMapping columnMapping = new ExternalDataColumnMapping(headerRow, new HashMap<>());
+            List<String> safeColumnNames = columnMapping.getSafeColumnNames();
+            String keyColumn = columnMapping.getKeyColumnName();
+            if (keyColumn == null) {
+                return false;
+            }
+
+            db = SQLiteDatabase.openDatabase(dbFile.getPath(), null, SQLiteDatabase.OPEN_READWRITE);
+            if (!new HashSet<>(SQLiteUtils.getColumnNames(db, tableName)).equals(new HashSet<>(safeColumnNames))) {
+                Timber.i("Columns of %s have changed so it will be imported again", dataSetFile.getName());
+                return false;
+            }
+            if (DatabaseUtils.longForQuery(db, "SELECT COUNT(*) - COUNT(DISTINCT " + keyColumn + ") FROM " + tableName, null) != 0) {
+                return false;
+            }
+
+            int columnCount = safeColumnNames.size();
+            List<String> unchangedConditions = new ArrayList<>();
+            for (String columnName : safeColumnNames) {
+                unchangedConditions.add(columnName + " IS ? COLLATE BINARY");
+            }
+
+            db.beginTransaction();
+            db.execSQL("CREATE TEMP TABLE delta_keys (key TEXT COLLATE NOCASE PRIMARY KEY);");
+            SQLiteStatement keyStatement = db.compileStatement("INSERT INTO delta_keys VALUES (?);");
+            SQLiteStatement insertStatement = db.compileStatement("INSERT INTO " + tableName
+                    + " (" + TextUtils.join(", ", safeColumnNames) + ") SELECT " + parameters(columnCount)
+                    + " WHERE NOT EXISTS (SELECT 1 FROM " + tableName + " WHERE " + keyColumn + " = ?);");
+            SQLiteStatement updateStatement = db.compileStatement("UPDATE " + tableName
+                    + " SET " + TextUtils.join(" = ?, ", safeColumnNames) + " = ?"
+                    + " WHERE " + keyColumn + " = ? AND NOT (" + TextUtils.join(" AND ", unchangedConditions) + ");");
+            try {
+                int inserted = 0;
+                int updated = 0;
+                int rowCount = 0;
+
+                String[] row;
+                while ((row = reader.readNext()) != null) {
+                    if (!ExternalDataUtil.containsAnyData(row)) {
+                        continue;
+                    }
+                    if (row.length < headerRow.length) {
+                        row = ExternalDataUtil.fillUpNullValues(row, headerRow);
+                    }
+                    rowCount++;
+                    String key = columnMapping.getKey(row);
+
+                    // Fails if the key has already been seen
+                    keyStatement.bindString(1, key);
+                    keyStatement.executeInsert();
+
+                    insertStatement.clearBindings();
+                    columnMapping.bindRow(insertStatement, row, rowCount, 1);
+                    insertStatement.bindString(columnCount + 1, key);
+                    if (insertStatement.executeInsert() != -1) {
+                        inserted++;
+                        continue;
+                    }
+
+                    updateStatement.clearBindings();
+                    columnMapping.bindRow(updateStatement, row, rowCount, 1);
+                    updateStatement.bindString(columnCount + 1, key);
+                    columnMapping.bindRow(updateStatement, row, rowCount, columnCount + 2);
+                    updated += updateStatement.executeUpdateDelete();
                 }
 
-                Timber.w("Read all data from %s", dataSetFile.toString());
-                onProgress(TranslationHandler.getString(Collect.getInstance(), R.string.ext_import_completed_message));
+                int deleted = db.delete(tableName, keyColumn + " NOT IN (SELECT key FROM delta_keys)", null);
+
+                ContentValues metadata = new ContentValues();
+                metadata.put(ExternalDataUtil.COLUMN_MD5_HASH, FileUtils.getMd5Hash(dataSetFile));
+                db.update(ExternalDataUtil.EXTERNAL_METADATA_TABLE_NAME, metadata,
+                        CustomSQLiteQueryBuilder.quoteIdentifier(ExternalDataUtil.COLUMN_DATASET_FILENAME) + " = ?",
+                        new String[]{dataSetFile.getName()});
+
+                db.setTransactionSuccessful();
+                Timber.i("Updated %s in %.3f seconds: %d inserted, %d updated, %d deleted", dataSetFile.getName(),
+                        (System.currentTimeMillis() - start) / 1000F, inserted, updated, deleted);
+                return true;
+            } finally {
+                keyStatement.close();
+                insertStatement.close();
+                updateStatement.close();
+                db.endTransaction();
             }
+        } catch (IOException | RuntimeException e) {
+            Timber.w(e, "Could not update %s so it will be imported again", dataSetFile.getName());
+            return false;
         } finally {
+            if (db != null) {
+                db.close();
+            }
             if (reader != null) {
                 try {
                     reader.close();
@@ -264,6 +509,14 @@ public class ExternalSQLiteOpenHelper extends SQLiteOpenHelper {
         }
     }
 
+    private static String parameters(int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append(i == 0 ? "?" : ", ?");
+        }
+        return sb.toString();
+    }
+
     protected boolean isCancelled() {
         return formLoaderTask != null && formLoaderTask.isCancelled();
     }
@@ -338,7 +591,7 @@ public class ExternalSQLiteOpenHelper extends SQLiteOpenHelper {
      * @param bomCheckString is checked to see if it starts with a Byte Order Mark.
      * @return bomCheckString without a Byte Order Mark.
      */
-    private String removeByteOrderMark(String bomCheckString) {
+    private static String removeByteOrderMark(String bomCheckString) {
         return bomCheckString.startsWith("\uFEFF") ? bomCheckString.substring(1) : bomCheckString;
     }
 }
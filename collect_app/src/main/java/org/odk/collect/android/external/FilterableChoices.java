@@ -0,0 +1,14 @@
+package org.odk.collect.android.external;
+
+/**
+ * A list of choices that can find the choices whose label contains a search string without
+ * building every choice, for lists that are read from a data set as they're shown.
+ */
+public interface FilterableChoices {
+
+    /**
+     * Returns the positions of the choices whose label contains the query, ignoring case, in the
+     * order the choices are listed.
+     */
+    int[] filter(String query);
+}
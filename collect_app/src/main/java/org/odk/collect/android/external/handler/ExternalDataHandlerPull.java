@@ -18,8 +18,6 @@
 
 package org.odk.collect.android.external.handler;
 
-import android.database.Cursor;
-import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
 
 import org.javarosa.core.model.condition.EvaluationContext;
@@ -29,7 +27,11 @@ import org.odk.collect.android.external.ExternalDataUtil;
 import org.odk.collect.android.external.ExternalSQLiteOpenHelper;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import timber.log.Timber;
 
@@ -42,6 +44,21 @@ public class ExternalDataHandlerPull extends ExternalDataHandlerBase {
 
     public static final String HANDLER_NAME = "pulldata";
 
+    private static final int MAX_CACHED_VALUES = 1000;
+
+    /**
+     * Values looked up during this form session keyed by data set, queried column, reference
+     * column and reference value. Calculates are evaluated again on every change so the same
+     * lookups are repeated many times.
+     */
+    private final Map<List<String>, String> cachedValues = new LinkedHashMap<List<String>, String>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<String>, String> eldest) {
+            return size() > MAX_CACHED_VALUES;
+        }
+    };
+    private final Map<String, Integer> cachedImportGenerations = new HashMap<>();
+
     public ExternalDataHandlerPull(ExternalDataManager externalDataManager) {
         super(externalDataManager);
     }
@@ -82,7 +99,10 @@ public class ExternalDataHandlerPull extends ExternalDataHandlerBase {
         // SCTO-545
         dataSetName = normalize(dataSetName);
 
-        Cursor c = null;
+        return pullData(dataSetName, queriedColumn, referenceColumn, referenceValue);
+    }
+
+    private synchronized String pullData(String dataSetName, String queriedColumn, String referenceColumn, String referenceValue) {
         try {
             ExternalSQLiteOpenHelper sqLiteOpenHelper = getExternalDataManager().getDatabase(
                     dataSetName, false);
@@ -90,28 +110,30 @@ public class ExternalDataHandlerPull extends ExternalDataHandlerBase {
                 return "";
             }
 
-            SQLiteDatabase db = sqLiteOpenHelper.getReadableDatabase();
-            String[] columns = {ExternalDataUtil.toSafeColumnName(queriedColumn)};
-            String selection = ExternalDataUtil.toSafeColumnName(referenceColumn) + "=?";
-            String[] selectionArgs = {referenceValue};
-
-            c = db.query(ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME, columns, selection,
-                    selectionArgs, null, null, null);
-            if (c.getCount() > 0) {
-                c.moveToFirst();
-                return ExternalDataUtil.nullSafe(c.getString(0));
-            } else {
+            // Values cached before the data set was imported again are stale
+            Integer importGeneration = sqLiteOpenHelper.getImportGeneration();
+            if (!importGeneration.equals(cachedImportGenerations.put(dataSetName, importGeneration))) {
+                cachedValues.keySet().removeIf(key -> key.get(0).equals(dataSetName));
+            }
+
+            List<String> cacheKey = Arrays.asList(dataSetName, queriedColumn, referenceColumn, referenceValue);
+            String cachedValue = cachedValues.get(cacheKey);
+            if (cachedValue != null) {
+                return cachedValue;
+            }
+
+            String value = sqLiteOpenHelper.pullData(queriedColumn, referenceColumn, referenceValue);
+            if (value == null) {
                 Timber.i("Could not find a value in %s where the column %s has the value %s",
                         queriedColumn, referenceColumn, referenceValue);
-                return "";
             }
+
+            value = ExternalDataUtil.nullSafe(value);
+            cachedValues.put(cacheKey, value);
+            return value;
         } catch (SQLiteException e) {
             Timber.i(e);
             return "";
-        } finally {
-            if (c != null) {
-                c.close();
-            }
         }
     }
 }
@@ -21,9 +21,15 @@ package org.odk.collect.android.external.handler;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 
-import org.javarosa.core.model.SelectChoice;
+import org.javarosa.core.model.FormDef;
+import org.javarosa.core.model.IFormElement;
+import org.javarosa.core.model.QuestionDef;
 import org.javarosa.core.model.condition.EvaluationContext;
+import org.javarosa.xpath.XPathParseTool;
+import org.javarosa.xpath.expr.XPathExpression;
 import org.javarosa.xpath.expr.XPathFuncExpr;
+import org.javarosa.xpath.expr.XPathStringLiteral;
+import org.javarosa.xpath.parser.XPathSyntaxException;
 import org.odk.collect.android.R;
 import org.odk.collect.android.application.Collect;
 import org.odk.collect.android.exception.ExternalDataException;
@@ -34,10 +40,13 @@ import org.odk.collect.android.external.ExternalSelectChoice;
 import org.odk.collect.android.utilities.TranslationHandler;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.regex.Matcher;
 
 import timber.log.Timber;
 
@@ -79,6 +88,70 @@ public class ExternalDataHandlerSearch extends ExternalDataHandlerBase {
         return HANDLER_NAME;
     }
 
+    /**
+     * Returns the columns that the search() appearances in the form can use an index for, by
+     * data set name. Only data set names and columns that are string literals are known before
+     * the form is filled in.
+     */
+    public static Map<String, Set<String>> getIndexableColumns(FormDef formDef) {
+        Map<String, Set<String>> columns = new HashMap<>();
+        addIndexableColumns(formDef, columns);
+        return columns;
+    }
+
+    private static void addIndexableColumns(IFormElement element, Map<String, Set<String>> columns) {
+        if (element instanceof QuestionDef) {
+            XPathFuncExpr search = parseSearchFunction(((QuestionDef) element).getAppearanceAttr());
+            if (search != null && search.args.length >= 4 && search.args[0] instanceof XPathStringLiteral) {
+                Set<String> dataSetColumns = new LinkedHashSet<>();
+
+                // A search type that isn't a literal may still be one that can use an index
+                ExternalDataSearchType searchType = search.args[1] instanceof XPathStringLiteral
+                        ? ExternalDataSearchType.getByKeyword(((XPathStringLiteral) search.args[1]).s, ExternalDataSearchType.CONTAINS)
+                        : null;
+                if ((searchType == null || searchType.isIndexable()) && search.args[2] instanceof XPathStringLiteral) {
+                    dataSetColumns.addAll(ExternalDataUtil.createListOfColumns(((XPathStringLiteral) search.args[2]).s));
+                }
+                if (search.args.length == 6 && search.args[4] instanceof XPathStringLiteral) {
+                    dataSetColumns.add(ExternalDataUtil.toSafeColumnName(((XPathStringLiteral) search.args[4]).s));
+                }
+
+                if (!dataSetColumns.isEmpty()) {
+                    String dataSetName = normalize(((XPathStringLiteral) search.args[0]).s);
+                    columns.computeIfAbsent(dataSetName, key -> new LinkedHashSet<>()).addAll(dataSetColumns);
+                }
+            }
+        }
+
+        if (element.getChildren() != null) {
+            for (IFormElement child : element.getChildren()) {
+                addIndexableColumns(child, columns);
+            }
+        }
+    }
+
+    private static XPathFuncExpr parseSearchFunction(String appearance) {
+        if (appearance == null) {
+            return null;
+        }
+
+        Matcher matcher = ExternalDataUtil.SEARCH_FUNCTION_REGEX.matcher(appearance);
+        if (!matcher.find()) {
+            return null;
+        }
+
+        try {
+            XPathExpression expression = XPathParseTool.parseXPath(matcher.group(0));
+            if (expression instanceof XPathFuncExpr && ((XPathFuncExpr) expression).id.name.equalsIgnoreCase(HANDLER_NAME)) {
+                return (XPathFuncExpr) expression;
+            }
+        } catch (XPathSyntaxException e) {
+            // the question will show the problem when it's displayed
+            Timber.i(e);
+        }
+        return null;
+    }
+
     @Override
     public List<Class[]> getPrototypes() {
         return new ArrayList<Class[]>();
@@ -178,16 +251,19 @@ public class ExternalDataHandlerSearch extends ExternalDataHandlerBase {
                 selectionArgs = null;
             }
 
+            // only the row ids are read here and the choices are built as they're shown
+            String[] rowIdColumns = {"rowid", sqlColumns[0]};
             try {
-                c = db.query(ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME, sqlColumns, selection,
+                c = db.query(ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME, rowIdColumns, selection,
                         selectionArgs, null, null, ExternalDataUtil.SORT_COLUMN_NAME);
             } catch (Exception e) {
                 Timber.e(TranslationHandler.getString(Collect.getInstance(), R.string.ext_import_csv_missing_error, dataSetName, dataSetName));
-                c = db.query(ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME, sqlColumns, selection,
+                c = db.query(ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME, rowIdColumns, selection,
                         selectionArgs, null, null, null);
             }
 
-            return createDynamicSelectChoices(c, selectColumnMap, safeImageColumn);
+            return new PagedExternalSelectChoices(this, sqLiteOpenHelper, c, sqlColumns,
+                    selectColumnMap, safeImageColumn);
         } finally {
             if (c != null) {
                 c.close();
@@ -195,49 +271,32 @@ public class ExternalDataHandlerSearch extends ExternalDataHandlerBase {
         }
     }
 
-    protected ArrayList<SelectChoice> createDynamicSelectChoices(Cursor c,
+    protected ExternalSelectChoice createDynamicSelectChoice(Cursor c,
             LinkedHashMap<String, String> selectColumnMap, String safeImageColumn) {
         List<String> columnsToExcludeFromLabels = new ArrayList<>();
         if (safeImageColumn != null) {
             columnsToExcludeFromLabels.add(safeImageColumn);
         }
 
-        ArrayList<SelectChoice> selectChoices = new ArrayList<>();
-        if (c.getCount() > 0) {
-            c.moveToPosition(-1);
-            int index = 0;
-            Set<String> uniqueValues = new HashSet<>();
-            while (c.moveToNext()) {
-
-                // the value is always the first column
-                String value = c.getString(0);
-                if (!uniqueValues.contains(value)) {
-                    String label = buildLabel(c, selectColumnMap, columnsToExcludeFromLabels);
-
-                    ExternalSelectChoice selectChoice;
-                    if (label.trim().length() == 0) {
-                        selectChoice = new ExternalSelectChoice(value, value, false);
-                    } else {
-                        selectChoice = new ExternalSelectChoice(label, value, false);
-                    }
-                    selectChoice.setIndex(index);
-
-                    if (safeImageColumn != null && safeImageColumn.trim().length() > 0) {
-                        String image = c.getString(c.getColumnIndex(safeImageColumn));
-                        if (image != null && image.trim().length() > 0) {
-                            selectChoice.setImage(ExternalDataUtil.JR_IMAGES_PREFIX + image);
-                        }
-                    }
-
-                    selectChoices.add(selectChoice);
-
-                    index++;
-
-                    uniqueValues.add(value);
-                }
+        // the value is always the first column
+        String value = c.getString(0);
+        String label = buildLabel(c, selectColumnMap, columnsToExcludeFromLabels);
+
+        ExternalSelectChoice selectChoice;
+        if (label.trim().length() == 0) {
+            selectChoice = new ExternalSelectChoice(value, value, false);
+        } else {
+            selectChoice = new ExternalSelectChoice(label, value, false);
+        }
+
+        if (safeImageColumn != null && safeImageColumn.trim().length() > 0) {
+            String image = c.getString(c.getColumnIndex(safeImageColumn));
+            if (image != null && image.trim().length() > 0) {
+                selectChoice.setImage(ExternalDataUtil.JR_IMAGES_PREFIX + image);
             }
         }
-        return selectChoices;
+
+        return selectChoice;
     }
 
     protected String createLikeExpression(List<String> queriedColumns) {
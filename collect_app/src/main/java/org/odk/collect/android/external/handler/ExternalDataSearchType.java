@@ -25,28 +25,28 @@ package org.odk.collect.android.external.handler;
  */
 enum ExternalDataSearchType {
 
-    CONTAINS("contains") {
+    CONTAINS("contains", false) {
         @Override
         protected String getSingleLikeArgument(String queriedValue) {
             return '%' + queriedValue + '%';
         }
     },
 
-    MATCHES("matches") {
+    MATCHES("matches", true) {
         @Override
         protected String getSingleLikeArgument(String queriedValue) {
             return queriedValue;
         }
     },
 
-    STARTS("startsWith") {
+    STARTS("startsWith", true) {
         @Override
         protected String getSingleLikeArgument(String queriedValue) {
             return queriedValue + '%';
         }
     },
 
-    ENDS("endsWith") {
+    ENDS("endsWith", false) {
         @Override
         protected String getSingleLikeArgument(String queriedValue) {
             return '%' + queriedValue;
@@ -54,15 +54,25 @@ enum ExternalDataSearchType {
     };
 
     private final String keyword;
+    private final boolean indexable;
 
-    ExternalDataSearchType(String keyword) {
+    ExternalDataSearchType(String keyword, boolean indexable) {
         this.keyword = keyword;
+        this.indexable = indexable;
     }
 
     public String getKeyword() {
         return keyword;
     }
 
+    /**
+     * @return true if the LIKE arguments never start with a wildcard so that SQLite can use an
+     * index on the queried columns instead of scanning every row
+     */
+    public boolean isIndexable() {
+        return indexable;
+    }
+
     public static ExternalDataSearchType getByKeyword(String keyword,
             ExternalDataSearchType fallback) {
         if (keyword == null) {
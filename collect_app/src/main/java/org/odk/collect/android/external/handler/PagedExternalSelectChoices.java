@@ -0,0 +1,197 @@
+package org.odk.collect.android.external.handler;
+
+import android.database.Cursor;
+import android.database.CursorWrapper;
+
+import org.javarosa.core.model.SelectChoice;
+import org.odk.collect.android.external.ExternalDataUtil;
+import org.odk.collect.android.external.ExternalSQLiteOpenHelper;
+import org.odk.collect.android.external.FilterableChoices;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The choices matched by a search() appearance. Only the row ids of the matching rows are read
+ * when the list is created and the choices themselves are built a page at a time as they're
+ * accessed so that searching a large data set doesn't build a choice for every row at once.
+ * Filtering the list as the user types is done by the database for the same reason.
+ */
+class PagedExternalSelectChoices extends AbstractList<SelectChoice> implements FilterableChoices {
+
+    static final int PAGE_SIZE = 100;
+    private static final int MAX_CACHED_PAGES = 10;
+    private static final String ROW_ID_COLUMN = "rowid";
+
+    private final ExternalDataHandlerSearch handler;
+    private final ExternalSQLiteOpenHelper sqLiteOpenHelper;
+    private final String[] sqlColumns;
+    private final LinkedHashMap<String, String> selectColumnMap;
+    private final String safeImageColumn;
+
+    private final long[] rowIds;
+    private final int size;
+
+    private final Map<Integer, List<SelectChoice>> pages = new LinkedHashMap<Integer, List<SelectChoice>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<SelectChoice>> eldest) {
+            return size() > MAX_CACHED_PAGES;
+        }
+    };
+
+    /**
+     * @param rowIdCursor the row id and value of every matching row in the order the choices
+     *                    should be shown. Only the first row for each value becomes a choice.
+     */
+    PagedExternalSelectChoices(ExternalDataHandlerSearch handler, ExternalSQLiteOpenHelper sqLiteOpenHelper,
+                               Cursor rowIdCursor, String[] sqlColumns,
+                               LinkedHashMap<String, String> selectColumnMap, String safeImageColumn) {
+        this.handler = handler;
+        this.sqLiteOpenHelper = sqLiteOpenHelper;
+        this.sqlColumns = sqlColumns;
+        this.selectColumnMap = selectColumnMap;
+        this.safeImageColumn = safeImageColumn;
+
+        long[] rowIds = new long[rowIdCursor.getCount()];
+        int size = 0;
+        Set<String> uniqueValues = new HashSet<>();
+        rowIdCursor.moveToPosition(-1);
+        while (rowIdCursor.moveToNext()) {
+            if (uniqueValues.add(rowIdCursor.getString(1))) {
+                rowIds[size++] = rowIdCursor.getLong(0);
+            }
+        }
+
+        this.rowIds = rowIds;
+        this.size = size;
+    }
+
+    @Override
+    public synchronized SelectChoice get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+
+        int page = index / PAGE_SIZE;
+        List<SelectChoice> choices = pages.get(page);
+        if (choices == null) {
+            choices = loadPage(page);
+            pages.put(page, choices);
+        }
+
+        return choices.get(index - page * PAGE_SIZE);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Matches the columns the labels are built from rather than the labels themselves, so unlike
+     * the search of a list held in memory it doesn't ignore accents outside of ASCII.
+     */
+    @Override
+    public int[] filter(String query) {
+        String pattern = "%" + query
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_") + "%";
+
+        List<String> labelColumns = getLabelColumns();
+        StringBuilder selection = new StringBuilder();
+        List<String> selectionArgs = new ArrayList<>();
+        for (String column : labelColumns) {
+            selection.append(selection.length() == 0 ? "" : " OR ").append(column).append(" LIKE ? ESCAPE '\\'");
+            selectionArgs.add(pattern);
+        }
+
+        // Choices without a label show their value instead
+        if (labelColumns.size() <= 1) {
+            String valueColumn = sqlColumns[0];
+            selection.append(selection.length() == 0 ? "" : " OR ").append('(').append(valueColumn).append(" LIKE ? ESCAPE '\\'");
+            selectionArgs.add(pattern);
+            if (labelColumns.size() == 1) {
+                selection.append(" AND TRIM(IFNULL(").append(labelColumns.get(0)).append(", '')) = ''");
+            }
+            selection.append(')');
+        }
+
+        Set<Long> matchingRowIds = new HashSet<>();
+        try (Cursor c = sqLiteOpenHelper.getReadableDatabase().query(ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME,
+                new String[]{ROW_ID_COLUMN}, selection.toString(), selectionArgs.toArray(new String[0]), null, null, null)) {
+            while (c.moveToNext()) {
+                matchingRowIds.add(c.getLong(0));
+            }
+        }
+
+        int[] positions = new int[Math.min(size, matchingRowIds.size())];
+        int count = 0;
+        for (int i = 0; i < size && count < positions.length; i++) {
+            if (matchingRowIds.contains(rowIds[i])) {
+                positions[count++] = i;
+            }
+        }
+        return count == positions.length ? positions : Arrays.copyOf(positions, count);
+    }
+
+    /** Returns the columns the labels are built from, which are every column but the value and image. */
+    private List<String> getLabelColumns() {
+        List<String> labelColumns = new ArrayList<>();
+        for (int i = 1; i < sqlColumns.length; i++) {
+            if (!sqlColumns[i].equals(safeImageColumn)) {
+                labelColumns.add(sqlColumns[i]);
+            }
+        }
+        return labelColumns;
+    }
+
+    private List<SelectChoice> loadPage(int page) {
+        int from = page * PAGE_SIZE;
+        int to = Math.min(from + PAGE_SIZE, size);
+
+        String[] selectionArgs = new String[to - from];
+        StringBuilder selection = new StringBuilder(ROW_ID_COLUMN).append(" IN (");
+        for (int i = from; i < to; i++) {
+            selectionArgs[i - from] = Long.toString(rowIds[i]);
+            selection.append(i == from ? "?" : ", ?");
+        }
+        selection.append(')');
+
+        String[] columns = new String[sqlColumns.length + 1];
+        System.arraycopy(sqlColumns, 0, columns, 0, sqlColumns.length);
+        columns[sqlColumns.length] = ROW_ID_COLUMN;
+
+        Map<Long, SelectChoice> choicesByRowId = new HashMap<>();
+        try (Cursor c = sqLiteOpenHelper.getReadableDatabase().query(ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME,
+                columns, selection.toString(), selectionArgs, null, null, null)) {
+            // Hides the row id from the labels which are built from every column but the value
+            Cursor choiceCursor = new CursorWrapper(c) {
+                @Override
+                public int getColumnCount() {
+                    return super.getColumnCount() - 1;
+                }
+            };
+
+            while (c.moveToNext()) {
+                choicesByRowId.put(c.getLong(sqlColumns.length),
+                        handler.createDynamicSelectChoice(choiceCursor, selectColumnMap, safeImageColumn));
+            }
+        }
+
+        List<SelectChoice> choices = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            SelectChoice choice = choicesByRowId.get(rowIds[i]);
+            choice.setIndex(i);
+            choices.add(choice);
+        }
+        return choices;
+    }
+}
@@ -0,0 +1,49 @@
+package org.odk.collect.android.fastexternalitemset;
+
+import org.javarosa.core.model.FormIndex;
+import org.javarosa.core.model.SelectChoice;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the compiled query of each itemset question and the choices of the most recently queried
+ * itemsets for the lifetime of a form session so that moving back and forth through a cascading
+ * select doesn't parse queries again or query the itemsets database for levels whose arguments
+ * haven't changed.
+ */
+public class ItemsetCache {
+
+    private static final int MAX_ENTRIES = 50;
+
+    private final Map<FormIndex, ItemsetQuery> queries = new HashMap<>();
+
+    private final Map<List<String>, List<SelectChoice>> items = new LinkedHashMap<List<String>, List<SelectChoice>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<String>, List<SelectChoice>> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    public synchronized ItemsetQuery getQuery(FormIndex index) {
+        return queries.get(index);
+    }
+
+    public synchronized void putQuery(FormIndex index, ItemsetQuery query) {
+        queries.put(index, query);
+    }
+
+    /**
+     * @param key the selection, its arguments (the first of which is the list name) and the
+     *            language the labels are in
+     */
+    public synchronized List<SelectChoice> get(List<String> key) {
+        return items.get(key);
+    }
+
+    public synchronized void put(List<String> key, List<SelectChoice> choices) {
+        items.put(key, choices);
+    }
+}
@@ -20,12 +20,10 @@ import android.database.Cursor;
 import android.database.sqlite.SQLiteException;
 
 import org.javarosa.core.model.FormDef;
+import org.javarosa.core.model.IFormElement;
+import org.javarosa.core.model.QuestionDef;
 import org.javarosa.core.model.SelectChoice;
-import org.javarosa.core.model.condition.EvaluationContext;
-import org.javarosa.core.model.instance.TreeElement;
 import org.javarosa.form.api.FormEntryPrompt;
-import org.javarosa.xpath.XPathNodeset;
-import org.javarosa.xpath.expr.XPathExpression;
 import org.javarosa.xpath.parser.XPathSyntaxException;
 import org.odk.collect.android.application.Collect;
 import org.odk.collect.android.javarosawrapper.FormController;
@@ -33,13 +31,14 @@ import org.odk.collect.android.javarosawrapper.FormController;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import timber.log.Timber;
 
 public class ItemsetDao {
-    private static final String QUOTATION_MARK = "\"";
-
     private final ItemsetDbAdapter adapter;
 
     public ItemsetDao(ItemsetDbAdapter adapter) {
@@ -61,18 +60,10 @@ public class ItemsetDao {
 
                 Cursor c = adapter.query(pathHash, selection, selectionArgs);
                 if (c != null) {
+                    int labelCol = getLabelColumnIndex(c, language);
                     c.move(-1);
                     while (c.moveToNext()) {
-                        // apparently you only need the double quotes in the
-                        // column name when creating the column with a : included
-                        String labelLang = "label" + "::" + language;
-                        int langCol = c.getColumnIndex(labelLang);
-                        if (langCol == -1) {
-                            itemLabel = c.getString(c.getColumnIndex("label"));
-                        } else {
-                            itemLabel = c.getString(c.getColumnIndex(labelLang));
-                        }
-
+                        itemLabel = c.getString(labelCol);
                     }
                     c.close();
                 }
@@ -87,141 +78,75 @@ public class ItemsetDao {
     }
 
     public List<SelectChoice> getItems(FormEntryPrompt formEntryPrompt, XPathParseTool pathParseTool) throws FileNotFoundException, XPathSyntaxException {
-        String nodesetString = getNodesetString(formEntryPrompt);
-
-        List<String> arguments = new ArrayList<>();
-        String selectionString = getSelectionStringAndPopulateArguments(getQueryString(nodesetString), arguments);
-
         FormController formController = Collect.getInstance().getFormController();
-        String[] selectionArgs = getSelectionArgs(arguments, nodesetString, formController, pathParseTool, formEntryPrompt);
-
-        return selectionArgs == null ? null : getItemsFromDatabase(selectionString, selectionArgs, formController, adapter);
-    }
-
-    private String getNodesetString(FormEntryPrompt formEntryPrompt) {
-        // the format of the query should be something like this:
-        // query="instance('cities')/root/item[state=/data/state and county=/data/county]"
-        // "query" is what we're using to notify that this is an itemset widget.
-        return formEntryPrompt.getQuestion().getAdditionalAttribute(null, "query");
-    }
-
-    private String getQueryString(String nodesetStr) {
-        // isolate the string between between the [ ] characters
-        return nodesetStr.substring(nodesetStr.indexOf('[') + 1, nodesetStr.lastIndexOf(']'));
-    }
-
-    private String getSelectionStringAndPopulateArguments(String queryString, List<String> arguments) {
-        StringBuilder selectionString = new StringBuilder();
-        // add the list name as the first argument, which will always be there
-        selectionString.append("list_name=?");
+        if (formController == null) {
+            Timber.w("Can't instantiate ItemsetWidget with a null FormController.");
+            return null;
+        }
 
-        // check to see if there are any arguments
-        if (queryString.indexOf('=') != -1) {
-            selectionString.append(" and ");
+        ItemsetCache cache = formController.getItemsetCache();
+        ItemsetQuery query = cache.getQuery(formEntryPrompt.getIndex());
+        if (query == null) {
+            query = ItemsetQuery.compile(getNodesetString(formEntryPrompt), pathParseTool);
+            cache.putQuery(formEntryPrompt.getIndex(), query);
         }
 
-        // can't just split on 'and' or 'or' because they have different
-        // behavior, so loop through and break them off until we don't have any more
-        // must include the spaces in indexOf so we don't match words like "land"
-        int andIndex;
-        int orIndex = -1;
+        String[] selectionArgs = query.getSelectionArgs(formController.getFormDef(), formEntryPrompt.getIndex().getReference());
+        if (selectionArgs == null) {
+            return null;
+        }
 
-        while ((andIndex = queryString.indexOf(" and ")) != -1 || (orIndex = queryString.indexOf(" or ")) != -1) {
-            if (andIndex != -1) {
-                String[] pair = queryString
-                        .substring(0, andIndex)
-                        .split("=");
+        String language = getLanguage(formController);
+        List<String> cacheKey = new ArrayList<>();
+        cacheKey.add(query.getSelection());
+        cacheKey.add(language);
+        cacheKey.addAll(Arrays.asList(selectionArgs));
 
-                if (pair.length == 2) {
-                    selectionString
-                            .append(QUOTATION_MARK)
-                            .append(pair[0].trim())
-                            .append(QUOTATION_MARK)
-                            .append("=? and ");
+        List<SelectChoice> items = cache.get(cacheKey);
+        if (items == null) {
+            items = getItemsFromDatabase(query.getSelection(), selectionArgs, language, formController, adapter);
+            cache.put(cacheKey, items);
+        }
+        return items;
+    }
 
-                    arguments
-                            .add(pair[1]
-                                    .trim());
-                }
-                // move string forward to after " and "
-                queryString = queryString.substring(andIndex + 5, queryString.length());
-            } else {
-                String subString = queryString.substring(0, orIndex);
-                String[] pair = subString.split("=");
+    /**
+     * @return the itemset columns that the queries of the questions in the form filter on
+     */
+    public static Set<String> getQueryColumns(FormDef formDef) {
+        Set<String> columns = new LinkedHashSet<>();
+        addQueryColumns(formDef, new XPathParseTool(), columns);
+        return columns;
+    }
 
-                if (pair.length == 2) {
-                    selectionString
-                            .append(QUOTATION_MARK)
-                            .append(pair[0].trim())
-                            .append(QUOTATION_MARK)
-                            .append("=? or ");
-                    arguments.add(pair[1].trim());
+    private static void addQueryColumns(IFormElement element, XPathParseTool pathParseTool, Set<String> columns) {
+        if (element instanceof QuestionDef) {
+            String nodesetString = ((QuestionDef) element).getAdditionalAttribute(null, "query");
+            if (nodesetString != null) {
+                try {
+                    columns.addAll(ItemsetQuery.compile(nodesetString, pathParseTool).getColumns());
+                } catch (XPathSyntaxException e) {
+                    // the question will show the problem when it's displayed
+                    Timber.i(e);
                 }
-                // move string forward to after " or "
-                queryString = queryString.substring(orIndex + 4, queryString.length());
-                orIndex = -1;
             }
         }
 
-        // parse the last segment (or only segment if there are no 'and' or 'or' clauses
-        String[] pair = queryString.split("=");
-        if (pair.length == 2) {
-            selectionString
-                    .append(QUOTATION_MARK)
-                    .append(pair[0].trim())
-                    .append(QUOTATION_MARK)
-                    .append("=?");
-            arguments.add(pair[1].trim());
+        if (element.getChildren() != null) {
+            for (IFormElement child : element.getChildren()) {
+                addQueryColumns(child, pathParseTool, columns);
+            }
         }
-        return selectionString.toString();
     }
 
-    @SuppressWarnings("PMD.AvoidThrowingNewInstanceOfSameException")
-    private String[] getSelectionArgs(List<String> arguments, String nodesetStr, FormController formController, XPathParseTool pathParseTool, FormEntryPrompt formEntryPrompt) throws XPathSyntaxException {
-        // +1 is for the list_name
-        String[] selectionArgs = new String[arguments.size() + 1];
-
-        // parse out the list name, between the ''
-        String listName = nodesetStr.substring(nodesetStr.indexOf('\'') + 1, nodesetStr.lastIndexOf('\''));
-
-        selectionArgs[0] = listName; // first argument is always listname
-
-        if (formController == null) {
-            Timber.w("Can't instantiate ItemsetWidget with a null FormController.");
-            return null;
-        }
-
-        // loop through the arguments, evaluate any expressions and build the query string for the DB
-        for (int i = 0; i < arguments.size(); i++) {
-            XPathExpression xpr;
-            try {
-                xpr = pathParseTool.parseXPath(arguments.get(i));
-            } catch (XPathSyntaxException e) {
-                throw new XPathSyntaxException(arguments.get(i));
-            }
-
-            if (xpr != null) {
-                FormDef form = formController.getFormDef();
-                TreeElement treeElement = form.getMainInstance().resolveReference(
-                        formEntryPrompt.getIndex().getReference());
-                EvaluationContext ec = new EvaluationContext(form.getEvaluationContext(),
-                        treeElement.getRef());
-                Object value = xpr.eval(form.getMainInstance(), ec);
-
-                if (value == null) {
-                    return null;
-                } else {
-                    if (value instanceof XPathNodeset) {
-                        value = ((XPathNodeset) value).getValAt(0);
-                    }
-                    selectionArgs[i + 1] = value.toString();
-                }
-            }
-        }
-        return selectionArgs;
+    private String getNodesetString(FormEntryPrompt formEntryPrompt) {
+        // the format of the query should be something like this:
+        // query="instance('cities')/root/item[state=/data/state and county=/data/county]"
+        // "query" is what we're using to notify that this is an itemset widget.
+        return formEntryPrompt.getQuestion().getAdditionalAttribute(null, "query");
     }
 
-    private List<SelectChoice> getItemsFromDatabase(String selection, String[] selectionArgs, FormController formController, ItemsetDbAdapter adapter) throws FileNotFoundException {
+    private List<SelectChoice> getItemsFromDatabase(String selection, String[] selectionArgs, String language, FormController formController, ItemsetDbAdapter adapter) throws FileNotFoundException {
         List<SelectChoice> items = new ArrayList<>();
 
         File itemsetFile = getItemsetFile(formController.getMediaFolder().getAbsolutePath());
@@ -234,30 +159,16 @@ public class ItemsetDao {
             try {
                 Cursor c = adapter.query(pathHash, selection, selectionArgs);
                 if (c != null) {
+                    // try to get the value associated with the label:lang
+                    // string if that doen't exist, then just use label
+                    int labelCol = getLabelColumnIndex(c, language);
+                    int nameCol = c.getColumnIndex("name");
+
                     c.move(-1);
                     int index = 0;
                     while (c.moveToNext()) {
-                        String label;
-                        String val;
-
-                        // try to get the value associated with the label:lang
-                        // string if that doen't exist, then just use label
-                        String lang = "";
-                        if (formController.getLanguages() != null && formController.getLanguages().length > 0) {
-                            lang = formController.getLanguage();
-                        }
-
-                        // apparently you only need the double quotes in the
-                        // column name when creating the column with a : included
-                        String labelLang = "label" + "::" + lang;
-                        int langCol = c.getColumnIndex(labelLang);
-                        if (langCol == -1) {
-                            label = c.getString(c.getColumnIndex("label"));
-                        } else {
-                            label = c.getString(c.getColumnIndex(labelLang));
-                        }
-
-                        val = c.getString(c.getColumnIndex("name"));
+                        String label = c.getString(labelCol);
+                        String val = c.getString(nameCol);
                         SelectChoice selectChoice = new SelectChoice(null, label, val, false);
                         selectChoice.setIndex(index);
                         items.add(selectChoice);
@@ -276,6 +187,20 @@ public class ItemsetDao {
         return items;
     }
 
+    private static String getLanguage(FormController formController) {
+        if (formController.getLanguages() != null && formController.getLanguages().length > 0) {
+            return formController.getLanguage();
+        }
+        return "";
+    }
+
+    private static int getLabelColumnIndex(Cursor c, String language) {
+        // apparently you only need the double quotes in the
+        // column name when creating the column with a : included
+        int langCol = c.getColumnIndex("label" + "::" + language);
+        return langCol == -1 ? c.getColumnIndex("label") : langCol;
+    }
+
     public File getItemsetFile(String mediaFolderPath) {
         return new File(mediaFolderPath + "/itemsets.csv");
     }
@@ -13,6 +13,7 @@ import org.odk.collect.android.storage.StorageSubdirectory;
 import java.math.BigInteger;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
 
 import timber.log.Timber;
 
@@ -124,6 +125,28 @@ public class ItemsetDbAdapter {
         return true;
     }
 
+    /**
+     * Indexes list_name, which every itemset query filters on, and each of the given columns
+     * together with list_name so that cascading selects don't have to scan the whole table.
+     * Columns that aren't in the table are skipped.
+     */
+    public void createIndexes(String pathHash, Collection<String> columns) {
+        String table = DATABASE_TABLE + pathHash;
+        createIndex(table + "_list_name_idx", table, "list_name");
+        for (String column : columns) {
+            createIndex(table + "_" + getMd5FromString(column) + "_idx", table,
+                    "list_name, \"" + column.replace("\"", "\"\"") + "\"");
+        }
+    }
+
+    private void createIndex(String indexName, String table, String indexedColumns) {
+        try {
+            db.execSQL("CREATE INDEX IF NOT EXISTS " + indexName + " ON " + table + " (" + indexedColumns + ")");
+        } catch (SQLException e) {
+            Timber.w(e, "Unable to index %s on %s", indexedColumns, table);
+        }
+    }
+
     public boolean addRow(String tableName, String[] columns, String[] newRow) {
         ContentValues cv = new ContentValues();
 
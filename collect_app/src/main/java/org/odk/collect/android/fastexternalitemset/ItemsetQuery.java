@@ -0,0 +1,274 @@
+package org.odk.collect.android.fastexternalitemset;
+
+import org.javarosa.core.model.FormDef;
+import org.javarosa.core.model.condition.EvaluationContext;
+import org.javarosa.core.model.instance.TreeElement;
+import org.javarosa.core.model.instance.TreeReference;
+import org.javarosa.xpath.XPathNodeset;
+import org.javarosa.xpath.expr.XPathExpression;
+import org.javarosa.xpath.parser.XPathSyntaxException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The SQL selection for the query attribute of a fast external itemset question together with
+ * the already parsed expressions for its arguments. A query like
+ * <pre>instance('cities')/root/item[state=/data/state and (county=/data/county or county='any')]</pre>
+ * becomes <pre>list_name=? and ("state"=? and ("county"=? or "county"=?))</pre>
+ * <p>
+ * The predicate is kept in one parenthesized block after the list name so that "and" binding
+ * more tightly than "or" works the same way in SQL as it does in XPath and every clause is
+ * limited to the question's list. Compiling is done once per question so that showing the
+ * question only has to evaluate the arguments.
+ */
+public class ItemsetQuery {
+
+    private static final String QUOTATION_MARK = "\"";
+    private static final String AND = "and";
+    private static final String OR = "or";
+
+    private final String listName;
+    private final String selection;
+    private final List<XPathExpression> arguments;
+    private final Set<String> columns;
+
+    private ItemsetQuery(String listName, String selection, List<XPathExpression> arguments, Set<String> columns) {
+        this.listName = listName;
+        this.selection = selection;
+        this.arguments = arguments;
+        this.columns = columns;
+    }
+
+    /**
+     * @param nodesetString the query attribute of the question, in the form
+     *                      instance('list_name')/root/item[predicate]
+     */
+    public static ItemsetQuery compile(String nodesetString, XPathParseTool pathParseTool) throws XPathSyntaxException {
+        // parse out the list name, between the first pair of ''
+        int listNameStart = nodesetString.indexOf('\'') + 1;
+        String listName = nodesetString.substring(listNameStart, nodesetString.indexOf('\'', listNameStart));
+
+        StringBuilder selection = new StringBuilder("list_name=?");
+        List<XPathExpression> arguments = new ArrayList<>();
+        Set<String> columns = new LinkedHashSet<>();
+
+        int predicateStart = nodesetString.indexOf('[');
+        int predicateEnd = nodesetString.lastIndexOf(']');
+        if (predicateStart != -1 && predicateEnd > predicateStart) {
+            String predicate = nodesetString.substring(predicateStart + 1, predicateEnd).trim();
+            if (!predicate.isEmpty()) {
+                selection.append(" and (");
+                new PredicateCompiler(predicate, pathParseTool, selection, arguments, columns).compile();
+                selection.append(')');
+            }
+        }
+
+        return new ItemsetQuery(listName, selection.toString(), Collections.unmodifiableList(arguments),
+                Collections.unmodifiableSet(columns));
+    }
+
+    public String getSelection() {
+        return selection;
+    }
+
+    /**
+     * @return the itemset columns that the predicate compares to arguments
+     */
+    public Set<String> getColumns() {
+        return columns;
+    }
+
+    /**
+     * Evaluates the arguments in the context of the question at the given reference.
+     *
+     * @return the arguments for {@link #getSelection()} starting with the list name or null if
+     * an argument doesn't have a value
+     */
+    public String[] getSelectionArgs(FormDef form, TreeReference questionReference) {
+        String[] selectionArgs = new String[arguments.size() + 1];
+        selectionArgs[0] = listName; // first argument is always listname
+
+        if (arguments.isEmpty()) {
+            return selectionArgs;
+        }
+
+        TreeElement treeElement = form.getMainInstance().resolveReference(questionReference);
+        EvaluationContext ec = new EvaluationContext(form.getEvaluationContext(), treeElement.getRef());
+        for (int i = 0; i < arguments.size(); i++) {
+            Object value = arguments.get(i).eval(form.getMainInstance(), ec);
+            if (value == null) {
+                return null;
+            }
+
+            if (value instanceof XPathNodeset) {
+                value = ((XPathNodeset) value).getValAt(0);
+            }
+            selectionArgs[i + 1] = value.toString();
+        }
+        return selectionArgs;
+    }
+
+    /**
+     * Turns a predicate made of column=expression comparisons joined by "and" and "or" and
+     * optionally grouped with parentheses into SQL. "and" and "or" inside quoted strings or
+     * inside the parentheses and brackets of an expression don't separate comparisons.
+     */
+    private static class PredicateCompiler {
+        private final String predicate;
+        private final XPathParseTool pathParseTool;
+        private final StringBuilder selection;
+        private final List<XPathExpression> arguments;
+        private final Set<String> columns;
+
+        private int position;
+        private int openGroups;
+
+        PredicateCompiler(String predicate, XPathParseTool pathParseTool, StringBuilder selection,
+                          List<XPathExpression> arguments, Set<String> columns) {
+            this.predicate = predicate;
+            this.pathParseTool = pathParseTool;
+            this.selection = selection;
+            this.arguments = arguments;
+            this.columns = columns;
+        }
+
+        void compile() throws XPathSyntaxException {
+            while (true) {
+                skipWhitespace();
+                while (position < predicate.length() && predicate.charAt(position) == '(') {
+                    selection.append('(');
+                    openGroups++;
+                    position++;
+                    skipWhitespace();
+                }
+
+                compileComparison();
+
+                skipWhitespace();
+                while (openGroups > 0 && position < predicate.length() && predicate.charAt(position) == ')') {
+                    selection.append(')');
+                    openGroups--;
+                    position++;
+                    skipWhitespace();
+                }
+
+                if (position >= predicate.length()) {
+                    break;
+                } else if (consumeConnector(AND)) {
+                    selection.append(' ').append(AND).append(' ');
+                } else if (consumeConnector(OR)) {
+                    selection.append(' ').append(OR).append(' ');
+                } else {
+                    throw new XPathSyntaxException(predicate);
+                }
+            }
+
+            if (openGroups != 0) {
+                throw new XPathSyntaxException(predicate);
+            }
+        }
+
+        @SuppressWarnings("PMD.AvoidThrowingNewInstanceOfSameException")
+        private void compileComparison() throws XPathSyntaxException {
+            int equals = predicate.indexOf('=', position);
+            if (equals == -1) {
+                throw new XPathSyntaxException(predicate);
+            }
+
+            String column = predicate.substring(position, equals).trim();
+            if (column.isEmpty() || !isColumnName(column)) {
+                throw new XPathSyntaxException(predicate);
+            }
+
+            int argumentStart = equals + 1;
+            position = argumentStart;
+            findArgumentEnd();
+            String argument = predicate.substring(argumentStart, position).trim();
+
+            XPathExpression expression;
+            try {
+                expression = pathParseTool.parseXPath(argument);
+            } catch (XPathSyntaxException e) {
+                throw new XPathSyntaxException(argument);
+            }
+
+            selection
+                    .append(QUOTATION_MARK)
+                    .append(column)
+                    .append(QUOTATION_MARK)
+                    .append("=?");
+            arguments.add(expression);
+            columns.add(column);
+        }
+
+        /**
+         * Moves past the expression on the right of a comparison, stopping at the connector or
+         * group closing parenthesis that follows it.
+         */
+        private void findArgumentEnd() {
+            char quote = 0;
+            int depth = 0;
+            for (; position < predicate.length(); position++) {
+                char c = predicate.charAt(position);
+                if (quote != 0) {
+                    if (c == quote) {
+                        quote = 0;
+                    }
+                } else if (c == '\'' || c == '"') {
+                    quote = c;
+                } else if (c == '(' || c == '[') {
+                    depth++;
+                } else if (c == ')' || c == ']') {
+                    if (depth == 0) {
+                        return;
+                    }
+                    depth--;
+                } else if (depth == 0 && Character.isWhitespace(c) && isConnectorAhead()) {
+                    return;
+                }
+            }
+        }
+
+        private boolean isConnectorAhead() {
+            int start = position;
+            boolean found = consumeConnector(AND) || consumeConnector(OR);
+            position = start;
+            return found;
+        }
+
+        /**
+         * Moves past the connector if it's the next word. Connectors have to be followed by
+         * whitespace so that names like "order" or "android" aren't split.
+         */
+        private boolean consumeConnector(String connector) {
+            skipWhitespace();
+            int end = position + connector.length();
+            if (predicate.startsWith(connector, position) && end < predicate.length()
+                    && Character.isWhitespace(predicate.charAt(end))) {
+                position = end;
+                return true;
+            }
+            return false;
+        }
+
+        private void skipWhitespace() {
+            while (position < predicate.length() && Character.isWhitespace(predicate.charAt(position))) {
+                position++;
+            }
+        }
+
+        private static boolean isColumnName(String column) {
+            for (int i = 0; i < column.length(); i++) {
+                char c = column.charAt(i);
+                if (Character.isWhitespace(c) || c == '!' || c == '<' || c == '>' || c == '"' || c == '(' || c == ')') {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
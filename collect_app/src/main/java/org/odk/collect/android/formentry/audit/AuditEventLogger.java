@@ -299,10 +299,22 @@ public class AuditEventLogger {
         return editing;
     }
 
+    /**
+     * Blocks until the events passed on to the writer so far have been written. Used before the
+     * instance is encrypted so that the audit log is complete. Not to be called on the main thread.
+     */
+    public void awaitWritten() {
+        if (isAuditEnabled()) {
+            writer.awaitWritten();
+        }
+    }
+
     public interface AuditEventWriter {
 
         void writeEvents(List<AuditEvent> auditEvents);
 
         boolean isWriting();
+
+        void awaitWritten();
     }
 }
\ No newline at end of file
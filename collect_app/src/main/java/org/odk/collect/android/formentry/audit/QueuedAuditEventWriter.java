@@ -0,0 +1,227 @@
+package org.odk.collect.android.formentry.audit;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import timber.log.Timber;
+
+import static org.odk.collect.android.formentry.audit.AuditEventCSVLine.toCSVLine;
+
+/**
+ * Appends events to the audit log of one form session from a single background thread.
+ *
+ * The file is opened (and its header updated for the current audit config if needed) the first
+ * time events are written, then kept open and only ever appended to. Each batch of events is
+ * written with one call and synced to the storage device when the form is saved or exited, or
+ * when the last sync was more than {@link #SYNC_INTERVAL_MILLIS} ago.
+ *
+ * At most {@link #MAX_QUEUED_BATCHES} batches wait to be written. While the queue is full
+ * {@link #isWriting()} returns true, so {@link AuditEventLogger} holds on to new events and
+ * passes them on with the next batch.
+ */
+public class QueuedAuditEventWriter implements AuditEventLogger.AuditEventWriter {
+    private static final int MAX_QUEUED_BATCHES = 16;
+    private static final long SYNC_INTERVAL_MILLIS = 5000;
+    private static final long IDLE_THREAD_TIMEOUT_SECONDS = 30;
+
+    private static final String DEFAULT_COLUMNS = "event,node,start,end";
+    private static final String LOCATION_COORDINATES_COLUMNS = ",latitude,longitude,accuracy";
+    private static final String ANSWER_VALUES_COLUMNS = ",old-value,new-value";
+    private static final String USER_COLUMNS = ",user";
+    private static final String CHANGE_REASON_COLUMNS = ",change-reason";
+
+    private final File file;
+    private final boolean isLocationEnabled;
+    private final boolean isTrackingChangesEnabled;
+    private final boolean isUserRequired;
+    private final boolean isTrackChangesReasonEnabled;
+    private final Executor executor;
+    private final AtomicInteger queuedBatches = new AtomicInteger();
+
+    // Only used on the executor's thread
+    private FileChannel channel;
+    private boolean headerChecked;
+    private long lastSyncTime;
+
+    public QueuedAuditEventWriter(@NonNull File file, boolean isLocationEnabled, boolean isTrackingChangesEnabled, boolean isUserRequired, boolean isTrackChangesReasonEnabled) {
+        this(file, isLocationEnabled, isTrackingChangesEnabled, isUserRequired, isTrackChangesReasonEnabled,
+                new ThreadPoolExecutor(0, 1, IDLE_THREAD_TIMEOUT_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>()));
+    }
+
+    QueuedAuditEventWriter(@NonNull File file, boolean isLocationEnabled, boolean isTrackingChangesEnabled, boolean isUserRequired, boolean isTrackChangesReasonEnabled, Executor executor) {
+        this.file = file;
+        this.isLocationEnabled = isLocationEnabled;
+        this.isTrackingChangesEnabled = isTrackingChangesEnabled;
+        this.isUserRequired = isUserRequired;
+        this.isTrackChangesReasonEnabled = isTrackChangesReasonEnabled;
+        this.executor = executor;
+    }
+
+    @Override
+    public void writeEvents(List<AuditEvent> auditEvents) {
+        // Events are turned into CSV on the caller's thread so that the logger can't change
+        // them while they're waiting to be written
+        StringBuilder lines = new StringBuilder();
+        boolean sync = false;
+        boolean close = false;
+        for (AuditEvent auditEvent : auditEvents) {
+            lines.append(toCSVLine(auditEvent, isLocationEnabled, isTrackingChangesEnabled, isTrackChangesReasonEnabled)).append('\n');
+
+            AuditEvent.AuditEventType type = auditEvent.getAuditEventType();
+            sync |= type == AuditEvent.AuditEventType.FORM_SAVE || type == AuditEvent.AuditEventType.FORM_FINALIZE;
+            close |= type == AuditEvent.AuditEventType.FORM_EXIT;
+        }
+
+        byte[] batch = lines.toString().getBytes(StandardCharsets.UTF_8);
+        boolean syncBatch = sync || close;
+        boolean closeAfterBatch = close;
+
+        queuedBatches.incrementAndGet();
+        executor.execute(() -> {
+            try {
+                write(batch, syncBatch, closeAfterBatch);
+            } finally {
+                queuedBatches.decrementAndGet();
+            }
+        });
+    }
+
+    @Override
+    public boolean isWriting() {
+        return queuedBatches.get() >= MAX_QUEUED_BATCHES;
+    }
+
+    /**
+     * Waits for the batches queued so far. The executor runs one task at a time in order, so they
+     * have been written once a task queued after them has run.
+     */
+    @Override
+    public void awaitWritten() {
+        CountDownLatch written = new CountDownLatch(1);
+        executor.execute(written::countDown);
+        try {
+            written.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(byte[] batch, boolean sync, boolean close) {
+        try {
+            if (channel == null) {
+                open();
+            }
+
+            ByteBuffer buffer = ByteBuffer.wrap(batch);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+
+            long now = System.currentTimeMillis();
+            if (sync || now - lastSyncTime >= SYNC_INTERVAL_MILLIS) {
+                channel.force(false);
+                lastSyncTime = now;
+            }
+        } catch (IOException e) {
+            Timber.e(e);
+            close = true;
+        }
+
+        if (close) {
+            closeChannel();
+        }
+    }
+
+    /**
+     * Opens the file for appending, writing the header to a new file or updating the header of
+     * an existing one the first time it's opened in this session.
+     */
+    private void open() throws IOException {
+        boolean newFile = !file.exists() || file.length() == 0;
+        if (!newFile && !headerChecked) {
+            updateHeaderIfNeeded();
+        }
+        headerChecked = true;
+
+        channel = new FileOutputStream(file, true).getChannel();
+        if (newFile) {
+            channel.write(ByteBuffer.wrap((getHeader() + "\n").getBytes(StandardCharsets.UTF_8)));
+        }
+        lastSyncTime = System.currentTimeMillis();
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                Timber.e(e);
+            }
+            channel = null;
+        }
+    }
+
+    private void updateHeaderIfNeeded() throws IOException {
+        File temporaryFile = new File(file.getParentFile(), "temporaryAudit.csv");
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            if (!shouldHeaderBeUpdated(reader.readLine())) {
+                return;
+            }
+
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temporaryFile), StandardCharsets.UTF_8))) {
+                writer.write(getHeader() + "\n");
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    writer.write(line + "\n");
+                }
+            }
+        }
+
+        if (!temporaryFile.renameTo(file)) {
+            throw new IOException("Couldn't replace " + file + " with the updated audit log");
+        }
+    }
+
+    private boolean shouldHeaderBeUpdated(String header) {
+        return header == null
+                || (isLocationEnabled && !header.contains(LOCATION_COORDINATES_COLUMNS))
+                || (isTrackingChangesEnabled && !header.contains(ANSWER_VALUES_COLUMNS))
+                || (isUserRequired && !header.contains(USER_COLUMNS));
+    }
+
+    private String getHeader() {
+        String header = DEFAULT_COLUMNS;
+        if (isLocationEnabled) {
+            header += LOCATION_COORDINATES_COLUMNS;
+        }
+        if (isTrackingChangesEnabled) {
+            header += ANSWER_VALUES_COLUMNS;
+        }
+        if (isUserRequired) {
+            header += USER_COLUMNS;
+        }
+        if (isTrackChangesReasonEnabled) {
+            header += CHANGE_REASON_COLUMNS;
+        }
+        return header;
+    }
+}
@@ -36,6 +36,7 @@ import androidx.annotation.NonNull;
 import androidx.lifecycle.LiveData;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.signature.ObjectKey;
 import com.google.android.material.button.MaterialButton;
 
 import org.jetbrains.annotations.NotNull;
@@ -43,6 +44,7 @@ import org.odk.collect.android.BuildConfig;
 import org.odk.collect.android.R;
 import org.odk.collect.android.audio.AudioButton;
 import org.odk.collect.android.audio.AudioHelper;
+import org.odk.collect.android.injection.DaggerUtils;
 import org.odk.collect.android.listeners.SelectItemClickListener;
 import org.odk.collect.android.utilities.ContentUriProvider;
 import org.odk.collect.android.utilities.FileUtils;
@@ -147,6 +149,8 @@ public class AudioVideoImageTextLabel extends RelativeLayout implements View.OnC
 
             Glide.with(this)
                     .load(imageFile)
+                    .signature(new ObjectKey(imageFile.lastModified()))
+                    .listener(DaggerUtils.getComponent(getContext()).imageCache().getGlideListener())
                     .centerInside()
                     .into(imageView);
 
@@ -8,8 +8,11 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.signature.ObjectKey;
 
 import org.odk.collect.android.R;
+import org.odk.collect.android.injection.DaggerUtils;
+import org.odk.collect.android.utilities.ImageCache;
 import org.odk.collect.android.utilities.QuestionFontSizeUtils;
 
 import java.io.File;
@@ -38,14 +41,19 @@ public class NoButtonsItem extends FrameLayout {
     public void setUpNoButtonsItem(File imageFile, String choiceText, String errorMsg, boolean isInGridView) {
         if (imageFile != null && imageFile.exists()) {
             imageView.setVisibility(View.VISIBLE);
+            ImageCache imageCache = DaggerUtils.getComponent(getContext()).imageCache();
             if (isInGridView) {
                 Glide.with(this)
                         .load(imageFile)
+                        .signature(new ObjectKey(imageFile.lastModified()))
+                        .listener(imageCache.getGlideListener())
                         .fitCenter()
                         .into(imageView);
             } else {
                 Glide.with(this)
                         .load(imageFile)
+                        .signature(new ObjectKey(imageFile.lastModified()))
+                        .listener(imageCache.getGlideListener())
                         .centerInside()
                         .into(imageView);
             }
@@ -4,12 +4,14 @@ import org.jetbrains.annotations.NotNull;
 import org.odk.collect.android.R;
 import org.odk.collect.analytics.Analytics;
 import org.odk.collect.android.application.Collect;
+import org.odk.collect.android.backgroundwork.FormCacheWarmUpManager;
 import org.odk.collect.android.forms.Form;
 import org.odk.collect.android.forms.FormSource;
 import org.odk.collect.android.forms.FormSourceException;
 import org.odk.collect.android.forms.FormsRepository;
 import org.odk.collect.android.forms.MediaFile;
 import org.odk.collect.android.listeners.FormDownloaderListener;
+import org.odk.collect.android.utilities.FileHashCache;
 import org.odk.collect.android.utilities.FileUtils;
 import org.odk.collect.android.utilities.FormNameUtils;
 import org.odk.collect.android.utilities.Validator;
@@ -42,8 +44,10 @@ public class ServerFormDownloader implements FormDownloader {
     private final FormMetadataParser formMetadataParser;
 
     private final Analytics analytics;
+    private final FormCacheWarmUpManager formCacheWarmUpManager;
+    private final FileHashCache fileHashCache;
 
-    public ServerFormDownloader(FormSource formSource, FormsRepository formsRepository, File cacheDir, String formsDirPath, FormMetadataParser formMetadataParser, Analytics analytics) {
+    public ServerFormDownloader(FormSource formSource, FormsRepository formsRepository, File cacheDir, String formsDirPath, FormMetadataParser formMetadataParser, Analytics analytics, FormCacheWarmUpManager formCacheWarmUpManager, FileHashCache fileHashCache) {
         this.formSource = formSource;
         this.cacheDir = cacheDir;
         this.formsDirPath = formsDirPath;
@@ -51,6 +55,8 @@ public class ServerFormDownloader implements FormDownloader {
         this.formMetadataParser = formMetadataParser;
 
         this.analytics = analytics;
+        this.formCacheWarmUpManager = formCacheWarmUpManager;
+        this.fileHashCache = fileHashCache;
     }
 
     @Override
@@ -89,6 +95,9 @@ public class ServerFormDownloader implements FormDownloader {
             if (!result) {
                 throw new FormDownloadException();
             }
+
+            // Parse and cache the form in the background so that opening it the first time is fast
+            formCacheWarmUpManager.scheduleWarmUp();
         } finally {
             try {
                 deleteDirectory(tempDir);
@@ -210,7 +219,7 @@ public class ServerFormDownloader implements FormDownloader {
         if (fileResult == null) {
             Timber.d("The user cancelled (or an exception happened) the download of a form at the very beginning.");
         } else {
-            String md5Hash = FileUtils.getMd5Hash(fileResult.file);
+            String md5Hash = fileHashCache.getMd5Hash(fileResult.file);
             if (md5Hash != null) {
                 formsRepository.deleteByMd5Hash(md5Hash);
             }
@@ -266,7 +275,7 @@ public class ServerFormDownloader implements FormDownloader {
 
         // we've downloaded the file, and we may have renamed it
         // make sure it's not the same as a file we already have
-        Form form = formsRepository.getOneByMd5Hash(FileUtils.getMd5Hash(tempFormFile));
+        Form form = formsRepository.getOneByMd5Hash(fileHashCache.getMd5Hash(tempFormFile));
         if (form != null) {
             // delete the file we just downloaded, because it's a duplicate
             FileUtils.deleteAndReport(tempFormFile);
@@ -395,7 +404,7 @@ public class ServerFormDownloader implements FormDownloader {
                 InputStream mediaFile = formSource.fetchMediaFile(toDownload.getDownloadUrl());
                 writeFile(mediaFile, tempMediaFile, tempDir, stateListener);
             } else {
-                String currentFileHash = FileUtils.getMd5Hash(finalMediaFile);
+                String currentFileHash = fileHashCache.getMd5Hash(finalMediaFile);
                 String downloadFileHash = getMd5HashWithoutPrefix(toDownload.getHash());
 
                 if (currentFileHash != null && downloadFileHash != null && !currentFileHash.contentEquals(downloadFileHash)) {
@@ -23,12 +23,14 @@ import org.odk.collect.android.forms.FormsRepository;
 import org.odk.collect.android.forms.ManifestFile;
 import org.odk.collect.android.forms.MediaFile;
 import org.odk.collect.android.forms.MediaFileRepository;
-import org.odk.collect.android.utilities.FileUtils;
+import org.odk.collect.android.utilities.FileHashCache;
 import org.odk.collect.android.utilities.WebCredentialsUtils;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import timber.log.Timber;
 
@@ -38,15 +40,18 @@ public class ServerFormsDetailsFetcher {
     private final MediaFileRepository mediaFileRepository;
     private final FormSource formSource;
     private final DiskFormsSynchronizer diskFormsSynchronizer;
+    private final FileHashCache fileHashCache;
 
     public ServerFormsDetailsFetcher(FormsRepository formsRepository,
                                      MediaFileRepository mediaFileRepository,
                                      FormSource formSource,
-                                     DiskFormsSynchronizer diskFormsSynchronizer) {
+                                     DiskFormsSynchronizer diskFormsSynchronizer,
+                                     FileHashCache fileHashCache) {
         this.formsRepository = formsRepository;
         this.mediaFileRepository = mediaFileRepository;
         this.formSource = formSource;
         this.diskFormsSynchronizer = diskFormsSynchronizer;
+        this.fileHashCache = fileHashCache;
     }
 
     public void updateUrl(String url) {
@@ -127,8 +132,14 @@ public class ServerFormsDetailsFetcher {
         List<File> localMediaFiles = mediaFileRepository.getAll(formId, formVersion);
 
         if (localMediaFiles != null) {
+            // Each local file is hashed once rather than once for every file in the manifest
+            Set<String> localMediaFileHashes = new HashSet<>();
+            for (File localMediaFile : localMediaFiles) {
+                localMediaFileHashes.add(fileHashCache.getMd5Hash(localMediaFile));
+            }
+
             for (MediaFile newMediaFile : newMediaFiles) {
-                if (!isMediaFileAlreadyDownloaded(localMediaFiles, newMediaFile)) {
+                if (!isMediaFileAlreadyDownloaded(localMediaFileHashes, newMediaFile)) {
                     return true;
                 }
             }
@@ -139,7 +150,7 @@ public class ServerFormsDetailsFetcher {
         return false;
     }
 
-    private static boolean isMediaFileAlreadyDownloaded(List<File> localMediaFiles, MediaFile newMediaFile) {
+    private static boolean isMediaFileAlreadyDownloaded(Set<String> localMediaFileHashes, MediaFile newMediaFile) {
         // TODO Zip files are ignored we should find a way to take them into account too
         if (newMediaFile.getFilename().endsWith(".zip")) {
             return true;
@@ -147,12 +158,7 @@ public class ServerFormsDetailsFetcher {
 
         String mediaFileHash = newMediaFile.getHash();
         mediaFileHash = mediaFileHash.substring(4, mediaFileHash.length());
-        for (File localMediaFile : localMediaFiles) {
-            if (mediaFileHash.equals(FileUtils.getMd5Hash(localMediaFile))) {
-                return true;
-            }
-        }
-        return false;
+        return localMediaFileHashes.contains(mediaFileHash);
     }
 
     private String getMd5HashWithoutPrefix(String hash) {
@@ -11,6 +11,12 @@ import java.util.List;
 
 public class FormUtils {
 
+    /**
+     * Held while the global {@link ReferenceManager} is set up for a form and that form is
+     * loaded or parsed so that this isn't changed from under it by something loading another form.
+     */
+    public static final Object REFERENCE_MANAGER_LOCK = new Object();
+
     private FormUtils() {
         
     }
@@ -27,6 +27,7 @@ import androidx.loader.content.CursorLoader;
 
 import org.odk.collect.android.R;
 import org.odk.collect.android.adapters.FormListAdapter;
+import org.odk.collect.android.backgroundwork.FormCacheWarmUpManager;
 import org.odk.collect.android.dao.FormsDao;
 import org.odk.collect.android.forms.FormsRepository;
 import org.odk.collect.android.fragments.dialogs.ProgressDialogFragment;
@@ -38,6 +39,7 @@ import org.odk.collect.android.provider.FormsProviderAPI.FormsColumns;
 import org.odk.collect.android.tasks.DeleteFormsTask;
 import org.odk.collect.android.tasks.DiskSyncTask;
 import org.odk.collect.android.utilities.DialogUtils;
+import org.odk.collect.android.utilities.FileHashCache;
 import org.odk.collect.android.utilities.ToastUtils;
 
 import javax.inject.Inject;
@@ -63,6 +65,12 @@ public class BlankFormListFragment extends FormListFragment implements DiskSyncL
     @Inject
     InstancesRepository instancesRepository;
 
+    @Inject
+    FormCacheWarmUpManager formCacheWarmUpManager;
+
+    @Inject
+    FileHashCache fileHashCache;
+
     @Override
     public void onAttach(@NonNull Context context) {
         super.onAttach(context);
@@ -79,7 +87,7 @@ public class BlankFormListFragment extends FormListFragment implements DiskSyncL
 
         if (backgroundTasks == null) {
             backgroundTasks = new BackgroundTasks();
-            backgroundTasks.diskSyncTask = new DiskSyncTask();
+            backgroundTasks.diskSyncTask = new DiskSyncTask(formCacheWarmUpManager, fileHashCache);
             backgroundTasks.diskSyncTask.setDiskSyncListener(this);
             backgroundTasks.diskSyncTask.execute((Void[]) null);
         }
@@ -15,6 +15,7 @@
 package org.odk.collect.android.gdrive;
 
 import android.database.Cursor;
+import android.text.TextUtils;
 
 import androidx.annotation.NonNull;
 
@@ -58,6 +59,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -67,6 +69,13 @@ import timber.log.Timber;
 
 import static org.odk.collect.android.javarosawrapper.FormController.INSTANCE_ID;
 
+/**
+ * Uploads instances to Google Sheets. Instances are uploaded in two steps so that a batch of
+ * instances costs as few requests as possible: {@link #queueSubmission(Instance, String)} uploads
+ * the media files and prepares the rows of each instance, then {@link #uploadQueuedSubmissions()}
+ * appends all the rows prepared for a sheet with one request. The header row of each sheet is
+ * only read once per batch, and only that row is requested rather than the whole sheet.
+ */
 public class InstanceGoogleSheetsUploader extends InstanceUploader {
     private static final String PARENT_KEY = "PARENT_KEY";
     private static final String KEY = "KEY";
@@ -81,13 +90,42 @@ public class InstanceGoogleSheetsUploader extends InstanceUploader {
 
     private Spreadsheet spreadsheet;
 
+    // Header rows of the sheets used in this batch, by spreadsheet id and sheet title
+    private final Map<String, List<Object>> sheetHeaders = new HashMap<>();
+    private final Set<String> spreadsheetsWithLocaleChecked = new HashSet<>();
+
+    // Rows waiting to be appended, in the order their sheets were first used
+    private final Map<String, QueuedRows> queuedRows = new LinkedHashMap<>();
+    private final List<Instance> queuedInstances = new ArrayList<>();
+
     public InstanceGoogleSheetsUploader(DriveApi driveApi, SheetsApi sheetsApi) {
         driveHelper = new DriveHelper(driveApi);
         sheetsHelper = new SheetsHelper(sheetsApi);
     }
 
+    /**
+     * Uploads the instance on its own. Any instances queued before are uploaded along with it.
+     */
     @Override
     public String uploadOneSubmission(Instance instance, String spreadsheetUrl) throws UploadException {
+        queueSubmission(instance, spreadsheetUrl);
+
+        UploadException failure = uploadQueuedSubmissions().get(instance.getId());
+        if (failure != null) {
+            throw failure;
+        }
+
+        // Google Sheets can't provide a custom success message
+        return null;
+    }
+
+    /**
+     * Uploads the instance's media files and prepares its rows to be appended by
+     * {@link #uploadQueuedSubmissions()}. Header rows of new sheets are written straight away.
+     *
+     * If the instance can't be uploaded its failed status is saved and nothing is queued for it.
+     */
+    public void queueSubmission(Instance instance, String spreadsheetUrl) throws UploadException {
         if (new FormsDao().isFormEncrypted(instance.getJrFormId(), instance.getJrVersion())) {
             saveFailedStatusToDatabase(instance);
             throw new UploadException(TranslationHandler.getString(Collect.getInstance(), R.string.google_sheets_encrypted_message));
@@ -112,7 +150,9 @@ public class InstanceGoogleSheetsUploader extends InstanceUploader {
 
             TreeElement instanceElement = getInstanceElement(formFilePath, instanceFile);
             setUpSpreadsheet(spreadsheetUrl);
-            sheetsHelper.updateSpreadsheetLocaleForNewSpreadsheet(spreadsheet.getSpreadsheetId(), spreadsheet.getSheets().get(0).getProperties().getTitle());
+            if (spreadsheetsWithLocaleChecked.add(spreadsheet.getSpreadsheetId())) {
+                updateSpreadsheetLocaleForNewSpreadsheet();
+            }
             if (hasRepeatableGroups(instanceElement)) {
                 createSheetsIfNeeded(instanceElement);
             }
@@ -120,7 +160,12 @@ public class InstanceGoogleSheetsUploader extends InstanceUploader {
             if (key == null) {
                 key = PropertyUtils.genUUID();
             }
-            insertRows(instance, instanceElement, null, key, instanceFile, spreadsheet.getSheets().get(0).getProperties().getTitle());
+
+            // Rows are only queued once the whole instance has been prepared so that a failure
+            // part way through doesn't leave some of its rows to be appended
+            Map<String, List<List<Object>>> rowsBySheet = new LinkedHashMap<>();
+            insertRows(instance, instanceElement, null, key, instanceFile, spreadsheet.getSheets().get(0).getProperties().getTitle(), rowsBySheet);
+            queueRows(instance, rowsBySheet);
         } catch (UploadException e) {
             saveFailedStatusToDatabase(instance);
             throw e;
@@ -128,10 +173,85 @@ public class InstanceGoogleSheetsUploader extends InstanceUploader {
             saveFailedStatusToDatabase(instance);
             throw new UploadException(getErrorMessageFromGoogleJsonResponseException(e));
         }
+    }
 
-        saveSuccessStatusToDatabase(instance);
-        // Google Sheets can't provide a custom success message
-        return null;
+    /**
+     * Appends the rows of all the queued instances with one request per sheet and saves the
+     * status of each instance.
+     *
+     * If appending to a sheet fails, nothing more is appended to that spreadsheet and every
+     * instance with rows for it is marked as failed. Appends can't be undone, so the failure of an
+     * instance that already has rows in other sheets says which ones: sending it again adds
+     * those rows again.
+     *
+     * @return the failures, by instance database id. Instances that aren't included were uploaded.
+     */
+    public Map<Long, UploadException> uploadQueuedSubmissions() {
+        Map<Long, UploadException> failures = new HashMap<>();
+        Map<String, UploadException> failedSpreadsheets = new HashMap<>();
+        Map<Long, List<String>> appendedSheets = new HashMap<>();
+
+        for (QueuedRows rows : queuedRows.values()) {
+            UploadException failure = failedSpreadsheets.get(rows.spreadsheetId);
+            if (failure == null) {
+                try {
+                    sheetsHelper.insertRow(rows.spreadsheetId, rows.sheetTitle, new ValueRange().setValues(rows.rows));
+                } catch (GoogleJsonResponseException e) {
+                    failure = new UploadException(getErrorMessageFromGoogleJsonResponseException(e));
+                } catch (IOException e) {
+                    failure = new UploadException(e);
+                }
+
+                if (failure != null) {
+                    failedSpreadsheets.put(rows.spreadsheetId, failure);
+                }
+            }
+
+            for (Instance instance : rows.instances) {
+                if (failure != null) {
+                    failures.put(instance.getId(), failure);
+                } else {
+                    appendedSheets.computeIfAbsent(instance.getId(), id -> new ArrayList<>()).add(rows.sheetTitle);
+                }
+            }
+        }
+
+        for (Map.Entry<Long, UploadException> entry : failures.entrySet()) {
+            List<String> sheetTitles = appendedSheets.get(entry.getKey());
+            if (sheetTitles != null) {
+                String message = TranslationHandler.getString(Collect.getInstance(), R.string.google_sheets_partial_upload,
+                        TextUtils.join(", ", sheetTitles), entry.getValue().getDisplayMessage());
+                Timber.w("Instance %d was partially uploaded to %s", entry.getKey(), sheetTitles);
+                entry.setValue(new UploadException(message));
+            }
+        }
+
+        for (Instance instance : queuedInstances) {
+            if (failures.containsKey(instance.getId())) {
+                saveFailedStatusToDatabase(instance);
+            } else {
+                saveSuccessStatusToDatabase(instance);
+            }
+        }
+
+        queuedRows.clear();
+        queuedInstances.clear();
+        return failures;
+    }
+
+    private void queueRows(Instance instance, Map<String, List<List<Object>>> rowsBySheet) {
+        String spreadsheetId = spreadsheet.getSpreadsheetId();
+        for (Map.Entry<String, List<List<Object>>> entry : rowsBySheet.entrySet()) {
+            String sheetKey = getSheetKey(entry.getKey());
+            QueuedRows rows = queuedRows.get(sheetKey);
+            if (rows == null) {
+                rows = new QueuedRows(spreadsheetId, entry.getKey());
+                queuedRows.put(sheetKey, rows);
+            }
+            rows.rows.addAll(entry.getValue());
+            rows.instances.add(instance);
+        }
+        queuedInstances.add(instance);
     }
 
     private String getErrorMessageFromGoogleJsonResponseException(GoogleJsonResponseException e) {
@@ -160,14 +280,14 @@ public class InstanceGoogleSheetsUploader extends InstanceUploader {
                 : urlString;
     }
 
-    private void insertRows(Instance instance, TreeElement element, String parentKey, String key, File instanceFile, String sheetTitle)
-            throws UploadException {
-        insertRow(instance, element, parentKey, key, instanceFile, StringUtils.ellipsizeBeginning(sheetTitle));
+    private void insertRows(Instance instance, TreeElement element, String parentKey, String key, File instanceFile, String sheetTitle,
+                            Map<String, List<List<Object>>> rowsBySheet) throws UploadException {
+        insertRow(instance, element, parentKey, key, instanceFile, StringUtils.ellipsizeBeginning(sheetTitle), rowsBySheet);
 
         int repeatIndex = 0;
         for (TreeElement child : getChildElements(element, true)) {
             if (child.isRepeatable() && child.getMultiplicity() != TreeReference.INDEX_TEMPLATE) {
-                insertRows(instance, child, key, getKeyBasedOnParentKey(key, child.getName(), repeatIndex++), instanceFile, getElementTitle(child));
+                insertRows(instance, child, key, getKeyBasedOnParentKey(key, child.getName(), repeatIndex++), instanceFile, getElementTitle(child), rowsBySheet);
             }
             if (child.getMultiplicity() == TreeReference.INDEX_TEMPLATE) {
                 repeatIndex = 0;
@@ -182,23 +302,34 @@ public class InstanceGoogleSheetsUploader extends InstanceUploader {
                 + "[" + (repeatIndex + 1) + "]";
     }
 
-    private void insertRow(Instance instance, TreeElement element, String parentKey, String key, File instanceFile, String sheetTitle)
-            throws UploadException {
+    /**
+     * Prepares the row for the element and adds it to rowsBySheet. The header row of the sheet
+     * is written or filled in first if needed, since rows are matched to columns by header.
+     */
+    private void insertRow(Instance instance, TreeElement element, String parentKey, String key, File instanceFile, String sheetTitle,
+                           Map<String, List<List<Object>>> rowsBySheet) throws UploadException {
         try {
-            List<List<Object>> sheetCells = getSheetCells(sheetTitle);
-            boolean newSheet = sheetCells == null || sheetCells.isEmpty();
+            List<Object> headers = getSheetHeaders(sheetTitle);
+            boolean newSheet = headers.isEmpty();
             List<Object> columnTitles = getColumnTitles(element, newSheet);
             ensureNumberOfColumnsIsValid(columnTitles.size());
 
             if (!newSheet) { // we are editing an existed sheet
-                if (isAnyColumnHeaderEmpty(sheetCells.get(0))) {
+                if (isAnyColumnHeaderEmpty(headers)) {
                     // Insert a header row again to fill empty headers
                     sheetsHelper.updateRow(spreadsheet.getSpreadsheetId(), sheetTitle + "!A1",
                             new ValueRange().setValues(Collections.singletonList(columnTitles)));
-                    sheetCells = getSheetCells(sheetTitle); // read sheet cells again to update
+
+                    // The update only overwrites as many cells as there are column titles
+                    List<Object> updatedHeaders = new ArrayList<>(columnTitles);
+                    for (int i = columnTitles.size(); i < headers.size(); i++) {
+                        updatedHeaders.add(headers.get(i));
+                    }
+                    headers = updatedHeaders;
+                    sheetHeaders.put(getSheetKey(sheetTitle), headers);
                 }
-                disallowMissingColumns(sheetCells.get(0), columnTitles);
-                addAltitudeAndAccuracyTitles(sheetCells.get(0), columnTitles);
+                disallowMissingColumns(headers, columnTitles);
+                addAltitudeAndAccuracyTitles(headers, columnTitles);
                 ensureNumberOfColumnsIsValid(columnTitles.size());  // Call again to ensure valid number of columns
 
             } else { // new sheet
@@ -208,14 +339,19 @@ public class InstanceGoogleSheetsUploader extends InstanceUploader {
                 }
                 sheetsHelper.insertRow(spreadsheet.getSpreadsheetId(), sheetTitle,
                         new ValueRange().setValues(Collections.singletonList(columnTitles)));
-                sheetCells = getSheetCells(sheetTitle); // read sheet cells again to update
+                headers = new ArrayList<>(columnTitles);
+                sheetHeaders.put(getSheetKey(sheetTitle), headers);
             }
 
             HashMap<String, String> answers = getAnswers(instance, element, columnTitles, instanceFile, parentKey, key);
 
             if (shouldRowBeInserted(answers)) {
-                sheetsHelper.insertRow(spreadsheet.getSpreadsheetId(), sheetTitle,
-                        new ValueRange().setValues(Collections.singletonList(prepareListOfValues(sheetCells.get(0), columnTitles, answers))));
+                List<List<Object>> rows = rowsBySheet.get(sheetTitle);
+                if (rows == null) {
+                    rows = new ArrayList<>();
+                    rowsBySheet.put(sheetTitle, rows);
+                }
+                rows.add(prepareListOfValues(headers, columnTitles, answers));
             }
         } catch (GoogleJsonResponseException e) {
             throw new UploadException(getErrorMessageFromGoogleJsonResponseException(e));
@@ -318,12 +454,19 @@ public class InstanceGoogleSheetsUploader extends InstanceUploader {
         Set<String> sheetTitles = getSheetTitles(element);
 
         try {
+            boolean sheetAdded = false;
             for (String sheetTitle : sheetTitles) {
                 if (!doesSheetExist(sheetTitle)) {
                     sheetsHelper.addSheet(spreadsheet.getSpreadsheetId(), sheetTitle);
+                    sheetAdded = true;
                 }
             }
-            spreadsheet = sheetsHelper.getSpreadsheet(spreadsheet.getSpreadsheetId());
+
+            if (sheetAdded) {
+                String spreadsheetUrl = spreadsheet.getSpreadsheetUrl();
+                spreadsheet = sheetsHelper.getSpreadsheet(spreadsheet.getSpreadsheetId());
+                spreadsheet.setSpreadsheetUrl(spreadsheetUrl);
+            }
         } catch (IOException e) {
             throw new UploadException(e);
         }
@@ -541,8 +684,18 @@ public class InstanceGoogleSheetsUploader extends InstanceUploader {
         return list;
     }
 
-    private List<List<Object>> getSheetCells(String sheetTitle) throws IOException {
-        return sheetsHelper.getSheetCells(spreadsheet.getSpreadsheetId(), sheetTitle);
+    private List<Object> getSheetHeaders(String sheetTitle) throws IOException {
+        String sheetKey = getSheetKey(sheetTitle);
+        List<Object> headers = sheetHeaders.get(sheetKey);
+        if (headers == null) {
+            headers = sheetsHelper.getSheetHeaders(spreadsheet.getSpreadsheetId(), sheetTitle);
+            sheetHeaders.put(sheetKey, headers);
+        }
+        return headers;
+    }
+
+    private String getSheetKey(String sheetTitle) {
+        return spreadsheet.getSpreadsheetId() + "/" + sheetTitle;
     }
 
     private boolean isAnyColumnHeaderEmpty(List<Object> columnHeaders) {
@@ -554,6 +707,19 @@ public class InstanceGoogleSheetsUploader extends InstanceUploader {
         return false;
     }
 
+    // Same as SheetsHelper#updateSpreadsheetLocaleForNewSpreadsheet but reads the header row
+    // through the cache, since it's needed again to insert the first row
+    private void updateSpreadsheetLocaleForNewSpreadsheet() {
+        try {
+            String mainSheetTitle = StringUtils.ellipsizeBeginning(spreadsheet.getSheets().get(0).getProperties().getTitle());
+            if (getSheetHeaders(mainSheetTitle).isEmpty()) {
+                sheetsHelper.updateSpreadsheetLocale(spreadsheet.getSpreadsheetId());
+            }
+        } catch (IOException e) {
+            Timber.w(e);
+        }
+    }
+
     private void setUpSpreadsheet(String urlString) throws UploadException, GoogleJsonResponseException {
         if (spreadsheet == null || spreadsheet.getSpreadsheetUrl() == null || !urlString.equals(spreadsheet.getSpreadsheetUrl())) {
             try {
@@ -602,4 +768,16 @@ public class InstanceGoogleSheetsUploader extends InstanceUploader {
                 .matcher(answer)
                 .matches();
     }
+
+    private static class QueuedRows {
+        final String spreadsheetId;
+        final String sheetTitle;
+        final List<List<Object>> rows = new ArrayList<>();
+        final Set<Instance> instances = new HashSet<>();
+
+        QueuedRows(String spreadsheetId, String sheetTitle) {
+            this.spreadsheetId = spreadsheetId;
+            this.sheetTitle = sheetTitle;
+        }
+    }
 }
@@ -28,7 +28,9 @@ import org.odk.collect.android.upload.UploadException;
 import org.odk.collect.android.utilities.InstanceUploaderUtils;
 import org.odk.collect.android.utilities.TranslationHandler;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import timber.log.Timber;
 
@@ -57,6 +59,7 @@ public class InstanceGoogleSheetsUploaderTask extends InstanceUploaderTask {
         final Outcome outcome = new Outcome();
 
         List<Instance> instancesToUpload = uploader.getInstancesFromIds(instanceIdsToUpload);
+        List<Instance> queuedInstances = new ArrayList<>();
 
         for (int i = 0; i < instancesToUpload.size(); i++) {
             Instance instance = instancesToUpload.get(i);
@@ -64,7 +67,7 @@ public class InstanceGoogleSheetsUploaderTask extends InstanceUploaderTask {
             if (isCancelled()) {
                 outcome.messagesByInstanceId.put(instance.getId().toString(),
                         TranslationHandler.getString(Collect.getInstance(), R.string.instance_upload_cancelled));
-                return outcome;
+                break;
             }
 
             publishProgress(i + 1, instancesToUpload.size());
@@ -81,10 +84,8 @@ public class InstanceGoogleSheetsUploaderTask extends InstanceUploaderTask {
                 try {
                     String destinationUrl = uploader.getUrlToSubmitTo(instance, null, null, preferencesDataSourceProvider.getGeneralPreferences().getString(KEY_GOOGLE_SHEETS_URL));
                     if (InstanceUploaderUtils.doesUrlRefersToGoogleSheetsFile(destinationUrl)) {
-                        uploader.uploadOneSubmission(instance, destinationUrl);
-                        outcome.messagesByInstanceId.put(instance.getId().toString(), DEFAULT_SUCCESSFUL_TEXT);
-
-                        analytics.logEvent(SUBMISSION, "HTTP-Sheets", Collect.getFormIdentifierHash(instance.getJrFormId(), instance.getJrVersion()));
+                        uploader.queueSubmission(instance, destinationUrl);
+                        queuedInstances.add(instance);
                     } else {
                         outcome.messagesByInstanceId.put(instance.getId().toString(), SPREADSHEET_UPLOADED_TO_GOOGLE_DRIVE);
                     }
@@ -95,6 +96,20 @@ public class InstanceGoogleSheetsUploaderTask extends InstanceUploaderTask {
                 }
             }
         }
+
+        // Rows are appended for all the instances at once, even if the upload was cancelled
+        // part way, so the instances already prepared aren't left out
+        Map<Long, UploadException> failures = uploader.uploadQueuedSubmissions();
+        for (Instance instance : queuedInstances) {
+            UploadException failure = failures.get(instance.getId());
+            if (failure != null) {
+                Timber.d(failure);
+                outcome.messagesByInstanceId.put(instance.getId().toString(), failure.getDisplayMessage());
+            } else {
+                outcome.messagesByInstanceId.put(instance.getId().toString(), DEFAULT_SUCCESSFUL_TEXT);
+                analytics.logEvent(SUBMISSION, "HTTP-Sheets", Collect.getFormIdentifierHash(instance.getJrFormId(), instance.getJrVersion()));
+            }
+        }
         return outcome;
     }
 }
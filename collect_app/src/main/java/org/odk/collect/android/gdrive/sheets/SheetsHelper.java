@@ -92,29 +92,34 @@ public class SheetsHelper {
                return;
            }
 
-           SpreadsheetProperties sheetProperties = new SpreadsheetProperties()
-                   .setLocale("en_GB");
-
-           List<Request> requests = new ArrayList<>();
-           requests.add(
-                   new Request().setUpdateSpreadsheetProperties(
-                           new UpdateSpreadsheetPropertiesRequest()
-                                   .setProperties(sheetProperties)
-                                   .setFields("locale")));
-
-           sheetsAPI.batchUpdate(spreadsheetId, requests);
+           updateSpreadsheetLocale(spreadsheetId);
         } catch (IOException e) {
             Timber.w(e);
         }
     }
 
+    public void updateSpreadsheetLocale(String spreadsheetId) throws IOException {
+        SpreadsheetProperties sheetProperties = new SpreadsheetProperties()
+                .setLocale("en_GB");
+
+        List<Request> requests = new ArrayList<>();
+        requests.add(
+                new Request().setUpdateSpreadsheetProperties(
+                        new UpdateSpreadsheetPropertiesRequest()
+                                .setProperties(sheetProperties)
+                                .setFields("locale")));
+
+        sheetsAPI.batchUpdate(spreadsheetId, requests);
+    }
+
     public boolean isNewSpreadsheet(String spreadsheetId, String mainSheetTitle) throws IOException {
-        List<List<Object>> sheetCells = getSheetCells(spreadsheetId, StringUtils.ellipsizeBeginning(mainSheetTitle));
-        return sheetCells == null || sheetCells.isEmpty();
+        List<List<Object>> headerCells = sheetsAPI.getSpreadsheet(spreadsheetId, getHeaderRange(StringUtils.ellipsizeBeginning(mainSheetTitle))).getValues();
+        return headerCells == null || headerCells.isEmpty();
     }
 
     /**
-     * Inserts a new row in the given sheet of the spreadsheet
+     * Appends the rows in the given value range to the end of the given sheet of the spreadsheet
+     * with one request
      */
     public void insertRow(String spreadsheetId, String sheetName, ValueRange row) throws IOException {
         if (row == null) {
@@ -141,20 +146,25 @@ public class SheetsHelper {
     }
 
     /**
-     * Fetches the spreadsheet with the provided spreadsheetId
-     * <p>
-     * get(sheetId, range) method requires two parameters
-     * <p>
-     * since we want to search the whole sheet so we provide only the sheet name as range
+     * Fetches the first row of the given sheet, which holds the column headers. Only that row
+     * is requested so checking the headers doesn't download every row submitted so far.
      * <p>
-     * range is in A1 notation
-     * eg. Sheet1!A1:G7
+     * Returns an empty list if the sheet has no cells yet.
      * <p>
      * For more info   :   https://developers.google.com/sheets/api/reference/rest/
      */
-    public List<List<Object>> getSheetCells(String spreadsheetId, String sheetName) throws IOException {
-        ValueRange response = sheetsAPI.getSpreadsheet(spreadsheetId, sheetName);
-        return response.getValues();
+    public List<Object> getSheetHeaders(String spreadsheetId, String sheetName) throws IOException {
+        ValueRange response = sheetsAPI.getSpreadsheet(spreadsheetId, getHeaderRange(sheetName));
+        List<List<Object>> cells = response.getValues();
+        return cells == null || cells.isEmpty() ? new ArrayList<>() : cells.get(0);
+    }
+
+    /**
+     * Returns the A1 notation for the first row of the sheet. The sheet name is quoted so names
+     * with spaces or other special characters are still read as one name.
+     */
+    private static String getHeaderRange(String sheetName) {
+        return "'" + sheetName.replace("'", "''") + "'!1:1";
     }
 
     /**
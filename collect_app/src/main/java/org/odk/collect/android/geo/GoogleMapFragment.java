@@ -89,6 +89,7 @@ public class GoogleMapFragment extends SupportMapFragment implements
     private PointListener gpsLocationListener;
     private FeatureListener featureClickListener;
     private FeatureListener dragEndListener;
+    private ViewportListener viewportChangedListener;
 
     private LocationClient locationClient;
     private boolean clientWantsLocationUpdates;
@@ -131,6 +132,11 @@ public class GoogleMapFragment extends SupportMapFragment implements
             map.setOnMarkerClickListener(this);
             map.setOnPolylineClickListener(this);
             map.setOnMarkerDragListener(this);
+            map.setOnCameraIdleListener(() -> {
+                if (viewportChangedListener != null) {
+                    viewportChangedListener.onViewportChanged();
+                }
+            });
             map.getUiSettings().setCompassEnabled(true);
             // Don't show the blue dot on the map; we'll draw crosshairs instead.
             map.setMyLocationEnabled(false);
@@ -242,6 +248,18 @@ public class GoogleMapFragment extends SupportMapFragment implements
         }
     }
 
+    @Override public @Nullable MapBounds getViewport() {
+        if (map == null) {  // during Robolectric tests, map will be null
+            return null;
+        }
+        LatLngBounds bounds = map.getProjection().getVisibleRegion().latLngBounds;
+        if (bounds.southwest.equals(bounds.northeast)) {
+            return null;  // the map view hasn't been laid out yet
+        }
+        return MapBounds.fromEdges(bounds.southwest.latitude, bounds.southwest.longitude,
+            bounds.northeast.latitude, bounds.northeast.longitude);
+    }
+
     @Override public int addMarker(MapPoint point, boolean draggable, @IconAnchor String iconAnchor) {
         int featureId = nextFeatureId++;
         features.put(featureId, new MarkerFeature(map, point, draggable, iconAnchor));
@@ -321,6 +339,10 @@ public class GoogleMapFragment extends SupportMapFragment implements
         dragEndListener = listener;
     }
 
+    @Override public void setViewportChangedListener(@Nullable ViewportListener listener) {
+        viewportChangedListener = listener;
+    }
+
     @Override public void setGpsLocationListener(@Nullable PointListener listener) {
         gpsLocationListener = listener;
     }
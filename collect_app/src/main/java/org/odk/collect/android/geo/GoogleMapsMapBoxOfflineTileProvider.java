@@ -45,6 +45,8 @@ public class GoogleMapsMapBoxOfflineTileProvider implements TileProvider, Closea
 
     private SQLiteDatabase database;
 
+    private final String cacheKey;
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -54,6 +56,7 @@ public class GoogleMapsMapBoxOfflineTileProvider implements TileProvider, Closea
     }
 
     public GoogleMapsMapBoxOfflineTileProvider(String pathToFile) {
+        this.cacheKey = TileCache.getSourceKey(new File(pathToFile));
         int flags = SQLiteDatabase.OPEN_READONLY | SQLiteDatabase.NO_LOCALIZED_COLLATORS;
         this.database = SQLiteDatabase.openDatabase(pathToFile, null, flags);
         this.calculateZoomConstraints();
@@ -68,22 +71,9 @@ public class GoogleMapsMapBoxOfflineTileProvider implements TileProvider, Closea
     public Tile getTile(int x, int y, int z) {
         Tile tile = NO_TILE;
         if (this.isZoomLevelAvailable(z) && this.isDatabaseAvailable()) {
-            String[] projection = {
-                    "tile_data"
-            };
-            int row = (int) (Math.pow(2, z) - y) - 1;
-            String predicate = "tile_row = ? AND tile_column = ? AND zoom_level = ?";
-            String[] values = {
-                    String.valueOf(row), String.valueOf(x), String.valueOf(z)
-            };
-            Cursor c = this.database.query("tiles", projection, predicate, values, null, null,
-                    null);
-            if (c != null) {
-                c.moveToFirst();
-                if (!c.isAfterLast()) {
-                    tile = new Tile(256, 256, c.getBlob(0));
-                }
-                c.close();
+            byte[] data = MbtilesFile.readTile(this.database, this.cacheKey, z, x, y);
+            if (data != null) {
+                tile = new Tile(256, 256, data);
             }
         }
         return tile;
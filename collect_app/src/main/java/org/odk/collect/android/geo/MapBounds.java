@@ -0,0 +1,56 @@
+package org.odk.collect.android.geo;
+
+import java.util.Locale;
+
+/**
+ * A box of latitudes and longitudes, such as the region shown in a map view.
+ * If the box crosses the antimeridian, west is greater than east.
+ */
+public class MapBounds {
+    /** The whole world, as far as Web Mercator maps can show it. */
+    public static final MapBounds WORLD = new MapBounds(-90, -180, 90, 180);
+
+    public final double south;
+    public final double west;
+    public final double north;
+    public final double east;
+
+    public MapBounds(double south, double west, double north, double east) {
+        this.south = south;
+        this.west = west;
+        this.north = north;
+        this.east = east;
+    }
+
+    /**
+     * Creates a MapBounds from the edges reported by a map SDK, some of which
+     * report longitudes beyond +/-180 when the viewport crosses the antimeridian.
+     */
+    public static MapBounds fromEdges(double south, double west, double north, double east) {
+        if (east - west >= 360) {
+            return new MapBounds(south, -180, north, 180);
+        }
+        return new MapBounds(south, wrapLongitude(west), north, wrapLongitude(east));
+    }
+
+    private static double wrapLongitude(double lon) {
+        return lon >= -180 && lon <= 180 ? lon : ((lon + 180) % 360 + 360) % 360 - 180;
+    }
+
+    public boolean crossesAntimeridian() {
+        return west > east;
+    }
+
+    public boolean contains(MapPoint point) {
+        if (point.lat < south || point.lat > north) {
+            return false;
+        }
+        return crossesAntimeridian()
+            ? point.lon >= west || point.lon <= east
+            : point.lon >= west && point.lon <= east;
+    }
+
+    @Override public String toString() {
+        return String.format(Locale.US, "MapBounds(%+.6f, %+.6f, %+.6f, %+.6f)", south, west, north, east);
+    }
+}
@@ -117,6 +117,12 @@ public interface MapFragment {
      */
     void zoomToBoundingBox(Iterable<MapPoint> points, double scaleFactor, boolean animate);
 
+    /**
+     * Gets the region of the world currently shown in the map view, or null if
+     * the map view hasn't been laid out yet.
+     */
+    @Nullable MapBounds getViewport();
+
     /**
      * Adds a marker to the map at the given location.  If draggable is true,
      * the user will be able to drag the marker to change its location.
@@ -171,6 +177,12 @@ public interface MapFragment {
     /** Sets or clears the callback for when a drag is completed. */
     void setDragEndListener(@Nullable FeatureListener listener);
 
+    /**
+     * Sets or clears the callback for when the viewport has settled after
+     * being panned or zoomed, either by the user or by one of the methods above.
+     */
+    void setViewportChangedListener(@Nullable ViewportListener listener);
+
     /**
      * Enables/disables GPS tracking.  While enabled, the GPS location is shown
      * on the map, the first GPS fix will trigger any pending callbacks set by
@@ -216,4 +228,8 @@ public interface MapFragment {
     interface FeatureListener {
         void onFeature(int featureId);
     }
+
+    interface ViewportListener {
+        void onViewportChanged();
+    }
 }
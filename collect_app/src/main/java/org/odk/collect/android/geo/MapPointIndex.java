@@ -0,0 +1,207 @@
+package org.odk.collect.android.geo;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A grid index over items that have a location, used to find the items in a
+ * map viewport without looking at every item and to group nearby items into
+ * clusters when there are too many to show as separate markers.
+ *
+ * Points are placed in Web Mercator space, where the whole world is a unit
+ * square and a tile at zoom level z is 1 / 2^z wide, so that cells correspond
+ * to a fixed number of pixels on screen at a given zoom level.
+ */
+public class MapPointIndex<T> {
+    /** The index is a 256 x 256 grid, i.e. one cell per tile at zoom level 8. */
+    private static final int INDEX_LEVEL = 8;
+
+    /** Clusters gather the points within a square about this many pixels wide. */
+    private static final int CLUSTER_LEVELS_PER_TILE = 2;  // 256 / 2^2 = 64 px
+
+    /** At this zoom level and beyond, points are never clustered. */
+    public static final double MAX_CLUSTER_ZOOM = 17;
+
+    private static final double MAX_MERCATOR_LAT = 85.05112878;
+
+    private final Map<Integer, List<Entry<T>>> cells = new HashMap<>();
+    private int size;
+
+    public void add(@NonNull MapPoint point, T item) {
+        Entry<T> entry = new Entry<>(point, item);
+        int key = getCellKey(getCell(entry.x, INDEX_LEVEL), getCell(entry.y, INDEX_LEVEL));
+        List<Entry<T>> cell = cells.get(key);
+        if (cell == null) {
+            cell = new ArrayList<>();
+            cells.put(key, cell);
+        }
+        cell.add(entry);
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the items inside the viewport as clusters.  If there are no more
+     * than maxMarkers items in the viewport, or the map is zoomed in to
+     * MAX_CLUSTER_ZOOM or beyond, every cluster contains exactly one item.
+     * Otherwise items are grouped with the other items in the same square of
+     * the clustering grid for the zoom level.
+     *
+     * @param viewport the region shown on the map, or null for the whole world
+     */
+    public List<Cluster<T>> getClusters(@Nullable MapBounds viewport, double zoom, int maxMarkers) {
+        List<Entry<T>> visible = getEntries(viewport != null ? viewport : MapBounds.WORLD);
+
+        List<Cluster<T>> clusters = new ArrayList<>();
+        if (visible.size() <= maxMarkers || zoom >= MAX_CLUSTER_ZOOM) {
+            for (Entry<T> entry : visible) {
+                clusters.add(new Cluster<>(null, Collections.singletonList(entry)));
+            }
+            return clusters;
+        }
+
+        int level = (int) Math.floor(Math.max(zoom, 0)) + CLUSTER_LEVELS_PER_TILE;
+        Map<Long, List<Entry<T>>> groups = new LinkedHashMap<>();
+        for (Entry<T> entry : visible) {
+            long key = ((long) getCell(entry.y, level) << 32) | getCell(entry.x, level);
+            List<Entry<T>> group = groups.get(key);
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.put(key, group);
+            }
+            group.add(entry);
+        }
+        for (Map.Entry<Long, List<Entry<T>>> group : groups.entrySet()) {
+            long key = group.getKey();
+            clusters.add(new Cluster<>(level + "/" + (key & 0xffffffffL) + "/" + (key >>> 32), group.getValue()));
+        }
+        return clusters;
+    }
+
+    /** Collects the entries inside the viewport, looking only at the cells it overlaps. */
+    private List<Entry<T>> getEntries(MapBounds viewport) {
+        int minY = getCell(getY(viewport.north), INDEX_LEVEL);
+        int maxY = getCell(getY(viewport.south), INDEX_LEVEL);
+        int minX = getCell(getX(viewport.west), INDEX_LEVEL);
+        int maxX = getCell(getX(viewport.east), INDEX_LEVEL);
+        int columns = viewport.crossesAntimeridian()
+            ? (1 << INDEX_LEVEL) - minX + maxX + 1 : maxX - minX + 1;
+
+        List<Entry<T>> visible = new ArrayList<>();
+        if ((long) columns * (maxY - minY + 1) > cells.size()) {
+            // The viewport covers more of the grid than there are occupied
+            // cells (e.g. when zoomed out), so it's cheaper to visit those.
+            for (List<Entry<T>> cell : cells.values()) {
+                addEntriesInside(cell, viewport, visible);
+            }
+        } else {
+            for (int i = 0; i < columns; i++) {
+                int x = (minX + i) & ((1 << INDEX_LEVEL) - 1);
+                for (int y = minY; y <= maxY; y++) {
+                    List<Entry<T>> cell = cells.get(getCellKey(x, y));
+                    if (cell != null) {
+                        addEntriesInside(cell, viewport, visible);
+                    }
+                }
+            }
+        }
+        return visible;
+    }
+
+    private static <T> void addEntriesInside(List<Entry<T>> cell, MapBounds viewport, List<Entry<T>> result) {
+        for (Entry<T> entry : cell) {
+            if (viewport.contains(entry.point)) {
+                result.add(entry);
+            }
+        }
+    }
+
+    private static int getCellKey(int x, int y) {
+        return (y << INDEX_LEVEL) | x;
+    }
+
+    private static int getCell(double coordinate, int level) {
+        int cells = 1 << level;
+        return Math.min(Math.max((int) Math.floor(coordinate * cells), 0), cells - 1);
+    }
+
+    /** Converts a longitude to a Web Mercator x coordinate from 0 (west) to 1 (east). */
+    private static double getX(double lon) {
+        return (lon + 180) / 360;
+    }
+
+    /** Converts a latitude to a Web Mercator y coordinate from 0 (north) to 1 (south). */
+    private static double getY(double lat) {
+        double radians = Math.toRadians(Math.max(-MAX_MERCATOR_LAT, Math.min(MAX_MERCATOR_LAT, lat)));
+        return (1 - Math.log(Math.tan(radians) + 1 / Math.cos(radians)) / Math.PI) / 2;
+    }
+
+    private static class Entry<T> {
+        final MapPoint point;
+        final T item;
+        final double x;
+        final double y;
+
+        Entry(MapPoint point, T item) {
+            this.point = point;
+            this.item = item;
+            this.x = getX(point.lon);
+            this.y = getY(point.lat);
+        }
+    }
+
+    /** One or more items that are shown as a single marker. */
+    public static class Cluster<T> {
+        private final String key;
+        private final List<Entry<T>> entries;
+        private final MapPoint point;
+
+        Cluster(@Nullable String key, List<Entry<T>> entries) {
+            this.key = key;
+            this.entries = entries;
+            if (entries.size() == 1) {
+                point = entries.get(0).point;
+            } else {
+                double lat = 0;
+                double lon = 0;
+                for (Entry<T> entry : entries) {
+                    lat += entry.point.lat;
+                    lon += entry.point.lon;
+                }
+                point = new MapPoint(lat / entries.size(), lon / entries.size());
+            }
+        }
+
+        /**
+         * Returns a key that identifies a cluster of several items by its grid
+         * square and size, so that a cluster that is still the same after the
+         * viewport changes can be left on the map.  Null for a single item.
+         */
+        public @Nullable String getKey() {
+            return key != null ? key + "/" + entries.size() : null;
+        }
+
+        public int size() {
+            return entries.size();
+        }
+
+        /** Returns the location of the single item, or the centroid of the items. */
+        public MapPoint getPoint() {
+            return point;
+        }
+
+        public T getItem(int index) {
+            return entries.get(index).item;
+        }
+    }
+}
@@ -102,6 +102,7 @@ public class MapboxMapFragment extends org.odk.collect.android.geo.mapboxsdk.Map
     private PointListener longPressListener;
     private FeatureListener featureClickListener;
     private FeatureListener dragEndListener;
+    private ViewportListener viewportChangedListener;
 
     private LocationComponent locationComponent;
     private boolean clientWantsLocationUpdates;
@@ -164,6 +165,11 @@ public class MapboxMapFragment extends org.odk.collect.android.geo.mapboxsdk.Map
 
                 map.addOnMapClickListener(this);
                 map.addOnMapLongClickListener(this);
+                map.addOnCameraIdleListener(() -> {
+                    if (viewportChangedListener != null) {
+                        viewportChangedListener.onViewportChanged();
+                    }
+                });
 
                 // MAPBOX ISSUE: https://github.com/mapbox/mapbox-gl-native/issues/15262
                 // Unfortunately, the API no longer provides a way to to get an ID
@@ -331,6 +337,18 @@ public class MapboxMapFragment extends org.odk.collect.android.geo.mapboxsdk.Map
         }
     }
 
+    @Override public @Nullable MapBounds getViewport() {
+        if (map == null) {  // during Robolectric tests, map will be null
+            return null;
+        }
+        LatLngBounds bounds = map.getProjection().getVisibleRegion().latLngBounds;
+        if (bounds.getLatNorth() == bounds.getLatSouth()) {
+            return null;  // the map view hasn't been laid out yet
+        }
+        return MapBounds.fromEdges(bounds.getLatSouth(), bounds.getLonWest(),
+            bounds.getLatNorth(), bounds.getLonEast());
+    }
+
     @Override public int addMarker(MapPoint point, boolean draggable, @IconAnchor String iconAnchor) {
         int featureId = nextFeatureId++;
         features.put(featureId, new MarkerFeature(featureId, symbolManager, point, draggable, iconAnchor));
@@ -366,6 +384,10 @@ public class MapboxMapFragment extends org.odk.collect.android.geo.mapboxsdk.Map
         dragEndListener = listener;
     }
 
+    @Override public void setViewportChangedListener(@Nullable ViewportListener listener) {
+        viewportChangedListener = listener;
+    }
+
     @Override public @Nullable String getLocationProvider() {
         return lastLocationProvider;
     }
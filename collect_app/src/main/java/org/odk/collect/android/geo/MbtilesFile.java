@@ -30,11 +30,19 @@ import static android.database.sqlite.SQLiteDatabase.OPEN_READONLY;
 class MbtilesFile implements Closeable, TileSource {
     public enum LayerType { RASTER, VECTOR }
 
+    // The SQL is kept constant so that SQLite's per-connection statement cache
+    // compiles it once per database instead of once per tile.  SQLiteDatabase
+    // can only bind strings, and "tiles" is often a view whose columns have no
+    // integer affinity, so the arguments are cast explicitly.
+    private static final String TILE_QUERY = "SELECT tile_data FROM tiles WHERE "
+        + "zoom_level = CAST(? AS INTEGER) AND tile_column = CAST(? AS INTEGER) AND tile_row = CAST(? AS INTEGER) LIMIT 1";
+
     private final File file;
+    private final String cacheKey;
     private final LayerType layerType;
     private final String contentType;
     private final String contentEncoding;
-    private SQLiteDatabase db;  // see getTileBlob for why this is not final
+    private volatile SQLiteDatabase db;  // see getTileBlob for why this is not final
 
     MbtilesFile(File file) throws MbtilesException {
         this(file, detectContentType(file));
@@ -42,6 +50,7 @@ class MbtilesFile implements Closeable, TileSource {
 
     private MbtilesFile(File file, String contentType) throws MbtilesException {
         this.file = file;
+        this.cacheKey = TileCache.getSourceKey(file);
         this.db = openSqliteReadOnly(file);
         this.contentType = contentType;
         switch (contentType) {
@@ -84,40 +93,56 @@ class MbtilesFile implements Closeable, TileSource {
     // really do want to return null when there is no tile available.
     @SuppressWarnings("PMD.ReturnEmptyArrayRatherThanNull")
     public byte[] getTileBlob(int zoom, int x, int y) {
-        // TMS coordinates are used in .mbtiles files, so Y needs to be flipped.
-        y = (1 << zoom) - 1 - y;
-
-        // We have to use String.format because the templating mechanism in
-        // SQLiteDatabase.query is written for a strange alternate universe
-        // in which numbers don't exist -- it only supports strings!
-        String selection = String.format(
-            Locale.US,
-            "zoom_level = %d and tile_column = %d and tile_row = %d",
-            zoom, x, y
-        );
-
-        try (Cursor results = db.query("tiles", new String[] {"tile_data"},
-            selection, null, null, null, null)) {
-            if (results.moveToFirst()) {
-                try {
-                    return results.getBlob(0);
-                } catch (IllegalStateException e) {
-                    Timber.w(e, "Could not select tile data at zoom=%d, x=%d, y=%d", zoom, x, y);
-                    // In Android, the SQLite cursor can handle at most 2 MB in one row;
-                    // exceeding 2 MB in an .mbtiles file is rare, but it can happen.
-                    // When an attempt to fetch a large row fails, the database ends up
-                    // in an unusable state, so we need to close it and reopen it.
-                    // See https://stackoverflow.com/questions/20094421/cursor-window-window-is-full
-                    db.close();
-                    db = openSqliteReadOnly(file);
-                }
-            }
+        try {
+            return readTile(db, cacheKey, zoom, x, y);
+        } catch (IllegalStateException e) {
+            Timber.w(e, "Could not select tile data at zoom=%d, x=%d, y=%d", zoom, x, y);
+            // In Android, the SQLite cursor can handle at most 2 MB in one row;
+            // exceeding 2 MB in an .mbtiles file is rare, but it can happen.
+            // When an attempt to fetch a large row fails, the database ends up
+            // in an unusable state, so we need to close it and reopen it.
+            // See https://stackoverflow.com/questions/20094421/cursor-window-window-is-full
+            reopen();
         } catch (Throwable e) {
             Timber.w(e);
         }
         return null;
     }
 
+    /**
+     * Fetches the tile at the given XYZ coordinates out of the shared TileCache,
+     * or else out of the "tiles" table of an .mbtiles database, caching it for
+     * next time.  Returns null if there is no such tile.
+     *
+     * @param cacheKey the key from {@link TileCache#getSourceKey} for the file
+     */
+    @SuppressWarnings("PMD.ReturnEmptyArrayRatherThanNull")
+    static byte[] readTile(SQLiteDatabase db, String cacheKey, int zoom, int x, int y) {
+        TileCache cache = TileCache.getInstance();
+        byte[] data = cache.get(cacheKey, zoom, x, y);
+        if (data == null) {
+            data = queryTile(db, zoom, x, y);
+            cache.put(cacheKey, zoom, x, y, data);
+        }
+        return data;
+    }
+
+    @SuppressWarnings("PMD.ReturnEmptyArrayRatherThanNull")
+    private static byte[] queryTile(SQLiteDatabase db, int zoom, int x, int y) {
+        // TMS coordinates are used in .mbtiles files, so Y needs to be flipped.
+        int row = (1 << zoom) - 1 - y;
+
+        try (Cursor results = db.rawQuery(TILE_QUERY, new String[] {
+            Integer.toString(zoom), Integer.toString(x), Integer.toString(row)})) {
+            return results.moveToFirst() ? results.getBlob(0) : null;
+        }
+    }
+
+    private synchronized void reopen() {
+        db.close();
+        db = openSqliteReadOnly(file);
+    }
+
     /** Returns information about the vector layers available in the tiles. */
     List<VectorLayer> getVectorLayers() {
         List<VectorLayer> layers = new ArrayList<>();
@@ -84,6 +84,7 @@ public class OsmDroidMapFragment extends Fragment implements MapFragment,
 
     // Bundle keys understood by applyConfig().
     static final String KEY_WEB_MAP_SERVICE = "WEB_MAP_SERVICE";
+    private static final long VIEWPORT_SETTLE_MILLIS = 250;
 
     @Inject
     MapProvider mapProvider;
@@ -94,6 +95,7 @@ public class OsmDroidMapFragment extends Fragment implements MapFragment,
     private PointListener gpsLocationListener;
     private FeatureListener featureClickListener;
     private FeatureListener dragEndListener;
+    private ViewportListener viewportChangedListener;
     private MyLocationNewOverlay myLocationOverlay;
     private LocationClient locationClient;
     private OsmLocationClientWrapper osmLocationClientWrapper;
@@ -104,6 +106,11 @@ public class OsmDroidMapFragment extends Fragment implements MapFragment,
     private WebMapService webMapService;
     private File referenceLayerFile;
     private TilesOverlay referenceOverlay;
+    private final Runnable notifyViewportChanged = () -> {
+        if (viewportChangedListener != null) {
+            viewportChangedListener.onViewportChanged();
+        }
+    };
 
     @Override public Intent registerReceiver(BroadcastReceiver receiver, IntentFilter filter) {
         Context context = getActivity();
@@ -149,6 +156,9 @@ public class OsmDroidMapFragment extends Fragment implements MapFragment,
     }
 
     @Override public void onDestroy() {
+        if (map != null) {
+            map.removeCallbacks(notifyViewportChanged);
+        }
         clearFeatures();  // prevent a memory leak due to refs held by markers
         super.onDestroy();
     }
@@ -251,6 +261,14 @@ public class OsmDroidMapFragment extends Fragment implements MapFragment,
         }
     }
 
+    @Override public @Nullable MapBounds getViewport() {
+        if (map.getWidth() == 0 || map.getHeight() == 0) {
+            return null;  // the map view hasn't been laid out yet
+        }
+        BoundingBox box = map.getBoundingBox();
+        return MapBounds.fromEdges(box.getLatSouth(), box.getLonWest(), box.getLatNorth(), box.getLonEast());
+    }
+
     @Override public void zoomToBoundingBox(Iterable<MapPoint> points, double scaleFactor, boolean animate) {
         if (points != null) {
             int count = 0;
@@ -356,6 +374,10 @@ public class OsmDroidMapFragment extends Fragment implements MapFragment,
         dragEndListener = listener;
     }
 
+    @Override public void setViewportChangedListener(@Nullable ViewportListener listener) {
+        viewportChangedListener = listener;
+    }
+
     @Override public void setGpsLocationListener(@Nullable PointListener listener) {
         gpsLocationListener = listener;
     }
@@ -504,11 +526,13 @@ public class OsmDroidMapFragment extends Fragment implements MapFragment,
         map.setMapListener(new MapListener() {
             @Override public boolean onScroll(ScrollEvent event) {
                 lastMapCenter = map.getMapCenter();
+                scheduleViewportChanged();
                 return false;
             }
 
             @Override public boolean onZoom(ZoomEvent event) {
                 lastMapCenter = map.getMapCenter();
+                scheduleViewportChanged();
                 return false;
             }
         });
@@ -517,6 +541,15 @@ public class OsmDroidMapFragment extends Fragment implements MapFragment,
                 map.getController().setCenter(lastMapCenter));
     }
 
+    /**
+     * MapView reports every step of a pan or zoom, so the viewport listener is
+     * only called once the map has been still for a moment.
+     */
+    private void scheduleViewportChanged() {
+        map.removeCallbacks(notifyViewportChanged);
+        map.postDelayed(notifyViewportChanged, VIEWPORT_SETTLE_MILLIS);
+    }
+
     private Marker createMarker(MapView map, MapPoint point, MapFeature feature, @IconAnchor String iconAnchor) {
         // A Marker's position is a GeoPoint with latitude, longitude, and
         // altitude fields.  We need to store the standard deviation value
@@ -45,6 +45,8 @@ public class OsmMBTileSource extends BitmapTileSourceBase {
 
     protected SQLiteDatabase database;
 
+    private final String cacheKey;
+
     // Reasonable defaults ..
     public static final int MIN_ZOOM = 8;
     public static final int MAX_ZOOM = 15;
@@ -58,10 +60,12 @@ public class OsmMBTileSource extends BitmapTileSourceBase {
     protected OsmMBTileSource(int minZoom,
                               int maxZoom,
                               int tileSizePixels,
+                              File file,
                               SQLiteDatabase db) {
         super("MBTiles", minZoom, maxZoom, tileSizePixels, ".png");
 
         database = db;
+        cacheKey = TileCache.getSourceKey(file);
     }
 
     /**
@@ -102,7 +106,7 @@ public class OsmMBTileSource extends BitmapTileSourceBase {
         value = getInt(db, "SELECT MAX(zoom_level) FROM tiles;");
         int maxZoomLevel = value > -1 ? value : MAX_ZOOM;
 
-        return new OsmMBTileSource(minZoomLevel, maxZoomLevel, tileSize, db);
+        return new OsmMBTileSource(minZoomLevel, maxZoomLevel, tileSize, file, db);
     }
 
     protected static int getInt(SQLiteDatabase db, String sql) {
@@ -120,31 +124,14 @@ public class OsmMBTileSource extends BitmapTileSourceBase {
     }
 
     public InputStream getInputStream(long tileIndex) {
-
         try {
-            InputStream ret = null;
-            final String[] tile = {COL_TILES_TILE_DATA};
-            final String[] xyz = {Integer.toString(MapTileIndex.getX(tileIndex)),
-                    Double.toString(Math.pow(2, MapTileIndex.getZoom(tileIndex)) - MapTileIndex.getY(tileIndex) - 1),
-                    Integer.toString(MapTileIndex.getZoom(tileIndex))};
-
-            final Cursor cur = database.query(TABLE_TILES,
-                    tile,
-                    "tile_column=? and tile_row=? and zoom_level=?",
-                    xyz,
-                    null,
-                    null,
-                    null);
-
-            if (cur.getCount() != 0) {
-                cur.moveToFirst();
-                ret = new ByteArrayInputStream(cur.getBlob(0));
-            }
-
-            cur.close();
+            int zoom = MapTileIndex.getZoom(tileIndex);
+            int x = MapTileIndex.getX(tileIndex);
+            int y = MapTileIndex.getY(tileIndex);
+            byte[] data = MbtilesFile.readTile(database, cacheKey, zoom, x, y);
 
-            if (ret != null) {
-                return ret;
+            if (data != null) {
+                return new ByteArrayInputStream(data);
             }
 
         } catch (final Throwable e) {
@@ -0,0 +1,67 @@
+package org.odk.collect.android.geo;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A least-recently-used cache of tiles read from .mbtiles files, limited by the
+ * total size of the tile data.  A single instance is shared by the Google, Mapbox
+ * and osmdroid map engines so that panning back and forth over the same area of
+ * an offline layer doesn't have to query the file again.
+ */
+class TileCache {
+    private static final int MAX_BYTES = 8 * 1024 * 1024;
+    private static final TileCache INSTANCE = new TileCache(MAX_BYTES);
+
+    private final int maxBytes;
+    private final Map<String, byte[]> tiles = new LinkedHashMap<>(64, 0.75f, true);
+    private int totalBytes;
+
+    TileCache(int maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    static TileCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns a key that identifies the tiles of a file.  The modification time
+     * is included so that tiles from a file that has since been replaced are
+     * never served.
+     */
+    static String getSourceKey(File file) {
+        return file.getAbsolutePath() + "@" + file.lastModified();
+    }
+
+    /** Returns the cached tile at XYZ coordinates, or null if it isn't cached. */
+    synchronized byte[] get(String sourceKey, int zoom, int x, int y) {
+        return tiles.get(getTileKey(sourceKey, zoom, x, y));
+    }
+
+    synchronized void put(String sourceKey, int zoom, int x, int y, byte[] data) {
+        if (data == null || data.length > maxBytes) {
+            return;
+        }
+
+        byte[] previous = tiles.put(getTileKey(sourceKey, zoom, x, y), data);
+        totalBytes += data.length - (previous != null ? previous.length : 0);
+
+        Iterator<byte[]> eldest = tiles.values().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            totalBytes -= eldest.next().length;
+            eldest.remove();
+        }
+    }
+
+    synchronized void clear() {
+        tiles.clear();
+        totalBytes = 0;
+    }
+
+    private static String getTileKey(String sourceKey, int zoom, int x, int y) {
+        return sourceKey + "/" + zoom + "/" + x + "/" + y;
+    }
+}
@@ -1,5 +1,6 @@
 package org.odk.collect.android.geo;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.Closeable;
 import java.io.IOException;
@@ -9,19 +10,41 @@ import java.io.UnsupportedEncodingException;
 import java.net.BindException;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.net.URLDecoder;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
 
 import timber.log.Timber;
 
-/** A minimal HTTP server that serves tiles from a set of TileSources. */
+/**
+ * A minimal HTTP server that serves tiles from a set of TileSources.  Connections
+ * are persistent and each one is served by a pooled worker thread while it's open,
+ * so that panning a map doesn't start a thread and a TCP handshake for every tile.
+ */
 class TileHttpServer {
     private static final int PORT_MIN = 8000;
     private static final int PORT_MAX = 8999;
 
-    private final Map<String, TileSource> sources = new HashMap<>();
+    // A worker is tied up for as long as its connection stays open, so workers
+    // are started for every connection that needs one rather than taken from a
+    // fixed pool that idle connections could use up.  Idle connections are
+    // closed, and idle workers stopped, after a few seconds.
+    private static final int IDLE_TIMEOUT_MILLIS = 5_000;
+
+    private final Map<String, TileSource> sources = new ConcurrentHashMap<>();
+    private final ExecutorService workers = new ThreadPoolExecutor(
+        0, Integer.MAX_VALUE, IDLE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS, new SynchronousQueue<>());
+    private final Set<Socket> connections = Collections.newSetFromMap(new ConcurrentHashMap<>());
     private final ServerThread server;
     private final ServerSocket socket;
 
@@ -61,6 +84,14 @@ class TileHttpServer {
             socket.close();
         } catch (IOException e) { /* ignore */ }
         server.interrupt();
+        workers.shutdownNow();
+        // Workers blocked reading from idle connections can't be interrupted,
+        // so close the connections out from under them.
+        for (Socket connection : connections) {
+            try {
+                connection.close();
+            } catch (IOException e) { /* ignore */ }
+        }
         for (TileSource source : sources.values()) {
             if (source instanceof Closeable) {
                 try {
@@ -97,7 +128,11 @@ class TileHttpServer {
                 while (!isInterrupted()) {
                     Socket connection = socket.accept();
                     Timber.i("Accepted a client connection");
-                    new ResponseThread(connection).start();
+                    try {
+                        workers.execute(new ConnectionHandler(connection));
+                    } catch (RejectedExecutionException e) {
+                        connection.close();  // the server is being destroyed
+                    }
                 }
                 Timber.i("Server thread interrupted");
             } catch (IOException e) {
@@ -106,33 +141,85 @@ class TileHttpServer {
         }
     }
 
-    class ResponseThread extends Thread {
+    /**
+     * Serves HTTP/1.1 requests on one connection until the client closes it,
+     * asks for it to be closed, or leaves it idle for too long.
+     */
+    class ConnectionHandler implements Runnable {
         final Socket connection;
 
-        ResponseThread(Socket connection) {
+        ConnectionHandler(Socket connection) {
             this.connection = connection;
         }
 
         public void run() {
+            connections.add(connection);
             try (Socket connection = this.connection) {
-                InputStreamReader reader = new InputStreamReader(connection.getInputStream());
-                String request = new BufferedReader(reader).readLine();
-                Timber.i("Received request: %s", request);
-                if (request == null) {
-                    return;
-                }
-                long start = System.currentTimeMillis();
-                Response response = getResponse(request);
-                if (response == null) {
-                    Timber.i("%s: No tile at these coordinates", request);
-                    return;
+                connection.setSoTimeout(IDLE_TIMEOUT_MILLIS);
+                BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(connection.getInputStream(), "US-ASCII"));
+                OutputStream output = new BufferedOutputStream(connection.getOutputStream());
+
+                boolean keepAlive = true;
+                while (keepAlive) {
+                    Request request = readRequest(reader);
+                    if (request == null) {
+                        return;
+                    }
+                    keepAlive = request.keepAlive;
+
+                    long start = System.currentTimeMillis();
+                    Response response = getResponse(request.line);
+                    sendResponse(output, request, response, keepAlive);
+                    long finish = System.currentTimeMillis();
+                    if (response == null) {
+                        Timber.i("%s: No tile at these coordinates", request.line);
+                    } else {
+                        Timber.i("%s: Served %d bytes in %d ms", request.line, response.data.length, finish - start);
+                    }
                 }
-                sendResponse(connection, response);
-                long finish = System.currentTimeMillis();
-                Timber.i("%s: Served %d bytes in %d ms", request, response.data.length, finish - start);
+            } catch (SocketTimeoutException e) {
+                Timber.i("Closing idle connection");
             } catch (IOException e) {
                 Timber.e(e, "Unable to read request from socket");
+            } finally {
+                connections.remove(connection);
+            }
+        }
+
+        /** Reads a request line and its headers, or returns null at the end of the stream. */
+        protected Request readRequest(BufferedReader reader) throws IOException {
+            String line = reader.readLine();
+            while (line != null && line.isEmpty()) {
+                line = reader.readLine();  // tolerate blank lines between requests
+            }
+            if (line == null) {
+                return null;
+            }
+            Timber.i("Received request: %s", line);
+
+            // HTTP/1.1 connections are persistent unless the client says otherwise.
+            boolean keepAlive = line.endsWith("HTTP/1.1");
+            String etag = null;
+            for (String header = reader.readLine(); header != null && !header.isEmpty(); header = reader.readLine()) {
+                int colon = header.indexOf(':');
+                if (colon == -1) {
+                    continue;
+                }
+                String name = header.substring(0, colon).trim().toLowerCase(Locale.US);
+                String value = header.substring(colon + 1).trim();
+                if (name.equals("connection")) {
+                    value = value.toLowerCase(Locale.US);
+                    if (value.contains("close")) {
+                        keepAlive = false;
+                    } else if (value.contains("keep-alive")) {
+                        keepAlive = true;
+                    }
+                } else if (name.equals("if-none-match")) {
+                    etag = value;
+                }
             }
+            return new Request(line, etag, keepAlive);
         }
 
         protected Response getResponse(String request) {
@@ -161,26 +248,108 @@ class TileHttpServer {
             return null;
         }
 
-        protected void sendResponse(Socket connection, Response response) {
-            String headers = String.format(
-                Locale.US,
-                "HTTP/1.0 200\r\n" +
-                    "Content-Type: %s\r\n" +
-                    "Content-Encoding: %s\r\n" +
-                    "Content-Length: %d\r\n" +
-                    "\r\n",
-                response.contentType,
-                response.contentEncoding,
-                response.data.length
-            );
-
-            try (OutputStream output = connection.getOutputStream()) {
-                output.write(headers.getBytes());
-                output.write(response.data);
-                output.flush();
-            } catch (IOException e) {
-                Timber.e(e, "Unable to write response to socket");
+        /**
+         * Writes a 200 response with the tile, a 304 response if the client
+         * already has the same tile, or a 404 response if there is no tile.
+         * Every response has a Content-Length so the connection can be reused.
+         */
+        protected void sendResponse(OutputStream output, Request request, Response response, boolean keepAlive) throws IOException {
+            String connection = keepAlive ? "keep-alive" : "close";
+            String headers;
+            byte[] body = null;
+            if (response == null) {
+                headers = String.format(Locale.US,
+                    "HTTP/1.1 404 Not Found\r\n" +
+                        "Content-Length: 0\r\n" +
+                        "Connection: %s\r\n" +
+                        "\r\n",
+                    connection
+                );
+            } else if (matchesIfNoneMatch(request.etag, response.etag)) {
+                headers = String.format(Locale.US,
+                    "HTTP/1.1 304 Not Modified\r\n" +
+                        "ETag: %s\r\n" +
+                        "Connection: %s\r\n" +
+                        "\r\n",
+                    response.etag,
+                    connection
+                );
+            } else {
+                headers = String.format(Locale.US,
+                    "HTTP/1.1 200 OK\r\n" +
+                        "Content-Type: %s\r\n" +
+                        "Content-Encoding: %s\r\n" +
+                        "Content-Length: %d\r\n" +
+                        "ETag: %s\r\n" +
+                        "Cache-Control: no-cache\r\n" +
+                        "Connection: %s\r\n" +
+                        "\r\n",
+                    response.contentType,
+                    response.contentEncoding,
+                    response.data.length,
+                    response.etag,
+                    connection
+                );
+                body = response.data;
+            }
+
+            output.write(headers.getBytes("US-ASCII"));
+            if (body != null) {
+                output.write(body);
             }
+            output.flush();
+        }
+    }
+
+    /**
+     * Returns whether an If-None-Match header value matches the given entity tag.
+     * As RFC 7232 requires, the header may be "*" or a comma-separated list of
+     * tags and the comparison is weak, so W/"a" matches "a".  Entity tags may
+     * themselves contain commas, so the list is read tag by tag.
+     */
+    static boolean matchesIfNoneMatch(String header, String etag) {
+        if (header == null) {
+            return false;
+        }
+        if (header.trim().equals("*")) {
+            return true;
+        }
+
+        String opaqueTag = etag.startsWith("W/") ? etag.substring(2) : etag;
+        int i = 0;
+        while (i < header.length()) {
+            char c = header.charAt(i);
+            if (c == ' ' || c == '\t' || c == ',') {
+                i++;
+                continue;
+            }
+            if (header.startsWith("W/", i)) {
+                i += 2;
+            }
+            if (i >= header.length() || header.charAt(i) != '"') {
+                return false;  // not a list of entity tags
+            }
+            int end = header.indexOf('"', i + 1);
+            if (end == -1) {
+                return false;
+            }
+            if (header.regionMatches(i, opaqueTag, 0, opaqueTag.length()) && end + 1 - i == opaqueTag.length()) {
+                return true;
+            }
+            i = end + 1;
+        }
+        return false;
+    }
+
+    static class Request {
+        final String line;
+        final String etag;  // the value of the If-None-Match header, if any
+        final boolean keepAlive;
+
+        Request(String line, String etag, boolean keepAlive) {
+            this.line = line;
+            this.etag = etag;
+            this.keepAlive = keepAlive;
         }
     }
 
@@ -188,11 +357,20 @@ class TileHttpServer {
         byte[] data;
         String contentType;
         String contentEncoding;
+        String etag;
 
         Response(byte[] data, String contentType, String contentEncoding) {
             this.data = data;
             this.contentType = contentType;
             this.contentEncoding = contentEncoding;
+            this.etag = getEtag(data);
+        }
+
+        /** Tiles have no version of their own, so the ETag is a checksum of the data. */
+        static String getEtag(byte[] data) {
+            CRC32 crc = new CRC32();
+            crc.update(data, 0, data.length);
+            return String.format(Locale.US, "\"%08x-%x\"", crc.getValue(), data.length);
         }
     }
 }
@@ -24,6 +24,7 @@ import org.odk.collect.android.audio.AudioRecordingControllerFragment;
 import org.odk.collect.android.audio.AudioRecordingErrorDialogFragment;
 import org.odk.collect.android.backgroundwork.AutoSendTaskSpec;
 import org.odk.collect.android.backgroundwork.AutoUpdateTaskSpec;
+import org.odk.collect.android.backgroundwork.FormCacheWarmUpTaskSpec;
 import org.odk.collect.android.backgroundwork.SyncFormsTaskSpec;
 import org.odk.collect.android.configure.SettingsImporter;
 import org.odk.collect.android.configure.qr.QRCodeScannerFragment;
@@ -68,6 +69,7 @@ import org.odk.collect.android.tasks.InstanceServerUploaderTask;
 import org.odk.collect.android.tasks.MediaLoadingTask;
 import org.odk.collect.android.utilities.ApplicationResetter;
 import org.odk.collect.android.utilities.AuthDialogUtility;
+import org.odk.collect.android.utilities.ImageCache;
 import org.odk.collect.android.utilities.ThemeUtils;
 import org.odk.collect.android.widgets.ExStringWidget;
 import org.odk.collect.android.widgets.QuestionWidget;
@@ -201,6 +203,8 @@ public interface AppDependencyComponent {
 
     void inject(AutoUpdateTaskSpec autoUpdateTaskSpec);
 
+    void inject(FormCacheWarmUpTaskSpec formCacheWarmUpTaskSpec);
+
     void inject(ServerAuthDialogFragment serverAuthDialogFragment);
 
     void inject(BasePreferenceFragment basePreferenceFragment);
@@ -250,4 +254,6 @@ public interface AppDependencyComponent {
     ApplicationInitializer applicationInitializer();
 
     SettingsImporter settingsImporter();
+
+    ImageCache imageCache();
 }
@@ -28,9 +28,11 @@ import org.odk.collect.android.application.initialization.ApplicationInitializer
 import org.odk.collect.android.application.initialization.CollectSettingsPreferenceMigrator;
 import org.odk.collect.android.application.initialization.SettingsPreferenceMigrator;
 import org.odk.collect.android.backgroundwork.ChangeLock;
+import org.odk.collect.android.backgroundwork.FormCacheWarmUpManager;
 import org.odk.collect.android.backgroundwork.FormSubmitManager;
 import org.odk.collect.android.backgroundwork.FormUpdateManager;
 import org.odk.collect.android.backgroundwork.ReentrantLockChangeLock;
+import org.odk.collect.android.backgroundwork.SchedulerFormCacheWarmUpManager;
 import org.odk.collect.android.backgroundwork.SchedulerFormUpdateAndSubmitManager;
 import org.odk.collect.android.configure.ServerRepository;
 import org.odk.collect.android.configure.SettingsChangeHandler;
@@ -95,9 +97,11 @@ import org.odk.collect.android.utilities.AdminPasswordProvider;
 import org.odk.collect.android.utilities.AndroidUserAgent;
 import org.odk.collect.android.utilities.DeviceDetailsProvider;
 import org.odk.collect.android.utilities.ExternalAppIntentProvider;
+import org.odk.collect.android.utilities.FileHashCache;
 import org.odk.collect.android.utilities.FileProvider;
 import org.odk.collect.android.utilities.FileUtil;
 import org.odk.collect.android.utilities.FormsDirDiskFormsSynchronizer;
+import org.odk.collect.android.utilities.ImageCache;
 import org.odk.collect.android.utilities.MediaUtils;
 import org.odk.collect.android.utilities.ScreenUtils;
 import org.odk.collect.android.utilities.SoftKeyboardController;
@@ -182,8 +186,8 @@ public class AppDependencyModule {
     }
 
     @Provides
-    public FormDownloader providesFormDownloader(FormSource formSource, FormsRepository formsRepository, StoragePathProvider storagePathProvider, Analytics analytics) {
-        return new ServerFormDownloader(formSource, formsRepository, new File(storagePathProvider.getOdkDirPath(StorageSubdirectory.CACHE)), storagePathProvider.getOdkDirPath(StorageSubdirectory.FORMS), new FormMetadataParser(ReferenceManager.instance()), analytics);
+    public FormDownloader providesFormDownloader(FormSource formSource, FormsRepository formsRepository, StoragePathProvider storagePathProvider, Analytics analytics, FormCacheWarmUpManager formCacheWarmUpManager, FileHashCache fileHashCache) {
+        return new ServerFormDownloader(formSource, formsRepository, new File(storagePathProvider.getOdkDirPath(StorageSubdirectory.CACHE)), storagePathProvider.getOdkDirPath(StorageSubdirectory.FORMS), new FormMetadataParser(ReferenceManager.instance()), analytics, formCacheWarmUpManager, fileHashCache);
     }
 
     @Provides
@@ -253,6 +257,20 @@ public class AppDependencyModule {
         };
     }
 
+    @Provides
+    @Singleton
+    public ImageCache providesImageCache(Application application, StoragePathProvider storagePathProvider) {
+        ImageCache imageCache = new ImageCache(new File(application.getCacheDir(), "thumbnails"), storagePathProvider);
+        application.registerComponentCallbacks(imageCache);
+        return imageCache;
+    }
+
+    @Provides
+    @Singleton
+    public FileHashCache providesFileHashCache(Application application) {
+        return new FileHashCache(new File(application.getCacheDir(), "file-hashes"));
+    }
+
     @Provides
     @Singleton
     public MapProvider providesMapProvider() {
@@ -279,6 +297,11 @@ public class AppDependencyModule {
         return new SchedulerFormUpdateAndSubmitManager(scheduler, preferencesDataSourceProvider.getGeneralPreferences(), application);
     }
 
+    @Provides
+    public FormCacheWarmUpManager providesFormCacheWarmUpManager(Scheduler scheduler) {
+        return new SchedulerFormCacheWarmUpManager(scheduler);
+    }
+
     @Provides
     public NetworkStateProvider providesConnectivityProvider() {
         return new ConnectivityProvider();
@@ -382,8 +405,8 @@ public class AppDependencyModule {
     }
 
     @Provides
-    public DiskFormsSynchronizer providesDiskFormSynchronizer() {
-        return new FormsDirDiskFormsSynchronizer();
+    public DiskFormsSynchronizer providesDiskFormSynchronizer(FormCacheWarmUpManager formCacheWarmUpManager, FileHashCache fileHashCache) {
+        return new FormsDirDiskFormsSynchronizer(formCacheWarmUpManager, fileHashCache);
     }
 
     @Provides
@@ -393,8 +416,8 @@ public class AppDependencyModule {
     }
 
     @Provides
-    public ServerFormsDetailsFetcher providesServerFormDetailsFetcher(FormsRepository formsRepository, MediaFileRepository mediaFileRepository, FormSource formSource, DiskFormsSynchronizer diskFormsSynchronizer) {
-        return new ServerFormsDetailsFetcher(formsRepository, mediaFileRepository, formSource, diskFormsSynchronizer);
+    public ServerFormsDetailsFetcher providesServerFormDetailsFetcher(FormsRepository formsRepository, MediaFileRepository mediaFileRepository, FormSource formSource, DiskFormsSynchronizer diskFormsSynchronizer, FileHashCache fileHashCache) {
+        return new ServerFormsDetailsFetcher(formsRepository, mediaFileRepository, formSource, diskFormsSynchronizer, fileHashCache);
     }
 
     @Provides
@@ -4,6 +4,7 @@ import android.net.Uri;
 import android.util.Pair;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import org.odk.collect.android.R;
 import org.odk.collect.analytics.Analytics;
@@ -31,10 +32,17 @@ import org.odk.collect.android.utilities.TranslationHandler;
 import org.odk.collect.android.utilities.WebCredentialsUtils;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import timber.log.Timber;
 
@@ -64,83 +72,210 @@ public class InstanceSubmitter {
     }
 
     public Pair<Boolean, String> submitUnsubmittedInstances() throws SubmitException {
+        return submitUnsubmittedInstances(null);
+    }
+
+    public Pair<Boolean, String> submitUnsubmittedInstances(@Nullable ProgressListener progressListener) throws SubmitException {
         List<Instance> toUpload = getInstancesToAutoSend(!preferencesDataSourceProvider.getGeneralPreferences().getString(GeneralKeys.KEY_AUTOSEND).equals("off"));
-        return submitSelectedInstances(toUpload);
+        return submitSelectedInstances(toUpload, progressListener);
     }
 
     public Pair<Boolean, String> submitSelectedInstances(List<Instance> toUpload) throws SubmitException {
+        return submitSelectedInstances(toUpload, null);
+    }
+
+    /**
+     * Submits the instances to the configured server. Instances are uploaded several at a time
+     * (see {@link GeneralKeys#KEY_SUBMISSION_PARALLELISM}) unless they're being sent to Google
+     * Sheets. The status of each instance is saved as soon as its upload finishes so if the
+     * submission is interrupted the next one only sends the instances that weren't submitted.
+     *
+     * Instances sent to Google Sheets are prepared one after the other and then their rows are
+     * appended together, with one request per sheet.
+     */
+    public Pair<Boolean, String> submitSelectedInstances(List<Instance> toUpload, @Nullable ProgressListener progressListener) throws SubmitException {
         if (toUpload.isEmpty()) {
             throw new SubmitException(Type.NOTHING_TO_SUBMIT);
         }
 
         String protocol = preferencesDataSourceProvider.getGeneralPreferences().getString(GeneralKeys.KEY_PROTOCOL);
+        boolean isGoogleSheets = protocol.equals(TranslationHandler.getString(Collect.getInstance(), R.string.protocol_google_sheets));
 
-        InstanceUploader uploader;
-        Map<String, String> resultMessagesByInstanceId = new HashMap<>();
-        String deviceId = null;
-        boolean anyFailure = false;
-
-        if (protocol.equals(TranslationHandler.getString(Collect.getInstance(), R.string.protocol_google_sheets))) {
+        if (isGoogleSheets) {
             if (permissionsProvider.isGetAccountsPermissionGranted()) {
                 String googleUsername = googleAccountsManager.getLastSelectedAccountIfValid();
                 if (googleUsername.isEmpty()) {
                     throw new SubmitException(Type.GOOGLE_ACCOUNT_NOT_SET);
                 }
                 googleAccountsManager.selectAccount(googleUsername);
-                uploader = new InstanceGoogleSheetsUploader(googleApiProvider.getDriveApi(googleUsername), googleApiProvider.getSheetsApi(googleUsername));
+                InstanceGoogleSheetsUploader uploader = new InstanceGoogleSheetsUploader(googleApiProvider.getDriveApi(googleUsername), googleApiProvider.getSheetsApi(googleUsername));
+                return submitToGoogleSheets(toUpload, uploader, progressListener);
             } else {
                 throw new SubmitException(Type.GOOGLE_ACCOUNT_NOT_PERMITTED);
             }
-        } else {
-            OpenRosaHttpInterface httpInterface = Collect.getInstance().getComponent().openRosaHttpInterface();
-            uploader = new InstanceServerUploader(httpInterface, new WebCredentialsUtils(preferencesDataSourceProvider.getGeneralPreferences()), new HashMap<>(), preferencesDataSourceProvider);
-            deviceId = new PropertyManager().getSingularProperty(PropertyManager.PROPMGR_DEVICE_ID);
         }
 
-        for (Instance instance : toUpload) {
-            try {
-                String destinationUrl = uploader.getUrlToSubmitTo(instance, deviceId, null, null);
-                if (protocol.equals(TranslationHandler.getString(Collect.getInstance(), R.string.protocol_google_sheets))
-                        && !InstanceUploaderUtils.doesUrlRefersToGoogleSheetsFile(destinationUrl)) {
-                    anyFailure = true;
-                    resultMessagesByInstanceId.put(instance.getId().toString(), SPREADSHEET_UPLOADED_TO_GOOGLE_DRIVE);
-                    continue;
+        OpenRosaHttpInterface httpInterface = Collect.getInstance().getComponent().openRosaHttpInterface();
+        InstanceUploader uploader = new InstanceServerUploader(httpInterface, new WebCredentialsUtils(preferencesDataSourceProvider.getGeneralPreferences()), new ConcurrentHashMap<>(), preferencesDataSourceProvider);
+        String deviceId = new PropertyManager().getSingularProperty(PropertyManager.PROPMGR_DEVICE_ID);
+        return submitToServer(toUpload, uploader, deviceId, getSubmissionParallelism(), progressListener);
+    }
+
+    /**
+     * Uploads the instances with up to the given number of uploads in progress at a time.
+     */
+    Pair<Boolean, String> submitToServer(List<Instance> toUpload, InstanceUploader uploader, String deviceId,
+                                         int parallelism, @Nullable ProgressListener progressListener) {
+        Map<String, String> resultMessagesByInstanceId = new HashMap<>();
+        boolean anyFailure = false;
+
+        long start = System.currentTimeMillis();
+        long bytesSubmitted = 0;
+        int submitted = 0;
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, toUpload.size()));
+        try {
+            CompletionService<Result> completionService = new ExecutorCompletionService<>(executor);
+            for (Instance instance : toUpload) {
+                completionService.submit(() -> submitInstance(instance, uploader, deviceId));
+            }
+
+            for (int i = 0; i < toUpload.size(); i++) {
+                Result result = completionService.take().get();
+                resultMessagesByInstanceId.put(result.instance.getId().toString(), result.message);
+                anyFailure |= result.failure;
+
+                if (!result.failure) {
+                    submitted++;
+                    bytesSubmitted += result.size;
                 }
-                String customMessage = uploader.uploadOneSubmission(instance, destinationUrl);
-                resultMessagesByInstanceId.put(instance.getId().toString(), customMessage != null ? customMessage : TranslationHandler.getString(Collect.getInstance(), R.string.success));
-
-                // If the submission was successful, delete the instance if either the app-level
-                // delete preference is set or the form definition requests auto-deletion.
-                // TODO: this could take some time so might be better to do in a separate process,
-                // perhaps another worker. It also feels like this could fail and if so should be
-                // communicated to the user. Maybe successful delete should also be communicated?
-                if (InstanceUploaderUtils.shouldFormBeDeleted(formsRepository, instance.getJrFormId(), instance.getJrVersion(),
-                        preferencesDataSourceProvider.getGeneralPreferences().getBoolean(GeneralKeys.KEY_DELETE_AFTER_SEND))) {
-                    Uri deleteForm = Uri.withAppendedPath(InstanceProviderAPI.InstanceColumns.CONTENT_URI, instance.getId().toString());
-                    Collect.getInstance().getContentResolver().delete(deleteForm, null, null);
+
+                if (progressListener != null && toUpload.size() > 1) {
+                    long elapsed = Math.max(1, System.currentTimeMillis() - start);
+                    progressListener.onProgress(submitted, toUpload.size(), bytesSubmitted * 1000 / elapsed);
                 }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            anyFailure = true;
+        } catch (ExecutionException e) {
+            // submitInstance only throws unchecked exceptions
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return new Pair<>(anyFailure, InstanceUploaderUtils.getUploadResultMessage(instancesRepository, Collect.getInstance(), resultMessagesByInstanceId));
+    }
 
-                String action = protocol.equals(TranslationHandler.getString(Collect.getInstance(), R.string.protocol_google_sheets)) ?
-                        "HTTP-Sheets auto" : "HTTP auto";
-                String label = Collect.getFormIdentifierHash(instance.getJrFormId(), instance.getJrVersion());
-                analytics.logEvent(SUBMISSION, action, label);
+    private Pair<Boolean, String> submitToGoogleSheets(List<Instance> toUpload, InstanceGoogleSheetsUploader uploader, @Nullable ProgressListener progressListener) {
+        Map<String, String> resultMessagesByInstanceId = new HashMap<>();
+        boolean anyFailure = false;
+        List<Instance> queuedInstances = new ArrayList<>();
 
-                String submissionEndpoint = preferencesDataSourceProvider.getGeneralPreferences().getString(GeneralKeys.KEY_SUBMISSION_URL);
-                if (!submissionEndpoint.equals(TranslationHandler.getString(Collect.getInstance(), R.string.default_odk_submission))) {
-                    String submissionEndpointHash = FileUtils.getMd5Hash(new ByteArrayInputStream(submissionEndpoint.getBytes()));
-                    analytics.logEvent(CUSTOM_ENDPOINT_SUB, submissionEndpointHash);
+        long start = System.currentTimeMillis();
+        long bytesQueued = 0;
+
+        for (Instance instance : toUpload) {
+            try {
+                String destinationUrl = uploader.getUrlToSubmitTo(instance, null, null, null);
+                if (InstanceUploaderUtils.doesUrlRefersToGoogleSheetsFile(destinationUrl)) {
+                    long size = getInstanceSize(instance);
+                    uploader.queueSubmission(instance, destinationUrl);
+                    queuedInstances.add(instance);
+                    bytesQueued += size;
+                } else {
+                    resultMessagesByInstanceId.put(instance.getId().toString(), SPREADSHEET_UPLOADED_TO_GOOGLE_DRIVE);
+                    anyFailure = true;
                 }
             } catch (UploadException e) {
                 Timber.d(e);
+                resultMessagesByInstanceId.put(instance.getId().toString(), e.getDisplayMessage());
+                anyFailure = true;
+            }
+
+            if (progressListener != null && toUpload.size() > 1) {
+                long elapsed = Math.max(1, System.currentTimeMillis() - start);
+                progressListener.onProgress(queuedInstances.size(), toUpload.size(), bytesQueued * 1000 / elapsed);
+            }
+        }
+
+        Map<Long, UploadException> failures = uploader.uploadQueuedSubmissions();
+        for (Instance instance : queuedInstances) {
+            UploadException failure = failures.get(instance.getId());
+            if (failure != null) {
+                Timber.d(failure);
+                resultMessagesByInstanceId.put(instance.getId().toString(), failure.getDisplayMessage());
                 anyFailure = true;
-                resultMessagesByInstanceId.put(instance.getId().toString(),
-                        e.getDisplayMessage());
+            } else {
+                onSubmitted(instance, true);
+                resultMessagesByInstanceId.put(instance.getId().toString(), TranslationHandler.getString(Collect.getInstance(), R.string.success));
             }
         }
 
         return new Pair<>(anyFailure, InstanceUploaderUtils.getUploadResultMessage(instancesRepository, Collect.getInstance(), resultMessagesByInstanceId));
     }
 
+    private Result submitInstance(Instance instance, InstanceUploader uploader, String deviceId) {
+        // measured first because the instance may be deleted once it's sent
+        long size = getInstanceSize(instance);
+        try {
+            String destinationUrl = uploader.getUrlToSubmitTo(instance, deviceId, null, null);
+            String customMessage = uploader.uploadOneSubmission(instance, destinationUrl);
+            onSubmitted(instance, false);
+
+            return new Result(instance, size, false, customMessage != null ? customMessage : TranslationHandler.getString(Collect.getInstance(), R.string.success));
+        } catch (UploadException e) {
+            Timber.d(e);
+            return new Result(instance, size, true, e.getDisplayMessage());
+        }
+    }
+
+    private void onSubmitted(Instance instance, boolean isGoogleSheets) {
+        // If the submission was successful, delete the instance if either the app-level
+        // delete preference is set or the form definition requests auto-deletion.
+        // TODO: this could take some time so might be better to do in a separate process,
+        // perhaps another worker. It also feels like this could fail and if so should be
+        // communicated to the user. Maybe successful delete should also be communicated?
+        if (InstanceUploaderUtils.shouldFormBeDeleted(formsRepository, instance.getJrFormId(), instance.getJrVersion(),
+                preferencesDataSourceProvider.getGeneralPreferences().getBoolean(GeneralKeys.KEY_DELETE_AFTER_SEND))) {
+            Uri deleteForm = Uri.withAppendedPath(InstanceProviderAPI.InstanceColumns.CONTENT_URI, instance.getId().toString());
+            Collect.getInstance().getContentResolver().delete(deleteForm, null, null);
+        }
+
+        String action = isGoogleSheets ? "HTTP-Sheets auto" : "HTTP auto";
+        String label = Collect.getFormIdentifierHash(instance.getJrFormId(), instance.getJrVersion());
+        analytics.logEvent(SUBMISSION, action, label);
+
+        String submissionEndpoint = preferencesDataSourceProvider.getGeneralPreferences().getString(GeneralKeys.KEY_SUBMISSION_URL);
+        if (!submissionEndpoint.equals(TranslationHandler.getString(Collect.getInstance(), R.string.default_odk_submission))) {
+            String submissionEndpointHash = FileUtils.getMd5Hash(new ByteArrayInputStream(submissionEndpoint.getBytes()));
+            analytics.logEvent(CUSTOM_ENDPOINT_SUB, submissionEndpointHash);
+        }
+    }
+
+    private int getSubmissionParallelism() {
+        try {
+            return Math.max(1, Integer.parseInt(preferencesDataSourceProvider.getGeneralPreferences().getString(GeneralKeys.KEY_SUBMISSION_PARALLELISM)));
+        } catch (NumberFormatException e) {
+            return 1;
+        }
+    }
+
+    /**
+     * Returns the size of the files in the instance's folder which is roughly what is uploaded.
+     */
+    private static long getInstanceSize(Instance instance) {
+        File[] files = new File(instance.getAbsoluteInstanceFilePath()).getParentFile().listFiles();
+        long size = 0;
+        if (files != null) {
+            for (File file : files) {
+                size += file.length();
+            }
+        }
+        return size;
+    }
+
     /**
      * Returns instances that need to be auto-sent.
      */
@@ -175,4 +310,22 @@ public class InstanceSubmitter {
         }
         return form.getAutoSend() == null ? isAutoSendAppSettingEnabled : Boolean.valueOf(form.getAutoSend());
     }
+
+    public interface ProgressListener {
+        void onProgress(int submitted, int total, long bytesPerSecond);
+    }
+
+    private static class Result {
+        final Instance instance;
+        final long size;
+        final boolean failure;
+        final String message;
+
+        Result(Instance instance, long size, boolean failure, String message) {
+            this.instance = instance;
+            this.size = size;
+            this.failure = failure;
+            this.message = message;
+        }
+    }
 }
@@ -44,10 +44,12 @@ import org.javarosa.xpath.XPathParseTool;
 import org.javarosa.xpath.expr.XPathExpression;
 import org.odk.collect.android.exception.JavaRosaException;
 import org.odk.collect.android.external.ExternalDataUtil;
-import org.odk.collect.android.formentry.audit.AsyncTaskAuditEventWriter;
+import org.odk.collect.android.fastexternalitemset.ItemsetCache;
 import org.odk.collect.android.formentry.audit.AuditConfig;
 import org.odk.collect.android.formentry.audit.AuditEventLogger;
+import org.odk.collect.android.formentry.audit.QueuedAuditEventWriter;
 import org.odk.collect.android.forms.FormDesignException;
+import org.odk.collect.android.logic.HierarchyModel;
 import org.odk.collect.android.utilities.Appearances;
 import org.odk.collect.android.utilities.FileUtils;
 import org.odk.collect.android.utilities.FormNameUtils;
@@ -121,6 +123,8 @@ public class FormController {
     private File instanceFile;
     private final FormEntryController formEntryController;
     private FormIndex indexWaitingForData;
+    private final ItemsetCache itemsetCache = new ItemsetCache();
+    private final HierarchyModel hierarchyModel = new HierarchyModel();
 
     public FormController(File mediaFolder, FormEntryController fec, File instanceFile) {
         this.mediaFolder = mediaFolder;
@@ -132,6 +136,14 @@ public class FormController {
         return formEntryController.getModel().getForm();
     }
 
+    public ItemsetCache getItemsetCache() {
+        return itemsetCache;
+    }
+
+    public HierarchyModel getHierarchyModel() {
+        return hierarchyModel;
+    }
+
     public File getMediaFolder() {
         return mediaFolder;
     }
@@ -168,7 +180,7 @@ public class FormController {
             AuditConfig auditConfig = getSubmissionMetadata().auditConfig;
 
             if (auditConfig != null) {
-                auditEventLogger = new AuditEventLogger(auditConfig, new AsyncTaskAuditEventWriter(new File(instanceFile.getParentFile().getPath() + File.separator + AUDIT_FILE_NAME), auditConfig.isLocationEnabled(), auditConfig.isTrackingChangesEnabled(), auditConfig.isIdentifyUserEnabled(), auditConfig.isTrackChangesReasonEnabled()), this);
+                auditEventLogger = new AuditEventLogger(auditConfig, new QueuedAuditEventWriter(new File(instanceFile.getParentFile().getPath() + File.separator + AUDIT_FILE_NAME), auditConfig.isLocationEnabled(), auditConfig.isTrackingChangesEnabled(), auditConfig.isIdentifyUserEnabled(), auditConfig.isTrackChangesReasonEnabled()), this);
             } else {
                 auditEventLogger = new AuditEventLogger(null, null, this);
             }
@@ -476,10 +488,13 @@ public class FormController {
      * Attempts to save answer into the given FormIndex into the data model.
      */
     public int answerQuestion(FormIndex index, IAnswerData data) throws JavaRosaException {
+        HierarchyModel.AnswerChange answerChange = hierarchyModel.startAnswerChange(getFormDef().getMainInstance(), index);
         try {
             return formEntryController.answerQuestion(index, data, true);
         } catch (Exception e) {
             throw new JavaRosaException(e);
+        } finally {
+            answerChange.finish(this);
         }
     }
 
@@ -512,6 +527,7 @@ public class FormController {
      * @return true if saved successfully, false otherwise.
      */
     public boolean saveAnswer(FormIndex index, IAnswerData data) throws JavaRosaException {
+        HierarchyModel.AnswerChange answerChange = hierarchyModel.startAnswerChange(getFormDef().getMainInstance(), index);
         try {
             return formEntryController.saveAnswer(index, data, true);
         } catch (Exception e) {
@@ -521,6 +537,8 @@ public class FormController {
                     dataType, ref, index);
 
             throw new JavaRosaException(e);
+        } finally {
+            answerChange.finish(this);
         }
     }
 
@@ -554,6 +572,22 @@ public class FormController {
         return stepToNextEvent(STEP_OVER_GROUP);
     }
 
+    /**
+     * Steps to the next relevant event after the group or repeat instance at the current index
+     * without visiting anything inside it, so that the cost doesn't depend on how big it is. After
+     * a repeat instance, that's the next instance of the same repeat if there is one.
+     */
+    public int stepPastGroup() {
+        FormEntryModel model = formEntryController.getModel();
+        FormIndex index = model.incrementIndex(getFormIndex(), false);
+
+        // Everything in a non-relevant group is non-relevant so it can be stepped past too
+        while (index.isInForm() && !model.isIndexRelevant(index)) {
+            index = model.incrementIndex(index, false);
+        }
+        return formEntryController.jumpToIndex(index);
+    }
+
     /**
      * Move the current form index to the index of the previous question in the form.
      * Step backward out of repeats and groups as needed. If the resulting question
@@ -875,6 +909,7 @@ public class FormController {
      */
     public void newRepeat() {
         formEntryController.newRepeat();
+        hierarchyModel.clear();
     }
 
     /**
@@ -886,6 +921,7 @@ public class FormController {
     public void deleteRepeat() {
         FormIndex fi = formEntryController.deleteRepeat();
         formEntryController.jumpToIndex(fi);
+        hierarchyModel.clear();
     }
 
     /**
@@ -893,6 +929,7 @@ public class FormController {
      */
     public void setLanguage(String language) {
         formEntryController.setLanguage(language);
+        hierarchyModel.clear();
     }
 
     /**
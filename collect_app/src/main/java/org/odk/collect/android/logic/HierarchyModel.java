@@ -0,0 +1,214 @@
+package org.odk.collect.android.logic;
+
+import androidx.annotation.Nullable;
+
+import org.javarosa.core.model.FormIndex;
+import org.javarosa.core.model.data.IAnswerData;
+import org.javarosa.core.model.instance.FormInstance;
+import org.javarosa.core.model.instance.TreeElement;
+import org.javarosa.core.model.instance.TreeReference;
+import org.odk.collect.android.javarosawrapper.FormController;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Keeps the rows of each level of the form hierarchy that has been shown in a form session, so
+ * that going up and down levels or opening the hierarchy again doesn't walk the form again.
+ *
+ * A level is the screen (the start of the form, a group or a repeat instance) and, if it's
+ * showing the instances of a repeat in that screen, the repeat.
+ *
+ * Saving an answer that doesn't change the stored value keeps every level. When the value
+ * changes, the levels of the screens around the question are dropped, as are the repeat
+ * pickers, whose labels can come from a group inside each instance. The other levels are
+ * kept if no other value, relevance or required flag in the instance changed and the labels
+ * of their rows, which can include answers, are the same. Otherwise every level is dropped.
+ *
+ * Adding or deleting a repeat instance, changing the language or setting values directly drops
+ * every level: deleting an instance changes the indexes of the ones after it and the values of
+ * a new instance can change calculations anywhere in the form.
+ *
+ * Levels are built on a background thread, so each change also moves the model on to a new
+ * version and a level that was being built from an older version is not kept.
+ *
+ * The rows don't have icons so that nothing here holds on to a view.
+ */
+public class HierarchyModel {
+
+    private final Map<List<FormIndex>, Level> levels = new HashMap<>();
+    private int version;
+
+    @Nullable
+    public synchronized List<HierarchyElement> getLevel(FormIndex screenIndex, @Nullable FormIndex repeatGroupPickerIndex) {
+        Level level = levels.get(getKey(screenIndex, repeatGroupPickerIndex));
+        return level != null ? level.elements : null;
+    }
+
+    /**
+     * @param formController the controller the level was built with, used to read the labels
+     *                       of its rows
+     * @param version        the {@link #getVersion()} the level was built from
+     */
+    public synchronized void putLevel(FormIndex screenIndex, @Nullable FormIndex repeatGroupPickerIndex,
+                                      List<HierarchyElement> elements, FormController formController, int version) {
+        if (version == this.version) {
+            // Pickers are dropped on every change so their labels aren't needed
+            List<String> labels = repeatGroupPickerIndex == null ? getLabels(formController, elements) : null;
+            levels.put(getKey(screenIndex, repeatGroupPickerIndex), new Level(elements, labels));
+        }
+    }
+
+    public synchronized int getVersion() {
+        return version;
+    }
+
+    /**
+     * Records the state of the form before the answer at the given index is saved. The returned
+     * change has to be finished once the answer has been saved or saving it failed.
+     */
+    public synchronized AnswerChange startAnswerChange(FormInstance instance, @Nullable FormIndex index) {
+        TreeElement element = index != null ? instance.resolveReference(index.getReference()) : null;
+        if (element == null) {
+            return new AnswerChange(instance, null, null, null);
+        }
+
+        // Only needed if there are levels that could be kept
+        Long signature = null;
+        for (List<FormIndex> key : levels.keySet()) {
+            if (!isAffected(key, element.getRef())) {
+                signature = getSignature(instance.getRoot(), element);
+                break;
+            }
+        }
+
+        return new AnswerChange(instance, element, getValueText(element), signature);
+    }
+
+    public synchronized void clear() {
+        version++;
+        levels.clear();
+    }
+
+    private synchronized void finishAnswerChange(AnswerChange change, FormController formController) {
+        if (change.element == null) {
+            clear();
+            return;
+        }
+
+        if (Objects.equals(change.oldValue, getValueText(change.element))) {
+            return;
+        }
+
+        version++;
+
+        TreeReference ref = change.element.getRef();
+        Iterator<List<FormIndex>> keys = levels.keySet().iterator();
+        while (keys.hasNext()) {
+            if (isAffected(keys.next(), ref)) {
+                keys.remove();
+            }
+        }
+
+        if (levels.isEmpty()) {
+            return;
+        }
+
+        if (change.signature == null || change.signature != getSignature(change.instance.getRoot(), change.element)) {
+            levels.clear();
+            return;
+        }
+
+        Iterator<Level> remaining = levels.values().iterator();
+        while (remaining.hasNext()) {
+            Level level = remaining.next();
+            if (!level.labels.equals(getLabels(formController, level.elements))) {
+                remaining.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns whether the level lists the node with the given ref, or a group or repeat it is in,
+     * or is a repeat picker.
+     */
+    private static boolean isAffected(List<FormIndex> key, TreeReference ref) {
+        FormIndex screenIndex = key.get(0);
+        return key.get(1) != null
+                || screenIndex.isBeginningOfFormIndex()
+                || screenIndex.getReference().isParentOf(ref, false);
+    }
+
+    /**
+     * Returns a hash of the values, relevance and required flags of every node except the one
+     * being answered.
+     */
+    private static long getSignature(TreeElement element, TreeElement answered) {
+        long signature = Objects.hashCode(element.getName()) * 31L + element.getMult();
+        if (element != answered) {
+            signature = signature * 31 + (element.isRelevant() ? 1 : 0);
+            signature = signature * 31 + (element.isRequired() ? 1 : 0);
+            signature = signature * 31 + Objects.hashCode(getValueText(element));
+        }
+
+        for (int i = 0; i < element.getNumChildren(); i++) {
+            TreeElement child = element.getChildAt(i);
+            if (child.getMult() != TreeReference.INDEX_TEMPLATE) {
+                signature = signature * 31 + getSignature(child, answered);
+            }
+        }
+
+        return signature;
+    }
+
+    @Nullable
+    private static String getValueText(TreeElement element) {
+        IAnswerData value = element.getValue();
+        return value != null ? value.getDisplayText() : null;
+    }
+
+    private static List<String> getLabels(FormController formController, List<HierarchyElement> elements) {
+        List<String> labels = new ArrayList<>();
+        for (HierarchyElement element : elements) {
+            labels.add(formController.getCaptionPrompt(element.getFormIndex()).getShortText());
+        }
+        return labels;
+    }
+
+    private static List<FormIndex> getKey(FormIndex screenIndex, @Nullable FormIndex repeatGroupPickerIndex) {
+        return Arrays.asList(screenIndex, repeatGroupPickerIndex);
+    }
+
+    public class AnswerChange {
+        private final FormInstance instance;
+        private final TreeElement element;
+        private final String oldValue;
+        private final Long signature;
+
+        AnswerChange(FormInstance instance, @Nullable TreeElement element, @Nullable String oldValue, @Nullable Long signature) {
+            this.instance = instance;
+            this.element = element;
+            this.oldValue = oldValue;
+            this.signature = signature;
+        }
+
+        public void finish(FormController formController) {
+            finishAnswerChange(this, formController);
+        }
+    }
+
+    private static class Level {
+        final List<HierarchyElement> elements;
+        final List<String> labels;
+
+        Level(List<HierarchyElement> elements, @Nullable List<String> labels) {
+            this.elements = elements;
+            this.labels = labels;
+        }
+    }
+}
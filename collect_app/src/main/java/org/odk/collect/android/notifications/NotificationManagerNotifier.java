@@ -6,6 +6,7 @@ import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.content.Intent;
 import android.os.Build;
+import android.text.format.Formatter;
 
 import androidx.core.app.NotificationCompat;
 
@@ -127,6 +128,20 @@ public class NotificationManagerNotifier implements Notifier {
         }
     }
 
+    @Override
+    public void onSubmissionProgress(int submitted, int total, long bytesPerSecond) {
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(application, COLLECT_NOTIFICATION_CHANNEL)
+                .setContentTitle(TranslationHandler.getString(application, R.string.submission_progress_title))
+                .setContentText(TranslationHandler.getString(application, R.string.submission_progress,
+                        submitted, total, Formatter.formatShortFileSize(application, bytesPerSecond)))
+                .setProgress(total, submitted, false)
+                .setOnlyAlertOnce(true)
+                .setSmallIcon(IconUtils.getNotificationAppIcon());
+
+        // Replaced by the results when the submission finishes
+        notificationManager.notify(AUTO_SEND_RESULT_NOTIFICATION_ID, builder.build());
+    }
+
     @Override
     public void onSubmission(boolean failure, String message) {
         Intent notifyIntent = new Intent(application, NotificationActivity.class);
@@ -14,5 +14,7 @@ public interface Notifier {
 
     void onSync(FormSourceException exception);
 
+    void onSubmissionProgress(int submitted, int total, long bytesPerSecond);
+
     void onSubmission(boolean failure, String message);
 }
@@ -58,6 +58,8 @@ public final class GeneralKeys {
     public static final String KEY_GUIDANCE_HINT = "guidance_hint";
     public static final String KEY_INSTANCE_SYNC = "instance_sync";
     public static final String KEY_FORM_UPDATE_MODE = "form_update_mode";
+    // not shown in the settings screens but can be set by importing settings
+    public static final String KEY_SUBMISSION_PARALLELISM = "submission_parallelism";
 
     // identity_preferences.xml
     public static final String KEY_ANALYTICS = "analytics";
@@ -118,6 +120,7 @@ public final class GeneralKeys {
         hashMap.put(KEY_BACKGROUND_LOCATION, true);
         hashMap.put(KEY_BACKGROUND_RECORDING, true);
         hashMap.put(KEY_FORM_UPDATE_MODE, "manual");
+        hashMap.put(KEY_SUBMISSION_PARALLELISM, "3");
         // form_metadata_preferences.xml
         hashMap.put(KEY_METADATA_USERNAME, "");
         hashMap.put(KEY_METADATA_PHONENUMBER, "");
@@ -33,7 +33,9 @@ import org.odk.collect.android.fastexternalitemset.ItemsetDbAdapter;
 import org.odk.collect.android.injection.DaggerUtils;
 import org.odk.collect.android.provider.FormsProviderAPI.FormsColumns;
 import org.odk.collect.android.storage.StoragePathProvider;
+import org.odk.collect.android.utilities.FileHashCache;
 import org.odk.collect.android.utilities.FileUtils;
+import org.odk.collect.android.utilities.FormDefCache;
 import org.odk.collect.utilities.Clock;
 
 import java.io.File;
@@ -61,6 +63,9 @@ public class FormsProvider extends ContentProvider {
     @Inject
     Clock clock;
 
+    @Inject
+    FileHashCache fileHashCache;
+
     private synchronized FormsDatabaseHelper getDbHelper() {
         if (dbHelper == null) {
             recreateDatabaseHelper();
@@ -194,11 +199,11 @@ public class FormsProvider extends ContentProvider {
             if (values.containsKey(FormsColumns.MD5_HASH)) {
                 values.remove(FormsColumns.MD5_HASH);
             }
-            String md5 = FileUtils.getMd5Hash(form);
+            String md5 = fileHashCache.getMd5Hash(form);
             values.put(FormsColumns.MD5_HASH, md5);
 
             if (!values.containsKey(FormsColumns.JRCACHE_FILE_PATH)) {
-                values.put(FormsColumns.JRCACHE_FILE_PATH, storagePathProvider.getRelativeCachePath(md5 + ".formdef"));
+                values.put(FormsColumns.JRCACHE_FILE_PATH, storagePathProvider.getRelativeCachePath(FormDefCache.getCacheFile(form, md5).getAbsolutePath()));
             }
             if (!values.containsKey(FormsColumns.FORM_MEDIA_PATH)) {
                 values.put(FormsColumns.FORM_MEDIA_PATH, storagePathProvider.getRelativeFormPath(FileUtils.constructMediaPath(filePath)));
@@ -261,7 +266,7 @@ public class FormsProvider extends ContentProvider {
 
     /**
      * This method removes the entry from the content provider, and also removes
-     * any associated files. files: form.xml, [formmd5].formdef, formname-media
+     * any associated files. files: form.xml, cached .formdef files, formname-media
      * {directory}
      */
     @Override
@@ -285,6 +290,7 @@ public class FormsProvider extends ContentProvider {
                                                 .getColumnIndex(FormsColumns.JRCACHE_FILE_PATH))));
                                 String formFilePath = storagePathProvider.getAbsoluteFormFilePath(del.getString(del
                                         .getColumnIndex(FormsColumns.FORM_FILE_PATH)));
+                                FormDefCache.deleteCache(new File(formFilePath));
                                 deleteFileOrDir(formFilePath);
                                 deleteFileOrDir(storagePathProvider.getAbsoluteFormFilePath(del.getString(del
                                         .getColumnIndex(FormsColumns.FORM_MEDIA_PATH))));
@@ -312,6 +318,7 @@ public class FormsProvider extends ContentProvider {
                                         .getColumnIndex(FormsColumns.JRCACHE_FILE_PATH))));
                                 String formFilePath = storagePathProvider.getAbsoluteFormFilePath(c.getString(c
                                         .getColumnIndex(FormsColumns.FORM_FILE_PATH)));
+                                FormDefCache.deleteCache(new File(formFilePath));
                                 deleteFileOrDir(formFilePath);
                                 deleteFileOrDir(storagePathProvider.getAbsoluteFormFilePath(c.getString(c
                                         .getColumnIndex(FormsColumns.FORM_MEDIA_PATH))));
@@ -358,6 +365,8 @@ public class FormsProvider extends ContentProvider {
 
     @Override
     public int update(Uri uri, ContentValues values, String where, String[] whereArgs) {
+        deferDaggerInit();
+
         StoragePathProvider storagePathProvider = new StoragePathProvider();
 
         int count = 0;
@@ -377,7 +386,7 @@ public class FormsProvider extends ContentProvider {
                         String formFile = storagePathProvider.getAbsoluteFormFilePath(values
                                 .getAsString(FormsColumns.FORM_FILE_PATH));
                         values.put(FormsColumns.MD5_HASH,
-                                FileUtils.getMd5Hash(new File(formFile)));
+                                fileHashCache.getMd5Hash(new File(formFile)));
                     }
 
                     Cursor c = null;
@@ -403,6 +412,7 @@ public class FormsProvider extends ContentProvider {
                                     deleteFileOrDir(storagePathProvider.getAbsoluteCacheFilePath(c
                                             .getString(c
                                                     .getColumnIndex(FormsColumns.JRCACHE_FILE_PATH))));
+                                    FormDefCache.deleteCache(new File(delFile));
                                 }
                             }
                         }
@@ -457,11 +467,11 @@ public class FormsProvider extends ContentProvider {
                                 deleteFileOrDir(storagePathProvider.getAbsoluteCacheFilePath(update
                                         .getString(update
                                                 .getColumnIndex(FormsColumns.JRCACHE_FILE_PATH))));
-                                String newMd5 = FileUtils
-                                        .getMd5Hash(new File(formFile));
+                                FormDefCache.deleteCache(new File(oldFile));
+                                String newMd5 = fileHashCache.getMd5Hash(new File(formFile));
                                 values.put(FormsColumns.MD5_HASH, newMd5);
                                 values.put(FormsColumns.JRCACHE_FILE_PATH,
-                                        storagePathProvider.getRelativeCachePath(newMd5 + ".formdef"));
+                                        storagePathProvider.getRelativeCachePath(FormDefCache.getCacheFile(new File(formFile), newMd5).getAbsolutePath()));
                             }
 
                             count = db.update(
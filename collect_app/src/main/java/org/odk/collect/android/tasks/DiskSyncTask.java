@@ -16,7 +16,9 @@ package org.odk.collect.android.tasks;
 
 import android.os.AsyncTask;
 
+import org.odk.collect.android.backgroundwork.FormCacheWarmUpManager;
 import org.odk.collect.android.listeners.DiskSyncListener;
+import org.odk.collect.android.utilities.FileHashCache;
 import org.odk.collect.android.utilities.FormsDirDiskFormsSynchronizer;
 
 /**
@@ -27,12 +29,19 @@ import org.odk.collect.android.utilities.FormsDirDiskFormsSynchronizer;
  */
 public class DiskSyncTask extends AsyncTask<Void, String, String> {
 
+    private final FormCacheWarmUpManager formCacheWarmUpManager;
+    private final FileHashCache fileHashCache;
     private DiskSyncListener listener;
     private String statusMessage = "";
 
+    public DiskSyncTask(FormCacheWarmUpManager formCacheWarmUpManager, FileHashCache fileHashCache) {
+        this.formCacheWarmUpManager = formCacheWarmUpManager;
+        this.fileHashCache = fileHashCache;
+    }
+
     @Override
     protected String doInBackground(Void... params) {
-        return new FormsDirDiskFormsSynchronizer().synchronizeAndReturnError();
+        return new FormsDirDiskFormsSynchronizer(formCacheWarmUpManager, fileHashCache).synchronizeAndReturnError();
     }
 
     public void setDiskSyncListener(DiskSyncListener listener) {
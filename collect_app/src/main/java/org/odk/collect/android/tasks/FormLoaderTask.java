@@ -33,6 +33,7 @@ import org.javarosa.xform.util.XFormUtils;
 import org.javarosa.xpath.XPathTypeMismatchException;
 import org.odk.collect.android.R;
 import org.odk.collect.android.application.Collect;
+import org.odk.collect.android.fastexternalitemset.ItemsetDao;
 import org.odk.collect.android.fastexternalitemset.ItemsetDbAdapter;
 import org.odk.collect.android.external.ExternalAnswerResolver;
 import org.odk.collect.android.external.ExternalDataHandler;
@@ -40,7 +41,9 @@ import org.odk.collect.android.external.ExternalDataManager;
 import org.odk.collect.android.external.ExternalDataManagerImpl;
 import org.odk.collect.android.external.ExternalDataReader;
 import org.odk.collect.android.external.ExternalDataReaderImpl;
+import org.odk.collect.android.external.ExternalSQLiteOpenHelper;
 import org.odk.collect.android.external.handler.ExternalDataHandlerPull;
+import org.odk.collect.android.external.handler.ExternalDataHandlerSearch;
 import org.odk.collect.android.listeners.FormLoaderListener;
 import org.odk.collect.android.javarosawrapper.FormController;
 import org.odk.collect.android.utilities.FileUtils;
@@ -55,10 +58,18 @@ import java.io.IOException;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import au.com.bytecode.opencsv.CSVReader;
 import timber.log.Timber;
 
+import static org.odk.collect.android.forms.FormUtils.REFERENCE_MANAGER_LOCK;
 import static org.odk.collect.android.forms.FormUtils.setupReferenceManagerForForm;
 
 /**
@@ -69,6 +80,10 @@ import static org.odk.collect.android.forms.FormUtils.setupReferenceManagerForFo
  */
 public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FECWrapper> {
     private static final String ITEMSETS_CSV = "itemsets.csv";
+    private static final int MAX_PARALLEL_LOAD_THREADS = 4;
+
+    // Forms that are loading or whose FormController hasn't been handed over yet
+    private static final AtomicInteger LOADING = new AtomicInteger();
 
     private FormLoaderListener stateListener;
     private String errorMsg;
@@ -82,6 +97,7 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
     private Intent intent;
     private ExternalDataManager externalDataManager;
     private FormDef formDef;
+    private final boolean parallelLoad;
 
     public static class FECWrapper {
         FormController controller;
@@ -108,9 +124,20 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
     FECWrapper data;
 
     public FormLoaderTask(String instancePath, String xpath, String waitingXPath) {
+        this(instancePath, xpath, waitingXPath, false);
+    }
+
+    /**
+     * @param parallelLoad if true, the independent loading stages (form definition, external
+     *                     CSV imports, itemsets.csv import and reading the instance XML) run at
+     *                     the same time on a bounded executor instead of one after the other.
+     *                     The time taken by each stage is reported through the progress callback.
+     */
+    public FormLoaderTask(String instancePath, String xpath, String waitingXPath, boolean parallelLoad) {
         this.instancePath = instancePath;
         this.xpath = xpath;
         this.waitingXPath = waitingXPath;
+        this.parallelLoad = parallelLoad;
     }
 
     /**
@@ -131,18 +158,26 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
         final File formXml = new File(formPath);
         final File formMediaDir = FileUtils.getFormMediaDir(formXml);
 
-        setupReferenceManagerForForm(ReferenceManager.instance(), formMediaDir);
+        // Everything that is loaded may resolve jr:// references. Background parsing checks
+        // isLoadingForm() under the same lock so once the manager is set up here nothing else
+        // changes it until this form has been loaded.
+        synchronized (REFERENCE_MANAGER_LOCK) {
+            setupReferenceManagerForForm(ReferenceManager.instance(), formMediaDir);
+        }
+
+        return loadForm(formPath, formXml, formMediaDir);
+    }
+
+    private FECWrapper loadForm(String formPath, File formXml, File formMediaDir) {
+        if (parallelLoad) {
+            return loadFormInParallel(formPath, formXml, formMediaDir);
+        }
 
         FormDef formDef = null;
         try {
             formDef = createFormDefFromCacheOrXml(formPath, formXml);
-        } catch (StackOverflowError e) {
-            Timber.e(e);
-            errorMsg = TranslationHandler.getString(Collect.getInstance(), R.string.too_complex_form);
         } catch (Exception | Error e) {
-            Timber.w(e);
-            errorMsg = "An unknown error has occurred. Please ask your project leadership to email support@getodk.org with information about this form.";
-            errorMsg += "\n\n" + e.getMessage();
+            setFormDefErrorMsg(e);
         }
 
         if (errorMsg != null || formDef == null) {
@@ -158,7 +193,7 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
         formDef.getEvaluationContext().addFunctionHandler(externalDataHandlerPull);
 
         try {
-            loadExternalData(formMediaDir);
+            loadExternalData(formMediaDir, null);
         } catch (Exception e) {
             Timber.e(e, "Exception thrown while loading external data");
             errorMsg = e.getMessage();
@@ -170,6 +205,118 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
             return null;
         }
 
+        processItemSets(formMediaDir);
+        indexItemSets(formDef, formMediaDir);
+        indexSearchedColumns(formDef, externalDataManager, formMediaDir);
+
+        return initializeFormController(formDef, formMediaDir, null);
+    }
+
+    /**
+     * Loads the form like the sequential path in {@link #doInBackground(String...)} but runs the
+     * stages that don't depend on each other concurrently. External data has to be fully imported
+     * before the form is initialized because calculations may call pulldata().
+     */
+    private FECWrapper loadFormInParallel(String formPath, File formXml, File formMediaDir) {
+        int threads = Math.max(2, Math.min(MAX_PARALLEL_LOAD_THREADS, Runtime.getRuntime().availableProcessors()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            externalDataManager = new ExternalDataManagerImpl(formMediaDir);
+
+            Future<FormDef> formDefFuture = executor.submit(timedStage(
+                    R.string.survey_loading_reading_form_message, () -> createFormDefFromCacheOrXml(formPath, formXml)));
+            Future<Void> itemsetsFuture = executor.submit(timedStage(
+                    R.string.survey_loading_reading_itemsets_message, () -> {
+                        processItemSets(formMediaDir);
+                        return null;
+                    }));
+            Future<byte[]> instanceBytesFuture = instancePath == null ? null : executor.submit(timedStage(
+                    R.string.survey_loading_reading_data_message, this::readInstanceBytes));
+
+            // Runs on this thread and fans out one import per CSV on the executor
+            try {
+                timedStage(R.string.survey_loading_reading_csv_message, () -> {
+                    loadExternalData(formMediaDir, executor);
+                    return null;
+                }).call();
+            } catch (Exception e) {
+                Timber.e(e, "Exception thrown while loading external data");
+                errorMsg = e.getMessage();
+                return null;
+            }
+
+            FormDef formDef = null;
+            try {
+                formDef = formDefFuture.get();
+            } catch (ExecutionException e) {
+                setFormDefErrorMsg(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+
+            if (errorMsg != null || formDef == null) {
+                Timber.w("No exception loading form but errorMsg set");
+                return null;
+            }
+
+            formDef.getEvaluationContext().addFunctionHandler(new ExternalDataHandlerPull(externalDataManager));
+
+            if (isCancelled()) {
+                return null;
+            }
+
+            byte[] instanceBytes = null;
+            if (instanceBytesFuture != null) {
+                try {
+                    instanceBytes = instanceBytesFuture.get();
+                } catch (ExecutionException e) {
+                    // Let the sequential import re-read the file and report the problem
+                    Timber.w(e.getCause());
+                }
+            }
+
+            itemsetsFuture.get();
+            indexItemSets(formDef, formMediaDir);
+            indexSearchedColumns(formDef, externalDataManager, formMediaDir);
+            return initializeFormController(formDef, formMediaDir, instanceBytes);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            Timber.e(e.getCause());
+            errorMsg = e.getCause().getMessage();
+            return null;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private <T> Callable<T> timedStage(int stageMessageId, Callable<T> stage) {
+        return () -> {
+            final long start = System.currentTimeMillis();
+            T result = stage.call();
+            float seconds = (System.currentTimeMillis() - start) / 1000F;
+
+            String stageMessage = TranslationHandler.getString(Collect.getInstance(), stageMessageId);
+            Timber.i("%s took %.3f seconds.", stageMessage, seconds);
+            publishProgress(TranslationHandler.getString(Collect.getInstance(), R.string.survey_loading_stage_timing, stageMessage, seconds));
+            return result;
+        };
+    }
+
+    private void setFormDefErrorMsg(Throwable e) {
+        if (e instanceof StackOverflowError) {
+            Timber.e(e);
+            errorMsg = TranslationHandler.getString(Collect.getInstance(), R.string.too_complex_form);
+        } else {
+            Timber.w(e);
+            errorMsg = "An unknown error has occurred. Please ask your project leadership to email support@getodk.org with information about this form.";
+            errorMsg += "\n\n" + e.getMessage();
+        }
+    }
+
+    private FECWrapper initializeFormController(FormDef formDef, File formMediaDir, byte[] instanceBytes) {
         // create FormEntryController from formdef
         final FormEntryModel fem = new FormEntryModel(formDef);
         final FormEntryController fec = new FormEntryController(fem);
@@ -179,7 +326,7 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
         try {
             Timber.i("Initializing form.");
             final long start = System.currentTimeMillis();
-            usedSavepoint = initializeForm(formDef, fec);
+            usedSavepoint = initializeForm(formDef, fec, instanceBytes);
             Timber.i("Form initialized in %.3f seconds.", (System.currentTimeMillis() - start) / 1000F);
         } catch (IOException | RuntimeException e) {
             Timber.e(e);
@@ -197,8 +344,6 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
             }
         }
 
-        processItemSets(formMediaDir);
-
         final FormController fc = new FormController(formMediaDir, fec, instancePath == null ? null
                 : new File(instancePath));
         if (xpath != null) {
@@ -292,21 +437,95 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
         }
     }
 
-    private boolean initializeForm(FormDef formDef, FormEntryController fec) throws IOException {
+    /**
+     * Indexes the itemsets.csv columns that the form's itemset queries filter on. This runs on
+     * every load rather than only when the CSV is imported so that tables imported before the
+     * indexes existed get indexed too.
+     */
+    private void indexItemSets(FormDef formDef, File formMediaDir) {
+        final File csv = new File(formMediaDir.getAbsolutePath() + "/" + ITEMSETS_CSV);
+        if (csv.exists()) {
+            final ItemsetDbAdapter ida = new ItemsetDbAdapter();
+            ida.open();
+            try {
+                ida.createIndexes(ItemsetDbAdapter.getMd5FromString(csv.getAbsolutePath()),
+                        ItemsetDao.getQueryColumns(formDef));
+            } finally {
+                ida.close();
+            }
+        }
+    }
+
+    /**
+     * Indexes the columns of the imported external data sets that the form's search() appearances
+     * query so that searching doesn't have to scan the whole table. Data sets that haven't been
+     * imported are left alone.
+     */
+    public static void indexSearchedColumns(FormDef formDef, ExternalDataManager externalDataManager, File formMediaDir) {
+        for (Map.Entry<String, Set<String>> entry : ExternalDataHandlerSearch.getIndexableColumns(formDef).entrySet()) {
+            if (new File(formMediaDir, entry.getKey() + ".db").exists()) {
+                ExternalSQLiteOpenHelper sqLiteOpenHelper = externalDataManager.getDatabase(entry.getKey(), false);
+                if (sqLiteOpenHelper != null) {
+                    sqLiteOpenHelper.createSearchIndexes(entry.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the savepoint file if it's newer than the last manual save, the instance file otherwise.
+     */
+    private File getInstanceXmlToLoad() {
+        File instanceXml = new File(instancePath);
+        final File savepointFile = SaveFormToDisk.getSavepointFile(instanceXml.getName());
+        if (savepointFile.exists()
+                && savepointFile.lastModified() > instanceXml.lastModified()) {
+            return savepointFile;
+        }
+        return instanceXml;
+    }
+
+    /**
+     * Reads the instance to load, replaying the savepoint journal written since the savepoint
+     * file if there is one.
+     */
+    private byte[] readInstanceBytes() throws IOException {
+        File instanceXml = getInstanceXmlToLoad();
+        if (!instanceXml.exists()) {
+            return null;
+        }
+
+        if (!instanceXml.equals(new File(instancePath))) {
+            File journalFile = SaveFormToDisk.getSavepointJournalFile(new File(instancePath).getName());
+            if (journalFile.exists()) {
+                try {
+                    return SavepointJournal.replay(instanceXml, journalFile);
+                } catch (IOException | RuntimeException e) {
+                    // The savepoint file on its own is still a consistent (if older) instance
+                    Timber.e(e, "Bad savepoint journal");
+                }
+            }
+        }
+
+        return org.apache.commons.io.FileUtils.readFileToByteArray(instanceXml);
+    }
+
+    /**
+     * @param instanceBytes the already read content of {@link #readInstanceBytes()} or null if
+     *                      it should be read here
+     */
+    private boolean initializeForm(FormDef formDef, FormEntryController fec, byte[] instanceBytes) throws IOException {
         final InstanceInitializationFactory instanceInit = new InstanceInitializationFactory();
         boolean usedSavepoint = false;
 
         if (instancePath != null) {
-            File instanceXml = new File(instancePath);
+            File instanceXml = getInstanceXmlToLoad();
 
             // Use the savepoint file only if it's newer than the last manual save
-            final File savepointFile = SaveFormToDisk.getSavepointFile(instanceXml.getName());
-            if (savepointFile.exists()
-                    && savepointFile.lastModified() > instanceXml.lastModified()) {
+            if (!instanceXml.equals(new File(instancePath))) {
                 usedSavepoint = true;
-                instanceXml = savepointFile;
                 Timber.w("Loading instance from savepoint file: %s",
-                        savepointFile.getAbsolutePath());
+                        instanceXml.getAbsolutePath());
             }
 
             if (instanceXml.exists()) {
@@ -314,7 +533,7 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
                 try {
                     Timber.i("Importing data");
                     publishProgress(TranslationHandler.getString(Collect.getInstance(), R.string.survey_loading_reading_data_message));
-                    importData(instanceXml, fec);
+                    importData(instanceBytes != null ? instanceBytes : readInstanceBytes(), fec);
                     formDef.initialize(false, instanceInit);
                 } catch (IOException | RuntimeException e) {
                     // Skip a savepoint file that is corrupted or 0-sized
@@ -339,8 +558,11 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
         return usedSavepoint;
     }
 
+    /**
+     * @param executor if not null, each CSV is imported into its own database on this executor
+     */
     @SuppressWarnings("unchecked")
-    private void loadExternalData(File mediaFolder) {
+    private void loadExternalData(File mediaFolder, ExecutorService executor) {
         // SCTO-594
         File[] zipFiles = mediaFolder.listFiles(new FileFilter() {
             @Override
@@ -359,6 +581,23 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
             }
         }
 
+        Map<String, File> externalDataMap = getExternalDataSets(mediaFolder);
+
+        if (!externalDataMap.isEmpty()) {
+
+            publishProgress(Collect.getInstance()
+                    .getString(R.string.survey_loading_reading_csv_message));
+
+            ExternalDataReader externalDataReader = new ExternalDataReaderImpl(this, executor);
+            externalDataReader.doImport(externalDataMap);
+        }
+    }
+
+    /**
+     * @return the CSV files in the media folder that are imported for pulldata() and search()
+     * keyed by data set name. itemsets.csv is excluded because it is handled separately.
+     */
+    public static Map<String, File> getExternalDataSets(File mediaFolder) {
         File[] csvFiles = mediaFolder.listFiles(new FileFilter() {
             @Override
             public boolean accept(File file) {
@@ -371,22 +610,14 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
         Map<String, File> externalDataMap = new HashMap<>();
 
         if (csvFiles != null) {
-
             for (File csvFile : csvFiles) {
                 String dataSetName = csvFile.getName().substring(0,
                         csvFile.getName().lastIndexOf("."));
                 externalDataMap.put(dataSetName, csvFile);
             }
-
-            if (!externalDataMap.isEmpty()) {
-
-                publishProgress(Collect.getInstance()
-                        .getString(R.string.survey_loading_reading_csv_message));
-
-                ExternalDataReader externalDataReader = new ExternalDataReaderImpl(this);
-                externalDataReader.doImport(externalDataMap);
-            }
         }
+
+        return externalDataMap;
     }
 
     public void publishExternalDataLoadingProgress(String message) {
@@ -407,8 +638,10 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
     // Copied from XFormParser.loadXmlInstance in order to set ExternalAnswerResolver for search()
     public static void importData(File instanceFile, FormEntryController fec) throws IOException, RuntimeException {
         // convert files into a byte array
-        byte[] fileBytes = org.apache.commons.io.FileUtils.readFileToByteArray(instanceFile);
+        importData(org.apache.commons.io.FileUtils.readFileToByteArray(instanceFile), fec);
+    }
 
+    public static void importData(byte[] fileBytes, FormEntryController fec) throws RuntimeException {
         // get the root of the saved and template instances
         TreeElement savedRoot = XFormParser.restoreDataModel(fileBytes, null).getRoot();
         TreeElement templateRoot = fec.getModel().getForm().getInstance().getRoot().deepCopy(true);
@@ -448,9 +681,23 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
         Timber.i("Done importing data");
     }
 
+    /**
+     * @return true if a form is being loaded. The global {@link ReferenceManager} is then set up
+     * for that form and shouldn't be changed.
+     */
+    public static boolean isLoadingForm() {
+        return LOADING.get() > 0;
+    }
+
+    @Override
+    protected void onPreExecute() {
+        LOADING.incrementAndGet();
+    }
+
     @Override
     protected void onCancelled() {
         super.onCancelled();
+        LOADING.decrementAndGet();
 
         if (externalDataManager != null) {
             externalDataManager.close();
@@ -470,6 +717,8 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
                 }
             } catch (Exception e) {
                 Timber.e(e);
+            } finally {
+                LOADING.decrementAndGet();
             }
         }
     }
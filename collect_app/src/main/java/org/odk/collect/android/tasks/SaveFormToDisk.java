@@ -25,6 +25,7 @@ import org.javarosa.core.model.data.GeoPointData;
 import org.javarosa.core.model.data.IAnswerData;
 import org.javarosa.core.model.instance.FormInstance;
 import org.javarosa.core.model.instance.TreeElement;
+import org.apache.commons.io.IOUtils;
 import org.javarosa.core.services.transport.payload.ByteArrayPayload;
 import org.javarosa.form.api.FormEntryController;
 import org.javarosa.xpath.XPathException;
@@ -42,6 +43,7 @@ import org.odk.collect.android.application.Collect;
 import org.odk.collect.android.dao.FormsDao;
 import org.odk.collect.android.dao.InstancesDao;
 import org.odk.collect.android.exception.EncryptionException;
+import org.odk.collect.android.formentry.audit.AuditEventLogger;
 import org.odk.collect.android.formentry.saving.FormSaver;
 import org.odk.collect.android.database.DatabaseInstancesRepository;
 import org.odk.collect.android.instances.Instance;
@@ -58,9 +60,9 @@ import org.odk.collect.android.utilities.MediaUtils;
 import org.odk.collect.android.utilities.TranslationHandler;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.RandomAccessFile;
 import java.util.ArrayList;
 
 import timber.log.Timber;
@@ -345,6 +347,14 @@ public class SaveFormToDisk {
         return new File(tempDir, instanceName + ".save");
     }
 
+    /**
+     * Return the journal of changes made since the savepoint file was written for a given instance.
+     */
+    static File getSavepointJournalFile(String instanceName) {
+        File tempDir = new File(new StoragePathProvider().getOdkDirPath(StorageSubdirectory.CACHE));
+        return new File(tempDir, instanceName + ".save.journal");
+    }
+
     /**
      * Return the formIndex file for a given instance.
      */
@@ -355,8 +365,10 @@ public class SaveFormToDisk {
 
     public static void removeSavepointFiles(String instanceName) {
         File savepointFile = getSavepointFile(instanceName);
+        File savepointJournalFile = getSavepointJournalFile(instanceName);
         File formIndexFile = getFormIndexFile(instanceName);
         FileUtils.deleteAndReport(savepointFile);
+        FileUtils.deleteAndReport(savepointJournalFile);
         FileUtils.deleteAndReport(formIndexFile);
     }
 
@@ -382,9 +394,9 @@ public class SaveFormToDisk {
 
         writeFile(payload, instancePath);
 
-        // Write last-saved instance
+        // Write last-saved instance as a copy of the instance file so the payload isn't written twice
         String lastSavedPath = formController.getLastSavedPath();
-        writeFile(payload, lastSavedPath);
+        copyFile(new File(instancePath), new File(lastSavedPath));
 
         // update the uri. We have exported the reloadable instance, so update status...
         // Since we saved a reloadable instance, it is flagged as re-openable so that if any error
@@ -405,18 +417,24 @@ public class SaveFormToDisk {
             File instanceXml = formController.getInstanceFile();
             File submissionXml = new File(instanceXml.getParentFile(), "submission.xml");
 
-            payload = formController.getSubmissionXml();
-
-            // write out submission.xml -- the data to actually submit to aggregate
-
-            progressListener.onProgressUpdate(
-                    TranslationHandler.getString(Collect.getInstance(), R.string.survey_saving_finalizing_message));
-
-            writeFile(payload, submissionXml.getAbsolutePath());
-
             // see if the form is encrypted and we can encrypt it...
             EncryptedFormInformation formInfo = EncryptionUtils.getEncryptedFormInformation(uri,
                     formController.getSubmissionMetadata());
+
+            // write out submission.xml -- the data to actually submit to aggregate. If the whole
+            // form is submitted and it isn't encrypted the instance file is submitted as is.
+            if (!canEditAfterCompleted || formInfo != null) {
+                progressListener.onProgressUpdate(
+                        TranslationHandler.getString(Collect.getInstance(), R.string.survey_saving_finalizing_message));
+
+                if (canEditAfterCompleted) {
+                    // the submission is identical to the instance file that was just written
+                    copyFile(instanceXml, submissionXml);
+                } else {
+                    writeFile(formController.getSubmissionXml(), submissionXml.getAbsolutePath());
+                }
+            }
+
             if (formInfo != null) {
                 // if we are encrypting, the form cannot be reopened afterward
                 canEditAfterCompleted = false;
@@ -425,7 +443,7 @@ public class SaveFormToDisk {
                 progressListener.onProgressUpdate(
                         TranslationHandler.getString(Collect.getInstance(), R.string.survey_saving_encrypting_message));
 
-                EncryptionUtils.generateEncryptedSubmission(instanceXml, submissionXml, formInfo);
+                encryptSubmission(formController.getAuditEventLogger(), instanceXml, submissionXml, formInfo);
                 isEncrypted = true;
 
                 analytics.logEvent(ENCRYPT_SUBMISSION, Collect.getCurrentFormIdentifierHash(), "");
@@ -447,10 +465,10 @@ public class SaveFormToDisk {
             if (!canEditAfterCompleted) {
                 manageFilesAfterSavingEncryptedForm(instanceXml, submissionXml);
             } else {
-                // try to delete the submissionXml file, since it is
-                // identical to the existing instanceXml file
+                // try to delete any submissionXml file left by an earlier save, since
+                // it would be identical to the existing instanceXml file
                 // (we don't need to delete and rename anything).
-                if (!submissionXml.delete()) {
+                if (submissionXml.exists() && !submissionXml.delete()) {
                     String msg = "Error deleting " + submissionXml.getAbsolutePath()
                             + " (instance is re-openable)";
                     Timber.w(msg);
@@ -501,6 +519,17 @@ public class SaveFormToDisk {
         return null;
     }
 
+    /**
+     * Encrypts the submission once the audit events queued so far are in the audit log. Otherwise
+     * they could be written after the instance was encrypted, so that they'd be missing from the
+     * submission and left behind in a plaintext audit log.
+     */
+    static void encryptSubmission(AuditEventLogger auditEventLogger, File instanceXml, File submissionXml,
+                                  EncryptedFormInformation formInfo) throws IOException, EncryptionException {
+        auditEventLogger.awaitWritten();
+        EncryptionUtils.generateEncryptedSubmission(instanceXml, submissionXml, formInfo);
+    }
+
     static void manageFilesAfterSavingEncryptedForm(File instanceXml, File submissionXml) throws IOException {
         // AT THIS POINT, there is no going back.  We are committed
         // to returning "success" (true) whether or not we can
@@ -529,38 +558,50 @@ public class SaveFormToDisk {
     }
 
     /**
-     * Writes payload contents to the disk.
+     * Writes payload contents to the disk. The contents are streamed to a hidden temporary file
+     * next to path which is then renamed to path so that a failed save never leaves a partially
+     * written file behind.
      */
     static void writeFile(ByteArrayPayload payload, String path) throws IOException {
         File file = new File(path);
-        if (file.exists() && !file.delete()) {
-            throw new IOException("Cannot overwrite " + path + ". Perhaps the file is locked?");
+        if (payload.getLength() <= 0) {
+            if (file.exists() && !file.delete()) {
+                throw new IOException("Cannot overwrite " + path + ". Perhaps the file is locked?");
+            }
+            return;
         }
 
-        // create data stream
-        InputStream is = payload.getPayloadStream();
-        int len = (int) payload.getLength();
-
-        // read from data stream
-        byte[] data = new byte[len];
-        int read = is.read(data, 0, len);
-        if (read > 0) {
-            // Make sure the directory path to this file exists.
-            file.getParentFile().mkdirs();
-            // write xml file
-            RandomAccessFile randomAccessFile = null;
-            try {
-                randomAccessFile = new RandomAccessFile(file, "rws");
-                randomAccessFile.write(data);
-            } finally {
-                if (randomAccessFile != null) {
-                    try {
-                        randomAccessFile.close();
-                    } catch (IOException e) {
-                        Timber.e(e, "Error closing RandomAccessFile: %s", path);
-                    }
-                }
+        // Make sure the directory path to this file exists.
+        file.getParentFile().mkdirs();
+
+        // hidden so that it's never mistaken for an attachment (see EncryptionUtils)
+        File tempFile = new File(file.getParentFile(), "." + file.getName() + ".tmp");
+        try (InputStream is = payload.getPayloadStream();
+             FileOutputStream fileOutputStream = new FileOutputStream(tempFile)) {
+            IOUtils.copy(is, fileOutputStream);
+            fileOutputStream.getChannel().force(true);
+        } catch (IOException e) {
+            tempFile.delete();
+            throw e;
+        }
+
+        if (!tempFile.renameTo(file)) {
+            // some file systems can't rename over an existing file
+            if (file.exists() && !file.delete()) {
+                tempFile.delete();
+                throw new IOException("Cannot overwrite " + path + ". Perhaps the file is locked?");
+            }
+            if (!tempFile.renameTo(file)) {
+                tempFile.delete();
+                throw new IOException("Cannot rename " + tempFile.getAbsolutePath() + " to " + path);
             }
         }
     }
+
+    private static void copyFile(File source, File destination) throws IOException {
+        String errorMessage = FileUtils.copyFile(source, destination);
+        if (errorMessage != null) {
+            throw new IOException(errorMessage);
+        }
+    }
 }
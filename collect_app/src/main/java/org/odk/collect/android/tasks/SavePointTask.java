@@ -20,12 +20,12 @@ package org.odk.collect.android.tasks;
 
 import android.os.AsyncTask;
 
-import org.javarosa.core.services.transport.payload.ByteArrayPayload;
 import org.odk.collect.android.application.Collect;
 import org.odk.collect.android.listeners.SavePointListener;
 import org.odk.collect.android.javarosawrapper.FormController;
 
 import java.io.File;
+import java.lang.ref.WeakReference;
 
 import timber.log.Timber;
 
@@ -39,9 +39,17 @@ public class SavePointTask extends AsyncTask<Void, Void, String> {
     private static final Object LOCK = new Object();
     private static int lastPriorityUsed;
 
+    // The journal of the form being filled in, only used while holding LOCK
+    private static WeakReference<FormController> journaledFormController = new WeakReference<>(null);
+    private static SavepointJournal journal;
+
     private final SavePointListener listener;
     private final int priority;
 
+    /**
+     * Only appends the answers that changed since the last savepoint to a journal (see
+     * {@link SavepointJournal}) rather than writing the whole instance every time.
+     */
     public SavePointTask(SavePointListener listener) {
         this.listener = listener;
         this.priority = ++lastPriorityUsed;
@@ -59,19 +67,21 @@ public class SavePointTask extends AsyncTask<Void, Void, String> {
 
             try {
                 FormController formController = Collect.getInstance().getFormController();
-                File temp = SaveFormToDisk.getSavepointFile(formController.getInstanceFile().getName());
-                ByteArrayPayload payload = formController.getFilledInFormXml();
+                String instanceName = formController.getInstanceFile().getName();
+                File temp = SaveFormToDisk.getSavepointFile(instanceName);
 
-                if (priority < lastPriorityUsed) {
-                    Timber.w("Savepoint thread (p=%d) was cancelled (b) because another one is waiting (p=%d)", priority, lastPriorityUsed);
-                    return null;
+                if (journaledFormController.get() != formController) {
+                    journaledFormController = new WeakReference<>(formController);
+                    journal = new SavepointJournal(temp, SaveFormToDisk.getSavepointJournalFile(instanceName));
                 }
 
-                // write out xml
-                SaveFormToDisk.writeFile(payload, temp.getAbsolutePath());
+                // There's no second cancellation check: the checkpoint works out what changed
+                // while it writes, so there's no serialized instance to throw away
+                boolean wroteSnapshot = journal.checkpoint(formController.getFormDef().getMainInstance().getRoot(),
+                        () -> SaveFormToDisk.writeFile(formController.getFilledInFormXml(), temp.getAbsolutePath()));
 
                 long end = System.currentTimeMillis();
-                Timber.i("Savepoint ms: %s to %s", Long.toString(end - start), temp.toString());
+                Timber.i("Savepoint ms: %s to %s (%s)", Long.toString(end - start), temp.toString(), wroteSnapshot ? "snapshot" : "journal");
 
                 return null;
             } catch (Exception e) {
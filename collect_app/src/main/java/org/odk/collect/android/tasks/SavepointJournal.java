@@ -0,0 +1,394 @@
+package org.odk.collect.android.tasks;
+
+import org.javarosa.core.model.data.IAnswerData;
+import org.javarosa.core.model.instance.TreeElement;
+import org.javarosa.core.model.instance.TreeReference;
+import org.javarosa.xform.util.XFormAnswerDataSerializer;
+import org.odk.collect.android.utilities.FileUtils;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+/**
+ * A savepoint made of a full snapshot of the instance and a journal of the changes made since.
+ *
+ * The first checkpoint of a form session writes a snapshot. Later checkpoints compare the
+ * instance with the previous checkpoint and only append the values that changed, so a checkpoint
+ * costs about as much I/O as the answers given since the last one rather than the size of the
+ * whole instance. Once the journal is bigger than the snapshot it's compacted by writing a new
+ * snapshot.
+ *
+ * Each line of the journal changes one element or attribute, addressed by its path in the
+ * instance (e.g. {@code /data/person[2]/age}):
+ * <ul>
+ * <li>{@code +path} adds an element that has children</li>
+ * <li>{@code =path<tab>value} sets the value of an element or attribute, adding it if needed</li>
+ * <li>{@code -path} removes an element or attribute</li>
+ * <li>{@code .} ends a checkpoint</li>
+ * </ul>
+ * The first line of the journal is {@code #} followed by the MD5 hash of the snapshot it applies
+ * to. A new snapshot replaces the old one before the old journal is deleted, so if the app stops
+ * in between the old journal is still there but its hash doesn't match and it isn't replayed.
+ * Changes are only replayed up to the last complete checkpoint, so a checkpoint that was being
+ * written when the app stopped is left out.
+ */
+class SavepointJournal {
+    private static final String COMMIT = ".";
+    private static final String SNAPSHOT_HASH_PREFIX = "#";
+
+    interface SnapshotWriter {
+        /**
+         * Writes the instance to the snapshot file, replacing the previous snapshot atomically
+         * (e.g. by renaming a temporary file into place).
+         */
+        void write() throws IOException;
+    }
+
+    private final File snapshotFile;
+    private final File journalFile;
+
+    // The values at the last checkpoint, by path, or null if the next checkpoint needs a snapshot
+    private Map<String, String> checkpoint;
+    private String snapshotHash;
+
+    SavepointJournal(File snapshotFile, File journalFile) {
+        this.snapshotFile = snapshotFile;
+        this.journalFile = journalFile;
+    }
+
+    /**
+     * Records the current state of the instance, either by appending the changes since the last
+     * checkpoint to the journal or by writing a new snapshot with snapshotWriter.
+     *
+     * @return whether a snapshot was written
+     */
+    boolean checkpoint(TreeElement root, SnapshotWriter snapshotWriter) throws IOException {
+        Map<String, String> values = getValues(root);
+
+        // The snapshot is gone when the form has been saved since the last checkpoint
+        if (checkpoint == null || values == null || !snapshotFile.exists() || journalFile.length() > snapshotFile.length()) {
+            checkpoint = null;
+
+            // Until the old journal is deleted, its hash is what stops it being replayed over the
+            // new snapshot
+            snapshotWriter.write();
+            snapshotHash = FileUtils.getMd5Hash(snapshotFile);
+            if (journalFile.exists() && !journalFile.delete()) {
+                throw new IOException("Cannot delete " + journalFile);
+            }
+            if (snapshotHash == null) {
+                throw new IOException("Cannot read " + snapshotFile);
+            }
+
+            checkpoint = values;
+            return true;
+        }
+
+        String changes = getChanges(checkpoint, values);
+        if (!changes.isEmpty()) {
+            try {
+                String header = journalFile.exists() ? "" : SNAPSHOT_HASH_PREFIX + snapshotHash + "\n";
+                append(header + changes + COMMIT + "\n");
+            } catch (IOException e) {
+                // Part of the checkpoint may have been written, so start again from a snapshot
+                checkpoint = null;
+                throw e;
+            }
+        }
+
+        checkpoint = values;
+        return false;
+    }
+
+    private void append(String text) throws IOException {
+        try (FileOutputStream outputStream = new FileOutputStream(journalFile, true)) {
+            FileChannel channel = outputStream.getChannel();
+            ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Returns the value of every element and attribute that would be in the serialized instance
+     * by path, in document order. Elements with children have a null value. Returns null if some
+     * value can't be written as text.
+     */
+    static Map<String, String> getValues(TreeElement root) {
+        Map<String, String> values = new LinkedHashMap<>();
+        return addValues(root, "", new XFormAnswerDataSerializer(), values) ? values : null;
+    }
+
+    private static boolean addValues(TreeElement element, String parentPath, XFormAnswerDataSerializer serializer, Map<String, String> values) {
+        String path = parentPath + "/" + element.getName() + (element.getMult() > 0 ? "[" + (element.getMult() + 1) + "]" : "");
+
+        IAnswerData value = element.getValue();
+        if (value != null) {
+            Object serialized = serializer.serializeAnswerData(value, element.getDataType());
+            if (!(serialized instanceof String)) {
+                return false;
+            }
+            values.put(path, (String) serialized);
+        } else if (element.getNumChildren() == 0) {
+            values.put(path, "");
+        } else {
+            values.put(path, null);
+        }
+
+        for (int i = 0; i < element.getAttributeCount(); i++) {
+            String namespace = element.getAttributeNamespace(i);
+            if (namespace == null || namespace.isEmpty()) {
+                values.put(path + "/@" + element.getAttributeName(i), element.getAttributeValue(i));
+            }
+        }
+
+        if (value == null) {
+            // Like XFormSerializingVisitor, leave out templates and non-relevant elements
+            for (int i = 0; i < element.getNumChildren(); i++) {
+                TreeElement child = element.getChildAt(i);
+                if (child.getMult() != TreeReference.INDEX_TEMPLATE && child.isRelevant()
+                        && !addValues(child, path, serializer, values)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    static String getChanges(Map<String, String> previous, Map<String, String> current) {
+        StringBuilder changes = new StringBuilder();
+        for (Map.Entry<String, String> entry : current.entrySet()) {
+            String path = entry.getKey();
+            String value = entry.getValue();
+            if (value == null) {
+                if (!previous.containsKey(path)) {
+                    changes.append('+').append(path).append('\n');
+                }
+            } else if (!previous.containsKey(path) || !value.equals(previous.get(path))) {
+                changes.append('=').append(path).append('\t').append(escape(value)).append('\n');
+            }
+        }
+
+        // Removed in reverse document order so that removing a repeat doesn't change the index of
+        // the ones still to be removed. Anything inside a removed element goes with it.
+        List<String> removed = new ArrayList<>();
+        String lastRemoved = null;
+        for (String path : previous.keySet()) {
+            if (!current.containsKey(path) && (lastRemoved == null || !path.startsWith(lastRemoved + "/"))) {
+                removed.add(path);
+                lastRemoved = path;
+            }
+        }
+        for (int i = removed.size() - 1; i >= 0; i--) {
+            changes.append('-').append(removed.get(i)).append('\n');
+        }
+
+        return changes.toString();
+    }
+
+    /**
+     * Returns the snapshot with the complete checkpoints in the journal applied to it, as XML.
+     * A journal that was written for a different snapshot is ignored.
+     */
+    static byte[] replay(File snapshotFile, File journalFile) throws IOException {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            Document document = factory.newDocumentBuilder().parse(snapshotFile);
+
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(journalFile), StandardCharsets.UTF_8))) {
+                // A journal left over from the previous snapshot isn't replayed at all
+                boolean forSnapshot = (SNAPSHOT_HASH_PREFIX + FileUtils.getMd5Hash(snapshotFile)).equals(reader.readLine());
+
+                List<String> changes = new ArrayList<>();
+                String line;
+                while (forSnapshot && (line = reader.readLine()) != null) {
+                    if (line.equals(COMMIT)) {
+                        for (String change : changes) {
+                            apply(document, change);
+                        }
+                        changes.clear();
+                    } else {
+                        changes.add(line);
+                    }
+                }
+            }
+
+            Transformer transformer = TransformerFactory.newInstance().newTransformer();
+            transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            transformer.transform(new DOMSource(document), new StreamResult(outputStream));
+            return outputStream.toByteArray();
+        } catch (ParserConfigurationException | SAXException | TransformerException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static void apply(Document document, String change) throws IOException {
+        if (change.isEmpty()) {
+            throw new IOException("Empty journal line");
+        }
+
+        String path;
+        String value = null;
+        if (change.charAt(0) == '=') {
+            int tab = change.indexOf('\t');
+            if (tab == -1) {
+                throw new IOException("No value in journal line: " + change);
+            }
+            path = change.substring(1, tab);
+            value = unescape(change.substring(tab + 1));
+        } else {
+            path = change.substring(1);
+        }
+
+        String attribute = null;
+        int attributeStart = path.indexOf("/@");
+        if (attributeStart != -1) {
+            attribute = path.substring(attributeStart + 2);
+            path = path.substring(0, attributeStart);
+        }
+
+        switch (change.charAt(0)) {
+            case '+':
+                findElement(document, path, true);
+                break;
+            case '=':
+                Element element = findElement(document, path, true);
+                if (attribute != null) {
+                    element.setAttribute(attribute, value);
+                } else {
+                    element.setTextContent(value);
+                }
+                break;
+            case '-':
+                Element removed = findElement(document, path, false);
+                if (removed != null) {
+                    if (attribute != null) {
+                        removed.removeAttribute(attribute);
+                    } else if (removed.getParentNode() != null) {
+                        removed.getParentNode().removeChild(removed);
+                    }
+                }
+                break;
+            default:
+                throw new IOException("Unknown journal line: " + change);
+        }
+    }
+
+    private static Element findElement(Document document, String path, boolean create) throws IOException {
+        String[] steps = path.substring(1).split("/");
+        Element element = document.getDocumentElement();
+        if (!getName(element).equals(steps[0])) {
+            throw new IOException("Journal doesn't match the snapshot: " + path);
+        }
+
+        for (int i = 1; i < steps.length; i++) {
+            String name = steps[i];
+            int index = 1;
+            int bracket = name.indexOf('[');
+            if (bracket != -1) {
+                index = Integer.parseInt(name.substring(bracket + 1, name.length() - 1));
+                name = name.substring(0, bracket);
+            }
+
+            Element parent = element;
+            Element lastWithName = null;
+            int count = 0;
+            element = null;
+            for (Node child = parent.getFirstChild(); child != null && element == null; child = child.getNextSibling()) {
+                if (child instanceof Element && getName(child).equals(name)) {
+                    lastWithName = (Element) child;
+                    if (++count == index) {
+                        element = lastWithName;
+                    }
+                }
+            }
+
+            if (element == null) {
+                if (!create) {
+                    return null;
+                }
+
+                // New repeats go after the existing ones
+                for (; count < index; count++) {
+                    String qualifiedName = parent.getPrefix() != null ? parent.getPrefix() + ":" + name : name;
+                    Element added = document.createElementNS(parent.getNamespaceURI(), qualifiedName);
+                    parent.insertBefore(added, lastWithName != null ? lastWithName.getNextSibling() : null);
+                    lastWithName = added;
+                }
+                element = lastWithName;
+            }
+        }
+        return element;
+    }
+
+    private static String getName(Node node) {
+        return node.getLocalName() != null ? node.getLocalName() : node.getNodeName();
+    }
+
+    private static String escape(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    escaped.append("\\\\");
+                    break;
+                case '\n':
+                    escaped.append("\\n");
+                    break;
+                case '\r':
+                    escaped.append("\\r");
+                    break;
+                case '\t':
+                    escaped.append("\\t");
+                    break;
+                default:
+                    escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    private static String unescape(String value) {
+        StringBuilder unescaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                unescaped.append(next == 'n' ? '\n' : next == 'r' ? '\r' : next == 't' ? '\t' : next);
+            } else {
+                unescaped.append(c);
+            }
+        }
+        return unescaped.toString();
+    }
+}
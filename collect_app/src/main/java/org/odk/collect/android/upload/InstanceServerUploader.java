@@ -40,6 +40,7 @@ import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.net.ssl.HttpsURLConnection;
 
@@ -53,6 +54,10 @@ public class InstanceServerUploader extends InstanceUploader {
     private final Map<Uri, Uri> uriRemap;
     private final PreferencesDataSourceProvider preferencesDataSourceProvider;
 
+    // The accepted content length for each submission URL a head request has succeeded for
+    private final Map<Uri, Long> acceptedContentLengths = new ConcurrentHashMap<>();
+    private final Map<Uri, Object> headRequestLocks = new ConcurrentHashMap<>();
+
     public InstanceServerUploader(OpenRosaHttpInterface httpInterface,
                                   WebCredentialsUtils webCredentialsUtils,
                                   Map<Uri, Uri> uriRemap, PreferencesDataSourceProvider preferencesDataSourceProvider) {
@@ -67,96 +72,112 @@ public class InstanceServerUploader extends InstanceUploader {
      * status to database.
      *
      * Returns a custom success message if one is provided by the server.
+     *
+     * The head request to a submission URL is only made once per uploader so instances can be
+     * uploaded to the same URL concurrently without repeating it.
      */
     @Override
     public String uploadOneSubmission(Instance instance, String urlString) throws UploadException {
         Uri submissionUri = Uri.parse(urlString);
+        Uri requestedUri = submissionUri;
 
         long contentLength = 10000000L;
 
-        // We already issued a head request and got a response, so we know it was an
-        // OpenRosa-compliant server. We also know the proper URL to send the submission to and
-        // the proper scheme.
-        if (uriRemap.containsKey(submissionUri)) {
-            submissionUri = uriRemap.get(submissionUri);
-            Timber.i("Using Uri remap for submission %s. Now: %s", instance.getId(),
-                    submissionUri.toString());
-        } else {
-            if (submissionUri.getHost() == null) {
-                saveFailedStatusToDatabase(instance);
-                throw new UploadException(FAIL + "Host name may not be null");
-            }
+        // Uploads to the same URL wait for its head request so that they can reuse the result
+        synchronized (headRequestLocks.computeIfAbsent(requestedUri, key -> new Object())) {
+            Long acceptedContentLength = acceptedContentLengths.get(requestedUri);
+            if (acceptedContentLength != null) {
+                // A head request to this URL has already succeeded so there's no need to repeat it
+                contentLength = acceptedContentLength;
+                if (uriRemap.containsKey(submissionUri)) {
+                    submissionUri = uriRemap.get(submissionUri);
+                }
+            } else if (uriRemap.containsKey(submissionUri)) {
+                // We already issued a head request and got a response, so we know it was an
+                // OpenRosa-compliant server. We also know the proper URL to send the submission to and
+                // the proper scheme.
+                submissionUri = uriRemap.get(submissionUri);
+                Timber.i("Using Uri remap for submission %s. Now: %s", instance.getId(),
+                        submissionUri.toString());
+            } else {
+                if (submissionUri.getHost() == null) {
+                    saveFailedStatusToDatabase(instance);
+                    throw new UploadException(FAIL + "Host name may not be null");
+                }
 
-            URI uri;
-            try {
-                uri = URI.create(submissionUri.toString());
-            } catch (IllegalArgumentException e) {
-                saveFailedStatusToDatabase(instance);
-                Timber.d(e.getMessage() != null ? e.getMessage() : e.toString());
-                throw new UploadException(TranslationHandler.getString(Collect.getInstance(), R.string.url_error));
-            }
+                URI uri;
+                try {
+                    uri = URI.create(submissionUri.toString());
+                } catch (IllegalArgumentException e) {
+                    saveFailedStatusToDatabase(instance);
+                    Timber.d(e.getMessage() != null ? e.getMessage() : e.toString());
+                    throw new UploadException(TranslationHandler.getString(Collect.getInstance(), R.string.url_error));
+                }
 
-            HttpHeadResult headResult;
-            CaseInsensitiveHeaders responseHeaders;
-            try {
-                headResult = httpInterface.executeHeadRequest(uri, webCredentialsUtils.getCredentials(uri));
-                responseHeaders = headResult.getHeaders();
-
-                if (responseHeaders.containsHeader(OpenRosaConstants.ACCEPT_CONTENT_LENGTH_HEADER)) {
-                    String contentLengthString = responseHeaders.getAnyValue(OpenRosaConstants.ACCEPT_CONTENT_LENGTH_HEADER);
-                    try {
-                        contentLength = Long.parseLong(contentLengthString);
-                    } catch (Exception e) {
-                        Timber.e(e, "Exception thrown parsing contentLength %s", contentLengthString);
+                HttpHeadResult headResult;
+                CaseInsensitiveHeaders responseHeaders;
+                try {
+                    headResult = httpInterface.executeHeadRequest(uri, webCredentialsUtils.getCredentials(uri));
+                    responseHeaders = headResult.getHeaders();
+
+                    if (responseHeaders.containsHeader(OpenRosaConstants.ACCEPT_CONTENT_LENGTH_HEADER)) {
+                        String contentLengthString = responseHeaders.getAnyValue(OpenRosaConstants.ACCEPT_CONTENT_LENGTH_HEADER);
+                        try {
+                            contentLength = Long.parseLong(contentLengthString);
+                        } catch (Exception e) {
+                            Timber.e(e, "Exception thrown parsing contentLength %s", contentLengthString);
+                        }
                     }
-                }
 
-            } catch (Exception e) {
-                saveFailedStatusToDatabase(instance);
-                throw new UploadException(FAIL
-                        + (e.getMessage() != null ? e.getMessage() : e.toString()));
-            }
+                } catch (Exception e) {
+                    saveFailedStatusToDatabase(instance);
+                    throw new UploadException(FAIL
+                            + (e.getMessage() != null ? e.getMessage() : e.toString()));
+                }
 
-            if (headResult.getStatusCode() == HttpsURLConnection.HTTP_UNAUTHORIZED) {
-                saveFailedStatusToDatabase(instance);
-                throw new UploadAuthRequestedException(TranslationHandler.getString(Collect.getInstance(), R.string.server_auth_credentials, submissionUri.getHost()),
-                        submissionUri);
-            } else if (headResult.getStatusCode() == HttpsURLConnection.HTTP_NO_CONTENT) {
-                // Redirect header received
-                if (responseHeaders.containsHeader("Location")) {
-                    try {
-                        Uri newURI = Uri.parse(URLDecoder.decode(responseHeaders.getAnyValue("Location"), "utf-8"));
-                        // Allow redirects within same host. This could be redirecting to HTTPS.
-                        if (submissionUri.getHost().equalsIgnoreCase(newURI.getHost())) {
-                            // Re-add params if server didn't respond with params
-                            if (newURI.getQuery() == null) {
-                                newURI = newURI.buildUpon()
-                                        .encodedQuery(submissionUri.getEncodedQuery())
-                                        .build();
+                if (headResult.getStatusCode() == HttpsURLConnection.HTTP_UNAUTHORIZED) {
+                    saveFailedStatusToDatabase(instance);
+                    throw new UploadAuthRequestedException(TranslationHandler.getString(Collect.getInstance(), R.string.server_auth_credentials, submissionUri.getHost()),
+                            submissionUri);
+                } else if (headResult.getStatusCode() == HttpsURLConnection.HTTP_NO_CONTENT) {
+                    // Redirect header received
+                    if (responseHeaders.containsHeader("Location")) {
+                        try {
+                            Uri newURI = Uri.parse(URLDecoder.decode(responseHeaders.getAnyValue("Location"), "utf-8"));
+                            // Allow redirects within same host. This could be redirecting to HTTPS.
+                            if (submissionUri.getHost().equalsIgnoreCase(newURI.getHost())) {
+                                // Re-add params if server didn't respond with params
+                                if (newURI.getQuery() == null) {
+                                    newURI = newURI.buildUpon()
+                                            .encodedQuery(submissionUri.getEncodedQuery())
+                                            .build();
+                                }
+                                uriRemap.put(submissionUri, newURI);
+                                submissionUri = newURI;
+                            } else {
+                                // Don't follow a redirection attempt to a different host.
+                                // We can't tell if this is a spoof or not.
+                                saveFailedStatusToDatabase(instance);
+                                throw new UploadException(FAIL
+                                        + "Unexpected redirection attempt to a different host: "
+                                        + newURI.toString());
                             }
-                            uriRemap.put(submissionUri, newURI);
-                            submissionUri = newURI;
-                        } else {
-                            // Don't follow a redirection attempt to a different host.
-                            // We can't tell if this is a spoof or not.
+                        } catch (Exception e) {
                             saveFailedStatusToDatabase(instance);
-                            throw new UploadException(FAIL
-                                    + "Unexpected redirection attempt to a different host: "
-                                    + newURI.toString());
+                            throw new UploadException(FAIL + urlString + " " + e.toString());
                         }
-                    } catch (Exception e) {
+                    }
+                } else {
+                    if (headResult.getStatusCode() >= HttpsURLConnection.HTTP_OK
+                            && headResult.getStatusCode() < HttpsURLConnection.HTTP_MULT_CHOICE) {
                         saveFailedStatusToDatabase(instance);
-                        throw new UploadException(FAIL + urlString + " " + e.toString());
+                        throw new UploadException("Failed to send to " + uri + ". Is this an OpenRosa " +
+                                "submission endpoint? If you have a web proxy you may need to log in to " +
+                                "your network.\n\nHEAD request result status code: " + headResult.getStatusCode());
                     }
                 }
-            } else {
-                if (headResult.getStatusCode() >= HttpsURLConnection.HTTP_OK
-                        && headResult.getStatusCode() < HttpsURLConnection.HTTP_MULT_CHOICE) {
-                    saveFailedStatusToDatabase(instance);
-                    throw new UploadException("Failed to send to " + uri + ". Is this an OpenRosa " +
-                            "submission endpoint? If you have a web proxy you may need to log in to " +
-                            "your network.\n\nHEAD request result status code: " + headResult.getStatusCode());
-                }
+
+                acceptedContentLengths.put(requestedUri, contentLength);
             }
         }
 
@@ -17,6 +17,7 @@
 package org.odk.collect.android.utilities;
 
 import org.odk.collect.android.application.Collect;
+import org.odk.collect.android.backgroundwork.FormCacheWarmUpManager;
 import org.odk.collect.android.configure.ServerRepository;
 import org.odk.collect.android.dao.FormsDao;
 import org.odk.collect.android.dao.InstancesDao;
@@ -50,6 +51,9 @@ public class ApplicationResetter {
     @Inject
     PreferencesDataSourceProvider preferencesDataSourceProvider;
 
+    @Inject
+    FormCacheWarmUpManager formCacheWarmUpManager;
+
     public ApplicationResetter() {
         // This should probably just take arguments in the constructor rather than use Dagger
         DaggerUtils.getComponent(Collect.getInstance()).inject(this);
@@ -69,6 +73,7 @@ public class ApplicationResetter {
                     resetInstances();
                     break;
                 case ResetAction.RESET_FORMS:
+                    formCacheWarmUpManager.cancelWarmUp();
                     resetForms();
                     break;
                 case ResetAction.RESET_LAYERS:
@@ -77,6 +82,7 @@ public class ApplicationResetter {
                     }
                     break;
                 case ResetAction.RESET_CACHE:
+                    formCacheWarmUpManager.cancelWarmUp();
                     if (deleteFolderContents(storagePathProvider.getOdkDirPath(StorageSubdirectory.CACHE))) {
                         failedResetActions.remove(failedResetActions.indexOf(ResetAction.RESET_CACHE));
                     }
@@ -113,6 +113,16 @@ public class CustomSQLiteQueryBuilder {
         return table(tableName);
     }
 
+    public CustomSQLiteQueryBuilder createIndexIfNotExists(final String indexName) {
+        query.append("CREATE INDEX IF NOT EXISTS").append(SPACE).append(indexName).append(SPACE);
+        return this;
+    }
+
+    public CustomSQLiteQueryBuilder on(final String table) {
+        query.append("ON").append(SPACE).append(table).append(SPACE);
+        return this;
+    }
+
     public CustomSQLiteQueryBuilder columnsForCreate(List<String> columnDefinitions) {
         query.append('(').append(StringUtils.join(LIST_SEPARATOR, columnDefinitions)).append(')');
         return this;
@@ -20,6 +20,7 @@ import android.net.Uri;
 import android.util.Base64;
 
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 
 import org.apache.commons.io.IOUtils;
 import org.kxml2.io.KXmlSerializer;
@@ -35,14 +36,12 @@ import org.odk.collect.android.javarosawrapper.FormController.InstanceMetadata;
 import org.odk.collect.android.provider.FormsProviderAPI.FormsColumns;
 import org.odk.collect.android.provider.InstanceProviderAPI.InstanceColumns;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStreamWriter;
-import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
@@ -56,10 +55,13 @@ import java.security.spec.InvalidKeySpecException;
 import java.security.spec.X509EncodedKeySpec;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
-import javax.crypto.CipherOutputStream;
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
 import javax.crypto.spec.IvParameterSpec;
@@ -101,6 +103,8 @@ public class EncryptionUtils {
             "base64EncryptedElementSignature";
     private static final String NEW_LINE = "\n";
     private static final String ENCRYPTION_PROVIDER = "BC";
+    private static final int ENCRYPTION_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_PARALLEL_ENCRYPTIONS = 4;
 
     private EncryptionUtils() {
     }
@@ -117,8 +121,9 @@ public class EncryptionUtils {
         public final StringBuilder elementSignatureSource = new StringBuilder();
         private boolean isNotBouncyCastle;
 
-        EncryptedFormInformation(String formId, String formVersion,
-                                 InstanceMetadata instanceMetadata, PublicKey rsaPublicKey) {
+        @VisibleForTesting
+        public EncryptedFormInformation(String formId, String formVersion,
+                                        InstanceMetadata instanceMetadata, PublicKey rsaPublicKey) {
             this.formId = formId;
             this.formVersion = formVersion;
             this.instanceMetadata = instanceMetadata;
@@ -177,9 +182,8 @@ public class EncryptionUtils {
             elementSignatureSource.append(value).append('\n');
         }
 
-        public void appendFileSignatureSource(File file) {
-            String md5Hash = FileUtils.getMd5Hash(file);
-            appendElementSignatureSource(file.getName() + "::" + md5Hash);
+        public void appendFileSignatureSource(String fileName, String md5Hash) {
+            appendElementSignatureSource(fileName + "::" + md5Hash);
         }
 
         public String getBase64EncryptedElementSignature() {
@@ -378,7 +382,13 @@ public class EncryptionUtils {
         return new EncryptedFormInformation(formId, formVersion, instanceMetadata, pk);
     }
 
-    private static void encryptFile(File file, EncryptedFormInformation formInfo)
+    /**
+     * Encrypts file to a ".enc" file next to it a buffer at a time so that the memory used doesn't
+     * depend on the size of the file.
+     *
+     * @return the md5 hash of the plaintext file which is computed as it's read
+     */
+    private static String encryptFile(File file, Cipher c)
             throws IOException, EncryptionException {
         File encryptedFile = new File(file.getParentFile(), file.getName()
                 + ".enc");
@@ -388,42 +398,27 @@ public class EncryptionUtils {
                     + ". Perhaps the file is locked?");
         }
 
-        // add elementSignatureSource for this file...
-        formInfo.appendFileSignatureSource(file);
-
-        RandomAccessFile randomAccessFile = null;
-        CipherOutputStream cipherOutputStream = null;
-        try {
-            Cipher c = formInfo.getCipher();
-
-            randomAccessFile = new RandomAccessFile(encryptedFile, "rws");
-            ByteArrayOutputStream encryptedData = new ByteArrayOutputStream();
-            cipherOutputStream = new CipherOutputStream(encryptedData, c);
-            InputStream fin = new FileInputStream(file);
-            byte[] buffer = new byte[2048];
+        try (InputStream fin = new FileInputStream(file);
+             FileOutputStream fout = new FileOutputStream(encryptedFile)) {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            byte[] buffer = new byte[ENCRYPTION_BUFFER_SIZE];
+            byte[] encryptedBuffer = new byte[c.getOutputSize(ENCRYPTION_BUFFER_SIZE) + c.getBlockSize()];
             int len = fin.read(buffer);
             while (len != -1) {
-                cipherOutputStream.write(buffer, 0, len);
+                md.update(buffer, 0, len);
+                fout.write(encryptedBuffer, 0, c.update(buffer, 0, len, encryptedBuffer));
                 len = fin.read(buffer);
             }
-            fin.close();
-            cipherOutputStream.flush();
-            cipherOutputStream.close();
-
-            randomAccessFile.write(encryptedData.toByteArray());
+            fout.write(c.doFinal());
+            fout.getChannel().force(true);
 
             Timber.i("Encrpyted:%s -> %s", file.getName(), encryptedFile.getName());
+            return FileUtils.toMd5Hash(md.digest());
         } catch (Exception e) {
             String msg = "Error encrypting: " + file.getName() + " -> "
                     + encryptedFile.getName();
             Timber.e(e, "%s due to %s ", msg, e.getMessage());
             throw new EncryptionException(msg, e);
-        } finally {
-            IOUtils.closeQuietly(cipherOutputStream);
-
-            if (randomAccessFile != null) {
-                randomAccessFile.close();
-            }
         }
     }
 
@@ -489,17 +484,68 @@ public class EncryptionUtils {
                 filesToProcess.add(f);
             }
         }
-        // encrypt here...
-        for (File f : filesToProcess) {
-            encryptFile(f, formInfo);
-        }
-
         // encrypt the submission.xml as the last file...
-        encryptFile(submissionXml, formInfo);
+        List<File> filesToEncrypt = new ArrayList<>(filesToProcess);
+        filesToEncrypt.add(submissionXml);
+        encryptFiles(filesToEncrypt, formInfo);
 
         return filesToProcess;
     }
 
+    /**
+     * Encrypts the files concurrently. The ciphers are still created in order because each one
+     * uses the next iv and the signature is built from the files in the same order.
+     */
+    private static void encryptFiles(List<File> files, EncryptedFormInformation formInfo)
+            throws IOException, EncryptionException {
+        List<Cipher> ciphers = new ArrayList<>();
+        for (File file : files) {
+            try {
+                ciphers.add(formInfo.getCipher());
+            } catch (InvalidKeyException | InvalidAlgorithmParameterException | NoSuchAlgorithmException | NoSuchPaddingException e) {
+                String msg = "Error encrypting: " + file.getName();
+                Timber.e(e, "%s due to %s ", msg, e.getMessage());
+                throw new EncryptionException(msg, e);
+            }
+        }
+
+        int threads = Math.max(1, Math.min(files.size(),
+                Math.min(MAX_PARALLEL_ENCRYPTIONS, Runtime.getRuntime().availableProcessors())));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> md5Hashes = new ArrayList<>();
+            for (int i = 0; i < files.size(); i++) {
+                File file = files.get(i);
+                Cipher cipher = ciphers.get(i);
+                md5Hashes.add(executor.submit(() -> encryptFile(file, cipher)));
+            }
+
+            for (int i = 0; i < files.size(); i++) {
+                // add elementSignatureSource for this file...
+                formInfo.appendFileSignatureSource(files.get(i).getName(), getMd5Hash(md5Hashes.get(i)));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static String getMd5Hash(Future<String> md5Hash) throws IOException, EncryptionException {
+        try {
+            return md5Hash.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            } else if (e.getCause() instanceof EncryptionException) {
+                throw (EncryptionException) e.getCause();
+            } else {
+                throw new EncryptionException("Error encrypting submission files", e.getCause());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EncryptionException("Interrupted while encrypting submission files", e);
+        }
+    }
+
     /**
      * Constructs the encrypted attachments, encrypted form xml, and the
      * plaintext submission manifest (with signature) for the form submission.
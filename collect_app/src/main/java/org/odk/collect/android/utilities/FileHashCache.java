@@ -0,0 +1,193 @@
+package org.odk.collect.android.utilities;
+
+import androidx.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import timber.log.Timber;
+
+/**
+ * Remembers the MD5 hash of files by their path, length and modification time so that checking
+ * whether forms and media files have changed doesn't read every file again.
+ *
+ * Hashes are kept in memory and appended to a file so that they survive the app being restarted.
+ * Each line of the file is {@code path<tab>length<tab>lastModified<tab>md5} and a later line for
+ * the same path replaces an earlier one. The file is rewritten without the replaced lines and
+ * the files that are gone when it has grown to twice the size it needs to be.
+ *
+ * A file that was changed again within the resolution of its modification time (up to 2s on
+ * some file systems) without its length changing would look unchanged, so hashes of files
+ * modified in the last few seconds aren't kept.
+ */
+public class FileHashCache {
+    private static final long RECENTLY_MODIFIED_MILLIS = 5000;
+    private static final Pattern MD5 = Pattern.compile("[0-9a-f]{32}");
+
+    private final File storeFile;
+    private Map<String, Entry> entries;
+    private int storedLines;
+
+    public FileHashCache(File storeFile) {
+        this.storeFile = storeFile;
+    }
+
+    /**
+     * Returns the same as {@link FileUtils#getMd5Hash(File)}, without reading the file if it
+     * hasn't changed since it was last hashed.
+     */
+    @Nullable
+    public String getMd5Hash(File file) {
+        String path = file.getAbsolutePath();
+        long length = file.length();
+        long lastModified = file.lastModified();
+
+        // A modification time of 0 means the file doesn't exist or can't be read
+        if (lastModified != 0) {
+            synchronized (this) {
+                Entry entry = getEntries().get(path);
+                if (entry != null && entry.length == length && entry.lastModified == lastModified) {
+                    return entry.md5;
+                }
+            }
+        }
+
+        String md5 = FileUtils.getMd5Hash(file);
+
+        // Only kept if the file didn't change while it was being read
+        if (md5 != null && lastModified != 0 && file.length() == length && file.lastModified() == lastModified
+                && System.currentTimeMillis() - lastModified > RECENTLY_MODIFIED_MILLIS) {
+            put(path, new Entry(length, lastModified, md5));
+        }
+
+        return md5;
+    }
+
+    private synchronized void put(String path, Entry entry) {
+        if (entry.equals(getEntries().put(path, entry))) {
+            return;
+        }
+
+        // Paths that would break the format are only kept in memory
+        if (path.indexOf('\t') != -1 || path.indexOf('\n') != -1) {
+            return;
+        }
+
+        if (storedLines >= 2 * getEntries().size() + 100) {
+            compact();
+            return;
+        }
+
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(storeFile, true), StandardCharsets.UTF_8)) {
+            writer.write(toLine(path, entry));
+            storedLines++;
+        } catch (IOException e) {
+            Timber.w(e, "Couldn't write to %s", storeFile);
+        }
+    }
+
+    private Map<String, Entry> getEntries() {
+        if (entries == null) {
+            entries = new HashMap<>();
+            load();
+        }
+        return entries;
+    }
+
+    private void load() {
+        if (!storeFile.exists()) {
+            return;
+        }
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(storeFile), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                storedLines++;
+
+                // A line that was being written when the app stopped is left out
+                String[] fields = line.split("\t");
+                if (fields.length == 4 && MD5.matcher(fields[3]).matches()) {
+                    try {
+                        entries.put(fields[0], new Entry(Long.parseLong(fields[1]), Long.parseLong(fields[2]), fields[3]));
+                    } catch (NumberFormatException e) {
+                        Timber.w("Ignoring line in %s: %s", storeFile, line);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            Timber.w(e, "Couldn't read %s", storeFile);
+        }
+    }
+
+    private void compact() {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (!new File(iterator.next().getKey()).exists()) {
+                iterator.remove();
+            }
+        }
+
+        File tempFile = new File(storeFile.getParentFile(), storeFile.getName() + ".tmp");
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tempFile), StandardCharsets.UTF_8))) {
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                if (entry.getKey().indexOf('\t') == -1 && entry.getKey().indexOf('\n') == -1) {
+                    writer.write(toLine(entry.getKey(), entry.getValue()));
+                }
+            }
+        } catch (IOException e) {
+            Timber.w(e, "Couldn't write %s", tempFile);
+            tempFile.delete();
+            return;
+        }
+
+        if (tempFile.renameTo(storeFile)) {
+            storedLines = entries.size();
+        } else {
+            Timber.w("Couldn't replace %s", storeFile);
+            tempFile.delete();
+        }
+    }
+
+    private static String toLine(String path, Entry entry) {
+        return path + "\t" + entry.length + "\t" + entry.lastModified + "\t" + entry.md5 + "\n";
+    }
+
+    private static class Entry {
+        final long length;
+        final long lastModified;
+        final String md5;
+
+        Entry(long length, long lastModified, String md5) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.md5 = md5;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Entry)) {
+                return false;
+            }
+
+            Entry entry = (Entry) other;
+            return length == entry.length && lastModified == entry.lastModified && md5.equals(entry.md5);
+        }
+
+        @Override
+        public int hashCode() {
+            return md5.hashCode();
+        }
+    }
+}
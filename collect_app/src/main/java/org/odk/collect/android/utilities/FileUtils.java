@@ -139,13 +139,8 @@ public class FileUtils {
                 md.update(buffer, 0, result);
             }
 
-            StringBuilder md5 = new StringBuilder(new BigInteger(1, md.digest()).toString(16));
-            while (md5.length() < 32) {
-                md5.insert(0, "0");
-            }
-
             is.close();
-            return md5.toString();
+            return toMd5Hash(md.digest());
 
         } catch (NoSuchAlgorithmException e) {
             Timber.e(e);
@@ -157,6 +152,17 @@ public class FileUtils {
         }
     }
 
+    /**
+     * @return the digest as 32 lowercase hex digits, the form MD5 hashes are stored and compared in
+     */
+    public static String toMd5Hash(byte[] messageDigest) {
+        StringBuilder md5 = new StringBuilder(new BigInteger(1, messageDigest).toString(16));
+        while (md5.length() < 32) {
+            md5.insert(0, "0");
+        }
+        return md5.toString();
+    }
+
     public static Bitmap getBitmapScaledToDisplay(File file, int screenHeight, int screenWidth) {
         return getBitmapScaledToDisplay(file, screenHeight, screenWidth, false);
     }
@@ -182,8 +188,6 @@ public class FileUtils {
         if (upscaleEnabled) {
             // Load full size bitmap image
             options = new BitmapFactory.Options();
-            options.inInputShareable = true;
-            options.inPurgeable = true;
             bitmap = getBitmap(file.getAbsolutePath(), options);
 
             double heightScale = ((double) (options.outHeight)) / screenHeight;
@@ -204,8 +208,6 @@ public class FileUtils {
 
             // get bitmap with scale ( < 1 is the same as 1)
             options = new BitmapFactory.Options();
-            options.inInputShareable = true;
-            options.inPurgeable = true;
             options.inSampleSize = (int) scale;
             bitmap = getBitmap(file.getAbsolutePath(), options);
         }
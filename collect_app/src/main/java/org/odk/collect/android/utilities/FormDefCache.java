@@ -1,22 +1,56 @@
 package org.odk.collect.android.utilities;
 
+import androidx.annotation.Nullable;
+
 import org.javarosa.core.model.FormDef;
 import org.javarosa.core.util.externalizable.ExtUtil;
+import org.odk.collect.android.BuildConfig;
+import org.odk.collect.android.database.DatabaseFormsRepository;
+import org.odk.collect.android.forms.Form;
 import org.odk.collect.android.storage.StoragePathProvider;
 import org.odk.collect.android.storage.StorageSubdirectory;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
 
 import timber.log.Timber;
 
-/** Methods for reading from and writing to the FormDef cache */
+/**
+ * Methods for reading from and writing to the FormDef cache.
+ *
+ * The cache has two tiers: the serialized bytes of recently used forms are kept in a bounded
+ * in-memory LRU and every form is also written to a .formdef file in the cache directory. FormDefs
+ * themselves are mutable so they are never shared - each read deserializes a fresh copy.
+ *
+ * Both tiers are keyed by the MD5 hash the forms database holds for the form so that finding the
+ * entry doesn't require hashing the whole form. Cache file names start with a hash of the form's
+ * path so that the files for earlier versions of a form can be found and deleted when it's cached
+ * again or removed. Cache files start with a header holding the JavaRosa
+ * version that wrote them and a checksum of the serialized FormDef. Files written by another
+ * JavaRosa version or that fail the checksum are discarded.
+ */
 public class FormDefCache {
 
+    private static final int FILE_MAGIC = 0x4F444B46; // "ODKF"
+    private static final int FILE_FORMAT_VERSION = 1;
+    private static final int MEMORY_CACHE_MAX_BYTES = 16 * 1024 * 1024;
+    private static final String CACHE_FILE_EXTENSION = ".formdef";
+
+    private static final LinkedHashMap<String, byte[]> MEMORY_CACHE = new LinkedHashMap<>(16, 0.75f, true);
+    private static int memoryCacheBytes;
+
     private FormDefCache() {
         // Private constructor
     }
@@ -31,17 +65,23 @@ public class FormDefCache {
      */
     public static void writeCache(FormDef formDef, String formPath) throws IOException {
         final long formSaveStart = System.currentTimeMillis();
-        File cachedFormDefFile = FormDefCache.getCacheFile(new File(formPath));
-        final File tempCacheFile = File.createTempFile("cache", null,
-                new File(new StoragePathProvider().getOdkDirPath(StorageSubdirectory.CACHE)));
+        File formXml = new File(formPath);
+        String cacheKey = getCacheKey(formXml);
+        if (cacheKey == null) {
+            throw new IOException("Unable to hash " + formPath);
+        }
+
+        File cacheDir = getCacheDir();
+        File cachedFormDefFile = getCacheFile(cacheDir, formXml, cacheKey);
+        final File tempCacheFile = File.createTempFile("cache", null, cacheDir);
         Timber.i("Started saving %s to the cache via temp file %s",
                 formDef.getTitle(), tempCacheFile.getName());
 
         Exception caughtException = null;
         try {
-            DataOutputStream dos = new DataOutputStream(new FileOutputStream(tempCacheFile));
-            formDef.writeExternal(dos);
-            dos.close();
+            byte[] serializedFormDef = serializeFormDef(formDef);
+            writeCacheFile(tempCacheFile, serializedFormDef, BuildConfig.JAVAROSA_VERSION);
+            putInMemory(cacheKey, serializedFormDef);
         } catch (IOException exception) {
             caughtException = exception;
         }
@@ -59,6 +99,7 @@ public class FormDefCache {
             if (tempCacheFile.renameTo(cachedFormDefFile)) {
                 Timber.i("Renamed %s to %s",
                         tempCacheFile.getName(), cachedFormDefFile.getName());
+                deleteCacheFiles(cacheDir, formXml, cachedFormDefFile);
                 Timber.i("Caching %s took %.3f seconds.", formDef.getTitle(),
                         (System.currentTimeMillis() - formSaveStart) / 1000F);
             } else {
@@ -78,40 +119,211 @@ public class FormDefCache {
      * @return a FormDef, or null if the form is not present in the cache
      */
     public static FormDef readCache(File formXml) {
-        final File cachedForm = getCacheFile(formXml);
-        if (cachedForm.exists()) {
-            Timber.i("Attempting to load %s from cached file: %s.", formXml.getName(), cachedForm.getName());
-            final long start = System.currentTimeMillis();
+        final String cacheKey = getCacheKey(formXml);
+        if (cacheKey == null) {
+            return null;
+        }
 
-            try {
-                final FormDef deserializedFormDef = deserializeFormDef(cachedForm);
-                if (deserializedFormDef != null) {
-                    Timber.i("Loaded in %.3f seconds.", (System.currentTimeMillis() - start) / 1000F);
-                    return deserializedFormDef;
-                }
-            } catch (Exception e) {
-                // New .formdef will be created from XML
-                Timber.w("Deserialization FAILED! Deleting cache file: %s", cachedForm.getAbsolutePath());
-                Timber.w(e);
-                cachedForm.delete();
+        final long start = System.currentTimeMillis();
+
+        byte[] serializedFormDef = getFromMemory(cacheKey);
+        if (serializedFormDef != null) {
+            Timber.i("Attempting to load %s from the in-memory cache.", formXml.getName());
+        } else {
+            final File cachedForm = getCacheFile(getCacheDir(), formXml, cacheKey);
+            if (!cachedForm.exists()) {
+                return null;
             }
+
+            Timber.i("Attempting to load %s from cached file: %s.", formXml.getName(), cachedForm.getName());
+            serializedFormDef = readCacheFile(cachedForm, BuildConfig.JAVAROSA_VERSION);
+            if (serializedFormDef == null) {
+                return null;
+            }
+            putInMemory(cacheKey, serializedFormDef);
         }
-        return null;
+
+        try {
+            final FormDef deserializedFormDef = deserializeFormDef(serializedFormDef);
+            Timber.i("Loaded in %.3f seconds.", (System.currentTimeMillis() - start) / 1000F);
+            return deserializedFormDef;
+        } catch (Exception e) {
+            // New .formdef will be created from XML
+            Timber.w("Deserialization FAILED! Deleting cache entry for: %s", formXml.getAbsolutePath());
+            Timber.w(e);
+            removeFromMemory(cacheKey);
+            getCacheFile(getCacheDir(), formXml, cacheKey).delete();
+            return null;
+        }
+    }
+
+    /**
+     * @return true if there is a cache entry for the current version of the form. The entry is
+     * not validated.
+     */
+    public static boolean isCached(File formXml) {
+        String cacheKey = getCacheKey(formXml);
+        return cacheKey != null
+                && (getFromMemory(cacheKey) != null || getCacheFile(getCacheDir(), formXml, cacheKey).exists());
+    }
+
+    /**
+     * Deletes the cache files for every version of the form at the given path. The form file
+     * doesn't need to exist anymore.
+     */
+    public static void deleteCache(File formXml) {
+        deleteCacheFiles(getCacheDir(), formXml, null);
     }
 
     /**
      * Builds and returns a File object for the cached version of a form.
      * @param formXml the File containing the XML form
+     * @param md5Hash the MD5 hash of the form
      * @return a File object
      */
-    private static File getCacheFile(File formXml) {
-        return new File(new StoragePathProvider().getOdkDirPath(StorageSubdirectory.CACHE) + File.separator +
-                FileUtils.getMd5Hash(formXml) + ".formdef");
+    public static File getCacheFile(File formXml, String md5Hash) {
+        return getCacheFile(getCacheDir(), formXml, md5Hash);
+    }
+
+    /**
+     * Builds and returns a File object for the cached version of a form.
+     * @param cacheDir the directory cache files are stored in
+     * @param formXml the File containing the XML form
+     * @param cacheKey the MD5 hash of the form
+     * @return a File object
+     */
+    static File getCacheFile(File cacheDir, File formXml, String cacheKey) {
+        return new File(cacheDir, getCacheFilePrefix(formXml) + cacheKey + CACHE_FILE_EXTENSION);
+    }
+
+    /**
+     * Deletes the cache files for all versions of the form at the given path except for keep.
+     */
+    static void deleteCacheFiles(File cacheDir, File formXml, @Nullable File keep) {
+        String prefix = getCacheFilePrefix(formXml);
+        File[] cacheFiles = cacheDir.listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(CACHE_FILE_EXTENSION));
+        if (cacheFiles == null) {
+            return;
+        }
+
+        for (File cacheFile : cacheFiles) {
+            if (!cacheFile.equals(keep)) {
+                Timber.i("Deleting cache file %s", cacheFile.getName());
+                if (!cacheFile.delete()) {
+                    Timber.e("Unable to delete %s", cacheFile.getName());
+                }
+            }
+        }
+    }
+
+    private static String getCacheFilePrefix(File formXml) {
+        return FileUtils.getMd5Hash(new ByteArrayInputStream(formXml.getAbsolutePath().getBytes())) + "-";
+    }
+
+    private static File getCacheDir() {
+        return new File(new StoragePathProvider().getOdkDirPath(StorageSubdirectory.CACHE));
+    }
+
+    /**
+     * The forms database updates the hash whenever the form file is replaced or edited, so stale
+     * entries aren't read. Forms that aren't in the database yet are hashed.
+     */
+    @Nullable
+    private static String getCacheKey(File formXml) {
+        Form form = new DatabaseFormsRepository().getOneByPath(formXml.getAbsolutePath());
+        return form != null ? form.getMD5Hash() : FileUtils.getMd5Hash(formXml);
+    }
+
+    static void writeCacheFile(File file, byte[] serializedFormDef, String javaRosaVersion) throws IOException {
+        try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            dos.writeInt(FILE_MAGIC);
+            dos.writeInt(FILE_FORMAT_VERSION);
+            dos.writeUTF(javaRosaVersion);
+            dos.writeLong(checksum(serializedFormDef));
+            dos.writeInt(serializedFormDef.length);
+            dos.write(serializedFormDef);
+        }
+    }
+
+    /**
+     * @return the serialized FormDef stored in the file or null if the file was written by
+     * another version of JavaRosa or is corrupt. In those cases the file is deleted.
+     */
+    @Nullable
+    static byte[] readCacheFile(File file, String javaRosaVersion) {
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (dis.readInt() != FILE_MAGIC || dis.readInt() != FILE_FORMAT_VERSION) {
+                Timber.i("Unknown cache file format. Deleting cache file: %s", file.getAbsolutePath());
+            } else if (!dis.readUTF().equals(javaRosaVersion)) {
+                Timber.i("Cache file was written by another JavaRosa version. Deleting cache file: %s", file.getAbsolutePath());
+            } else {
+                long expectedChecksum = dis.readLong();
+                byte[] serializedFormDef = new byte[dis.readInt()];
+                dis.readFully(serializedFormDef);
+
+                if (checksum(serializedFormDef) == expectedChecksum) {
+                    return serializedFormDef;
+                }
+                Timber.w("Checksum mismatch. Deleting cache file: %s", file.getAbsolutePath());
+            }
+        } catch (IOException | RuntimeException | OutOfMemoryError e) {
+            Timber.w("Reading cache file FAILED! Deleting cache file: %s", file.getAbsolutePath());
+            Timber.w(e);
+        }
+
+        file.delete();
+        return null;
+    }
+
+    static synchronized byte[] getFromMemory(String cacheKey) {
+        return MEMORY_CACHE.get(cacheKey);
+    }
+
+    static synchronized void putInMemory(String cacheKey, byte[] serializedFormDef) {
+        removeFromMemory(cacheKey);
+        if (serializedFormDef.length > MEMORY_CACHE_MAX_BYTES) {
+            return;
+        }
+
+        MEMORY_CACHE.put(cacheKey, serializedFormDef);
+        memoryCacheBytes += serializedFormDef.length;
+
+        Iterator<Map.Entry<String, byte[]>> leastRecentlyUsed = MEMORY_CACHE.entrySet().iterator();
+        while (memoryCacheBytes > MEMORY_CACHE_MAX_BYTES && leastRecentlyUsed.hasNext()) {
+            memoryCacheBytes -= leastRecentlyUsed.next().getValue().length;
+            leastRecentlyUsed.remove();
+        }
+    }
+
+    static synchronized void removeFromMemory(String cacheKey) {
+        byte[] removed = MEMORY_CACHE.remove(cacheKey);
+        if (removed != null) {
+            memoryCacheBytes -= removed.length;
+        }
+    }
+
+    static synchronized void clearMemory() {
+        MEMORY_CACHE.clear();
+        memoryCacheBytes = 0;
+    }
+
+    private static long checksum(byte[] bytes) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(bytes, 0, bytes.length);
+        return crc32.getValue();
+    }
+
+    private static byte[] serializeFormDef(FormDef formDef) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (DataOutputStream dos = new DataOutputStream(bos)) {
+            formDef.writeExternal(dos);
+        }
+        return bos.toByteArray();
     }
 
-    private static FormDef deserializeFormDef(File serializedFormDef) throws Exception {
+    private static FormDef deserializeFormDef(byte[] serializedFormDef) throws Exception {
         FormDef fd;
-        try (DataInputStream dis = new DataInputStream(new FileInputStream(serializedFormDef))) {
+        try (DataInputStream dis = new DataInputStream(new ByteArrayInputStream(serializedFormDef))) {
             fd = new FormDef();
             fd.readExternal(dis, ExtUtil.defaultPrototypes());
         }
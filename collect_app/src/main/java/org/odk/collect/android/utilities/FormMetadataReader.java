@@ -0,0 +1,349 @@
+package org.odk.collect.android.utilities;
+
+import androidx.annotation.Nullable;
+
+import org.kxml2.io.KXmlParser;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import timber.log.Timber;
+
+import static org.odk.collect.android.utilities.FileUtils.AUTO_DELETE;
+import static org.odk.collect.android.utilities.FileUtils.AUTO_SEND;
+import static org.odk.collect.android.utilities.FileUtils.BASE64_RSA_PUBLIC_KEY;
+import static org.odk.collect.android.utilities.FileUtils.FORMID;
+import static org.odk.collect.android.utilities.FileUtils.GEOMETRY_XPATH;
+import static org.odk.collect.android.utilities.FileUtils.SUBMISSIONURI;
+import static org.odk.collect.android.utilities.FileUtils.TITLE;
+import static org.odk.collect.android.utilities.FileUtils.VERSION;
+
+/**
+ * Reads the same metadata as {@link FileUtils#getMetadataFromFormDefinition(File)} in a single
+ * pass over the form XML without building a FormDef, which is much cheaper for large forms.
+ *
+ * Only what's needed for the metadata is looked at, so a form that has problems elsewhere is
+ * not rejected here. If the metadata can't be worked out reliably without parsing the whole
+ * form, for example because the form has a setgeopoint action, a ref that isn't a plain path or
+ * the XML can't be read, null is returned and the full parse should be used instead.
+ */
+public final class FormMetadataReader {
+
+    private static final String GEOPOINT = "geopoint";
+    private static final String SETGEOPOINT = "setgeopoint";
+
+    private static final Set<String> CONTROLS = new HashSet<>(Arrays.asList(
+            "input", "select", "select1", "upload", "trigger", "range", "rank", "secret", "textarea"));
+
+    private static final Pattern PATH = Pattern.compile("(/[A-Za-z_][\\w.\\-]*(:[A-Za-z_][\\w.\\-]*)?)+");
+
+    private final XmlPullParser parser;
+
+    private String title;
+    private String rootName;
+    private String formId;
+    private String version;
+    private boolean readMainInstance;
+    private Map<String, String> submission;
+    private final Map<String, String> bindTypes = new HashMap<>();
+    private final Map<String, String> bindNodesets = new HashMap<>();
+    private String firstGeopoint;
+
+    private FormMetadataReader(XmlPullParser parser) {
+        this.parser = parser;
+    }
+
+    /**
+     * @return the metadata or null if the form needs to be fully parsed to get it
+     */
+    @Nullable
+    public static HashMap<String, String> read(File formDefinitionXml) {
+        try (InputStream inputStream = new BufferedInputStream(new FileInputStream(formDefinitionXml))) {
+            KXmlParser parser = new KXmlParser();
+            parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+            parser.setInput(inputStream, null);
+
+            return new FormMetadataReader(parser).read();
+        } catch (NeedsFullParseException e) {
+            Timber.i("%s needs a full parse: %s", formDefinitionXml.getName(), e.getMessage());
+            return null;
+        } catch (IOException | XmlPullParserException | RuntimeException e) {
+            Timber.i(e, "Couldn't read %s without a full parse", formDefinitionXml.getName());
+            return null;
+        }
+    }
+
+    private HashMap<String, String> read() throws IOException, XmlPullParserException {
+        if (nextElementEvent() != XmlPullParser.START_TAG) {
+            throw new NeedsFullParseException("no root element");
+        }
+
+        while (nextElementEvent() == XmlPullParser.START_TAG) {
+            switch (parser.getName()) {
+                case "head":
+                    readHead();
+                    break;
+                case "body":
+                    // Like JavaRosa, relative refs outside of groups are relative to the root
+                    readControls(rootName != null ? "/" + rootName : null);
+                    break;
+                default:
+                    skip();
+            }
+        }
+
+        if (title == null || formId == null) {
+            throw new NeedsFullParseException("no title or form id");
+        }
+
+        HashMap<String, String> fields = new HashMap<>();
+        fields.put(TITLE, title);
+        fields.put(FORMID, formId);
+        fields.put(VERSION, version != null && version.trim().isEmpty() ? null : version);
+
+        if (submission != null) {
+            fields.put(SUBMISSIONURI, submission.get("action"));
+
+            String key = submission.get("base64RsaPublicKey");
+            if (key != null && key.trim().length() > 0) {
+                fields.put(BASE64_RSA_PUBLIC_KEY, key.trim());
+            }
+
+            fields.put(AUTO_DELETE, submission.get("auto-delete"));
+            fields.put(AUTO_SEND, submission.get("auto-send"));
+        }
+
+        fields.put(GEOMETRY_XPATH, firstGeopoint);
+        return fields;
+    }
+
+    private void readHead() throws IOException, XmlPullParserException {
+        while (nextElementEvent() == XmlPullParser.START_TAG) {
+            switch (parser.getName()) {
+                case "title":
+                    readTitle();
+                    break;
+                case "model":
+                    readModel();
+                    break;
+                default:
+                    skip();
+            }
+        }
+    }
+
+    private void readTitle() throws IOException, XmlPullParserException {
+        if (title != null) {
+            throw new NeedsFullParseException("more than one title");
+        }
+
+        StringBuilder text = new StringBuilder();
+        int event;
+        while ((event = parser.next()) != XmlPullParser.END_TAG) {
+            if (event == XmlPullParser.TEXT) {
+                text.append(parser.getText());
+            } else {
+                throw new NeedsFullParseException("title isn't plain text");
+            }
+        }
+
+        title = text.toString().trim();
+        if (title.isEmpty()) {
+            throw new NeedsFullParseException("empty title");
+        }
+    }
+
+    private void readModel() throws IOException, XmlPullParserException {
+        while (nextElementEvent() == XmlPullParser.START_TAG) {
+            switch (parser.getName()) {
+                case "instance":
+                    if (!readMainInstance) {
+                        readMainInstance();
+                    } else {
+                        skip();
+                    }
+                    break;
+                case "bind":
+                    readBind();
+                    skip();
+                    break;
+                case "submission":
+                    // Like JavaRosa, only a submission without an id is used for the form
+                    if (getAttribute("id") == null) {
+                        submission = getAttributes();
+                    }
+                    skip();
+                    break;
+                default:
+                    skip();
+            }
+        }
+    }
+
+    private void readMainInstance() throws IOException, XmlPullParserException {
+        if (getAttribute("id") != null) {
+            throw new NeedsFullParseException("first instance has an id");
+        }
+        readMainInstance = true;
+
+        if (nextElementEvent() != XmlPullParser.START_TAG) {
+            throw new NeedsFullParseException("empty main instance");
+        }
+        rootName = parser.getName();
+        formId = getAttribute("id");
+        version = getAttribute("version");
+        skip();
+
+        if (nextElementEvent() != XmlPullParser.END_TAG) {
+            throw new NeedsFullParseException("main instance has more than one root");
+        }
+    }
+
+    private void readBind() {
+        String nodeset = getAttribute("nodeset");
+        if (nodeset == null) {
+            return;
+        }
+
+        // Like JavaRosa, relative nodesets are relative to the root
+        nodeset = resolve(nodeset, rootName != null ? "/" + rootName : null);
+
+        String type = getAttribute("type");
+        if (type != null) {
+            // Types can be written with a prefix (e.g. xsd:geopoint)
+            bindTypes.put(nodeset, type.substring(type.indexOf(':') + 1));
+        }
+
+        String id = getAttribute("id");
+        if (id != null) {
+            bindNodesets.put(id, nodeset);
+        }
+    }
+
+    /**
+     * Looks for the first geopoint question in the body that is not in a repeat.
+     *
+     * @param context the path relative refs are resolved against
+     */
+    private void readControls(@Nullable String context) throws IOException, XmlPullParserException {
+        while (nextElementEvent() == XmlPullParser.START_TAG) {
+            String name = parser.getName();
+
+            if (name.equals("group")) {
+                String ref = getRef(context);
+                readControls(ref != null ? ref : context);
+            } else if (CONTROLS.contains(name) && firstGeopoint == null) {
+                String ref = getRef(context);
+                if (ref != null && GEOPOINT.equals(bindTypes.get(ref))) {
+                    firstGeopoint = ref;
+                }
+                skip();
+            } else {
+                // Repeats, labels, hints and anything after the first geopoint
+                skip();
+            }
+        }
+    }
+
+    @Nullable
+    private String getRef(@Nullable String context) {
+        String ref = getAttribute("ref");
+        if (ref == null) {
+            String bind = getAttribute("bind");
+            if (bind == null) {
+                return null;
+            }
+
+            ref = bindNodesets.get(bind);
+            if (ref == null) {
+                throw new NeedsFullParseException("unknown bind: " + bind);
+            }
+        }
+
+        return resolve(ref, context);
+    }
+
+    private static String resolve(String path, @Nullable String context) {
+        path = path.trim();
+        if (!path.startsWith("/") && context != null) {
+            path = context + "/" + path;
+        }
+
+        if (!PATH.matcher(path).matches()) {
+            throw new NeedsFullParseException("not a plain path: " + path);
+        }
+        return path;
+    }
+
+    /**
+     * Moves to the next start or end tag, skipping text.
+     */
+    private int nextElementEvent() throws IOException, XmlPullParserException {
+        int event;
+        do {
+            event = parser.next();
+        } while (event != XmlPullParser.START_TAG && event != XmlPullParser.END_TAG && event != XmlPullParser.END_DOCUMENT);
+
+        if (event == XmlPullParser.START_TAG && parser.getName().equals(SETGEOPOINT)) {
+            // The geometry then depends on the order of the geopoints in the instance
+            throw new NeedsFullParseException("form has a setgeopoint action");
+        }
+        return event;
+    }
+
+    /**
+     * Moves past the end of the current element.
+     */
+    private void skip() throws IOException, XmlPullParserException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = nextElementEvent();
+            if (event == XmlPullParser.START_TAG) {
+                depth++;
+            } else if (event == XmlPullParser.END_TAG) {
+                depth--;
+            } else {
+                throw new XmlPullParserException("Unexpected end of document", parser, null);
+            }
+        }
+    }
+
+    /**
+     * Returns the first attribute with the given name in any namespace, like JavaRosa does when
+     * it reads these attributes.
+     */
+    @Nullable
+    private String getAttribute(String name) {
+        for (int i = 0; i < parser.getAttributeCount(); i++) {
+            if (parser.getAttributeName(i).equals(name)) {
+                return parser.getAttributeValue(i);
+            }
+        }
+        return null;
+    }
+
+    private Map<String, String> getAttributes() {
+        Map<String, String> attributes = new HashMap<>();
+        for (int i = 0; i < parser.getAttributeCount(); i++) {
+            attributes.put(parser.getAttributeName(i), parser.getAttributeValue(i));
+        }
+        return attributes;
+    }
+
+    private static class NeedsFullParseException extends RuntimeException {
+        NeedsFullParseException(String reason) {
+            super(reason);
+        }
+    }
+}
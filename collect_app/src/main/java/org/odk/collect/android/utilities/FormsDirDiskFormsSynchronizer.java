@@ -5,9 +5,12 @@ import android.database.Cursor;
 import android.database.SQLException;
 import android.net.Uri;
 
+import androidx.annotation.Nullable;
+
 import org.javarosa.core.reference.ReferenceManager;
 import org.odk.collect.android.R;
 import org.odk.collect.android.application.Collect;
+import org.odk.collect.android.backgroundwork.FormCacheWarmUpManager;
 import org.odk.collect.android.dao.FormsDao;
 import org.odk.collect.android.formmanagement.DiskFormsSynchronizer;
 import org.odk.collect.android.provider.FormsProviderAPI;
@@ -16,10 +19,15 @@ import org.odk.collect.android.storage.StorageSubdirectory;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import timber.log.Timber;
 
@@ -27,7 +35,21 @@ import static org.odk.collect.android.forms.FormUtils.setupReferenceManagerForFo
 
 public class FormsDirDiskFormsSynchronizer implements DiskFormsSynchronizer {
 
-    private static int counter;
+    private static final int MAX_PARALLEL_READS = 4;
+
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    // Syncs don't overlap so that forms aren't read and saved twice. A sync that had to wait
+    // is cheap because the hashes of files that haven't changed are cached.
+    private static final Object SYNC_LOCK = new Object();
+
+    private final FormCacheWarmUpManager formCacheWarmUpManager;
+    private final FileHashCache fileHashCache;
+
+    public FormsDirDiskFormsSynchronizer(FormCacheWarmUpManager formCacheWarmUpManager, FileHashCache fileHashCache) {
+        this.formCacheWarmUpManager = formCacheWarmUpManager;
+        this.fileHashCache = fileHashCache;
+    }
 
     @Override
     public void synchronize() {
@@ -35,164 +57,214 @@ public class FormsDirDiskFormsSynchronizer implements DiskFormsSynchronizer {
     }
 
     public String synchronizeAndReturnError() {
+        int instance = COUNTER.incrementAndGet();
+        Timber.i("[%d] doInBackground begins!", instance);
+
+        synchronized (SYNC_LOCK) {
+            int threads = Math.max(1, Math.min(MAX_PARALLEL_READS, Runtime.getRuntime().availableProcessors()));
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                return synchronize(instance, executor);
+            } finally {
+                executor.shutdownNow();
+                Timber.i("[%d] doInBackground ends!", instance);
+            }
+        }
+    }
+
+    /**
+     * Hashes and reads forms on the executor. Anything that changes the database or needs a
+     * full parse, which uses the global {@link ReferenceManager}, is done on this thread.
+     */
+    private String synchronize(int instance, ExecutorService executor) {
         FormsDao formsDao = new FormsDao();
         String statusMessage = "";
 
-        int instance = ++counter;
-        Timber.i("[%d] doInBackground begins!", instance);
-
         List<String> idsToDelete = new ArrayList<>();
+        boolean formsChanged = false;
+
+        // Process everything then report what didn't work.
+        StringBuilder errors = new StringBuilder();
+
+        StoragePathProvider storagePathProvider = new StoragePathProvider();
+        File formDir = new File(storagePathProvider.getOdkDirPath(StorageSubdirectory.FORMS));
+        if (formDir.exists() && formDir.isDirectory()) {
+            // Get all the files in the /odk/foms directory
+            File[] formDefs = formDir.listFiles();
+
+            // Step 1: assemble the candidate form files
+            List<File> formsToAdd = filterFormsToAdd(formDefs, instance);
+
+            // Step 2: quickly run through and figure out what files we need to
+            // parse and update; this is quick, as we only calculate the md5
+            // and see if it has changed. The md5 is only calculated for files
+            // that changed since they were last hashed.
+            List<UriFile> formsInDatabase = new ArrayList<>();
+            Cursor cursor = null;
+            // open the cursor within a try-catch block so it can always be closed.
+            try {
+                cursor = formsDao.getFormsCursor();
+                if (cursor == null) {
+                    Timber.e("[%d] Forms Content Provider returned NULL", instance);
+                    errors.append("Internal Error: Unable to access Forms content provider\r\n");
+                    return errors.toString();
+                }
 
-        try {
-            // Process everything then report what didn't work.
-            StringBuilder errors = new StringBuilder();
-
-            StoragePathProvider storagePathProvider = new StoragePathProvider();
-            File formDir = new File(storagePathProvider.getOdkDirPath(StorageSubdirectory.FORMS));
-            if (formDir.exists() && formDir.isDirectory()) {
-                // Get all the files in the /odk/foms directory
-                File[] formDefs = formDir.listFiles();
-
-                // Step 1: assemble the candidate form files
-                List<File> formsToAdd = filterFormsToAdd(formDefs, instance);
-
-                // Step 2: quickly run through and figure out what files we need to
-                // parse and update; this is quick, as we only calculate the md5
-                // and see if it has changed.
-                List<UriFile> uriToUpdate = new ArrayList<>();
-                Cursor cursor = null;
-                // open the cursor within a try-catch block so it can always be closed.
-                try {
-                    cursor = formsDao.getFormsCursor();
-                    if (cursor == null) {
-                        Timber.e("[%d] Forms Content Provider returned NULL", instance);
-                        errors.append("Internal Error: Unable to access Forms content provider\r\n");
-                        return errors.toString();
-                    }
-
-                    cursor.moveToPosition(-1);
-
-                    while (cursor.moveToNext()) {
-                        // For each element in the provider, see if the file already exists
-                        String sqlFilename =
-                                storagePathProvider.getAbsoluteFormFilePath(cursor.getString(
-                                        cursor.getColumnIndex(FormsProviderAPI.FormsColumns.FORM_FILE_PATH)));
-                        String md5 = cursor.getString(
-                                cursor.getColumnIndex(FormsProviderAPI.FormsColumns.MD5_HASH));
-                        File sqlFile = new File(sqlFilename);
-                        if (sqlFile.exists()) {
-                            // remove it from the list of forms (we only want forms
-                            // we haven't added at the end)
-                            formsToAdd.remove(sqlFile);
-                            String md5Computed = FileUtils.getMd5Hash(sqlFile);
-                            if (md5Computed == null || md5 == null || !md5Computed.equals(md5)) {
-                                // Probably someone overwrite the file on the sdcard
-                                // So re-parse it and update it's information
-                                String id = cursor.getString(
-                                        cursor.getColumnIndex(FormsProviderAPI.FormsColumns._ID));
-                                Uri updateUri = Uri.withAppendedPath(FormsProviderAPI.FormsColumns.CONTENT_URI, id);
-                                uriToUpdate.add(new UriFile(updateUri, sqlFile));
-                            }
-                        } else {
-                            //File not found in sdcard but file path found in database
-                            //probably because the file has been deleted or filename was changed in sdcard
-                            //Add the ID to list so that they could be deleted all together
-
-                            String id = cursor.getString(
-                                    cursor.getColumnIndex(FormsProviderAPI.FormsColumns._ID));
-
-                            idsToDelete.add(id);
-                        }
-                    }
-                } finally {
-                    if (cursor != null) {
-                        cursor.close();
+                cursor.moveToPosition(-1);
+
+                while (cursor.moveToNext()) {
+                    // For each element in the provider, see if the file already exists
+                    String sqlFilename =
+                            storagePathProvider.getAbsoluteFormFilePath(cursor.getString(
+                                    cursor.getColumnIndex(FormsProviderAPI.FormsColumns.FORM_FILE_PATH)));
+                    String md5 = cursor.getString(
+                            cursor.getColumnIndex(FormsProviderAPI.FormsColumns.MD5_HASH));
+                    File sqlFile = new File(sqlFilename);
+                    String id = cursor.getString(
+                            cursor.getColumnIndex(FormsProviderAPI.FormsColumns._ID));
+                    if (sqlFile.exists()) {
+                        // remove it from the list of forms (we only want forms
+                        // we haven't added at the end)
+                        formsToAdd.remove(sqlFile);
+                        Uri updateUri = Uri.withAppendedPath(FormsProviderAPI.FormsColumns.CONTENT_URI, id);
+                        formsInDatabase.add(new UriFile(updateUri, sqlFile, md5));
+                    } else {
+                        //File not found in sdcard but file path found in database
+                        //probably because the file has been deleted or filename was changed in sdcard
+                        //Add the ID to list so that they could be deleted all together
+                        idsToDelete.add(id);
                     }
                 }
-
-                if (!idsToDelete.isEmpty()) {
-                    //Delete the forms not found in sdcard from the database
-                    formsDao.deleteFormsFromIDs(idsToDelete.toArray(new String[idsToDelete.size()]));
+            } finally {
+                if (cursor != null) {
+                    cursor.close();
                 }
+            }
 
-                // Step3: go through uriToUpdate to parse and update each in turn.
-                // Note: buildContentValues calls getMetadataFromFormDefinition which parses the
-                // form XML. This takes time for large forms and/or slow devices.
-                Collections.shuffle(uriToUpdate); // Big win if multiple DiskSyncTasks running
-                for (UriFile entry : uriToUpdate) {
-                    Uri updateUri = entry.uri;
-                    File formDefFile = entry.file;
+            if (!idsToDelete.isEmpty()) {
+                //Delete the forms not found in sdcard from the database
+                formsDao.deleteFormsFromIDs(idsToDelete.toArray(new String[idsToDelete.size()]));
+            }
+
+            List<Future<String>> md5Hashes = new ArrayList<>();
+            for (UriFile entry : formsInDatabase) {
+                md5Hashes.add(executor.submit(() -> fileHashCache.getMd5Hash(entry.file)));
+            }
+
+            List<UriFile> uriToUpdate = new ArrayList<>();
+            for (int i = 0; i < formsInDatabase.size(); i++) {
+                String md5Computed = getResult(md5Hashes.get(i));
+                String md5 = formsInDatabase.get(i).md5;
+                if (md5Computed == null || md5 == null || !md5Computed.equals(md5)) {
                     // Probably someone overwrite the file on the sdcard
                     // So re-parse it and update it's information
-                    ContentValues values;
-
-                    try {
-                        values = buildContentValues(formDefFile);
-                    } catch (IllegalArgumentException e) {
-                        errors.append(e.getMessage()).append("\r\n");
-                        File badFile = new File(formDefFile.getParentFile(),
-                                formDefFile.getName() + ".bad");
-                        badFile.delete();
-                        formDefFile.renameTo(badFile);
-                        continue;
-                    }
+                    uriToUpdate.add(formsInDatabase.get(i));
+                }
+            }
 
-                    // update in content provider
-                    int count =
-                            Collect.getInstance().getContentResolver()
-                                    .update(updateUri, values, null, null);
-                    Timber.i("[%d] %d records successfully updated", instance, count);
+            // Start reading the changed and new forms. buildContentValues reads the form XML,
+            // which takes time for large forms and/or slow devices.
+            List<Future<HashMap<String, String>>> updatedFields = new ArrayList<>();
+            for (UriFile entry : uriToUpdate) {
+                updatedFields.add(executor.submit(() -> FormMetadataReader.read(entry.file)));
+            }
+            List<Future<HashMap<String, String>>> addedFields = new ArrayList<>();
+            for (File formDefFile : formsToAdd) {
+                addedFields.add(executor.submit(() -> FormMetadataReader.read(formDefFile)));
+            }
+
+            // Step3: go through uriToUpdate to parse and update each in turn.
+            for (int i = 0; i < uriToUpdate.size(); i++) {
+                Uri updateUri = uriToUpdate.get(i).uri;
+                File formDefFile = uriToUpdate.get(i).file;
+                // Probably someone overwrite the file on the sdcard
+                // So re-parse it and update it's information
+                ContentValues values;
+
+                try {
+                    values = buildContentValues(formDefFile, getResult(updatedFields.get(i)));
+                } catch (IllegalArgumentException e) {
+                    errors.append(e.getMessage()).append("\r\n");
+                    File badFile = new File(formDefFile.getParentFile(),
+                            formDefFile.getName() + ".bad");
+                    badFile.delete();
+                    formDefFile.renameTo(badFile);
+                    continue;
                 }
-                uriToUpdate.clear();
-
-                // Step 4: go through the newly-discovered files in xFormsToAdd and add them.
-                // This is slow because buildContentValues(...) is slow.
-                //
-                Collections.shuffle(formsToAdd); // Big win if multiple DiskSyncTasks running
-                while (!formsToAdd.isEmpty()) {
-                    File formDefFile = formsToAdd.remove(0);
-
-                    // Since parsing is so slow, if there are multiple tasks,
-                    // they may have already updated the database.
-                    // Skip this file if that is the case.
-                    if (isAlreadyDefined(formsDao, formDefFile)) {
-                        Timber.i("[%d] skipping -- definition already recorded: %s",
-                                instance, formDefFile.getAbsolutePath());
-                        continue;
-                    }
 
-                    // Parse it for the first time...
-                    ContentValues values;
-
-                    try {
-                        values = buildContentValues(formDefFile);
-                    } catch (IllegalArgumentException e) {
-                        errors.append(e.getMessage()).append("\r\n");
-                        File badFile = new File(formDefFile.getParentFile(),
-                                formDefFile.getName() + ".bad");
-                        badFile.delete();
-                        formDefFile.renameTo(badFile);
-                        continue;
-                    }
+                // update in content provider
+                int count =
+                        Collect.getInstance().getContentResolver()
+                                .update(updateUri, values, null, null);
+                Timber.i("[%d] %d records successfully updated", instance, count);
+                formsChanged = true;
+            }
 
-                    // insert into content provider
-                    try {
-                        // insert failures are OK and expected if multiple
-                        // DiskSync scanners are active.
-                        formsDao.saveForm(values);
-                    } catch (SQLException e) {
-                        Timber.i("[%d] %s", instance, e.toString());
-                    }
+            // Step 4: go through the newly-discovered files in xFormsToAdd and add them.
+            Iterator<Future<HashMap<String, String>>> addedFieldsIterator = addedFields.iterator();
+            for (File formDefFile : formsToAdd) {
+                Future<HashMap<String, String>> fields = addedFieldsIterator.next();
+
+                // Forms may also be saved by something other than a sync (e.g. a download).
+                // Skip this file if that is the case.
+                if (isAlreadyDefined(formsDao, formDefFile)) {
+                    Timber.i("[%d] skipping -- definition already recorded: %s",
+                            instance, formDefFile.getAbsolutePath());
+                    continue;
+                }
+
+                // Parse it for the first time...
+                ContentValues values;
+
+                try {
+                    values = buildContentValues(formDefFile, getResult(fields));
+                } catch (IllegalArgumentException e) {
+                    errors.append(e.getMessage()).append("\r\n");
+                    File badFile = new File(formDefFile.getParentFile(),
+                            formDefFile.getName() + ".bad");
+                    badFile.delete();
+                    formDefFile.renameTo(badFile);
+                    continue;
+                }
+
+                // insert into content provider
+                try {
+                    // insert failures are OK and expected if the form has been
+                    // saved by something else in the meantime.
+                    formsDao.saveForm(values);
+                    formsChanged = true;
+                } catch (SQLException e) {
+                    Timber.i("[%d] %s", instance, e.toString());
                 }
             }
-            if (errors.length() != 0) {
-                statusMessage = errors.toString();
-            } else {
-                Timber.d(TranslationHandler.getString(Collect.getInstance(), R.string.finished_disk_scan));
+
+            // Step 5: parse and cache new and changed forms in the background so that
+            // opening them the first time is fast
+            if (formsChanged) {
+                formCacheWarmUpManager.scheduleWarmUp();
             }
-            return statusMessage;
-        } finally {
-            Timber.i("[%d] doInBackground ends!", instance);
+        }
+        if (errors.length() != 0) {
+            statusMessage = errors.toString();
+        } else {
+            Timber.d(TranslationHandler.getString(Collect.getInstance(), R.string.finished_disk_scan));
+        }
+        return statusMessage;
+    }
+
+    /**
+     * Returns the result of the task or null if it failed.
+     */
+    @Nullable
+    private static <T> T getResult(Future<T> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Timber.w(e.getCause());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
         }
     }
 
@@ -233,27 +305,31 @@ public class FormsDirDiskFormsSynchronizer implements DiskFormsSynchronizer {
     }
 
     /**
-     * Parses the given form definition file to get basic form identifiers as a ContentValues object.
-     *
-     * Note: takes time for complex forms and/or slow devices.
+     * Reads basic form identifiers from the given form definition file as a ContentValues object.
+     * The form is only fully parsed if {@link FormMetadataReader} couldn't get them on its own
+     * (readFields is null), so problems elsewhere in the form may only be found when it's first
+     * loaded.
      *
      * @return key-value list to update or insert into the content provider
      * @throws IllegalArgumentException if the file failed to parse, is missing title or form_id
      * fields or includes an invalid submission URL.
      */
-    private ContentValues buildContentValues(File formDefFile) throws IllegalArgumentException {
+    private ContentValues buildContentValues(File formDefFile, @Nullable HashMap<String, String> readFields) throws IllegalArgumentException {
         // Probably someone overwrite the file on the sdcard
         // So re-parse it and update it's information
         ContentValues updateValues = new ContentValues();
 
-        HashMap<String, String> fields;
+        HashMap<String, String> fields = readFields;
         try {
-            // If the form definition includes external secondary instances, they need to be resolved
-            final File formMediaDir = FileUtils.getFormMediaDir(formDefFile);
-            setupReferenceManagerForForm(ReferenceManager.instance(), formMediaDir);
-
-            FileUtils.getOrCreateLastSavedSrc(formDefFile);
-            fields = FileUtils.getMetadataFromFormDefinition(formDefFile);
+            // Most forms don't need to be fully parsed to get their metadata
+            if (fields == null) {
+                // If the form definition includes external secondary instances, they need to be resolved
+                final File formMediaDir = FileUtils.getFormMediaDir(formDefFile);
+                setupReferenceManagerForForm(ReferenceManager.instance(), formMediaDir);
+
+                FileUtils.getOrCreateLastSavedSrc(formDefFile);
+                fields = FileUtils.getMetadataFromFormDefinition(formDefFile);
+            }
         } catch (RuntimeException e) {
             throw new IllegalArgumentException(formDefFile.getName() + " :: " + e.toString());
         }
@@ -312,10 +388,12 @@ public class FormsDirDiskFormsSynchronizer implements DiskFormsSynchronizer {
     private static class UriFile {
         public final Uri uri;
         public final File file;
+        public final String md5;
 
-        UriFile(Uri uri, File file) {
+        UriFile(Uri uri, File file, String md5) {
             this.uri = uri;
             this.file = file;
+            this.md5 = md5;
         }
     }
 }
@@ -0,0 +1,260 @@
+package org.odk.collect.android.utilities;
+
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.drawable.Drawable;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.engine.GlideException;
+import com.bumptech.glide.request.RequestListener;
+import com.bumptech.glide.request.target.Target;
+
+import org.odk.collect.android.storage.StoragePathProvider;
+import org.odk.collect.android.storage.StorageSubdirectory;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import timber.log.Timber;
+
+/**
+ * Caches the bitmaps that form widgets show for images in the form or in answers, so that
+ * building the same question again (e.g. swiping back and forth, or in every instance of a
+ * repeat) doesn't decode the same file again.
+ *
+ * Bitmaps are kept in a memory LRU sized as a fraction of the heap, which is trimmed when the
+ * system is low on memory. Form media images that are scaled down to fit the display are also
+ * written to a disk cache of thumbnails on a background thread, so that a later decode reads the
+ * small file instead of the original. Images in answers never go to disk: they may belong to an
+ * encrypted form and would outlive the instance once it's sent or deleted. Entries are keyed by
+ * file path, modification time and length and by the display size, so a changed file or a
+ * rotated screen never gets a stale bitmap.
+ *
+ * Views that load images asynchronously use Glide, which has memory and disk caches of its own.
+ * Those loads are counted in the same hit rate through {@link #getGlideListener()}.
+ */
+public class ImageCache implements ComponentCallbacks2 {
+    private static final int MAX_DISK_BYTES = 50 * 1024 * 1024;
+    private static final int WRITES_BETWEEN_DISK_TRIMS = 20;
+    private static final int IDLE_THREAD_TIMEOUT_SECONDS = 10;
+
+    private final File thumbnailDir;
+    private final StoragePathProvider storagePathProvider;
+    private final LruCache<String, Bitmap> memoryCache;
+    private final Executor diskExecutor;
+
+    private int memoryHits;
+    private int diskHits;
+    private int misses;
+    private int writesSinceDiskTrim;
+
+    public ImageCache(File thumbnailDir, StoragePathProvider storagePathProvider) {
+        this(thumbnailDir, storagePathProvider, (int) Math.min(Runtime.getRuntime().maxMemory() / 8, Integer.MAX_VALUE),
+                new ThreadPoolExecutor(0, 1, IDLE_THREAD_TIMEOUT_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>()));
+    }
+
+    ImageCache(File thumbnailDir, StoragePathProvider storagePathProvider, int maxMemoryBytes, Executor diskExecutor) {
+        this.thumbnailDir = thumbnailDir;
+        this.storagePathProvider = storagePathProvider;
+        this.diskExecutor = diskExecutor;
+        this.memoryCache = new LruCache<String, Bitmap>(maxMemoryBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+        };
+    }
+
+    /**
+     * Returns the image scaled down to roughly fit the display, as
+     * {@link FileUtils#getBitmapScaledToDisplay(File, int, int)} does, from the cache if possible.
+     */
+    @Nullable
+    public Bitmap getBitmapScaledToDisplay(File file, int screenHeight, int screenWidth) {
+        String key = getKey(file, screenHeight, screenWidth);
+
+        Bitmap bitmap = memoryCache.get(key);
+        if (bitmap != null && !bitmap.isRecycled()) {
+            recordHit(true);
+            return bitmap;
+        }
+
+        File thumbnail = isFormMedia(file) ? getThumbnailFile(key, file) : null;
+        if (thumbnail != null && thumbnail.exists()) {
+            bitmap = FileUtils.getBitmap(thumbnail.getAbsolutePath(), new BitmapFactory.Options());
+            if (bitmap != null) {
+                thumbnail.setLastModified(System.currentTimeMillis());
+                memoryCache.put(key, bitmap);
+                recordHit(false);
+                return bitmap;
+            }
+        }
+
+        recordMiss();
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        FileUtils.getBitmap(file.getAbsolutePath(), bounds);
+
+        bitmap = FileUtils.getBitmapScaledToDisplay(file, screenHeight, screenWidth);
+        if (bitmap != null) {
+            memoryCache.put(key, bitmap);
+            if (thumbnail != null && bitmap.getWidth() < bounds.outWidth) {
+                final Bitmap scaled = bitmap;
+                diskExecutor.execute(() -> writeThumbnail(scaled, thumbnail));
+            }
+        }
+        return bitmap;
+    }
+
+    /** Returns a listener that counts where Glide found each image it loaded. */
+    public RequestListener<Drawable> getGlideListener() {
+        return new RequestListener<Drawable>() {
+            @Override
+            public boolean onLoadFailed(@Nullable GlideException e, Object model, Target<Drawable> target, boolean isFirstResource) {
+                return false;
+            }
+
+            @Override
+            public boolean onResourceReady(Drawable resource, Object model, Target<Drawable> target, DataSource dataSource, boolean isFirstResource) {
+                if (dataSource == DataSource.MEMORY_CACHE) {
+                    recordHit(true);
+                } else if (dataSource == DataSource.RESOURCE_DISK_CACHE || dataSource == DataSource.DATA_DISK_CACHE) {
+                    recordHit(false);
+                } else {
+                    recordMiss();
+                }
+                return false;
+            }
+        };
+    }
+
+    /** Returns the fraction of images that were found in the memory or disk cache. */
+    public synchronized double getHitRate() {
+        int total = memoryHits + diskHits + misses;
+        return total == 0 ? 0 : (double) (memoryHits + diskHits) / total;
+    }
+
+    public synchronized String getStats() {
+        return String.format(Locale.US, "%d memory hits, %d disk hits, %d misses (%.0f%% hit rate), %d KB in memory",
+                memoryHits, diskHits, misses, getHitRate() * 100, memoryCache.size() / 1024);
+    }
+
+    private synchronized void recordHit(boolean memory) {
+        if (memory) {
+            memoryHits++;
+        } else {
+            diskHits++;
+        }
+    }
+
+    private synchronized void recordMiss() {
+        misses++;
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            memoryCache.evictAll();
+        } else if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_LOW) {
+            memoryCache.trimToSize(memoryCache.maxSize() / 2);
+        }
+
+        if (level == TRIM_MEMORY_UI_HIDDEN) {
+            Timber.i("Image cache: %s", getStats());
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        memoryCache.evictAll();
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+    }
+
+    private static String getKey(File file, int screenHeight, int screenWidth) {
+        return file.getAbsolutePath() + "|" + file.lastModified() + "|" + file.length() + "|" + screenWidth + "x" + screenHeight;
+    }
+
+    private boolean isFormMedia(File file) {
+        String formsDirPath = storagePathProvider.getOdkDirPath(StorageSubdirectory.FORMS);
+        return file.getAbsolutePath().startsWith(formsDirPath + File.separator);
+    }
+
+    private File getThumbnailFile(String key, File file) {
+        String name = FileUtils.getMd5Hash(new ByteArrayInputStream(key.getBytes()));
+        return new File(thumbnailDir, name + (isPng(file) ? ".png" : ".jpg"));
+    }
+
+    /** Runs on {@link #diskExecutor} so writes and trims are never concurrent. */
+    private void writeThumbnail(Bitmap bitmap, File thumbnail) {
+        if (!thumbnailDir.exists() && !thumbnailDir.mkdirs()) {
+            return;
+        }
+
+        // Written next to the thumbnail and renamed so a decode never reads a partial file
+        File tempFile = new File(thumbnailDir, thumbnail.getName() + ".tmp");
+        Bitmap.CompressFormat format = isPng(thumbnail) ? Bitmap.CompressFormat.PNG : Bitmap.CompressFormat.JPEG;
+        try (FileOutputStream out = new FileOutputStream(tempFile)) {
+            bitmap.compress(format, 90, out);
+        } catch (IOException | IllegalStateException e) {
+            // IllegalStateException is thrown if the bitmap was recycled before it was written
+            Timber.w(e);
+            tempFile.delete();
+            return;
+        }
+        if (!tempFile.renameTo(thumbnail)) {
+            tempFile.delete();
+            return;
+        }
+
+        if (++writesSinceDiskTrim >= WRITES_BETWEEN_DISK_TRIMS) {
+            writesSinceDiskTrim = 0;
+            trimDiskCache();
+        }
+    }
+
+    /** Deletes the least recently used thumbnails until the disk cache fits in MAX_DISK_BYTES. */
+    private void trimDiskCache() {
+        File[] thumbnails = thumbnailDir.listFiles();
+        if (thumbnails == null) {
+            return;
+        }
+
+        long totalBytes = 0;
+        for (File thumbnail : thumbnails) {
+            totalBytes += thumbnail.length();
+        }
+        if (totalBytes <= MAX_DISK_BYTES) {
+            return;
+        }
+
+        Arrays.sort(thumbnails, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File thumbnail : thumbnails) {
+            if (totalBytes <= MAX_DISK_BYTES) {
+                break;
+            }
+            totalBytes -= thumbnail.length();
+            thumbnail.delete();
+        }
+    }
+
+    private static boolean isPng(File file) {
+        return file.getName().toLowerCase(Locale.US).endsWith(".png");
+    }
+}
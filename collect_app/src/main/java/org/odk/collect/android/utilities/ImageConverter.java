@@ -38,43 +38,24 @@ public class ImageConverter {
     }
 
     /**
+     * Rotates the image according to its EXIF orientation and scales it down to the
+     * max-pixels of the question or the image size setting, decoding it only once.
+     * This does file IO and should be called off the main thread.
+     *
      * Before proceed with scaling or rotating, make sure existing exif information is stored/restored.
      * @author Khuong Ninh (khuong.ninh@it-development.com)
      */
     public static void execute(String imagePath, QuestionWidget questionWidget, Context context, String imageSizeMode) {
-        ExifInterface exif = null;
-        try {
-            exif = new ExifInterface(imagePath);
-        } catch (IOException e) {
-            Timber.w(e);
-        }
-
-        rotateImageIfNeeded(imagePath);
-        scaleDownImageIfNeeded(imagePath, questionWidget, context, imageSizeMode);
-        
-        if (exif != null) {
-            try {
-                exif.saveAttributes();
-            } catch (IOException e) {
-                Timber.w(e);
-            }
-        }
-    }
-
-    private static void scaleDownImageIfNeeded(String imagePath, QuestionWidget questionWidget, Context context, String imageSizeMode) {
-        Integer maxPixels;
-
+        Integer maxPixels = null;
         if (questionWidget != null) {
             maxPixels = getMaxPixelsFromFormIfDefined(questionWidget);
 
             if (maxPixels == null) {
                 maxPixels = getMaxPixelsFromSettings(context, imageSizeMode);
             }
-
-            if (maxPixels != null && maxPixels > 0) {
-                scaleDownImage(imagePath, maxPixels);
-            }
         }
+
+        convert(imagePath, maxPixels != null && maxPixels > 0 ? maxPixels : 0);
     }
 
     private static Integer getMaxPixelsFromFormIfDefined(QuestionWidget questionWidget) {
@@ -109,35 +90,15 @@ public class ImageConverter {
     }
 
     /**
-     * This method is used to reduce an original picture size.
-     * maxPixels refers to the max pixels of the long edge, the short edge is scaled proportionately.
-     */
-    private static void scaleDownImage(String imagePath, int maxPixels) {
-        Bitmap image = FileUtils.getBitmap(imagePath, new BitmapFactory.Options());
-
-        if (image != null) {
-            double originalWidth = image.getWidth();
-            double originalHeight = image.getHeight();
-
-            if (originalWidth > originalHeight && originalWidth > maxPixels) {
-                int newHeight = (int) (originalHeight / (originalWidth / maxPixels));
-
-                image = Bitmap.createScaledBitmap(image, maxPixels, newHeight, false);
-                FileUtils.saveBitmapToFile(image, imagePath);
-            } else if (originalHeight > maxPixels) {
-                int newWidth = (int) (originalWidth / (originalHeight / maxPixels));
-
-                image = Bitmap.createScaledBitmap(image, newWidth, maxPixels, false);
-                FileUtils.saveBitmapToFile(image, imagePath);
-            }
-        }
-    }
-
-    /**
-     * Sometimes an image might be taken up sideways.
-     * https://github.com/getodk/collect/issues/36
+     * Reads the dimensions and EXIF data of the image, then decodes it at the smallest
+     * power of two sample size that is still at least as big as the target, rotates and
+     * scales it with a single matrix and writes it back once.  Images that need neither
+     * rotating nor scaling are not decoded at all.
+     *
+     * @param maxPixels the max pixels of the long edge (the short edge is scaled
+     *                  proportionately), or 0 to keep the original size
      */
-    private static void rotateImageIfNeeded(String imagePath) {
+    static void convert(String imagePath, int maxPixels) {
         ExifInterface exif = null;
         try {
             exif = new ExifInterface(imagePath);
@@ -145,34 +106,96 @@ public class ImageConverter {
             Timber.w(e);
         }
 
-        if (exif != null) {
-            Bitmap image = FileUtils.getBitmap(imagePath, new BitmapFactory.Options());
-
-            int orientation = exif.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
-            switch (orientation) {
-                case ExifInterface.ORIENTATION_ROTATE_90:
-                    rotateBitmap(image, 90, imagePath);
-                    break;
-                case ExifInterface.ORIENTATION_ROTATE_180:
-                    rotateBitmap(image, 180, imagePath);
-                    break;
-
-                case ExifInterface.ORIENTATION_ROTATE_270:
-                    rotateBitmap(image, 270, imagePath);
-                    break;
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        FileUtils.getBitmap(imagePath, bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            return;
+        }
+
+        int degrees = exif != null ? getRotationDegrees(exif) : 0;
+        boolean swapsEdges = degrees == 90 || degrees == 270;
+        int width = swapsEdges ? bounds.outHeight : bounds.outWidth;
+        int height = swapsEdges ? bounds.outWidth : bounds.outHeight;
+
+        int targetWidth = width;
+        int targetHeight = height;
+        if (maxPixels > 0) {
+            if (width > height && width > maxPixels) {
+                targetWidth = maxPixels;
+                targetHeight = (int) (height / ((double) width / maxPixels));
+            } else if (height > maxPixels) {
+                targetWidth = (int) (width / ((double) height / maxPixels));
+                targetHeight = maxPixels;
             }
         }
-    }
 
-    private static void rotateBitmap(Bitmap image, int degrees, String imagePath) {
+        if (degrees == 0 && targetWidth == width && targetHeight == height) {
+            return;
+        }
+
         try {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inSampleSize = getSampleSize(Math.max(width, height), Math.max(targetWidth, targetHeight));
+            Bitmap decoded = FileUtils.getBitmap(imagePath, options);
+            if (decoded == null) {
+                return;
+            }
+
             Matrix matrix = new Matrix();
+            matrix.postScale(
+                    (float) (swapsEdges ? targetHeight : targetWidth) / decoded.getWidth(),
+                    (float) (swapsEdges ? targetWidth : targetHeight) / decoded.getHeight());
             matrix.postRotate(degrees);
-            image = Bitmap.createBitmap(image, 0, 0, image.getWidth(), image.getHeight(), matrix, true);
+            Bitmap converted = Bitmap.createBitmap(decoded, 0, 0, decoded.getWidth(), decoded.getHeight(), matrix, true);
+            if (converted != decoded) {
+                decoded.recycle();
+            }
+
+            FileUtils.saveBitmapToFile(converted, imagePath);
+            converted.recycle();
         } catch (OutOfMemoryError e) {
+            // Leave the original image rather than losing it
             Timber.w(e);
+            return;
+        }
+
+        if (exif != null) {
+            try {
+                if (degrees != 0) {
+                    exif.setAttribute(ExifInterface.TAG_ORIENTATION, String.valueOf(ExifInterface.ORIENTATION_NORMAL));
+                }
+                exif.saveAttributes();
+            } catch (IOException e) {
+                Timber.w(e);
+            }
+        }
+    }
+
+    /**
+     * Sometimes an image might be taken up sideways.
+     * https://github.com/getodk/collect/issues/36
+     */
+    private static int getRotationDegrees(ExifInterface exif) {
+        switch (exif.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL)) {
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                return 90;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                return 180;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                return 270;
+            default:
+                return 0;
+        }
+    }
+
+    /** Returns the largest power of two that doesn't take the long edge below the target. */
+    static int getSampleSize(int longEdge, int targetLongEdge) {
+        int sampleSize = 1;
+        while (longEdge / (sampleSize * 2) >= targetLongEdge) {
+            sampleSize *= 2;
         }
-        FileUtils.saveBitmapToFile(image, imagePath);
+        return sampleSize;
     }
 
     public static Bitmap scaleImageToNewWidth(Bitmap bitmap, int newWidth) {
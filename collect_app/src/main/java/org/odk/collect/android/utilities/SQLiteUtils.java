@@ -65,6 +65,12 @@ public class SQLiteUtils {
             .end();
     }
 
+    public static void createIndex(SQLiteDatabase db, String index, String table, String... columns) {
+        CustomSQLiteQueryExecutor.begin(db)
+            .createIndexIfNotExists(index).on(table).columnsForInsert(columns)
+            .end();
+    }
+
     public static void dropTable(SQLiteDatabase db, String table) {
         CustomSQLiteQueryExecutor.begin(db)
             .dropIfExists(table)
@@ -8,6 +8,7 @@ import android.util.TypedValue;
 import android.view.View;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.signature.ObjectKey;
 
 import org.javarosa.core.model.data.IAnswerData;
 import org.javarosa.core.model.data.StringData;
@@ -159,6 +160,8 @@ public class ExImageWidget extends QuestionWidget implements FileWidget, WidgetD
     private void displayImage() {
         Glide.with(this)
                 .load(answerFile)
+                .signature(new ObjectKey(answerFile.lastModified()))
+                .listener(imageCache.getGlideListener())
                 .fitCenter()
                 .into(binding.imageView);
         binding.imageView.setVisibility(VISIBLE);
@@ -46,6 +46,7 @@ import org.odk.collect.android.preferences.GuidanceHint;
 import org.odk.collect.android.preferences.PreferencesDataSourceProvider;
 import org.odk.collect.android.utilities.AnimationUtils;
 import org.odk.collect.android.utilities.FormEntryPromptUtils;
+import org.odk.collect.android.utilities.ImageCache;
 import org.odk.collect.android.utilities.ScreenUtils;
 import org.odk.collect.android.utilities.SoftKeyboardController;
 import org.odk.collect.android.utilities.StringUtils;
@@ -101,6 +102,9 @@ public abstract class QuestionWidget extends FrameLayout implements Widget {
     @Inject
     public SoftKeyboardController softKeyboardController;
 
+    @Inject
+    public ImageCache imageCache;
+
     @Inject
     PermissionsProvider permissionsProvider;
 
@@ -26,7 +26,6 @@ import org.javarosa.form.api.FormEntryCaption;
 import org.odk.collect.android.R;
 import org.odk.collect.android.external.ExternalSelectChoice;
 import org.odk.collect.android.formentry.questions.QuestionDetails;
-import org.odk.collect.android.utilities.FileUtils;
 
 import java.io.File;
 import java.util.HashMap;
@@ -293,7 +292,7 @@ public class LikertWidget extends ItemsWidget {
                     DisplayMetrics metrics = getContext().getResources().getDisplayMetrics();
                     int screenWidth = metrics.widthPixels;
                     int screenHeight = metrics.heightPixels;
-                    b = FileUtils.getBitmapScaledToDisplay(imageFile, screenHeight, screenWidth);
+                    b = imageCache.getBitmapScaledToDisplay(imageFile, screenHeight, screenWidth);
                 } catch (OutOfMemoryError e) {
                     errorMsg = "ERROR: " + e.getMessage();
                 }
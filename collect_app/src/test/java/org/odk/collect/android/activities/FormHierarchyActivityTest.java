@@ -0,0 +1,170 @@
+package org.odk.collect.android.activities;
+
+import android.content.Context;
+
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.common.io.Files;
+
+import org.javarosa.core.model.FormDef;
+import org.javarosa.core.model.FormIndex;
+import org.javarosa.core.model.instance.InstanceInitializationFactory;
+import org.javarosa.form.api.FormEntryController;
+import org.javarosa.form.api.FormEntryModel;
+import org.javarosa.xform.util.XFormUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.R;
+import org.odk.collect.android.application.Collect;
+import org.odk.collect.android.javarosawrapper.FormController;
+import org.odk.collect.android.logic.HierarchyElement;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+@RunWith(AndroidJUnit4.class)
+public class FormHierarchyActivityTest {
+
+    private static final String FORM = "<?xml version=\"1.0\"?>\n"
+            + "<h:html xmlns=\"http://www.w3.org/2002/xforms\" xmlns:h=\"http://www.w3.org/1999/xhtml\">\n"
+            + "    <h:head>\n"
+            + "        <h:title>Hierarchy</h:title>\n"
+            + "        <model>\n"
+            + "            <instance>\n"
+            + "                <data id=\"hierarchy\">\n"
+            + "                    <name/>\n"
+            + "                    <details>\n"
+            + "                        <phone/>\n"
+            + "                    </details>\n"
+            + "                    <hidden>\n"
+            + "                        <secret/>\n"
+            + "                    </hidden>\n"
+            + "                    <person>\n"
+            + "                        <age/>\n"
+            + "                    </person>\n"
+            + "                    <end/>\n"
+            + "                </data>\n"
+            + "            </instance>\n"
+            + "            <bind nodeset=\"/data/name\" type=\"string\"/>\n"
+            + "            <bind nodeset=\"/data/details/phone\" type=\"string\"/>\n"
+            + "            <bind nodeset=\"/data/hidden\" relevant=\"false()\"/>\n"
+            + "            <bind nodeset=\"/data/hidden/secret\" type=\"string\"/>\n"
+            + "            <bind nodeset=\"/data/person/age\" type=\"int\"/>\n"
+            + "            <bind nodeset=\"/data/end\" type=\"string\"/>\n"
+            + "        </model>\n"
+            + "    </h:head>\n"
+            + "    <h:body>\n"
+            + "        <input ref=\"/data/name\"><label>Name</label></input>\n"
+            + "        <group ref=\"/data/details\">\n"
+            + "            <label>Details</label>\n"
+            + "            <input ref=\"/data/details/phone\"><label>Phone</label></input>\n"
+            + "        </group>\n"
+            + "        <group ref=\"/data/hidden\">\n"
+            + "            <label>Hidden</label>\n"
+            + "            <input ref=\"/data/hidden/secret\"><label>Secret</label></input>\n"
+            + "        </group>\n"
+            + "        <group ref=\"/data/person\">\n"
+            + "            <label>Person</label>\n"
+            + "            <repeat nodeset=\"/data/person\">\n"
+            + "                <input ref=\"/data/person/age\"><label>Age</label></input>\n"
+            + "            </repeat>\n"
+            + "        </group>\n"
+            + "        <input ref=\"/data/end\"><label>End</label></input>\n"
+            + "    </h:body>\n"
+            + "</h:html>";
+
+    private final Context context = ApplicationProvider.getApplicationContext();
+
+    private FormController formController;
+    private FormIndex person;
+
+    @Before
+    public void setup() throws Exception {
+        FormDef formDef = XFormUtils.getFormFromInputStream(new ByteArrayInputStream(FORM.getBytes()));
+        formDef.initialize(true, new InstanceInitializationFactory());
+        formController = new FormController(Files.createTempDir(), new FormEntryController(new FormEntryModel(formDef)), File.createTempFile("instance", ""));
+
+        while (formController.stepToNextEvent(FormController.STEP_INTO_GROUP) != FormEntryController.EVENT_REPEAT) {
+            // Find the first person
+        }
+        person = formController.getFormIndex();
+
+        formController.stepToNextEvent(FormController.STEP_INTO_GROUP);
+        formController.jumpToNewRepeatPrompt();
+        formController.newRepeat();
+
+        formController.jumpToIndex(FormIndex.createBeginningOfFormIndex());
+    }
+
+    @After
+    public void teardown() {
+        Collect.getInstance().setFormController(null);
+    }
+
+    @Test
+    public void buildLevel_listsQuestionsAndRelevantGroupsWithoutTheirContents() {
+        List<HierarchyElement> level = FormHierarchyActivity.buildLevel(formController, null, null, context, () -> false);
+
+        assertThat(level.size(), is(4));
+        assertElement(level.get(0), "Name", HierarchyElement.Type.QUESTION);
+        assertElement(level.get(1), "Details", HierarchyElement.Type.VISIBLE_GROUP);
+        assertThat(level.get(1).getSecondaryText(), is(context.getString(R.string.group_label)));
+        assertElement(level.get(2), "Person", HierarchyElement.Type.REPEATABLE_GROUP);
+        assertThat(level.get(2).getFormIndex(), is(person));
+        assertElement(level.get(3), "End", HierarchyElement.Type.QUESTION);
+    }
+
+    @Test
+    public void buildLevel_forARepeatGroupPicker_listsOnlyTheInstancesOfThatRepeat() {
+        List<HierarchyElement> level = FormHierarchyActivity.buildLevel(formController, null, person, context, () -> false);
+
+        assertThat(level.size(), is(2));
+        assertElement(level.get(0), "Person > 1", HierarchyElement.Type.REPEAT_INSTANCE);
+        assertThat(level.get(0).getFormIndex(), is(person));
+        assertElement(level.get(1), "Person > 2", HierarchyElement.Type.REPEAT_INSTANCE);
+    }
+
+    @Test
+    public void buildLevel_whenCancelled_stopsReadingTheForm() {
+        List<HierarchyElement> level = FormHierarchyActivity.buildLevel(formController, null, null, context, () -> true);
+
+        assertThat(level, is(empty()));
+        assertThat(formController.getFormIndex().isBeginningOfFormIndex(), is(true));
+    }
+
+    @Test
+    public void viewOnly_whenFinished_closesTheForm() {
+        Collect.getInstance().setFormController(formController);
+
+        ActivityScenario<ViewOnlyFormHierarchyActivity> scenario = ActivityScenario.launch(ViewOnlyFormHierarchyActivity.class);
+        scenario.onActivity(ViewOnlyFormHierarchyActivity::finish);
+
+        assertThat(Collect.getInstance().getFormController(), nullValue());
+    }
+
+    @Test
+    public void viewOnly_whenRecreated_keepsTheForm() {
+        Collect.getInstance().setFormController(formController);
+
+        ActivityScenario<ViewOnlyFormHierarchyActivity> scenario = ActivityScenario.launch(ViewOnlyFormHierarchyActivity.class);
+        scenario.recreate();
+
+        assertThat(Collect.getInstance().getFormController(), sameInstance(formController));
+    }
+
+    private static void assertElement(HierarchyElement element, String primaryText, HierarchyElement.Type type) {
+        assertThat(element.getPrimaryText(), is(primaryText));
+        assertThat(element.getType(), is(type));
+    }
+}
@@ -19,6 +19,7 @@ import org.junit.runner.RunWith;
 import org.mockito.ArgumentMatchers;
 import org.odk.collect.android.R;
 import org.odk.collect.android.activities.viewmodels.FormMapViewModel;
+import org.odk.collect.android.geo.MapBounds;
 import org.odk.collect.android.geo.MapPoint;
 import org.odk.collect.android.geo.MapProvider;
 import org.odk.collect.android.geo.TestMapFragment;
@@ -207,6 +208,21 @@ public class FormMapActivityTest {
         }
     }
 
+    @Test public void changingViewport_onlyMapsInstancesInViewport_andKeepsExistingMarkers() {
+        MapPoint kept = new MapPoint(10.1, 125.6);
+        int featureId = map.getFeatureIdFor(kept);
+
+        map.changeViewport(new MapBounds(10.05, 125.5, 10.15, 125.65), 12);
+
+        assertThat(map.getMappedPointCount(), is(1));
+        assertThat(map.getFeatureIdFor(kept), is(featureId));
+
+        map.changeViewport(new MapBounds(9, 125, 11, 127), 8);
+
+        assertThat(map.getMappedPointCount(), is(expectedPoints.size()));
+        assertThat(map.getFeatureIdFor(kept), is(featureId));
+    }
+
     @LooperMode(PAUSED)
     @Test public void openingEditableInstances_launchesEditActivity() {
         MapPoint editableAndFinalized = new MapPoint(10.1, 125.6);
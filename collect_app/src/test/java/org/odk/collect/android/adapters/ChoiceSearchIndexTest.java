@@ -0,0 +1,64 @@
+package org.odk.collect.android.adapters;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class ChoiceSearchIndexTest {
+
+    private final ChoiceSearchIndex index = new ChoiceSearchIndex(Arrays.asList(
+            "Kampala", "Entebbe", "S\u00e3o Tom\u00e9", "Jinja", "Bamako", "Ouagadougou", null));
+
+    @Test
+    public void search_withEmptyString_returnsEverything() {
+        assertThat(index.search(""), is(new int[]{0, 1, 2, 3, 4, 5, 6}));
+    }
+
+    @Test
+    public void search_returnsMatchesInOriginalOrder() {
+        assertThat(index.search("a"), is(new int[]{0, 2, 3, 4, 5}));
+        assertThat(index.search("am"), is(new int[]{0, 4}));
+        assertThat(index.search("ama"), is(new int[]{4}));
+    }
+
+    @Test
+    public void search_ignoresCaseAndAccents() {
+        assertThat(index.search("SAO TOME"), is(new int[]{2}));
+        assertThat(index.search("tom\u00e9"), is(new int[]{2}));
+    }
+
+    @Test
+    public void search_needsTheWholeStringToMatch_notJustItsTrigrams() {
+        // "oug", "ugo" and "gou" are all in "Ouagadougou", but not in this order
+        assertThat(index.search("ougoug"), is(new int[]{}));
+        assertThat(index.search("ougou"), is(new int[]{5}));
+    }
+
+    @Test
+    public void search_findsSameResultsAsScanningEveryLabel() {
+        List<String> labels = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            labels.add("Choice " + i + " " + Integer.toString(i * 7919, 36));
+        }
+        ChoiceSearchIndex index = new ChoiceSearchIndex(labels);
+
+        for (String query : Arrays.asList("1", "12", "123", "ice 4", "e 49", "zz", "choice 4999")) {
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < labels.size(); i++) {
+                if (labels.get(i).toLowerCase().contains(query)) {
+                    expected.add(i);
+                }
+            }
+            int[] actual = index.search(query);
+            assertThat(actual.length, is(expected.size()));
+            for (int i = 0; i < actual.length; i++) {
+                assertThat(actual[i], is(expected.get(i)));
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package org.odk.collect.android.backgroundwork;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.javarosa.core.reference.ReferenceManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.application.Collect;
+import org.odk.collect.android.forms.FormsRepository;
+import org.odk.collect.android.injection.config.AppDependencyModule;
+import org.odk.collect.android.javarosawrapper.FormController;
+import org.odk.collect.android.storage.StorageInitializer;
+import org.odk.collect.android.storage.StoragePathProvider;
+import org.odk.collect.android.storage.StorageSubdirectory;
+import org.odk.collect.android.support.InMemFormsRepository;
+import org.odk.collect.android.support.RobolectricHelpers;
+import org.odk.collect.android.utilities.FormDefCache;
+
+import java.io.File;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.odk.collect.android.forms.FormUtils.setupReferenceManagerForForm;
+import static org.odk.collect.android.support.FormUtils.buildForm;
+import static org.odk.collect.android.support.FormUtils.createXFormBody;
+
+@RunWith(AndroidJUnit4.class)
+public class FormCacheWarmUpTaskSpecTest {
+
+    private final FormsRepository formsRepository = new InMemFormsRepository();
+    private File formXml;
+
+    @Before
+    public void setup() {
+        RobolectricHelpers.mountExternalStorage();
+        new StorageInitializer().createOdkDirsOnStorage();
+
+        RobolectricHelpers.overrideAppDependencyModule(new AppDependencyModule() {
+            @Override
+            public FormsRepository providesFormRepository() {
+                return formsRepository;
+            }
+        });
+
+        String formsDir = new StoragePathProvider().getOdkDirPath(StorageSubdirectory.FORMS);
+        formXml = new File(formsRepository.save(buildForm("one", "1", formsDir, createXFormBody("one", "1")).build()).getFormFilePath());
+    }
+
+    @After
+    public void teardown() {
+        Collect.getInstance().setFormController(null);
+    }
+
+    @Test
+    public void cachesFormsThatAreNotCachedYet() {
+        new FormCacheWarmUpTaskSpec().getTask(ApplicationProvider.getApplicationContext()).get();
+
+        assertThat(FormDefCache.isCached(formXml), is(true));
+    }
+
+    @Test
+    public void whenAFormIsOpen_doesNotParseFormsOrChangeTheReferenceManager() throws Exception {
+        File openFormMediaDir = new File(new StoragePathProvider().getOdkDirPath(StorageSubdirectory.FORMS), "open-form-media");
+        setupReferenceManagerForForm(ReferenceManager.instance(), openFormMediaDir);
+        Collect.getInstance().setFormController(mock(FormController.class));
+
+        new FormCacheWarmUpTaskSpec().getTask(ApplicationProvider.getApplicationContext()).get();
+
+        assertThat(FormDefCache.isCached(formXml), is(false));
+        assertThat(ReferenceManager.instance().deriveReference("jr://images/a.png").getLocalURI(), endsWith("open-form-media/a.png"));
+    }
+
+    @Test
+    public void whenFormIsDeleted_doesNotCacheIt() {
+        File deletedFormXml = new File(formsRepository.save(buildForm("two", "1", formXml.getParent(), createXFormBody("two", "1"))
+                .deleted(true)
+                .build()).getFormFilePath());
+
+        new FormCacheWarmUpTaskSpec().getTask(ApplicationProvider.getApplicationContext()).get();
+
+        assertThat(FormDefCache.isCached(deletedFormXml), is(false));
+    }
+}
@@ -3,7 +3,9 @@ package org.odk.collect.android.database;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 
 import org.junit.Before;
+import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.odk.collect.android.forms.Form;
 import org.odk.collect.android.forms.FormsRepository;
 import org.odk.collect.android.forms.FormsRepositoryTest;
 import org.odk.collect.android.injection.config.AppDependencyModule;
@@ -11,8 +13,16 @@ import org.odk.collect.android.storage.StorageInitializer;
 import org.odk.collect.android.storage.StoragePathProvider;
 import org.odk.collect.android.storage.StorageSubdirectory;
 import org.odk.collect.android.support.RobolectricHelpers;
+import org.odk.collect.android.utilities.FileUtils;
+import org.odk.collect.android.utilities.FormDefCache;
 import org.odk.collect.utilities.Clock;
 
+import java.io.File;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.odk.collect.android.support.FormUtils.buildForm;
+
 @RunWith(AndroidJUnit4.class)
 public class DatabaseFormsRepositoryTest extends FormsRepositoryTest {
 
@@ -25,6 +35,36 @@ public class DatabaseFormsRepositoryTest extends FormsRepositoryTest {
         new StorageInitializer().createOdkDirsOnStorage();
     }
 
+    @Test
+    public void save_storesPathOfFormDefCacheFile() {
+        Form form = buildForm("1", null, getFormFilesPath()).build();
+
+        Form savedForm = buildSubject().save(form);
+
+        File cacheFile = FormDefCache.getCacheFile(new File(form.getFormFilePath()), savedForm.getMD5Hash());
+        assertThat(savedForm.getJrCacheFilePath(), is(storagePathProvider.getRelativeCachePath(cacheFile.getAbsolutePath())));
+    }
+
+    @Test
+    public void delete_deletesFormDefCacheFilesForEveryVersionOfTheForm() {
+        FormsRepository formsRepository = buildSubject();
+        Form form = buildForm("1", null, getFormFilesPath()).build();
+        File formXml = new File(form.getFormFilePath());
+
+        Form savedForm = formsRepository.save(form);
+
+        File oldCacheFile = FormDefCache.getCacheFile(formXml, "old-md5");
+        FileUtils.write(oldCacheFile, new byte[]{1});
+
+        File cacheFile = FormDefCache.getCacheFile(formXml, savedForm.getMD5Hash());
+        FileUtils.write(cacheFile, new byte[]{1});
+
+        formsRepository.delete(savedForm.getId());
+
+        assertThat(oldCacheFile.exists(), is(false));
+        assertThat(cacheFile.exists(), is(false));
+    }
+
     @Override
     public FormsRepository buildSubject() {
         return new DatabaseFormsRepository();
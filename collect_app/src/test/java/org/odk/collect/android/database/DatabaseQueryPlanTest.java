@@ -0,0 +1,153 @@
+package org.odk.collect.android.database;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.instances.Instance;
+import org.odk.collect.android.provider.FormsProviderAPI.FormsColumns;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.odk.collect.android.database.DatabaseConstants.FORMS_TABLE_NAME;
+import static org.odk.collect.android.database.DatabaseConstants.INSTANCES_TABLE_NAME;
+import static org.odk.collect.android.provider.InstanceProviderAPI.InstanceColumns.DELETED_DATE;
+import static org.odk.collect.android.provider.InstanceProviderAPI.InstanceColumns.DISPLAY_NAME;
+import static org.odk.collect.android.provider.InstanceProviderAPI.InstanceColumns.INSTANCE_FILE_PATH;
+import static org.odk.collect.android.provider.InstanceProviderAPI.InstanceColumns.JR_FORM_ID;
+import static org.odk.collect.android.provider.InstanceProviderAPI.InstanceColumns.JR_VERSION;
+import static org.odk.collect.android.provider.InstanceProviderAPI.InstanceColumns.LAST_STATUS_CHANGE_DATE;
+import static org.odk.collect.android.provider.InstanceProviderAPI.InstanceColumns.STATUS;
+
+/**
+ * Seeds forms and instances tables of the size a busy device can have and checks that the queries
+ * behind the form and instance lists, auto-send and the repositories are answered from an index,
+ * and that the ones sorted by name read rows in order instead of sorting them in a temporary
+ * B-tree. The query plan doesn't depend on how fast the machine running the tests is, so that's
+ * what is asserted on rather than timings.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DatabaseQueryPlanTest {
+
+    private static final int INSTANCES = 20_000;
+    private static final int FORMS = 2_000;
+
+    // The default sort of the instance lists
+    private static final String BY_NAME = DISPLAY_NAME + " COLLATE NOCASE ASC, " + STATUS + " DESC";
+
+    private SQLiteDatabase formsDatabase;
+    private SQLiteDatabase instancesDatabase;
+
+    @Before
+    public void setup() {
+        formsDatabase = SQLiteDatabase.create(null);
+        new FormDatabaseMigrator().onCreate(formsDatabase);
+        seedForms();
+
+        instancesDatabase = SQLiteDatabase.create(null);
+        new InstanceDatabaseMigrator().onCreate(instancesDatabase);
+        seedInstances();
+    }
+
+    @After
+    public void teardown() {
+        formsDatabase.close();
+        instancesDatabase.close();
+    }
+
+    @Test
+    public void formQueries_useIndexes() {
+        assertUsesIndex(formsDatabase, FORMS_TABLE_NAME, FormsColumns.JR_FORM_ID + "=? AND " + FormsColumns.JR_VERSION + "=?", null, "form10", "1");
+        assertUsesIndex(formsDatabase, FORMS_TABLE_NAME, FormsColumns.JR_FORM_ID + "=? AND " + FormsColumns.JR_VERSION + " IS NULL", null, "form10");
+        assertUsesIndex(formsDatabase, FORMS_TABLE_NAME, FormsColumns.DELETED_DATE + " IS NULL AND " + FormsColumns.JR_FORM_ID + "=? AND " + FormsColumns.JR_VERSION + "=?", null, "form10", "1");
+        assertUsesIndex(formsDatabase, FORMS_TABLE_NAME, FormsColumns.MD5_HASH + "=?", null, "hash10");
+        assertUsesIndex(formsDatabase, FORMS_TABLE_NAME, FormsColumns.FORM_FILE_PATH + "=?", null, "forms/form10.xml");
+    }
+
+    @Test
+    public void instanceQueries_useIndexes() {
+        assertUsesIndex(instancesDatabase, INSTANCES_TABLE_NAME, INSTANCE_FILE_PATH + "=?", null, "instances/instance10/instance10.xml");
+        assertUsesIndex(instancesDatabase, INSTANCES_TABLE_NAME, JR_FORM_ID + " = ?", null, "form10");
+        assertUsesIndex(instancesDatabase, INSTANCES_TABLE_NAME, JR_FORM_ID + " = ? AND " + JR_VERSION + " = ? AND " + DELETED_DATE + " IS NULL", null, "form10", "1");
+    }
+
+    @Test
+    public void instanceListQueries_readRowsInOrder() {
+        assertReadsInOrder(STATUS + " =? ", Instance.STATUS_SUBMITTED);
+        assertReadsInOrder(STATUS + " !=? ", Instance.STATUS_SUBMITTED);
+        assertReadsInOrder(STATUS + "=? or " + STATUS + "=?", Instance.STATUS_COMPLETE, Instance.STATUS_SUBMISSION_FAILED);
+        assertReadsInOrder(DELETED_DATE + " IS NULL ");
+        assertReadsInOrder(DELETED_DATE + " IS NULL and (" + STATUS + "=? or " + STATUS + "=? or " + STATUS + "=?)",
+                Instance.STATUS_COMPLETE, Instance.STATUS_SUBMISSION_FAILED, Instance.STATUS_SUBMITTED);
+        assertReadsInOrder(STATUS + " =? and " + DISPLAY_NAME + " LIKE ?", Instance.STATUS_SUBMITTED, "%stance 1%");
+        assertReadsInOrder("(" + STATUS + "=? or " + STATUS + "=?) and " + DISPLAY_NAME + " LIKE ?",
+                Instance.STATUS_COMPLETE, Instance.STATUS_SUBMISSION_FAILED, "%stance 1%");
+    }
+
+    private void assertReadsInOrder(String selection, String... selectionArgs) {
+        String plan = assertUsesIndex(instancesDatabase, INSTANCES_TABLE_NAME, selection, BY_NAME, selectionArgs);
+        assertThat(selection, plan, not(containsString("USE TEMP B-TREE")));
+    }
+
+    private static String assertUsesIndex(SQLiteDatabase db, String table, String selection, String sortOrder, String... selectionArgs) {
+        String query = "SELECT * FROM " + table + " WHERE " + selection + (sortOrder == null ? "" : " ORDER BY " + sortOrder);
+
+        StringBuilder plan = new StringBuilder();
+        try (Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + query, selectionArgs)) {
+            while (cursor.moveToNext()) {
+                plan.append(cursor.getString(cursor.getColumnIndex("detail"))).append('\n');
+            }
+        }
+        assertThat(query, plan.toString(), containsString("USING INDEX"));
+        return plan.toString();
+    }
+
+    private void seedForms() {
+        formsDatabase.beginTransaction();
+        try {
+            for (int i = 0; i < FORMS; i++) {
+                ContentValues values = new ContentValues();
+                values.put(FormsColumns.DISPLAY_NAME, "Form " + i);
+                values.put(FormsColumns.JR_FORM_ID, "form" + i);
+                values.put(FormsColumns.JR_VERSION, Integer.toString(i % 3));
+                values.put(FormsColumns.MD5_HASH, "hash" + i);
+                values.put(FormsColumns.DATE, i);
+                values.put(FormsColumns.FORM_MEDIA_PATH, "forms/form" + i + "-media");
+                values.put(FormsColumns.FORM_FILE_PATH, "forms/form" + i + ".xml");
+                values.put(FormsColumns.JRCACHE_FILE_PATH, "cache/form" + i + ".formdef");
+                formsDatabase.insertOrThrow(FORMS_TABLE_NAME, null, values);
+            }
+            formsDatabase.setTransactionSuccessful();
+        } finally {
+            formsDatabase.endTransaction();
+        }
+    }
+
+    private void seedInstances() {
+        String[] statuses = {Instance.STATUS_INCOMPLETE, Instance.STATUS_COMPLETE, Instance.STATUS_SUBMITTED, Instance.STATUS_SUBMISSION_FAILED};
+
+        instancesDatabase.beginTransaction();
+        try {
+            for (int i = 0; i < INSTANCES; i++) {
+                ContentValues values = new ContentValues();
+                values.put(DISPLAY_NAME, "Instance " + i);
+                values.put(INSTANCE_FILE_PATH, "instances/instance" + i + "/instance" + i + ".xml");
+                values.put(JR_FORM_ID, "form" + (i % FORMS));
+                values.put(JR_VERSION, Integer.toString(i % 3));
+                values.put(STATUS, statuses[i % statuses.length]);
+                values.put(LAST_STATUS_CHANGE_DATE, i);
+                instancesDatabase.insertOrThrow(INSTANCES_TABLE_NAME, null, values);
+            }
+            instancesDatabase.setTransactionSuccessful();
+        } finally {
+            instancesDatabase.endTransaction();
+        }
+    }
+}
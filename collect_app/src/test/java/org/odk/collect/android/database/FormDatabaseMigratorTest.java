@@ -12,10 +12,12 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.odk.collect.android.utilities.SQLiteUtils;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static java.util.Arrays.asList;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.is;
 import static org.odk.collect.android.database.DatabaseConstants.FORMS_TABLE_NAME;
 import static org.odk.collect.android.provider.FormsProviderAPI.FormsColumns.AUTO_DELETE;
@@ -48,7 +50,7 @@ public class FormDatabaseMigratorTest {
 
     @Before
     public void setup() {
-        assertThat("Test expects different Forms DB version", DatabaseConstants.FORMS_DATABASE_VERSION, is(10));
+        assertThat("Test expects different Forms DB version", DatabaseConstants.FORMS_DATABASE_VERSION, is(11));
         database = SQLiteDatabase.create(null);
     }
 
@@ -89,6 +91,22 @@ public class FormDatabaseMigratorTest {
         }
     }
 
+    @Test
+    public void onUpgrade_fromVersion9_indexesLookupColumns() {
+        createVersion9Database(database);
+
+        new FormDatabaseMigrator().onUpgrade(database, 9);
+
+        assertThat(getIndexNames(), containsInAnyOrder("forms_jr_form_id_idx", "forms_md5_hash_idx", "forms_form_file_path_idx"));
+    }
+
+    @Test
+    public void onCreate_indexesLookupColumns() {
+        new FormDatabaseMigrator().onCreate(database);
+
+        assertThat(getIndexNames(), containsInAnyOrder("forms_jr_form_id_idx", "forms_md5_hash_idx", "forms_form_file_path_idx"));
+    }
+
     @Test
     public void onUpgrade_fromVersion8() {
         createVersion8Database(database);
@@ -247,6 +265,17 @@ public class FormDatabaseMigratorTest {
         return contentValues;
     }
 
+    private List<String> getIndexNames() {
+        List<String> indexNames = new ArrayList<>();
+        try (Cursor cursor = database.rawQuery("SELECT name FROM sqlite_master WHERE type = 'index' AND tbl_name = ? AND sql IS NOT NULL",
+                new String[]{FORMS_TABLE_NAME})) {
+            while (cursor.moveToNext()) {
+                indexNames.add(cursor.getString(0));
+            }
+        }
+        return indexNames;
+    }
+
     private ContentValues createVersion9Form() {
         ContentValues contentValues = new ContentValues();
         contentValues.put(DISPLAY_NAME, "DisplayName");
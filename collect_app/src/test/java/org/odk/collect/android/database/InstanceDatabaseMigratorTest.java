@@ -0,0 +1,141 @@
+package org.odk.collect.android.database;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.instances.Instance;
+import org.odk.collect.android.utilities.SQLiteUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.odk.collect.android.database.DatabaseConstants.INSTANCES_TABLE_NAME;
+import static org.odk.collect.android.provider.InstanceProviderAPI.InstanceColumns.CAN_EDIT_WHEN_COMPLETE;
+import static org.odk.collect.android.provider.InstanceProviderAPI.InstanceColumns.DELETED_DATE;
+import static org.odk.collect.android.provider.InstanceProviderAPI.InstanceColumns.DISPLAY_NAME;
+import static org.odk.collect.android.provider.InstanceProviderAPI.InstanceColumns.GEOMETRY;
+import static org.odk.collect.android.provider.InstanceProviderAPI.InstanceColumns.GEOMETRY_TYPE;
+import static org.odk.collect.android.provider.InstanceProviderAPI.InstanceColumns.INSTANCE_FILE_PATH;
+import static org.odk.collect.android.provider.InstanceProviderAPI.InstanceColumns.JR_FORM_ID;
+import static org.odk.collect.android.provider.InstanceProviderAPI.InstanceColumns.JR_VERSION;
+import static org.odk.collect.android.provider.InstanceProviderAPI.InstanceColumns.LAST_STATUS_CHANGE_DATE;
+import static org.odk.collect.android.provider.InstanceProviderAPI.InstanceColumns.STATUS;
+import static org.odk.collect.android.provider.InstanceProviderAPI.InstanceColumns.SUBMISSION_URI;
+import static org.odk.collect.android.provider.InstanceProviderAPI.InstanceColumns._ID;
+
+@RunWith(AndroidJUnit4.class)
+public class InstanceDatabaseMigratorTest {
+
+    private SQLiteDatabase database;
+
+    @Before
+    public void setup() {
+        assertThat("Test expects different Instances DB version", DatabaseConstants.INSTANCES_DATABASE_VERSION, is(7));
+        database = SQLiteDatabase.create(null);
+    }
+
+    @After
+    public void teardown() {
+        database.close();
+    }
+
+    @Test
+    public void onCreate_indexesListAndLookupColumns() {
+        new InstanceDatabaseMigrator().onCreate(database);
+
+        assertThat(getIndexNames(), containsInAnyOrder("instances_display_name_idx", "instances_instance_file_path_idx", "instances_jr_form_id_idx"));
+    }
+
+    @Test
+    public void onUpgrade_fromVersion6_indexesListAndLookupColumns() {
+        createVersion6Database(database);
+        ContentValues contentValues = createVersion6Instance();
+        database.insert(INSTANCES_TABLE_NAME, null, contentValues);
+
+        new InstanceDatabaseMigrator().onUpgrade(database, 6);
+
+        assertThat(getIndexNames(), containsInAnyOrder("instances_display_name_idx", "instances_instance_file_path_idx", "instances_jr_form_id_idx"));
+        try (Cursor cursor = database.rawQuery("SELECT * FROM " + INSTANCES_TABLE_NAME + ";", new String[]{})) {
+            assertThat(cursor.getCount(), is(1));
+
+            cursor.moveToFirst();
+            assertThat(cursor.getString(cursor.getColumnIndex(DISPLAY_NAME)), is(contentValues.getAsString(DISPLAY_NAME)));
+            assertThat(cursor.getString(cursor.getColumnIndex(INSTANCE_FILE_PATH)), is(contentValues.getAsString(INSTANCE_FILE_PATH)));
+        }
+    }
+
+    @Test
+    public void onUpgrade_fromVersion6_indexesDisplayNameIgnoringCase() {
+        createVersion6Database(database);
+
+        new InstanceDatabaseMigrator().onUpgrade(database, 6);
+
+        try (Cursor cursor = database.rawQuery("SELECT sql FROM sqlite_master WHERE name = ?", new String[]{"instances_display_name_idx"})) {
+            cursor.moveToFirst();
+            assertThat(cursor.getString(0).contains(DISPLAY_NAME + " COLLATE NOCASE"), is(true));
+        }
+    }
+
+    @Test
+    public void onDowngrade_indexesTheRebuiltTable() {
+        InstanceDatabaseMigrator instanceDatabaseMigrator = new InstanceDatabaseMigrator();
+        instanceDatabaseMigrator.onCreate(database);
+        SQLiteUtils.addColumn(database, INSTANCES_TABLE_NAME, "new_column", "text");
+
+        instanceDatabaseMigrator.onDowngrade(database);
+
+        assertThat(getIndexNames(), containsInAnyOrder("instances_display_name_idx", "instances_instance_file_path_idx", "instances_jr_form_id_idx"));
+    }
+
+    private List<String> getIndexNames() {
+        List<String> indexNames = new ArrayList<>();
+        try (Cursor cursor = database.rawQuery("SELECT name FROM sqlite_master WHERE type = 'index' AND tbl_name = ? AND sql IS NOT NULL",
+                new String[]{INSTANCES_TABLE_NAME})) {
+            while (cursor.moveToNext()) {
+                indexNames.add(cursor.getString(0));
+            }
+        }
+        return indexNames;
+    }
+
+    private ContentValues createVersion6Instance() {
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(DISPLAY_NAME, "DisplayName");
+        contentValues.put(SUBMISSION_URI, "submission.uri");
+        contentValues.put(CAN_EDIT_WHEN_COMPLETE, "true");
+        contentValues.put(INSTANCE_FILE_PATH, "Instance/File/Path");
+        contentValues.put(JR_FORM_ID, "FormId");
+        contentValues.put(JR_VERSION, "FormVersion");
+        contentValues.put(STATUS, Instance.STATUS_COMPLETE);
+        contentValues.put(LAST_STATUS_CHANGE_DATE, 0);
+        contentValues.put(GEOMETRY, "Geometry");
+        contentValues.put(GEOMETRY_TYPE, "Point");
+        return contentValues;
+    }
+
+    private void createVersion6Database(SQLiteDatabase database) {
+        database.execSQL("CREATE TABLE IF NOT EXISTS " + INSTANCES_TABLE_NAME + " ("
+                + _ID + " integer primary key, "
+                + DISPLAY_NAME + " text not null, "
+                + SUBMISSION_URI + " text, "
+                + CAN_EDIT_WHEN_COMPLETE + " text, "
+                + INSTANCE_FILE_PATH + " text not null, "
+                + JR_FORM_ID + " text not null, "
+                + JR_VERSION + " text, "
+                + STATUS + " text not null, "
+                + LAST_STATUS_CHANGE_DATE + " date not null, "
+                + DELETED_DATE + " date, "
+                + GEOMETRY + " text, "
+                + GEOMETRY_TYPE + " text);");
+    }
+}
@@ -1,6 +1,7 @@
 package org.odk.collect.android.external;
 
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.os.Environment;
 
@@ -190,6 +191,50 @@ public class ExternalDataReaderTest {
         assertThat(metadataTableHash, is(newHash));
     }
 
+    @Test
+    public void doImport_whenFileIsUpdated_onlyAppliesChangedRows() throws IOException {
+        ExternalDataReader externalDataReader = new ExternalDataReaderImpl(null);
+        externalDataReader.doImport(formDefToCsvMedia);
+
+        SQLiteDatabase db = SQLiteDatabase.openDatabase(dbFile.getAbsolutePath(), null, SQLiteDatabase.OPEN_READONLY);
+        long mangoRowId = DatabaseUtils.longForQuery(db, "SELECT rowid FROM " + EXTERNAL_DATA_TABLE_NAME + " WHERE c_name_key = 'mango'", null);
+        db.close();
+
+        try (Writer out = new BufferedWriter(new FileWriter(csvFile))) {
+            out.write("name_key,name\nmango,Mango\noranges,Blood oranges\nkiwis,Kiwis");
+        }
+
+        externalDataReader = new ExternalDataReaderImpl(null);
+        externalDataReader.doImport(formDefToCsvMedia);
+
+        db = SQLiteDatabase.openDatabase(dbFile.getAbsolutePath(), null, SQLiteDatabase.OPEN_READONLY);
+        assertThat(db.rawQuery(SELECT_ALL_DATA_QUERY, null).getCount(), is(3));
+        assertThat(DatabaseUtils.longForQuery(db, "SELECT rowid FROM " + EXTERNAL_DATA_TABLE_NAME + " WHERE c_name_key = 'mango'", null), is(mangoRowId));
+        assertThat(DatabaseUtils.stringForQuery(db, "SELECT c_name FROM " + EXTERNAL_DATA_TABLE_NAME + " WHERE c_name_key = 'oranges'", null), is("Blood oranges"));
+        assertThat(DatabaseUtils.stringForQuery(db, "SELECT c_name FROM " + EXTERNAL_DATA_TABLE_NAME + " WHERE c_name_key = 'kiwis'", null), is("Kiwis"));
+        assertThat(DatabaseUtils.queryNumEntries(db, EXTERNAL_DATA_TABLE_NAME, "c_name_key = 'strawberries'"), is(0L));
+        assertThat(ExternalSQLiteOpenHelper.getLastMd5Hash(db, EXTERNAL_METADATA_TABLE_NAME, csvFile), is(FileUtils.getMd5Hash(csvFile)));
+        db.close();
+    }
+
+    @Test
+    public void doImport_whenColumnsAreChanged_reimportsCsv() throws IOException {
+        ExternalDataReader externalDataReader = new ExternalDataReaderImpl(null);
+        externalDataReader.doImport(formDefToCsvMedia);
+
+        try (Writer out = new BufferedWriter(new FileWriter(csvFile))) {
+            out.write("name_key,name,color\nmango,Mango,yellow");
+        }
+
+        externalDataReader = new ExternalDataReaderImpl(null);
+        externalDataReader.doImport(formDefToCsvMedia);
+
+        SQLiteDatabase db = SQLiteDatabase.openDatabase(dbFile.getAbsolutePath(), null, SQLiteDatabase.OPEN_READONLY);
+        assertThat(SQLiteUtils.doesColumnExist(db, EXTERNAL_DATA_TABLE_NAME, "c_color"), is(true));
+        assertThat(db.rawQuery(SELECT_ALL_DATA_QUERY, null).getCount(), is(1));
+        db.close();
+    }
+
     @Test
     public void doImport_skipsImportIfFileNotUpdated() {
         // Create the DB file with an initial import
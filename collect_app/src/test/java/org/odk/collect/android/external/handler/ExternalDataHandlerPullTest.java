@@ -0,0 +1,96 @@
+package org.odk.collect.android.external.handler;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Environment;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.external.ExternalDataManagerImpl;
+import org.odk.collect.android.external.ExternalDataReaderImpl;
+import org.odk.collect.android.storage.StorageInitializer;
+import org.odk.collect.android.storage.StoragePathProvider;
+import org.odk.collect.android.storage.StorageSubdirectory;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowEnvironment;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.odk.collect.android.external.ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME;
+
+@RunWith(RobolectricTestRunner.class)
+public class ExternalDataHandlerPullTest {
+
+    private File csvFile;
+    private Map<String, File> externalDataMap;
+    private ExternalDataManagerImpl externalDataManager;
+    private ExternalDataHandlerPull handler;
+
+    @Before
+    public void setUp() throws IOException {
+        ShadowEnvironment.setExternalStorageState(Environment.MEDIA_MOUNTED);
+        new StorageInitializer().createOdkDirsOnStorage();
+
+        File mediaDir = new File(new StoragePathProvider().getOdkDirPath(StorageSubdirectory.FORMS), "pulldata-media");
+        mediaDir.mkdir();
+        csvFile = new File(mediaDir, "fruits.csv");
+        writeCsv("name_key,name\nmango,Mango\noranges,Oranges");
+
+        externalDataMap = new HashMap<>();
+        externalDataMap.put("fruits", csvFile);
+        new ExternalDataReaderImpl(null).doImport(externalDataMap);
+
+        externalDataManager = new ExternalDataManagerImpl(mediaDir);
+        handler = new ExternalDataHandlerPull(externalDataManager);
+    }
+
+    @After
+    public void tearDown() {
+        externalDataManager.close();
+    }
+
+    @Test
+    public void eval_returnsValueFromDataSet() {
+        assertThat(handler.eval(new Object[]{"fruits", "name", "name_key", "mango"}, null), is("Mango"));
+        assertThat(handler.eval(new Object[]{"fruits", "name", "name_key", "kiwis"}, null), is(""));
+    }
+
+    @Test
+    public void eval_whenLookupIsRepeated_doesNotQueryTheDataSetAgain() {
+        assertThat(handler.eval(new Object[]{"fruits", "name", "name_key", "mango"}, null), is("Mango"));
+
+        // Changing the rows without importing the data set again isn't seen by cached lookups
+        try (SQLiteDatabase database = SQLiteDatabase.openDatabase(new File(csvFile.getParentFile(), "fruits.db").getAbsolutePath(),
+                null, SQLiteDatabase.OPEN_READWRITE)) {
+            database.delete(EXTERNAL_DATA_TABLE_NAME, null, null);
+        }
+
+        assertThat(handler.eval(new Object[]{"fruits", "name", "name_key", "mango"}, null), is("Mango"));
+        assertThat(handler.eval(new Object[]{"fruits", "name", "name_key", "oranges"}, null), is(""));
+    }
+
+    @Test
+    public void eval_whenDataSetIsImportedAgain_returnsNewValue() throws IOException {
+        assertThat(handler.eval(new Object[]{"fruits", "name", "name_key", "mango"}, null), is("Mango"));
+
+        writeCsv("name_key,name\nmango,Ripe mango\noranges,Oranges");
+        new ExternalDataReaderImpl(null).doImport(externalDataMap);
+
+        assertThat(handler.eval(new Object[]{"fruits", "name", "name_key", "mango"}, null), is("Ripe mango"));
+    }
+
+    private void writeCsv(String contents) throws IOException {
+        try (Writer out = new BufferedWriter(new FileWriter(csvFile))) {
+            out.write(contents);
+        }
+    }
+}
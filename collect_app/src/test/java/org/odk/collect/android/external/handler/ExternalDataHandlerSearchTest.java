@@ -0,0 +1,206 @@
+package org.odk.collect.android.external.handler;
+
+import android.database.DatabaseUtils;
+import android.os.Environment;
+
+import org.javarosa.core.model.FormDef;
+import org.javarosa.core.model.QuestionDef;
+import org.javarosa.core.model.SelectChoice;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.external.ExternalDataManagerImpl;
+import org.odk.collect.android.external.ExternalDataReaderImpl;
+import org.odk.collect.android.external.ExternalDataUtil;
+import org.odk.collect.android.external.FilterableChoices;
+import org.odk.collect.android.storage.StorageInitializer;
+import org.odk.collect.android.storage.StoragePathProvider;
+import org.odk.collect.android.storage.StorageSubdirectory;
+import org.odk.collect.android.tasks.FormLoaderTask;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowEnvironment;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.startsWith;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+public class ExternalDataHandlerSearchTest {
+
+    private static final int ROWS = PagedExternalSelectChoices.PAGE_SIZE * 3 + 7;
+
+    private File mediaDir;
+    private ExternalDataManagerImpl externalDataManager;
+    private ExternalDataHandlerSearch handler;
+
+    @Before
+    public void setUp() throws IOException {
+        ShadowEnvironment.setExternalStorageState(Environment.MEDIA_MOUNTED);
+        new StorageInitializer().createOdkDirsOnStorage();
+
+        mediaDir = new File(new StoragePathProvider().getOdkDirPath(StorageSubdirectory.FORMS), "search-media");
+        mediaDir.mkdir();
+        File csvFile = new File(mediaDir, "towns.csv");
+        try (Writer out = new BufferedWriter(new FileWriter(csvFile))) {
+            out.write("name,label,region");
+            for (int i = 0; i < ROWS; i++) {
+                out.write("\ntown" + i + ",Town " + i + ",region" + (i % 2));
+            }
+            // a second row for a value that's already been seen
+            out.write("\ntown0,Duplicate,region0");
+        }
+
+        Map<String, File> externalDataMap = new HashMap<>();
+        externalDataMap.put("towns", csvFile);
+        new ExternalDataReaderImpl(null).doImport(externalDataMap);
+
+        externalDataManager = new ExternalDataManagerImpl(mediaDir);
+        handler = new ExternalDataHandlerSearch(externalDataManager, "label", "name", null);
+    }
+
+    @After
+    public void tearDown() {
+        externalDataManager.close();
+    }
+
+    @Test
+    public void eval_returnsEveryUniqueValueInOrder() {
+        List<SelectChoice> choices = search("towns");
+
+        assertThat(choices.size(), is(ROWS));
+        for (int i = 0; i < ROWS; i++) {
+            assertThat(choices.get(i).getValue(), is("town" + i));
+            assertThat(choices.get(i).getLabelInnerText(), is("Town " + i));
+            assertThat(choices.get(i).getIndex(), is(i));
+        }
+    }
+
+    @Test
+    public void eval_withStartsWithAndFilter_returnsMatchingChoices() {
+        List<SelectChoice> choices = search("towns", "startsWith", "name", "TOWN1", "region", "region1");
+
+        assertThat(choices.size(), is(56));
+        assertThat(choices.get(0).getValue(), is("town1"));
+        assertThat(choices.get(1).getValue(), is("town11"));
+    }
+
+    @Test
+    public void eval_withContains_returnsMatchingChoices() {
+        List<SelectChoice> choices = search("towns", "contains", "label", "own 30");
+
+        assertThat(choices.size(), is(8));
+    }
+
+    @Test
+    public void filter_returnsThePositionsOfChoicesWhoseLabelContainsTheQuery() {
+        List<SelectChoice> choices = search("towns", "startsWith", "name", "town1", "region", "region1");
+
+        int[] positions = ((FilterableChoices) choices).filter("WN 10");
+
+        assertThat(positions.length, is(5));
+        for (int position : positions) {
+            assertThat(choices.get(position).getLabelInnerText(), startsWith("Town 10"));
+        }
+    }
+
+    @Test
+    public void filter_treatsWildcardsAsText() {
+        FilterableChoices choices = (FilterableChoices) search("towns");
+
+        assertThat(choices.filter("Town_1").length, is(0));
+        assertThat(choices.filter("%").length, is(0));
+    }
+
+    @Test
+    public void filter_doesNotMatchDuplicateRows() {
+        FilterableChoices choices = (FilterableChoices) search("towns");
+
+        assertThat(choices.filter("Duplicate").length, is(0));
+    }
+
+    @Test
+    public void filter_whenChoicesHaveNoLabel_matchesTheirValue() {
+        handler = new ExternalDataHandlerSearch(externalDataManager, null, "name", null);
+        FilterableChoices choices = (FilterableChoices) search("towns");
+
+        assertThat(choices.filter("town306"), is(new int[]{306}));
+    }
+
+    @Test
+    public void eval_doesNotCreateIndexes() {
+        search("towns", "startsWith", "name", "town1", "region", "region1");
+
+        assertThat(countSearchIndexes(), is(0L));
+    }
+
+    @Test
+    public void getIndexableColumns_withStartsWith_returnsQueriedAndFilterColumns() {
+        FormDef formDef = formWithAppearances("search('towns.csv', 'startsWith', 'name', /data/town, 'region', 'region1')");
+
+        Map<String, Set<String>> columns = ExternalDataHandlerSearch.getIndexableColumns(formDef);
+
+        assertThat(columns.size(), is(1));
+        assertThat(columns.get("towns"), contains(ExternalDataUtil.toSafeColumnName("name"), ExternalDataUtil.toSafeColumnName("region")));
+    }
+
+    @Test
+    public void getIndexableColumns_withContains_onlyReturnsFilterColumn() {
+        FormDef formDef = formWithAppearances("quick search('towns', 'contains', 'label', 'own', 'region', 'region1')");
+
+        Map<String, Set<String>> columns = ExternalDataHandlerSearch.getIndexableColumns(formDef);
+
+        assertThat(columns.get("towns"), contains(ExternalDataUtil.toSafeColumnName("region")));
+    }
+
+    @Test
+    public void getIndexableColumns_ignoresSearchesWithoutQueriesAndOtherAppearances() {
+        FormDef formDef = formWithAppearances("search('towns')", "minimal", null);
+
+        assertThat(ExternalDataHandlerSearch.getIndexableColumns(formDef).keySet(), is(empty()));
+    }
+
+    @Test
+    public void indexSearchedColumns_indexesColumnsOfImportedDataSets() {
+        FormDef formDef = formWithAppearances(
+                "search('towns', 'startsWith', 'name', 'town1', 'region', 'region1')",
+                "search('missing', 'matches', 'name', 'town1')");
+
+        FormLoaderTask.indexSearchedColumns(formDef, externalDataManager, mediaDir);
+
+        assertThat(countSearchIndexes(), is(2L));
+        assertThat(new File(mediaDir, "missing.db").exists(), is(false));
+    }
+
+    private long countSearchIndexes() {
+        return DatabaseUtils.longForQuery(externalDataManager.getDatabase("towns", true).getReadableDatabase(),
+                "SELECT COUNT(*) FROM sqlite_master WHERE type = 'index' AND name LIKE '%_search_idx'", null);
+    }
+
+    private static FormDef formWithAppearances(String... appearances) {
+        FormDef formDef = new FormDef();
+        for (String appearance : appearances) {
+            QuestionDef question = new QuestionDef();
+            question.setAppearanceAttr(appearance);
+            formDef.addChild(question);
+        }
+        return formDef;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<SelectChoice> search(Object... args) {
+        return (List<SelectChoice>) handler.eval(args, null);
+    }
+}
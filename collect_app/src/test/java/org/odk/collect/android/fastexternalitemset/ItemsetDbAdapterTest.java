@@ -0,0 +1,71 @@
+package org.odk.collect.android.fastexternalitemset;
+
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Environment;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.storage.StorageInitializer;
+import org.odk.collect.android.storage.StoragePathProvider;
+import org.odk.collect.android.storage.StorageSubdirectory;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowEnvironment;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+public class ItemsetDbAdapterTest {
+
+    private static final String PATH_HASH = "abc123";
+
+    private ItemsetDbAdapter adapter;
+
+    @Before
+    public void setUp() {
+        ShadowEnvironment.setExternalStorageState(Environment.MEDIA_MOUNTED);
+        new StorageInitializer().createOdkDirsOnStorage();
+
+        String csvPath = new StoragePathProvider().getOdkDirPath(StorageSubdirectory.FORMS) + File.separator + "itemsets.csv";
+        adapter = new ItemsetDbAdapter().open();
+        adapter.createTable("hash", PATH_HASH, new String[]{"list_name", "name", "label", "state", "county"}, csvPath);
+    }
+
+    @After
+    public void tearDown() {
+        adapter.close();
+    }
+
+    @Test
+    public void createIndexes_indexesListNameAndEachExistingQueryColumn() {
+        adapter.createIndexes(PATH_HASH, Arrays.asList("state", "county", "missing"));
+
+        // list_name, (list_name, state) and (list_name, county)
+        assertThat(countIndexes(), is(3L));
+    }
+
+    @Test
+    public void createIndexes_whenCalledAgain_doesNotFail() {
+        adapter.createIndexes(PATH_HASH, Arrays.asList("state"));
+        adapter.createIndexes(PATH_HASH, Arrays.asList("state", "county"));
+
+        assertThat(countIndexes(), is(3L));
+    }
+
+    private long countIndexes() {
+        String dbPath = new StoragePathProvider().getOdkDirPath(StorageSubdirectory.METADATA) + File.separator + ItemsetDbAdapter.DATABASE_NAME;
+        SQLiteDatabase db = SQLiteDatabase.openDatabase(dbPath, null, SQLiteDatabase.OPEN_READONLY);
+        try {
+            return DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM sqlite_master WHERE type = 'index' AND tbl_name = ?",
+                    new String[]{"itemset_" + PATH_HASH});
+        } finally {
+            db.close();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package org.odk.collect.android.fastexternalitemset;
+
+import org.javarosa.xpath.parser.XPathSyntaxException;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+
+public class ItemsetQueryTest {
+
+    private final XPathParseTool pathParseTool = new XPathParseTool();
+
+    @Test
+    public void compile_withoutPredicate_onlySelectsList() throws XPathSyntaxException {
+        ItemsetQuery query = ItemsetQuery.compile("instance('states')/root/item", pathParseTool);
+
+        assertThat(query.getSelection(), is("list_name=?"));
+        assertThat(query.getColumns(), is(empty()));
+    }
+
+    @Test
+    public void compile_withAndClauses_selectsEachColumn() throws XPathSyntaxException {
+        ItemsetQuery query = ItemsetQuery.compile("instance('cities')/root/item[state=/data/state and county = /data/county]", pathParseTool);
+
+        assertThat(query.getSelection(), is("list_name=? and (\"state\"=? and \"county\"=?)"));
+        assertThat(query.getColumns(), contains("state", "county"));
+    }
+
+    @Test
+    public void compile_withOrBeforeAnd_keepsEveryClause() throws XPathSyntaxException {
+        ItemsetQuery query = ItemsetQuery.compile("instance('cities')/root/item[state=/data/state or county=/data/county and city=/data/city]", pathParseTool);
+
+        assertThat(query.getSelection(), is("list_name=? and (\"state\"=? or \"county\"=? and \"city\"=?)"));
+        assertThat(query.getColumns(), contains("state", "county", "city"));
+    }
+
+    @Test
+    public void compile_withGroups_keepsGroups() throws XPathSyntaxException {
+        ItemsetQuery query = ItemsetQuery.compile("instance('cities')/root/item[(state=/data/state or state='any') and county=/data/county]", pathParseTool);
+
+        assertThat(query.getSelection(), is("list_name=? and ((\"state\"=? or \"state\"=?) and \"county\"=?)"));
+        assertThat(query.getColumns(), contains("state", "county"));
+    }
+
+    @Test
+    public void compile_withConnectorsInsideArguments_doesNotSplitArguments() throws XPathSyntaxException {
+        ItemsetQuery query = ItemsetQuery.compile("instance('countries')/root/item[name='Trinidad and Tobago' or region=if(/data/a or /data/b, 'x', 'y')]", pathParseTool);
+
+        assertThat(query.getSelection(), is("list_name=? and (\"name\"=? or \"region\"=?)"));
+    }
+
+    @Test(expected = XPathSyntaxException.class)
+    public void compile_withUnsupportedComparison_throwsException() throws XPathSyntaxException {
+        ItemsetQuery.compile("instance('cities')/root/item[state!=/data/state]", pathParseTool);
+    }
+
+    @Test(expected = XPathSyntaxException.class)
+    public void compile_withUnclosedGroup_throwsException() throws XPathSyntaxException {
+        ItemsetQuery.compile("instance('cities')/root/item[(state=/data/state and county=/data/county]", pathParseTool);
+    }
+}
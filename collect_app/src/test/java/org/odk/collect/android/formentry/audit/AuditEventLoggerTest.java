@@ -249,5 +249,9 @@ public class AuditEventLoggerTest {
         public boolean isWriting() {
             return false;
         }
+
+        @Override
+        public void awaitWritten() {
+        }
     }
 }
@@ -28,9 +28,13 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.odk.collect.android.formentry.audit.AuditEvent.AuditEventType.CHANGE_REASON;
 import static org.odk.collect.android.formentry.audit.AuditEvent.AuditEventType.END_OF_FORM;
 import static org.odk.collect.android.formentry.audit.AuditEvent.AuditEventType.FORM_EXIT;
@@ -46,7 +50,7 @@ import static org.odk.collect.android.formentry.audit.AuditEvent.AuditEventType.
 import static org.odk.collect.android.formentry.audit.AuditEvent.AuditEventType.QUESTION;
 
 @RunWith(RobolectricTestRunner.class)
-public class AsyncTaskAuditEventWriterTest {
+public class QueuedAuditEventWriterTest {
 
     private File auditFile;
 
@@ -57,7 +61,7 @@ public class AsyncTaskAuditEventWriterTest {
 
     @Test
     public void saveAuditWithLocation() throws Exception {
-        AsyncTaskAuditEventWriter writer = new AsyncTaskAuditEventWriter(auditFile, true, false, false, false);
+        QueuedAuditEventWriter writer = new QueuedAuditEventWriter(auditFile, true, false, false, false, Runnable::run);
         writer.writeEvents(getSampleAuditEventsWithLocations());
 
         String expectedAuditContent = FileUtils.readFileToString(auditFile);
@@ -81,7 +85,7 @@ public class AsyncTaskAuditEventWriterTest {
 
     @Test
     public void saveAuditWithLocationAndTrackingChanges() throws Exception {
-        AsyncTaskAuditEventWriter writer = new AsyncTaskAuditEventWriter(auditFile, true, true, false, false);
+        QueuedAuditEventWriter writer = new QueuedAuditEventWriter(auditFile, true, true, false, false, Runnable::run);
         writer.writeEvents(getSampleAuditEventsWithLocationsAndTrackingChanges());
 
         String expectedAuditContent = FileUtils.readFileToString(auditFile);
@@ -101,7 +105,7 @@ public class AsyncTaskAuditEventWriterTest {
 
     @Test
     public void saveAuditWithUser() throws Exception {
-        AsyncTaskAuditEventWriter writer = new AsyncTaskAuditEventWriter(auditFile, false, false, true, false);
+        QueuedAuditEventWriter writer = new QueuedAuditEventWriter(auditFile, false, false, true, false, Runnable::run);
         writer.writeEvents(getSampleAuditEventsWithUser());
 
         String expectedAuditContent = FileUtils.readFileToString(auditFile);
@@ -123,7 +127,7 @@ public class AsyncTaskAuditEventWriterTest {
 
     @Test
     public void saveAuditWithChangeReason() throws Exception {
-        AsyncTaskAuditEventWriter writer = new AsyncTaskAuditEventWriter(auditFile, false, false, false, true);
+        QueuedAuditEventWriter writer = new QueuedAuditEventWriter(auditFile, false, false, false, true, Runnable::run);
         writer.writeEvents(asList(
                 new AuditEvent(1548108900606L, FORM_RESUME, null, null, null, null),
                 new AuditEvent(1548108900606L, CHANGE_REASON, null, null, null, "A good reason")
@@ -138,7 +142,7 @@ public class AsyncTaskAuditEventWriterTest {
 
     @Test
     public void whenChangeReasonHasCommaOrQuotes_escapesThem() throws Exception {
-        AsyncTaskAuditEventWriter writer = new AsyncTaskAuditEventWriter(auditFile, false, false, false, true);
+        QueuedAuditEventWriter writer = new QueuedAuditEventWriter(auditFile, false, false, false, true, Runnable::run);
         writer.writeEvents(asList(
                 new AuditEvent(1548108900606L, FORM_RESUME, null, null, null, null),
                 new AuditEvent(1548108900606L, CHANGE_REASON, null, null, null, "A \"good\", reason")
@@ -153,7 +157,7 @@ public class AsyncTaskAuditEventWriterTest {
 
     @Test
     public void whenUserHasCommaOrQuotes_escapesThem() throws Exception {
-        AsyncTaskAuditEventWriter writer = new AsyncTaskAuditEventWriter(auditFile, false, false, true, false);
+        QueuedAuditEventWriter writer = new QueuedAuditEventWriter(auditFile, false, false, true, false, Runnable::run);
 
         List<AuditEvent> auditEvents = getSampleAuditEventsWithUser().subList(0, 1);
         auditEvents.get(0).setUser("User,\"1\"");
@@ -173,7 +177,7 @@ public class AsyncTaskAuditEventWriterTest {
     @Test
     public void whenAppUpdatedBetweenInstances_updatesHeader() throws Exception {
         // Use a form with enabled audit but without location
-        AsyncTaskAuditEventWriter writer = new AsyncTaskAuditEventWriter(auditFile, false, false, false, false);
+        QueuedAuditEventWriter writer = new QueuedAuditEventWriter(auditFile, false, false, false, false, Runnable::run);
         writer.writeEvents(getSampleAuditEventsWithoutLocations());
 
         String expectedAuditContent = FileUtils.readFileToString(auditFile);
@@ -192,7 +196,7 @@ public class AsyncTaskAuditEventWriterTest {
         assertEquals(expectedData, expectedAuditContent);
 
         // Upgrade a form to use location
-        writer = new AsyncTaskAuditEventWriter(auditFile, true, false, false, false);
+        writer = new QueuedAuditEventWriter(auditFile, true, false, false, false, Runnable::run);
         writer.writeEvents(getMoreSampleAuditEventsWithLocations());
 
         expectedAuditContent = FileUtils.readFileToString(auditFile);
@@ -220,7 +224,7 @@ public class AsyncTaskAuditEventWriterTest {
         assertEquals(expectedData2, expectedAuditContent);
 
         // Upgrade a form to use location and tracking changes
-        writer = new AsyncTaskAuditEventWriter(auditFile, true, true, false, false);
+        writer = new QueuedAuditEventWriter(auditFile, true, true, false, false, Runnable::run);
         writer.writeEvents(getMoreSampleAuditEventsWithLocationsAndTrackingChanges());
 
         expectedAuditContent = FileUtils.readFileToString(auditFile);
@@ -256,7 +260,7 @@ public class AsyncTaskAuditEventWriterTest {
         assertEquals(expectedData3, expectedAuditContent);
 
         // Upgrade a form to use location and tracking changes and user
-        writer = new AsyncTaskAuditEventWriter(auditFile, true, true, true, false);
+        writer = new QueuedAuditEventWriter(auditFile, true, true, true, false, Runnable::run);
         writer.writeEvents(getMoreSampleAuditEventsWithLocationsAndTrackingChangesAndUser());
 
         expectedAuditContent = FileUtils.readFileToString(auditFile);
@@ -300,6 +304,58 @@ public class AsyncTaskAuditEventWriterTest {
         assertEquals(expectedData4, expectedAuditContent);
     }
 
+    @Test
+    public void writingSeveralBatches_onlyWritesHeaderOnce() throws Exception {
+        QueuedAuditEventWriter writer = new QueuedAuditEventWriter(auditFile, false, false, false, false, Runnable::run);
+        writer.writeEvents(asList(new AuditEvent(1548106927319L, FORM_START)));
+        writer.writeEvents(asList(new AuditEvent(1548106953600L, FORM_SAVE)));
+        writer.writeEvents(asList(new AuditEvent(1548106953601L, FORM_EXIT)));
+        writer.writeEvents(asList(new AuditEvent(1548108900606L, FORM_RESUME)));
+
+        String expectedData = "event,node,start,end\n" +
+                "form start,,1548106927319,\n" +
+                "form save,,1548106953600,\n" +
+                "form exit,,1548106953601,\n" +
+                "form resume,,1548108900606,\n";
+        assertEquals(expectedData, FileUtils.readFileToString(auditFile));
+    }
+
+    @Test
+    public void whenTooManyBatchesAreWaiting_isWriting() {
+        List<Runnable> waiting = new ArrayList<>();
+        QueuedAuditEventWriter writer = new QueuedAuditEventWriter(auditFile, false, false, false, false, waiting::add);
+
+        while (!writer.isWriting()) {
+            writer.writeEvents(asList(new AuditEvent(1548106927319L, FORM_START)));
+        }
+        assertEquals(16, waiting.size());
+
+        waiting.remove(0).run();
+        assertFalse(writer.isWriting());
+    }
+
+    @Test
+    public void awaitWritten_waitsForBatchesThatAreStillQueued() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CountDownLatch busy = new CountDownLatch(1);
+        executor.execute(() -> {
+            try {
+                busy.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        QueuedAuditEventWriter writer = new QueuedAuditEventWriter(auditFile, false, false, false, false, executor);
+        writer.writeEvents(asList(new AuditEvent(1548106927319L, FORM_SAVE)));
+        new Thread(busy::countDown).start();
+
+        writer.awaitWritten();
+        executor.shutdown();
+
+        assertEquals("event,node,start,end\nform save,,1548106927319,\n", FileUtils.readFileToString(auditFile));
+    }
+
     private List<AuditEvent> getSampleAuditEventsWithUser() {
         List<AuditEvent> auditEvents = getSampleAuditEventsWithoutLocations();
         for (AuditEvent event : auditEvents) {
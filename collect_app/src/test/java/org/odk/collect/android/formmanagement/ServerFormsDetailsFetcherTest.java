@@ -11,6 +11,7 @@ import org.odk.collect.android.forms.MediaFile;
 import org.odk.collect.android.forms.MediaFileRepository;
 import org.odk.collect.android.support.FormUtils;
 import org.odk.collect.android.support.InMemFormsRepository;
+import org.odk.collect.android.utilities.FileHashCache;
 
 import java.io.BufferedWriter;
 import java.io.ByteArrayInputStream;
@@ -56,7 +57,7 @@ public class ServerFormsDetailsFetcherTest {
         );
 
         DiskFormsSynchronizer diskFormsSynchronizer = mock(DiskFormsSynchronizer.class);
-        fetcher = new ServerFormsDetailsFetcher(formsRepository, mediaFileRepository, formSource, diskFormsSynchronizer);
+        fetcher = new ServerFormsDetailsFetcher(formsRepository, mediaFileRepository, formSource, diskFormsSynchronizer, new FileHashCache(File.createTempFile("file-hashes", null)));
     }
 
     @Test
@@ -0,0 +1,109 @@
+package org.odk.collect.android.gdrive;
+
+import com.google.api.services.sheets.v4.model.Request;
+import com.google.api.services.sheets.v4.model.Sheet;
+import com.google.api.services.sheets.v4.model.SheetProperties;
+import com.google.api.services.sheets.v4.model.Spreadsheet;
+import com.google.api.services.sheets.v4.model.SpreadsheetProperties;
+import com.google.api.services.sheets.v4.model.ValueRange;
+
+import org.odk.collect.android.gdrive.sheets.SheetsApi;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the cells of one spreadsheet in memory and counts the requests made to it.
+ */
+class FakeSheetsApi implements SheetsApi {
+
+    private final String spreadsheetId;
+    private final Map<String, List<List<Object>>> sheets = new LinkedHashMap<>();
+
+    int requests;
+    int headerReads;
+    int fullSheetReads;
+    int appends;
+    boolean failAppends;
+    String failAppendsToSheet;
+
+    FakeSheetsApi(String spreadsheetId, String mainSheetTitle) {
+        this.spreadsheetId = spreadsheetId;
+        sheets.put(mainSheetTitle, new ArrayList<>());
+    }
+
+    List<List<Object>> getCells(String sheetTitle) {
+        return sheets.get(sheetTitle);
+    }
+
+    @Override
+    public void batchUpdate(String spreadsheetId, List<Request> requests) throws IOException {
+        this.requests++;
+        for (Request request : requests) {
+            if (request.getAddSheet() != null) {
+                sheets.put(request.getAddSheet().getProperties().getTitle(), new ArrayList<>());
+            }
+        }
+    }
+
+    @Override
+    public void insertRow(String spreadsheetId, String sheetName, ValueRange row) throws IOException {
+        requests++;
+        appends++;
+        if (failAppends || sheetName.equals(failAppendsToSheet)) {
+            throw new IOException("Append failed");
+        }
+        getSheet(sheetName).addAll(row.getValues());
+    }
+
+    @Override
+    public void updateRow(String spreadsheetId, String sheetName, ValueRange row) throws IOException {
+        requests++;
+        List<List<Object>> cells = getSheet(sheetName.substring(0, sheetName.lastIndexOf('!')));
+        cells.set(0, row.getValues().get(0));
+    }
+
+    @Override
+    public ValueRange getSpreadsheet(String spreadsheetId, String sheetName) throws IOException {
+        requests++;
+        List<List<Object>> cells;
+        if (sheetName.startsWith("'") && sheetName.endsWith("'!1:1")) {
+            headerReads++;
+            List<List<Object>> allCells = getSheet(sheetName.substring(1, sheetName.length() - 5).replace("''", "'"));
+            cells = allCells.isEmpty() ? allCells : Collections.singletonList(allCells.get(0));
+        } else {
+            fullSheetReads++;
+            cells = getSheet(sheetName);
+        }
+
+        // Like the API, leave the values out if the range is empty
+        return new ValueRange().setValues(cells.isEmpty() ? null : new ArrayList<>(cells));
+    }
+
+    @Override
+    public Spreadsheet getSpreadsheet(String spreadsheetId) throws IOException {
+        requests++;
+        List<Sheet> sheetList = new ArrayList<>();
+        int sheetId = 0;
+        for (String title : sheets.keySet()) {
+            sheetList.add(new Sheet().setProperties(new SheetProperties().setTitle(title).setSheetId(sheetId++)));
+        }
+
+        return new Spreadsheet()
+                .setSpreadsheetId(this.spreadsheetId)
+                .setProperties(new SpreadsheetProperties().setTitle("Submissions"))
+                .setSheets(sheetList);
+    }
+
+    private List<List<Object>> getSheet(String title) throws IOException {
+        List<List<Object>> cells = sheets.get(title);
+        if (cells == null) {
+            throw new IOException("No sheet called " + title);
+        }
+        return cells;
+    }
+}
@@ -0,0 +1,181 @@
+package org.odk.collect.android.gdrive;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.database.DatabaseFormsRepository;
+import org.odk.collect.android.gdrive.sheets.DriveApi;
+import org.odk.collect.android.instances.Instance;
+import org.odk.collect.android.storage.StorageInitializer;
+import org.odk.collect.android.storage.StoragePathProvider;
+import org.odk.collect.android.storage.StorageSubdirectory;
+import org.odk.collect.android.support.FormUtils;
+import org.odk.collect.android.support.RobolectricHelpers;
+import org.odk.collect.android.upload.UploadException;
+import org.odk.collect.android.utilities.FileUtils;
+
+import java.io.File;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+
+@RunWith(AndroidJUnit4.class)
+public class InstanceGoogleSheetsUploaderBatchTest {
+
+    private static final String SPREADSHEET_URL = "https://docs.google.com/spreadsheets/d/spreadsheet1/edit#gid=0";
+    private static final String MAIN_SHEET = "Sheet1";
+    private static final String REPEAT_SHEET = "data-person";
+
+    private static final String FORM = "<?xml version=\"1.0\"?>\n"
+            + "<h:html xmlns=\"http://www.w3.org/2002/xforms\" xmlns:h=\"http://www.w3.org/1999/xhtml\" xmlns:jr=\"http://openrosa.org/javarosa\">\n"
+            + "    <h:head>\n"
+            + "        <h:title>Sheets</h:title>\n"
+            + "        <model>\n"
+            + "            <instance>\n"
+            + "                <data id=\"sheets\" version=\"1\">\n"
+            + "                    <name/>\n"
+            + "                    <person jr:template=\"\">\n"
+            + "                        <age/>\n"
+            + "                    </person>\n"
+            + "                    <meta>\n"
+            + "                        <instanceID/>\n"
+            + "                    </meta>\n"
+            + "                </data>\n"
+            + "            </instance>\n"
+            + "            <bind nodeset=\"/data/name\" type=\"string\"/>\n"
+            + "            <bind nodeset=\"/data/person/age\" type=\"int\"/>\n"
+            + "            <bind nodeset=\"/data/meta/instanceID\" type=\"string\" readonly=\"true()\"/>\n"
+            + "        </model>\n"
+            + "    </h:head>\n"
+            + "    <h:body>\n"
+            + "        <input ref=\"/data/name\"><label>Name</label></input>\n"
+            + "        <group ref=\"/data/person\">\n"
+            + "            <label>Person</label>\n"
+            + "            <repeat nodeset=\"/data/person\">\n"
+            + "                <input ref=\"/data/person/age\"><label>Age</label></input>\n"
+            + "            </repeat>\n"
+            + "        </group>\n"
+            + "    </h:body>\n"
+            + "</h:html>";
+
+    private final FakeSheetsApi sheetsApi = new FakeSheetsApi("spreadsheet1", MAIN_SHEET);
+
+    @Before
+    public void setup() {
+        RobolectricHelpers.mountExternalStorage();
+        new StorageInitializer().createOdkDirsOnStorage();
+
+        String formsDir = new StoragePathProvider().getOdkDirPath(StorageSubdirectory.FORMS);
+        new DatabaseFormsRepository().save(FormUtils.buildForm("sheets", "1", formsDir, FORM).build());
+    }
+
+    @Test
+    public void uploadingABatch_readsEachHeaderRowOnce_andAppendsOncePerSheet() throws Exception {
+        // The first upload writes the header rows
+        newUploader().uploadOneSubmission(createInstance(1L, "Alice", 30, 31), SPREADSHEET_URL);
+
+        InstanceGoogleSheetsUploader uploader = newUploader();
+        sheetsApi.requests = 0;
+        sheetsApi.headerReads = 0;
+        sheetsApi.appends = 0;
+        for (long id = 2; id <= 11; id++) {
+            uploader.queueSubmission(createInstance(id, "Person " + id, 40, 41), SPREADSHEET_URL);
+        }
+        Map<Long, UploadException> failures = uploader.uploadQueuedSubmissions();
+
+        assertThat(failures.isEmpty(), is(true));
+        assertThat(sheetsApi.headerReads, is(2));
+        assertThat(sheetsApi.appends, is(2));
+        // Reading the spreadsheet, checking write access, two header reads and two appends
+        assertThat(sheetsApi.requests, is(6));
+
+        assertThat(sheetsApi.getCells(MAIN_SHEET).size(), is(1 + 11));
+        assertThat(sheetsApi.getCells(REPEAT_SHEET).size(), is(1 + 22));
+    }
+
+    @Test
+    public void uploading_neverReadsTheWholeSheet() throws Exception {
+        InstanceGoogleSheetsUploader uploader = newUploader();
+        uploader.queueSubmission(createInstance(1L, "Alice", 30, 31), SPREADSHEET_URL);
+        uploader.queueSubmission(createInstance(2L, "Bob", 40, 41), SPREADSHEET_URL);
+        uploader.uploadQueuedSubmissions();
+
+        assertThat(sheetsApi.fullSheetReads, is(0));
+    }
+
+    @Test
+    public void rowsAreMatchedToTheColumnsOfTheHeaderRow() throws Exception {
+        newUploader().uploadOneSubmission(createInstance(1L, "Alice", 30, 31), SPREADSHEET_URL);
+
+        assertThat(sheetsApi.getCells(MAIN_SHEET).get(0).get(0), is("data-name"));
+        assertThat(sheetsApi.getCells(MAIN_SHEET).get(1).get(0), is("'Alice"));
+        assertThat(sheetsApi.getCells(REPEAT_SHEET).get(1).get(0), is("30"));
+        assertThat(sheetsApi.getCells(REPEAT_SHEET).get(2).get(0), is("31"));
+    }
+
+    @Test
+    public void whenAppendingFails_allQueuedInstancesFail() throws Exception {
+        newUploader().uploadOneSubmission(createInstance(1L, "Alice", 30, 31), SPREADSHEET_URL);
+
+        InstanceGoogleSheetsUploader uploader = newUploader();
+        uploader.queueSubmission(createInstance(2L, "Bob", 40, 41), SPREADSHEET_URL);
+        uploader.queueSubmission(createInstance(3L, "Carol", 50, 51), SPREADSHEET_URL);
+        sheetsApi.failAppends = true;
+        sheetsApi.appends = 0;
+        Map<Long, UploadException> failures = uploader.uploadQueuedSubmissions();
+
+        assertThat(failures.keySet(), containsInAnyOrder(2L, 3L));
+        // Nothing is appended to the repeat sheet once appending to the main sheet has failed
+        assertThat(sheetsApi.appends, is(1));
+    }
+
+    @Test
+    public void whenAppendingToTheSecondSheetFails_instancesWithRowsInIt_failAndReportTheSheetsTheyWereAddedTo() throws Exception {
+        newUploader().uploadOneSubmission(createInstance(1L, "Alice", 30, 31), SPREADSHEET_URL);
+
+        InstanceGoogleSheetsUploader uploader = newUploader();
+        uploader.queueSubmission(createInstance(2L, "Bob", 40, 41), SPREADSHEET_URL);
+        uploader.queueSubmission(createInstance(3L, "Carol"), SPREADSHEET_URL);
+        sheetsApi.failAppendsToSheet = REPEAT_SHEET;
+        sheetsApi.appends = 0;
+        Map<Long, UploadException> failures = uploader.uploadQueuedSubmissions();
+
+        assertThat(sheetsApi.appends, is(2));
+        assertThat(sheetsApi.getCells(MAIN_SHEET).size(), is(1 + 3));
+        assertThat(sheetsApi.getCells(REPEAT_SHEET).size(), is(1 + 2));
+
+        // Carol has no repeats so all of her rows were added
+        assertThat(failures.keySet(), containsInAnyOrder(2L));
+        assertThat(failures.get(2L).getMessage(), containsString(MAIN_SHEET));
+        assertThat(failures.get(2L).getMessage(), containsString("Append failed"));
+    }
+
+    private InstanceGoogleSheetsUploader newUploader() {
+        return new InstanceGoogleSheetsUploader(mock(DriveApi.class), sheetsApi);
+    }
+
+    private static Instance createInstance(Long id, String name, int... ages) {
+        StringBuilder xml = new StringBuilder("<data id=\"sheets\" version=\"1\"><name>" + name + "</name>");
+        for (int age : ages) {
+            xml.append("<person><age>").append(age).append("</age></person>");
+        }
+        xml.append("<meta><instanceID>uuid:").append(id).append("</instanceID></meta></data>");
+
+        File instanceDir = new File(new StoragePathProvider().getOdkDirPath(StorageSubdirectory.INSTANCES), "instance" + id);
+        File instanceFile = new File(instanceDir, "instance" + id + ".xml");
+        FileUtils.write(instanceFile, xml.toString().getBytes());
+
+        return new Instance.Builder()
+                .id(id)
+                .jrFormId("sheets")
+                .jrVersion("1")
+                .instanceFilePath(instanceFile.getAbsolutePath())
+                .build();
+    }
+}
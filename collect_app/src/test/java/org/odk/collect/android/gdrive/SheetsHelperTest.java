@@ -122,11 +122,11 @@ public class SheetsHelperTest {
     public void whenThereAreNoCellsInTheMainSheet_shouldIsNewSpreadsheetReturnTrue() throws IOException {
         ValueRange valueRange = mock(ValueRange.class);
         when(valueRange.getValues()).thenReturn(null);
-        when(googleSheetsAPI.getSpreadsheet("spreadsheet_id", "Sheet1")).thenReturn(valueRange);
+        when(googleSheetsAPI.getSpreadsheet("spreadsheet_id", "'Sheet1'!1:1")).thenReturn(valueRange);
         assertThat(sheetsHelper.isNewSpreadsheet("spreadsheet_id", "Sheet1"), is(true));
 
         when(valueRange.getValues()).thenReturn(new LinkedList<>());
-        when(googleSheetsAPI.getSpreadsheet("spreadsheet_id", "Sheet1")).thenReturn(valueRange);
+        when(googleSheetsAPI.getSpreadsheet("spreadsheet_id", "'Sheet1'!1:1")).thenReturn(valueRange);
         assertThat(sheetsHelper.isNewSpreadsheet("spreadsheet_id", "Sheet1"), is(true));
     }
 
@@ -136,10 +136,23 @@ public class SheetsHelperTest {
         List<List<Object>> cells = new LinkedList<>();
         cells.add(new LinkedList<>());
         when(valueRange.getValues()).thenReturn(cells);
-        when(googleSheetsAPI.getSpreadsheet("spreadsheet_id", "Sheet1")).thenReturn(valueRange);
+        when(googleSheetsAPI.getSpreadsheet("spreadsheet_id", "'Sheet1'!1:1")).thenReturn(valueRange);
         assertThat(sheetsHelper.isNewSpreadsheet("spreadsheet_id", "Sheet1"), is(false));
     }
 
+    @Test
+    public void getSheetHeaders_onlyRequestsTheFirstRow() throws IOException {
+        ValueRange valueRange = new ValueRange();
+        List<List<Object>> cells = new LinkedList<>();
+        List<Object> headers = new LinkedList<>();
+        headers.add("name");
+        cells.add(headers);
+        valueRange.setValues(cells);
+        when(googleSheetsAPI.getSpreadsheet("spreadsheet_id", "'Bob''s sheet'!1:1")).thenReturn(valueRange);
+
+        assertThat(sheetsHelper.getSheetHeaders("spreadsheet_id", "Bob's sheet"), is(headers));
+    }
+
     private void assertBatchUpdateCalled(int timesInvocations) throws IOException {
         verify(googleSheetsAPI, times(timesInvocations)).batchUpdate(anyString(), ArgumentMatchers.<Request>anyList());
     }
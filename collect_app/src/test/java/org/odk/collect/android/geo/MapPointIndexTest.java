@@ -0,0 +1,108 @@
+package org.odk.collect.android.geo;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class MapPointIndexTest {
+
+    @Test
+    public void getClusters_onlyReturnsItemsInsideViewport() {
+        MapPointIndex<String> index = new MapPointIndex<>();
+        index.add(new MapPoint(10.0, 125.6), "inside");
+        index.add(new MapPoint(10.5, 125.6), "north");
+        index.add(new MapPoint(-33.9, 18.4), "far away");
+
+        List<MapPointIndex.Cluster<String>> clusters = index.getClusters(new MapBounds(9.9, 125.5, 10.1, 125.7), 12, 100);
+
+        assertThat(getItems(clusters), containsInAnyOrder("inside"));
+    }
+
+    @Test
+    public void getClusters_whenViewportCrossesAntimeridian_returnsItemsOnBothSides() {
+        MapPointIndex<String> index = new MapPointIndex<>();
+        index.add(new MapPoint(-17.7, 178.0), "west of antimeridian");
+        index.add(new MapPoint(-17.7, -179.0), "east of antimeridian");
+        index.add(new MapPoint(-17.7, 170.0), "outside");
+
+        List<MapPointIndex.Cluster<String>> clusters = index.getClusters(new MapBounds(-20, 175, -15, -175), 6, 100);
+
+        assertThat(getItems(clusters), containsInAnyOrder("west of antimeridian", "east of antimeridian"));
+    }
+
+    @Test
+    public void getClusters_withoutViewport_returnsAllItems() {
+        MapPointIndex<String> index = new MapPointIndex<>();
+        index.add(new MapPoint(10.0, 125.6), "a");
+        index.add(new MapPoint(-33.9, 18.4), "b");
+
+        assertThat(getItems(index.getClusters(null, 2, 100)), containsInAnyOrder("a", "b"));
+    }
+
+    @Test
+    public void getClusters_whenThereAreFewItems_doesNotCluster() {
+        MapPointIndex<String> index = new MapPointIndex<>();
+        index.add(new MapPoint(10.0, 125.6), "a");
+        index.add(new MapPoint(10.0001, 125.6), "b");
+
+        List<MapPointIndex.Cluster<String>> clusters = index.getClusters(MapBounds.WORLD, 2, 2);
+
+        assertThat(clusters.size(), is(2));
+        assertThat(clusters.get(0).getKey(), is(nullValue()));
+    }
+
+    @Test
+    public void getClusters_whenThereAreTooManyItems_groupsNearbyItems() {
+        MapPointIndex<String> index = new MapPointIndex<>();
+        for (int i = 0; i < 10; i++) {
+            index.add(new MapPoint(10.0 + i * 0.001, 125.6), "near " + i);
+        }
+        index.add(new MapPoint(-33.9, 18.4), "far away");
+
+        List<MapPointIndex.Cluster<String>> clusters = index.getClusters(MapBounds.WORLD, 4, 5);
+
+        assertThat(clusters.size(), is(2));
+        MapPointIndex.Cluster<String> near = clusters.get(0).size() == 10 ? clusters.get(0) : clusters.get(1);
+        assertThat(near.size(), is(10));
+        assertThat(near.getPoint().lat, is(closeTo(10.0045, 0.000001)));
+    }
+
+    @Test
+    public void getClusters_whenZoomedInClose_doesNotCluster() {
+        MapPointIndex<String> index = new MapPointIndex<>();
+        for (int i = 0; i < 10; i++) {
+            index.add(new MapPoint(10.0, 125.6 + i * 0.00001), "point " + i);
+        }
+
+        assertThat(index.getClusters(MapBounds.WORLD, MapPointIndex.MAX_CLUSTER_ZOOM, 5).size(), is(10));
+    }
+
+    @Test
+    public void clusterKey_staysTheSameForTheSameItemsAndZoom() {
+        MapPointIndex<String> index = new MapPointIndex<>();
+        for (int i = 0; i < 10; i++) {
+            index.add(new MapPoint(10.0 + i * 0.001, 125.6), "point " + i);
+        }
+
+        String key = index.getClusters(MapBounds.WORLD, 4, 5).get(0).getKey();
+
+        assertThat(index.getClusters(new MapBounds(0, 120, 20, 130), 4.5, 5).get(0).getKey(), is(key));
+    }
+
+    private static List<String> getItems(List<MapPointIndex.Cluster<String>> clusters) {
+        List<String> items = new ArrayList<>();
+        for (MapPointIndex.Cluster<String> cluster : clusters) {
+            for (int i = 0; i < cluster.size(); i++) {
+                items.add(cluster.getItem(i));
+            }
+        }
+        return items;
+    }
+}
@@ -19,6 +19,8 @@ public class TestMapFragment implements MapFragment {
     private double scaleFactor;
     private double zoomLevel;
     private PointListener locationListener;
+    private MapBounds viewport;
+    private ViewportListener viewportListener;
 
     private int lastFeatureId;
     private final Map<MapPoint, Integer> mappedPoints = new HashMap<>();
@@ -61,6 +63,15 @@ public class TestMapFragment implements MapFragment {
         return mappedPoints.get(point);
     }
 
+    /** Simulates the user panning or zooming the map. */
+    public void changeViewport(MapBounds viewport, double zoom) {
+        this.viewport = viewport;
+        this.zoomLevel = zoom;
+        if (viewportListener != null) {
+            viewportListener.onViewportChanged();
+        }
+    }
+
     public void resetState() {
         zoomCount = 0;
         animate = false;
@@ -69,6 +80,7 @@ public class TestMapFragment implements MapFragment {
         scaleFactor = 0;
         zoomLevel = 0;
         locationListener = null;
+        viewport = null;
         lastFeatureId = 0;
         mappedPoints.clear();
     }
@@ -122,6 +134,12 @@ public class TestMapFragment implements MapFragment {
         zoomCount++;
     }
 
+    @Nullable
+    @Override
+    public MapBounds getViewport() {
+        return viewport;
+    }
+
     @Override
     public int addMarker(MapPoint point, boolean draggable, @IconAnchor String iconAnchor) {
         mappedPoints.put(point, lastFeatureId);
@@ -162,7 +180,7 @@ public class TestMapFragment implements MapFragment {
 
     @Override
     public void removeFeature(int featureId) {
-
+        mappedPoints.values().remove(featureId);
     }
 
     @Override
@@ -190,6 +208,11 @@ public class TestMapFragment implements MapFragment {
 
     }
 
+    @Override
+    public void setViewportChangedListener(@Nullable ViewportListener listener) {
+        viewportListener = listener;
+    }
+
     @Override
     public void setGpsLocationEnabled(boolean enabled) {
 
@@ -0,0 +1,186 @@
+package org.odk.collect.android.geo;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.startsWith;
+
+public class TileHttpServerTest {
+
+    private static final byte[] TILE = {1, 2, 3, 4, 5};
+
+    private TileHttpServer server;
+    private int port;
+
+    @Before
+    public void setup() throws IOException {
+        server = new TileHttpServer();
+        server.addSource("layer", new FakeTileSource());
+        server.start();
+
+        String template = server.getUrlTemplate("layer");
+        port = Integer.parseInt(template.substring("http://localhost:".length(), template.indexOf('/', "http://localhost:".length())));
+    }
+
+    @After
+    public void teardown() {
+        server.destroy();
+    }
+
+    @Test
+    public void servesSeveralRequestsOnOneConnection() throws IOException {
+        try (Socket socket = new Socket("localhost", port)) {
+            HttpResponse first = request(socket, "/layer/1/0/0", null);
+            HttpResponse second = request(socket, "/layer/1/1/0", null);
+
+            assertThat(first.statusLine, is("HTTP/1.1 200 OK"));
+            assertThat(first.body, is(TILE));
+            assertThat(second.statusLine, is("HTTP/1.1 200 OK"));
+            assertThat(second.headers.get("connection"), is("keep-alive"));
+        }
+    }
+
+    @Test
+    public void whenETagMatches_respondsNotModifiedWithoutBody() throws IOException {
+        try (Socket socket = new Socket("localhost", port)) {
+            String etag = request(socket, "/layer/1/0/0", null).headers.get("etag");
+            HttpResponse response = request(socket, "/layer/1/0/0", etag);
+
+            assertThat(response.statusLine, is("HTTP/1.1 304 Not Modified"));
+            assertThat(response.body.length, is(0));
+
+            // The connection is still usable afterwards
+            assertThat(request(socket, "/layer/1/0/0", "\"other\"").statusLine, is("HTTP/1.1 200 OK"));
+        }
+    }
+
+    @Test
+    public void whenThereIsNoTile_respondsNotFoundAndKeepsConnection() throws IOException {
+        try (Socket socket = new Socket("localhost", port)) {
+            assertThat(request(socket, "/layer/1/5/5", null).statusLine, startsWith("HTTP/1.1 404"));
+            assertThat(request(socket, "/missing/1/0/0", null).statusLine, startsWith("HTTP/1.1 404"));
+            assertThat(request(socket, "/layer/1/0/0", null).statusLine, is("HTTP/1.1 200 OK"));
+        }
+    }
+
+    @Test
+    public void whenManyConnectionsAreIdle_stillServesNewConnections() throws IOException {
+        List<Socket> idleSockets = new ArrayList<>();
+        try {
+            for (int i = 0; i < 12; i++) {
+                Socket idle = new Socket("localhost", port);
+                idleSockets.add(idle);
+                request(idle, "/layer/1/0/0", null);
+            }
+
+            try (Socket socket = new Socket("localhost", port)) {
+                socket.setSoTimeout(2_000);
+                assertThat(request(socket, "/layer/1/0/0", null).statusLine, is("HTTP/1.1 200 OK"));
+            }
+        } finally {
+            for (Socket idle : idleSockets) {
+                idle.close();
+            }
+        }
+    }
+
+    @Test
+    public void whenIfNoneMatchListsTheETag_respondsNotModified() throws IOException {
+        try (Socket socket = new Socket("localhost", port)) {
+            String etag = request(socket, "/layer/1/0/0", null).headers.get("etag");
+
+            assertThat(request(socket, "/layer/1/0/0", "\"other\", " + etag).statusLine, is("HTTP/1.1 304 Not Modified"));
+            assertThat(request(socket, "/layer/1/0/0", "W/" + etag).statusLine, is("HTTP/1.1 304 Not Modified"));
+            assertThat(request(socket, "/layer/1/0/0", "*").statusLine, is("HTTP/1.1 304 Not Modified"));
+        }
+    }
+
+    @Test
+    public void matchesIfNoneMatch_followsRfc7232() {
+        assertThat(TileHttpServer.matchesIfNoneMatch("\"abc\"", "\"abc\""), is(true));
+        assertThat(TileHttpServer.matchesIfNoneMatch("W/\"abc\"", "\"abc\""), is(true));
+        assertThat(TileHttpServer.matchesIfNoneMatch("\"x\",W/\"y\" , \"abc\"", "\"abc\""), is(true));
+        assertThat(TileHttpServer.matchesIfNoneMatch("\"a,b\", \"abc\"", "\"abc\""), is(true));
+        assertThat(TileHttpServer.matchesIfNoneMatch(" * ", "\"abc\""), is(true));
+
+        assertThat(TileHttpServer.matchesIfNoneMatch(null, "\"abc\""), is(false));
+        assertThat(TileHttpServer.matchesIfNoneMatch("\"abcd\"", "\"abc\""), is(false));
+        assertThat(TileHttpServer.matchesIfNoneMatch("\"ab\"", "\"abc\""), is(false));
+        assertThat(TileHttpServer.matchesIfNoneMatch("abc", "\"abc\""), is(false));
+        assertThat(TileHttpServer.matchesIfNoneMatch("\"a,b\"", "\"b\""), is(false));
+    }
+
+    private static HttpResponse request(Socket socket, String path, String etag) throws IOException {
+        OutputStream output = socket.getOutputStream();
+        String request = "GET " + path + " HTTP/1.1\r\nHost: localhost\r\n"
+                + (etag != null ? "If-None-Match: " + etag + "\r\n" : "") + "\r\n";
+        output.write(request.getBytes("US-ASCII"));
+        output.flush();
+
+        InputStream input = socket.getInputStream();
+        HttpResponse response = new HttpResponse();
+        response.statusLine = readLine(input);
+        for (String header = readLine(input); !header.isEmpty(); header = readLine(input)) {
+            int colon = header.indexOf(':');
+            response.headers.put(header.substring(0, colon).trim().toLowerCase(Locale.US), header.substring(colon + 1).trim());
+        }
+
+        String contentLength = response.headers.get("content-length");
+        int length = contentLength != null ? Integer.parseInt(contentLength) : 0;
+        response.body = new byte[length];
+        for (int read = 0; read < length; ) {
+            read += input.read(response.body, read, length - read);
+        }
+        return response;
+    }
+
+    private static String readLine(InputStream input) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        for (int c = input.read(); c != '\n'; c = input.read()) {
+            if (c == -1) {
+                throw new IOException("Connection closed");
+            }
+            if (c != '\r') {
+                line.write(c);
+            }
+        }
+        return line.toString("US-ASCII");
+    }
+
+    private static class HttpResponse {
+        String statusLine;
+        Map<String, String> headers = new HashMap<>();
+        byte[] body;
+    }
+
+    private static class FakeTileSource implements TileSource {
+        @Override
+        public byte[] getTileBlob(int zoom, int x, int y) {
+            return y == 0 ? TILE : null;
+        }
+
+        @Override
+        public String getContentType() {
+            return "image/png";
+        }
+
+        @Override
+        public String getContentEncoding() {
+            return "identity";
+        }
+    }
+}
@@ -1,14 +1,128 @@
 package org.odk.collect.android.instancemanagement;
 
+import android.content.Context;
+import android.util.Pair;
+
+import androidx.annotation.NonNull;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Before;
 import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.odk.collect.analytics.Analytics;
+import org.odk.collect.android.R;
+import org.odk.collect.android.forms.Form;
+import org.odk.collect.android.gdrive.GoogleAccountsManager;
+import org.odk.collect.android.gdrive.GoogleApiProvider;
+import org.odk.collect.android.instances.Instance;
+import org.odk.collect.android.permissions.PermissionsProvider;
+import org.odk.collect.android.preferences.PreferencesDataSourceProvider;
 import org.odk.collect.android.support.FormUtils;
 import org.odk.collect.android.support.InMemFormsRepository;
-import org.odk.collect.android.forms.Form;
+import org.odk.collect.android.support.InMemInstancesRepository;
+import org.odk.collect.android.support.RobolectricHelpers;
+import org.odk.collect.android.upload.InstanceUploader;
+import org.odk.collect.android.upload.UploadException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.everyItem;
 import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.odk.collect.android.analytics.AnalyticsEvents.SUBMISSION;
+import static org.odk.collect.android.support.InstanceUtils.buildInstance;
 
+@RunWith(AndroidJUnit4.class)
 public class InstanceSubmitterTest {
+
+    private final Context context = ApplicationProvider.getApplicationContext();
+    private final Analytics analytics = mock(Analytics.class);
+    private final InMemInstancesRepository instancesRepository = new InMemInstancesRepository();
+    private InstanceSubmitter instanceSubmitter;
+
+    @Before
+    public void setup() {
+        RobolectricHelpers.mountExternalStorage();
+        instanceSubmitter = new InstanceSubmitter(analytics, new InMemFormsRepository(), instancesRepository,
+                mock(GoogleAccountsManager.class), mock(GoogleApiProvider.class), mock(PermissionsProvider.class),
+                new PreferencesDataSourceProvider(context));
+    }
+
+    @Test
+    public void submitToServer_withSeveralWorkers_reportsTheResultOfEveryInstance() {
+        List<Instance> instances = saveInstances(4);
+        // Uploads meet in pairs so this fails if they aren't running two at a time
+        TestUploader uploader = new TestUploader(new CyclicBarrier(2), 2L, 3L);
+
+        Pair<Boolean, String> result = instanceSubmitter.submitToServer(instances, uploader, "deviceId", 2, null);
+
+        assertThat(result.first, is(true));
+        assertThat(result.second, containsString("Instance 1 - " + context.getString(R.string.success)));
+        assertThat(result.second, containsString("Instance 2 - Upload of 2 failed"));
+        assertThat(result.second, containsString("Instance 3 - Upload of 3 failed"));
+        assertThat(result.second, containsString("Instance 4 - " + context.getString(R.string.success)));
+        verify(analytics, times(2)).logEvent(eq(SUBMISSION), eq("HTTP auto"), anyString());
+    }
+
+    @Test
+    public void submitToServer_withSeveralWorkers_reportsProgressOfSuccessfulInstancesOnly() {
+        List<Instance> instances = saveInstances(4);
+        TestUploader uploader = new TestUploader(new CyclicBarrier(2), 2L, 3L);
+        InstanceSubmitter.ProgressListener progressListener = mock(InstanceSubmitter.ProgressListener.class);
+
+        instanceSubmitter.submitToServer(instances, uploader, "deviceId", 2, progressListener);
+
+        ArgumentCaptor<Integer> submitted = ArgumentCaptor.forClass(Integer.class);
+        ArgumentCaptor<Integer> total = ArgumentCaptor.forClass(Integer.class);
+        verify(progressListener, times(4)).onProgress(submitted.capture(), total.capture(), anyLong());
+
+        List<Integer> sorted = new ArrayList<>(submitted.getAllValues());
+        Collections.sort(sorted);
+        assertThat(submitted.getAllValues(), is(sorted));
+        assertThat(sorted.get(3), is(2));
+        assertThat(total.getAllValues(), everyItem(is(4)));
+    }
+
+    @Test
+    public void submitToServer_withMoreWorkersThanInstances_submitsEveryInstance() {
+        List<Instance> instances = saveInstances(3);
+        // Only passes if all three uploads are in progress at the same time
+        TestUploader uploader = new TestUploader(new CyclicBarrier(3));
+        InstanceSubmitter.ProgressListener progressListener = mock(InstanceSubmitter.ProgressListener.class);
+
+        Pair<Boolean, String> result = instanceSubmitter.submitToServer(instances, uploader, "deviceId", 8, progressListener);
+
+        assertThat(result.first, is(false));
+        assertThat(uploader.getUploaded().size(), is(3));
+        verify(progressListener).onProgress(eq(3), eq(3), anyLong());
+    }
+
+    @Test
+    public void submitToServer_whenEveryUploadFails_reportsNoProgress() {
+        List<Instance> instances = saveInstances(2);
+        TestUploader uploader = new TestUploader(new CyclicBarrier(2), 1L, 2L);
+        InstanceSubmitter.ProgressListener progressListener = mock(InstanceSubmitter.ProgressListener.class);
+
+        Pair<Boolean, String> result = instanceSubmitter.submitToServer(instances, uploader, "deviceId", 2, progressListener);
+
+        assertThat(result.first, is(true));
+        verify(progressListener, times(2)).onProgress(eq(0), eq(2), anyLong());
+        verify(analytics, times(0)).logEvent(eq(SUBMISSION), anyString(), anyString());
+    }
     @Test
     public void shouldFormBeSentFunction_shouldReturnFalseIfAutoSendNotSpecifiedOnFormLevelAndDisabledInSettings() {
         InMemFormsRepository formsRepository = new InMemFormsRepository();
@@ -67,4 +181,54 @@ public class InstanceSubmitterTest {
         assertThat(InstanceSubmitter.shouldFormBeSent(formsRepository, "1", "1", false), is(true));
     }
 
+    private List<Instance> saveInstances(int count) {
+        List<Instance> instances = new ArrayList<>();
+        for (long id = 1; id <= count; id++) {
+            Instance instance = buildInstance(id, "formId", "1", "Instance " + id, Instance.STATUS_COMPLETE, null).build();
+            instancesRepository.save(instance);
+            instances.add(instance);
+        }
+        return instances;
+    }
+
+    private static class TestUploader extends InstanceUploader {
+        private final CyclicBarrier barrier;
+        private final List<Long> failingIds;
+        private final List<Long> uploaded = new ArrayList<>();
+
+        TestUploader(CyclicBarrier barrier, Long... failingIds) {
+            this.barrier = barrier;
+            this.failingIds = Arrays.asList(failingIds);
+        }
+
+        @Override
+        public String uploadOneSubmission(Instance instance, String destinationUrl) throws UploadException {
+            try {
+                barrier.await(5, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                throw new IllegalStateException("Uploads weren't in progress at the same time", e);
+            }
+
+            if (failingIds.contains(instance.getId())) {
+                throw new UploadException("Upload of " + instance.getId() + " failed");
+            }
+
+            synchronized (uploaded) {
+                uploaded.add(instance.getId());
+            }
+            return null;
+        }
+
+        @NonNull
+        @Override
+        public String getUrlToSubmitTo(Instance currentInstance, String deviceId, String overrideURL, String urlFromSettings) {
+            return "https://example.com/submission";
+        }
+
+        List<Long> getUploaded() {
+            synchronized (uploaded) {
+                return new ArrayList<>(uploaded);
+            }
+        }
+    }
 }
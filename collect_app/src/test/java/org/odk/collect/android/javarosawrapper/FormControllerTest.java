@@ -2,6 +2,8 @@ package org.odk.collect.android.javarosawrapper;
 
 import com.google.common.io.Files;
 
+import org.javarosa.core.model.FormIndex;
+import org.javarosa.core.model.instance.InstanceInitializationFactory;
 import org.javarosa.form.api.FormEntryController;
 import org.javarosa.form.api.FormEntryModel;
 import org.javarosa.xform.util.XFormUtils;
@@ -112,6 +114,42 @@ public class FormControllerTest {
     }
     //endregion
 
+    //region stepPastGroup
+    @Test
+    public void stepPastGroup_fromAGroup_stepsToTheNextRelevantElementAfterIt() throws IOException {
+        FormController formController = createFormController(GROUPS_AND_REPEAT);
+        formController.getFormDef().initialize(true, new InstanceInitializationFactory());
+
+        formController.stepToNextEvent(FormController.STEP_INTO_GROUP);
+        assertThat(formController.getEvent(), equalTo(FormEntryController.EVENT_GROUP));
+        assertThat(formController.getFormIndex().toString(), equalTo("0, "));
+
+        // The non-relevant group at 1 is stepped past too
+        assertThat(formController.stepPastGroup(), equalTo(FormEntryController.EVENT_REPEAT));
+        assertThat(formController.getFormIndex().toString(), equalTo("2_0, "));
+    }
+
+    @Test
+    public void stepPastGroup_fromARepeatInstance_stepsToTheNextInstanceAndThenThePrompt() throws IOException {
+        FormController formController = createFormController(GROUPS_AND_REPEAT);
+        formController.getFormDef().initialize(true, new InstanceInitializationFactory());
+
+        formController.stepToNextEvent(FormController.STEP_INTO_GROUP);
+        formController.stepPastGroup();
+        FormIndex firstInstance = formController.getFormIndex();
+        formController.stepToNextEvent(FormController.STEP_INTO_GROUP);
+        formController.jumpToNewRepeatPrompt();
+        formController.newRepeat();
+
+        formController.jumpToIndex(firstInstance);
+        assertThat(formController.stepPastGroup(), equalTo(FormEntryController.EVENT_REPEAT));
+        assertThat(formController.getFormIndex().toString(), equalTo("2_1, "));
+
+        assertThat(formController.stepPastGroup(), equalTo(FormEntryController.EVENT_PROMPT_NEW_REPEAT));
+        assertThat(formController.getFormIndex().toString(), equalTo("2_2, "));
+    }
+    //endregion
+
     @NotNull
     private FormController createFormController(String xform) throws IOException {
         ByteArrayInputStream inputStream = new ByteArrayInputStream(xform.getBytes());
@@ -261,4 +299,56 @@ public class FormControllerTest {
             "        </group>\n" +
             "    </h:body>\n" +
             "</h:html>\n";
-}
\ No newline at end of file
+
+    private static final String GROUPS_AND_REPEAT = "<?xml version=\"1.0\"?>\n" +
+            "<h:html xmlns=\"http://www.w3.org/2002/xforms\" xmlns:h=\"http://www.w3.org/1999/xhtml\">\n" +
+            "    <h:head>\n" +
+            "        <h:title>Groups and repeat</h:title>\n" +
+            "        <model>\n" +
+            "            <instance>\n" +
+            "                <data id=\"groups-and-repeat\">\n" +
+            "                    <group>\n" +
+            "                        <question/>\n" +
+            "                    </group>\n" +
+            "                    <hidden>\n" +
+            "                        <secret/>\n" +
+            "                    </hidden>\n" +
+            "                    <person>\n" +
+            "                        <age/>\n" +
+            "                    </person>\n" +
+            "                    <last/>\n" +
+            "                </data>\n" +
+            "            </instance>\n" +
+            "            <bind nodeset=\"/data/group/question\" type=\"int\"/>\n" +
+            "            <bind nodeset=\"/data/hidden\" relevant=\"false()\"/>\n" +
+            "            <bind nodeset=\"/data/hidden/secret\" type=\"int\"/>\n" +
+            "            <bind nodeset=\"/data/person/age\" type=\"int\"/>\n" +
+            "            <bind nodeset=\"/data/last\" type=\"int\"/>\n" +
+            "        </model>\n" +
+            "    </h:head>\n" +
+            "    <h:body>\n" +
+            "        <group ref=\"/data/group\">\n" +
+            "          <label>Group</label>\n" +
+            "          <input ref=\"/data/group/question\">\n" +
+            "            <label>Question</label>\n" +
+            "          </input>\n" +
+            "        </group>\n" +
+            "        <group ref=\"/data/hidden\">\n" +
+            "          <input ref=\"/data/hidden/secret\">\n" +
+            "            <label>Secret</label>\n" +
+            "          </input>\n" +
+            "        </group>\n" +
+            "        <group ref=\"/data/person\">\n" +
+            "          <label>Person</label>\n" +
+            "          <repeat nodeset=\"/data/person\">\n" +
+            "            <input ref=\"/data/person/age\">\n" +
+            "              <label>Age</label>\n" +
+            "            </input>\n" +
+            "          </repeat>\n" +
+            "        </group>\n" +
+            "        <input ref=\"/data/last\">\n" +
+            "          <label>Last</label>\n" +
+            "        </input>\n" +
+            "    </h:body>\n" +
+            "</h:html>\n";
+}
@@ -0,0 +1,199 @@
+package org.odk.collect.android.logic;
+
+import com.google.common.io.Files;
+
+import org.javarosa.core.model.FormDef;
+import org.javarosa.core.model.FormIndex;
+import org.javarosa.core.model.data.IntegerData;
+import org.javarosa.core.model.instance.InstanceInitializationFactory;
+import org.javarosa.form.api.FormEntryController;
+import org.javarosa.form.api.FormEntryModel;
+import org.javarosa.xform.util.XFormUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.odk.collect.android.javarosawrapper.FormController;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.odk.collect.android.javarosawrapper.FormIndexUtils.getPreviousLevel;
+
+public class HierarchyModelTest {
+
+    private static final String FORM = "<?xml version=\"1.0\"?>\n"
+            + "<h:html xmlns=\"http://www.w3.org/2002/xforms\" xmlns:h=\"http://www.w3.org/1999/xhtml\" xmlns:jr=\"http://openrosa.org/javarosa\">\n"
+            + "    <h:head>\n"
+            + "        <h:title>Three Repeats</h:title>\n"
+            + "        <model>\n"
+            + "            <instance>\n"
+            + "                <data id=\"three_repeats\">\n"
+            + "                    <person>\n"
+            + "                        <age/>\n"
+            + "                    </person>\n"
+            + "                    <pet>\n"
+            + "                        <legs/>\n"
+            + "                    </pet>\n"
+            + "                    <car>\n"
+            + "                        <wheels/>\n"
+            + "                    </car>\n"
+            + "                    <double_legs/>\n"
+            + "                </data>\n"
+            + "            </instance>\n"
+            + "            <bind nodeset=\"/data/person/age\" type=\"int\"/>\n"
+            + "            <bind nodeset=\"/data/pet/legs\" type=\"int\"/>\n"
+            + "            <bind nodeset=\"/data/car/wheels\" type=\"int\"/>\n"
+            + "            <bind nodeset=\"/data/double_legs\" type=\"int\" calculate=\"/data/pet/legs * 2\"/>\n"
+            + "        </model>\n"
+            + "    </h:head>\n"
+            + "    <h:body>\n"
+            + "        <group ref=\"/data/person\">\n"
+            + "            <label>Person</label>\n"
+            + "            <repeat nodeset=\"/data/person\">\n"
+            + "                <input ref=\"/data/person/age\"><label>Age</label></input>\n"
+            + "            </repeat>\n"
+            + "        </group>\n"
+            + "        <group ref=\"/data/pet\">\n"
+            + "            <label>Pet</label>\n"
+            + "            <repeat nodeset=\"/data/pet\">\n"
+            + "                <input ref=\"/data/pet/legs\"><label>Legs</label></input>\n"
+            + "            </repeat>\n"
+            + "        </group>\n"
+            + "        <group ref=\"/data/car\">\n"
+            + "            <label>Car</label>\n"
+            + "            <repeat nodeset=\"/data/car\">\n"
+            + "                <input ref=\"/data/car/wheels\"><label>Wheels of a driver aged <output value=\"/data/person/age\"/></label></input>\n"
+            + "            </repeat>\n"
+            + "        </group>\n"
+            + "    </h:body>\n"
+            + "</h:html>";
+
+    private static final List<HierarchyElement> LEVEL = Collections.emptyList();
+
+    private FormController formController;
+    private HierarchyModel hierarchyModel;
+
+    private final FormIndex beginning = FormIndex.createBeginningOfFormIndex();
+    private FormIndex ageQuestion;
+    private FormIndex legsQuestion;
+    private FormIndex person;
+    private FormIndex pet;
+    private FormIndex car;
+    private List<HierarchyElement> carLevel;
+
+    @Before
+    public void setup() throws Exception {
+        FormDef formDef = XFormUtils.getFormFromInputStream(new ByteArrayInputStream(FORM.getBytes()));
+        formDef.initialize(true, new InstanceInitializationFactory());
+        formController = new FormController(Files.createTempDir(), new FormEntryController(new FormEntryModel(formDef)), File.createTempFile("instance", ""));
+        hierarchyModel = formController.getHierarchyModel();
+
+        formController.stepToNextScreenEvent();
+        ageQuestion = formController.getFormIndex();
+        person = getPreviousLevel(ageQuestion);
+
+        formController.jumpToNewRepeatPrompt();
+        formController.stepToNextScreenEvent();
+        legsQuestion = formController.getFormIndex();
+        pet = getPreviousLevel(legsQuestion);
+
+        formController.jumpToNewRepeatPrompt();
+        formController.stepToNextScreenEvent();
+        FormIndex wheelsQuestion = formController.getFormIndex();
+        car = getPreviousLevel(wheelsQuestion);
+        carLevel = Collections.singletonList(new HierarchyElement("Wheels", null, null, HierarchyElement.Type.QUESTION, wheelsQuestion));
+
+        hierarchyModel.putLevel(beginning, null, LEVEL, formController, hierarchyModel.getVersion());
+        hierarchyModel.putLevel(beginning, person, LEVEL, formController, hierarchyModel.getVersion());
+        hierarchyModel.putLevel(person, null, LEVEL, formController, hierarchyModel.getVersion());
+        hierarchyModel.putLevel(pet, null, LEVEL, formController, hierarchyModel.getVersion());
+        hierarchyModel.putLevel(car, null, carLevel, formController, hierarchyModel.getVersion());
+    }
+
+    @Test
+    public void levelsAreKeptUntilSomethingChanges() {
+        assertThat(hierarchyModel.getLevel(beginning, null), is(LEVEL));
+        assertThat(hierarchyModel.getLevel(beginning, person), is(LEVEL));
+        assertThat(hierarchyModel.getLevel(person, null), is(LEVEL));
+        assertThat(hierarchyModel.getLevel(pet, null), is(LEVEL));
+        assertThat(hierarchyModel.getLevel(car, null), is(carLevel));
+        assertThat(hierarchyModel.getLevel(beginning, pet), nullValue());
+    }
+
+    @Test
+    public void answeringAQuestion_dropsTheLevelsAroundItAndRepeatPickers() throws Exception {
+        formController.answerQuestion(ageQuestion, new IntegerData(30));
+
+        assertThat(hierarchyModel.getLevel(beginning, null), nullValue());
+        assertThat(hierarchyModel.getLevel(beginning, person), nullValue());
+        assertThat(hierarchyModel.getLevel(person, null), nullValue());
+        assertThat(hierarchyModel.getLevel(pet, null), is(LEVEL));
+    }
+
+    @Test
+    public void answeringAQuestion_dropsLevelsWithLabelsThatIncludeTheAnswer() throws Exception {
+        formController.answerQuestion(ageQuestion, new IntegerData(30));
+
+        assertThat(hierarchyModel.getLevel(car, null), nullValue());
+    }
+
+    @Test
+    public void whenAnAnswerChangesAnotherValue_everyLevelIsDropped() throws Exception {
+        formController.answerQuestion(legsQuestion, new IntegerData(4));
+
+        assertThat(hierarchyModel.getLevel(person, null), nullValue());
+        assertThat(hierarchyModel.getLevel(car, null), nullValue());
+    }
+
+    @Test
+    public void savingTheSameAnswer_keepsEveryLevel() throws Exception {
+        formController.answerQuestion(ageQuestion, new IntegerData(30));
+        hierarchyModel.putLevel(beginning, null, LEVEL, formController, hierarchyModel.getVersion());
+        hierarchyModel.putLevel(person, null, LEVEL, formController, hierarchyModel.getVersion());
+        int version = hierarchyModel.getVersion();
+
+        formController.answerQuestion(ageQuestion, new IntegerData(30));
+        formController.saveAnswer(ageQuestion, new IntegerData(30));
+
+        assertThat(hierarchyModel.getVersion(), is(version));
+        assertThat(hierarchyModel.getLevel(beginning, null), is(LEVEL));
+        assertThat(hierarchyModel.getLevel(person, null), is(LEVEL));
+        assertThat(hierarchyModel.getLevel(pet, null), is(LEVEL));
+    }
+
+    @Test
+    public void addingARepeat_dropsEveryLevel() {
+        formController.jumpToIndex(ageQuestion);
+        formController.jumpToNewRepeatPrompt();
+        formController.newRepeat();
+
+        assertThat(hierarchyModel.getLevel(beginning, null), nullValue());
+        assertThat(hierarchyModel.getLevel(beginning, person), nullValue());
+        assertThat(hierarchyModel.getLevel(person, null), nullValue());
+        assertThat(hierarchyModel.getLevel(pet, null), nullValue());
+    }
+
+    @Test
+    public void deletingARepeat_dropsEveryLevel() {
+        formController.jumpToIndex(pet);
+        formController.deleteRepeat();
+
+        assertThat(hierarchyModel.getLevel(beginning, null), nullValue());
+        assertThat(hierarchyModel.getLevel(pet, null), nullValue());
+        assertThat(hierarchyModel.getLevel(person, null), nullValue());
+    }
+
+    @Test
+    public void aLevelBuiltBeforeAChange_isNotKept() throws Exception {
+        int version = hierarchyModel.getVersion();
+        formController.answerQuestion(ageQuestion, new IntegerData(30));
+
+        hierarchyModel.putLevel(beginning, null, LEVEL, formController, version);
+
+        assertThat(hierarchyModel.getLevel(beginning, null), nullValue());
+    }
+}
@@ -95,4 +95,14 @@ public class NotificationManagerNotifierTest {
         notifier.onUpdatesAvailable(updates);
         assertThat(shadowOf(notificationManager).getAllNotifications().size(), is(1));
     }
+
+    @Test
+    public void onSubmission_replacesSubmissionProgressNotification() {
+        notifier.onSubmissionProgress(1, 3, 1024);
+        notifier.onSubmissionProgress(2, 3, 2048);
+        assertThat(shadowOf(notificationManager).getAllNotifications().size(), is(1));
+
+        notifier.onSubmission(false, "Success");
+        assertThat(shadowOf(notificationManager).getAllNotifications().size(), is(1));
+    }
 }
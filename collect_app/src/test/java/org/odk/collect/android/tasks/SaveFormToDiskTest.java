@@ -0,0 +1,121 @@
+package org.odk.collect.android.tasks;
+
+import org.apache.commons.io.FileUtils;
+import org.javarosa.core.services.transport.payload.ByteArrayPayload;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.formentry.audit.AuditConfig;
+import org.odk.collect.android.formentry.audit.AuditEvent;
+import org.odk.collect.android.formentry.audit.AuditEventLogger;
+import org.odk.collect.android.javarosawrapper.FormController.InstanceMetadata;
+import org.odk.collect.android.utilities.EncryptionUtils;
+import org.odk.collect.android.utilities.EncryptionUtils.EncryptedFormInformation;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPairGenerator;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.odk.collect.android.formentry.audit.AuditEventCSVLine.toCSVLine;
+
+@RunWith(RobolectricTestRunner.class)
+public class SaveFormToDiskTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void writeFile_replacesExistingFileWithoutLeavingTempFile() throws Exception {
+        File instanceDir = temporaryFolder.newFolder("instance");
+        File instanceFile = new File(instanceDir, "instance.xml");
+        FileUtils.writeStringToFile(instanceFile, "<data><old/></data>", StandardCharsets.UTF_8);
+
+        SaveFormToDisk.writeFile(payload("<data><new/></data>"), instanceFile.getAbsolutePath());
+
+        assertThat(FileUtils.readFileToString(instanceFile, StandardCharsets.UTF_8), is("<data><new/></data>"));
+        assertThat(instanceDir.list().length, is(1));
+    }
+
+    @Test
+    public void writeFile_createsMissingDirectories() throws Exception {
+        File instanceFile = new File(temporaryFolder.getRoot(), "instances/instance.xml");
+
+        SaveFormToDisk.writeFile(payload("<data/>"), instanceFile.getAbsolutePath());
+
+        assertThat(FileUtils.readFileToString(instanceFile, StandardCharsets.UTF_8), is("<data/>"));
+    }
+
+    @Test
+    public void encryptSubmission_whenAnAuditBatchIsStillQueued_encryptsTheAuditLogWithIt() throws Exception {
+        File instanceDir = temporaryFolder.newFolder("instance");
+        File instanceXml = new File(instanceDir, "instance.xml");
+        FileUtils.writeStringToFile(instanceXml, "<data/>", StandardCharsets.UTF_8);
+        File submissionXml = new File(instanceDir, "submission.xml");
+        FileUtils.writeStringToFile(submissionXml, "<data/>", StandardCharsets.UTF_8);
+        File auditFile = new File(instanceDir, "audit.csv");
+
+        QueuedWriter writer = new QueuedWriter(auditFile);
+        AuditEventLogger auditEventLogger = new AuditEventLogger(new AuditConfig.Builder().setMode(null).setLocationMinInterval(null).setLocationMaxAge(null)
+                .setIsTrackingChangesEnabled(false).setIsIdentifyUserEnabled(false).setIsTrackChangesReasonEnabled(false).createAuditConfig(), writer, null);
+        auditEventLogger.logEvent(AuditEvent.AuditEventType.FORM_SAVE, true, 0);
+        assertThat(auditFile.exists(), is(false));
+
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance(EncryptionUtils.RSA_ALGORITHM);
+        keyPairGenerator.initialize(2048);
+        EncryptedFormInformation formInfo = new EncryptedFormInformation("form", null,
+                new InstanceMetadata("uuid:1", null, null), keyPairGenerator.generateKeyPair().getPublic());
+
+        SaveFormToDisk.encryptSubmission(auditEventLogger, instanceXml, submissionXml, formInfo);
+
+        assertThat(new File(instanceDir, "audit.csv.enc").exists(), is(true));
+        assertThat(FileUtils.readFileToString(submissionXml, StandardCharsets.UTF_8), containsString("<file>audit.csv.enc</file>"));
+    }
+
+    private static ByteArrayPayload payload(String xml) {
+        return new ByteArrayPayload(xml.getBytes(StandardCharsets.UTF_8), null, 0);
+    }
+
+    /**
+     * Keeps batches queued until they're waited for, like a background writer that hasn't got to
+     * them yet.
+     */
+    private static class QueuedWriter implements AuditEventLogger.AuditEventWriter {
+        private final File file;
+        private final List<AuditEvent> queued = new ArrayList<>();
+
+        QueuedWriter(File file) {
+            this.file = file;
+        }
+
+        @Override
+        public void writeEvents(List<AuditEvent> auditEvents) {
+            queued.addAll(auditEvents);
+        }
+
+        @Override
+        public boolean isWriting() {
+            return false;
+        }
+
+        @Override
+        public void awaitWritten() {
+            try {
+                for (AuditEvent event : queued) {
+                    FileUtils.writeStringToFile(file, toCSVLine(event, false, false, false) + "\n", StandardCharsets.UTF_8, true);
+                }
+                queued.clear();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package org.odk.collect.android.tasks;
+
+import org.apache.commons.io.FileUtils;
+import org.javarosa.core.model.FormIndex;
+import org.javarosa.core.model.data.IntegerData;
+import org.javarosa.core.model.data.StringData;
+import org.javarosa.core.model.instance.TreeElement;
+import org.javarosa.form.api.FormEntryController;
+import org.javarosa.form.api.FormEntryModel;
+import org.javarosa.xform.util.XFormUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.odk.collect.android.javarosawrapper.FormController;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThrows;
+
+public class SavepointJournalTest {
+
+    private static final String FORM = "<?xml version=\"1.0\"?>\n"
+            + "<h:html xmlns=\"http://www.w3.org/2002/xforms\" xmlns:h=\"http://www.w3.org/1999/xhtml\" xmlns:jr=\"http://openrosa.org/javarosa\">\n"
+            + "    <h:head>\n"
+            + "        <h:title>Savepoint</h:title>\n"
+            + "        <model>\n"
+            + "            <instance>\n"
+            + "                <data id=\"savepoint\">\n"
+            + "                    <person>\n"
+            + "                        <age/>\n"
+            + "                    </person>\n"
+            + "                    <name/>\n"
+            + "                </data>\n"
+            + "            </instance>\n"
+            + "            <bind nodeset=\"/data/person/age\" type=\"int\"/>\n"
+            + "            <bind nodeset=\"/data/name\" type=\"string\"/>\n"
+            + "        </model>\n"
+            + "    </h:head>\n"
+            + "    <h:body>\n"
+            + "        <group ref=\"/data/person\">\n"
+            + "            <label>Person</label>\n"
+            + "            <repeat nodeset=\"/data/person\">\n"
+            + "                <input ref=\"/data/person/age\"><label>Age</label></input>\n"
+            + "            </repeat>\n"
+            + "        </group>\n"
+            + "        <input ref=\"/data/name\"><label>Name</label></input>\n"
+            + "    </h:body>\n"
+            + "</h:html>";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File snapshotFile;
+    private File journalFile;
+    private SavepointJournal journal;
+    private FormController formController;
+
+    @Before
+    public void setup() throws Exception {
+        snapshotFile = new File(temporaryFolder.getRoot(), "instance.xml.save");
+        journalFile = new File(temporaryFolder.getRoot(), "instance.xml.save.journal");
+        journal = new SavepointJournal(snapshotFile, journalFile);
+        formController = createFormController();
+    }
+
+    @Test
+    public void firstCheckpoint_writesSnapshot_andLaterOnesAppendToTheJournal() throws Exception {
+        assertThat(checkpoint(), is(true));
+        assertThat(journalFile.exists(), is(false));
+
+        setName("Alice");
+        assertThat(checkpoint(), is(false));
+        assertThat(FileUtils.readFileToString(journalFile, StandardCharsets.UTF_8),
+                is("#" + org.odk.collect.android.utilities.FileUtils.getMd5Hash(snapshotFile) + "\n=/data/name\tAlice\n.\n"));
+    }
+
+    @Test
+    public void checkpointWithoutChanges_doesNotWriteAnything() throws Exception {
+        checkpoint();
+        long snapshotModified = snapshotFile.lastModified();
+
+        assertThat(checkpoint(), is(false));
+        assertThat(journalFile.exists(), is(false));
+        assertThat(snapshotFile.lastModified(), is(snapshotModified));
+    }
+
+    @Test
+    public void replay_restoresChangedAnswersAndRepeats() throws Exception {
+        checkpoint();
+
+        // Values that need escaping
+        setName("Alice\tand\nBob\\");
+        getAge(1).setAnswer(new IntegerData(30));
+        checkpoint();
+
+        formController.stepToNextScreenEvent();
+        formController.jumpToNewRepeatPrompt();
+        formController.newRepeat();
+        FormIndex secondPerson = formController.getFormIndex();
+        getAge(2).setAnswer(new IntegerData(40));
+        checkpoint();
+
+        formController.jumpToNewRepeatPrompt();
+        formController.newRepeat();
+        getAge(3).setAnswer(new IntegerData(50));
+        checkpoint();
+
+        // Deleting the second person moves the third one up
+        formController.jumpToIndex(secondPerson);
+        formController.deleteRepeat();
+        checkpoint();
+
+        assertThat(getReplayedValues(), equalTo(SavepointJournal.getValues(getRoot(formController))));
+    }
+
+    @Test
+    public void replay_ignoresAnIncompleteCheckpoint() throws Exception {
+        checkpoint();
+        setName("Alice");
+        checkpoint();
+        Map<String, String> values = SavepointJournal.getValues(getRoot(formController));
+
+        FileUtils.writeStringToFile(journalFile, "=/data/name\tBob\n", StandardCharsets.UTF_8, true);
+
+        assertThat(getReplayedValues(), equalTo(values));
+    }
+
+    @Test
+    public void whenTheAppStopsBetweenWritingASnapshotAndDeletingTheJournal_theOldJournalIsNotReplayed() throws Exception {
+        checkpoint();
+        setName("Alice");
+        checkpoint();
+
+        // The next snapshot is written but the journal of the previous one is left behind
+        setName("Bob");
+        SaveFormToDisk.writeFile(formController.getFilledInFormXml(), snapshotFile.getAbsolutePath());
+
+        assertThat(journalFile.exists(), is(true));
+        assertThat(getReplayedValues(), equalTo(SavepointJournal.getValues(getRoot(formController))));
+    }
+
+    @Test
+    public void whenWritingASnapshotFails_theOldSnapshotAndJournalAreStillReplayed() throws Exception {
+        checkpoint();
+        setName("Alice");
+        checkpoint();
+        Map<String, String> values = SavepointJournal.getValues(getRoot(formController));
+
+        // A new journal always starts with a snapshot
+        setName("Bob");
+        SavepointJournal newJournal = new SavepointJournal(snapshotFile, journalFile);
+        assertThrows(IOException.class, () -> newJournal.checkpoint(getRoot(formController), () -> {
+            throw new IOException("Disk full");
+        }));
+
+        assertThat(getReplayedValues(), equalTo(values));
+    }
+
+    @Test
+    public void whenTheJournalGetsBiggerThanTheSnapshot_checkpointWritesANewSnapshot() throws Exception {
+        checkpoint();
+
+        int checkpoints = 0;
+        boolean wroteSnapshot = false;
+        while (!wroteSnapshot && checkpoints < 100) {
+            setName("A name that is quite long so that the journal grows quickly " + checkpoints);
+            wroteSnapshot = checkpoint();
+            checkpoints++;
+        }
+
+        assertThat(wroteSnapshot, is(true));
+        assertThat(journalFile.exists(), is(false));
+        assertThat(getReplayedValues(), equalTo(SavepointJournal.getValues(getRoot(formController))));
+    }
+
+    @Test
+    public void whenTheSnapshotHasBeenDeleted_checkpointWritesANewOne() throws Exception {
+        checkpoint();
+        setName("Alice");
+        checkpoint();
+
+        // Like after the form is saved
+        snapshotFile.delete();
+        journalFile.delete();
+
+        setName("Bob");
+        assertThat(checkpoint(), is(true));
+        assertThat(snapshotFile.exists(), is(true));
+        assertThat(journalFile.exists(), is(false));
+    }
+
+    private boolean checkpoint() throws IOException {
+        return journal.checkpoint(getRoot(formController),
+                () -> SaveFormToDisk.writeFile(formController.getFilledInFormXml(), snapshotFile.getAbsolutePath()));
+    }
+
+    private void setName(String name) {
+        getRoot(formController).getChild("name", 0).setAnswer(new StringData(name));
+    }
+
+    private TreeElement getAge(int person) {
+        return getRoot(formController).getChild("person", person - 1).getChild("age", 0);
+    }
+
+    /**
+     * Loads the replayed savepoint into a new form, like {@link FormLoaderTask} does.
+     */
+    private Map<String, String> getReplayedValues() throws IOException {
+        byte[] replayed = journalFile.exists()
+                ? SavepointJournal.replay(snapshotFile, journalFile)
+                : FileUtils.readFileToByteArray(snapshotFile);
+
+        FormEntryController restored = createFormEntryController();
+        FormLoaderTask.importData(replayed, restored);
+        return SavepointJournal.getValues(restored.getModel().getForm().getMainInstance().getRoot());
+    }
+
+    private static TreeElement getRoot(FormController formController) {
+        return formController.getFormDef().getMainInstance().getRoot();
+    }
+
+    private FormController createFormController() throws IOException {
+        return new FormController(temporaryFolder.newFolder(), createFormEntryController(), temporaryFolder.newFile());
+    }
+
+    private static FormEntryController createFormEntryController() {
+        FormEntryModel formEntryModel = new FormEntryModel(XFormUtils.getFormFromInputStream(new ByteArrayInputStream(FORM.getBytes())));
+        return new FormEntryController(formEntryModel);
+    }
+}
@@ -0,0 +1,77 @@
+package org.odk.collect.android.upload;
+
+import android.os.Environment;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.instances.Instance;
+import org.odk.collect.android.openrosa.CaseInsensitiveEmptyHeaders;
+import org.odk.collect.android.openrosa.HttpHeadResult;
+import org.odk.collect.android.openrosa.HttpPostResult;
+import org.odk.collect.android.openrosa.OpenRosaHttpInterface;
+import org.odk.collect.android.storage.StorageInitializer;
+import org.odk.collect.android.storage.StoragePathProvider;
+import org.odk.collect.android.storage.StorageSubdirectory;
+import org.odk.collect.android.utilities.WebCredentialsUtils;
+import org.odk.collect.utilities.TestPreferencesProvider;
+import org.robolectric.shadows.ShadowEnvironment;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+
+import javax.net.ssl.HttpsURLConnection;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(AndroidJUnit4.class)
+public class InstanceServerUploaderTest {
+
+    private static final String SUBMISSION_URL = "https://example.com/submission?deviceID=123";
+
+    private final OpenRosaHttpInterface httpInterface = mock(OpenRosaHttpInterface.class);
+    private InstanceServerUploader uploader;
+
+    @Before
+    public void setup() throws Exception {
+        ShadowEnvironment.setExternalStorageState(Environment.MEDIA_MOUNTED);
+        new StorageInitializer().createOdkDirsOnStorage();
+
+        when(httpInterface.executeHeadRequest(any(), any()))
+                .thenReturn(new HttpHeadResult(HttpsURLConnection.HTTP_NO_CONTENT, new CaseInsensitiveEmptyHeaders()));
+        when(httpInterface.uploadSubmissionFile(any(), any(), any(), any(), anyLong()))
+                .thenReturn(new HttpPostResult("", HttpsURLConnection.HTTP_CREATED, ""));
+
+        uploader = new InstanceServerUploader(httpInterface, new WebCredentialsUtils(TestPreferencesProvider.getGeneralPreferences()),
+                new HashMap<>(), TestPreferencesProvider.getPreferencesRepository());
+    }
+
+    @Test
+    public void uploadOneSubmission_onlyMakesOneHeadRequestPerSubmissionUrl() throws Exception {
+        uploader.uploadOneSubmission(createInstance(1L), SUBMISSION_URL);
+        uploader.uploadOneSubmission(createInstance(2L), SUBMISSION_URL);
+
+        verify(httpInterface, times(1)).executeHeadRequest(any(), any());
+        verify(httpInterface, times(2)).uploadSubmissionFile(any(), any(), any(), any(), anyLong());
+    }
+
+    private static Instance createInstance(Long id) throws IOException {
+        File instanceDir = new File(new StoragePathProvider().getOdkDirPath(StorageSubdirectory.INSTANCES), "instance" + id);
+        instanceDir.mkdir();
+        File instanceFile = new File(instanceDir, "instance" + id + ".xml");
+        instanceFile.createNewFile();
+
+        return new Instance.Builder()
+                .id(id)
+                .instanceFilePath(instanceFile.getAbsolutePath())
+                .build();
+    }
+}
@@ -103,6 +103,12 @@ public class CustomSQLiteQueryBuilderTestCase {
         assertEquals("ADD COLUMN Test text not null", new CustomSQLiteQueryBuilder().addColumn("Test", "text not null").getQueryString());
     }
 
+    @Test
+    public void createIndexTest() {
+        assertEquals("CREATE INDEX IF NOT EXISTS testIndex ON testTableName (col1,col2 ) ",
+                new CustomSQLiteQueryBuilder().createIndexIfNotExists("testIndex").on("testTableName").columnsForInsert("col1", "col2").getQueryString());
+    }
+
     @Test
     public void createTableTest() {
         List<String> columnDefinitions = new ArrayList<>();
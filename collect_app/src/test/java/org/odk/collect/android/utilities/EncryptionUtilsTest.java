@@ -0,0 +1,79 @@
+package org.odk.collect.android.utilities;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.javarosawrapper.FormController.InstanceMetadata;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.util.Random;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+public class EncryptionUtilsTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void generateEncryptedSubmission_encryptsEveryFileInManifestOrder() throws Exception {
+        File instanceDir = temporaryFolder.newFolder("instance");
+        File instanceXml = new File(instanceDir, "instance.xml");
+        FileUtils.writeStringToFile(instanceXml, "<data/>", StandardCharsets.UTF_8);
+        File submissionXml = new File(instanceDir, "submission.xml");
+        FileUtils.writeStringToFile(submissionXml, "<data><name>Bob</name></data>", StandardCharsets.UTF_8);
+
+        // bigger than the encryption buffer and not a multiple of the block size
+        byte[] video = new byte[200 * 1024 + 7];
+        new Random(0).nextBytes(video);
+        File videoFile = new File(instanceDir, "video.mp4");
+        FileUtils.writeByteArrayToFile(videoFile, video);
+
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance(EncryptionUtils.RSA_ALGORITHM);
+        keyPairGenerator.initialize(2048);
+        EncryptionUtils.EncryptedFormInformation formInfo = new EncryptionUtils.EncryptedFormInformation("form", null,
+                new InstanceMetadata("uuid:1", null, null), keyPairGenerator.generateKeyPair().getPublic());
+        byte[] iv = formInfo.ivSeedArray.clone();
+
+        EncryptionUtils.generateEncryptedSubmission(instanceXml, submissionXml, formInfo);
+
+        // the media file is encrypted first so it uses the first iv and submission.xml the second
+        assertThat(decrypt(new File(instanceDir, "video.mp4.enc"), formInfo, iv, 0), is(video));
+        assertThat(new String(decrypt(new File(instanceDir, "submission.xml.enc"), formInfo, iv, 1), StandardCharsets.UTF_8),
+                is("<data><name>Bob</name></data>"));
+
+        assertThat(formInfo.elementSignatureSource.toString(), containsString("video.mp4::" + md5(video) + "\n"));
+        assertThat(FileUtils.readFileToString(submissionXml, StandardCharsets.UTF_8), containsString("<file>video.mp4.enc</file>"));
+    }
+
+    private static byte[] decrypt(File encryptedFile, EncryptionUtils.EncryptedFormInformation formInfo, byte[] ivSeed, int fileIndex) throws Exception {
+        byte[] iv = ivSeed.clone();
+        for (int i = 0; i <= fileIndex; i++) {
+            ++iv[i % iv.length];
+        }
+
+        Cipher cipher = Cipher.getInstance(EncryptionUtils.SYMMETRIC_ALGORITHM);
+        cipher.init(Cipher.DECRYPT_MODE, formInfo.symmetricKey, new IvParameterSpec(iv));
+        return cipher.doFinal(FileUtils.readFileToByteArray(encryptedFile));
+    }
+
+    private static String md5(byte[] bytes) throws Exception {
+        StringBuilder md5 = new StringBuilder();
+        for (byte b : MessageDigest.getInstance("MD5").digest(bytes)) {
+            md5.append(String.format("%02x", b));
+        }
+        return md5.toString();
+    }
+}
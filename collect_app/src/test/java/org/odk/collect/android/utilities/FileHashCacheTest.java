@@ -0,0 +1,89 @@
+package org.odk.collect.android.utilities;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class FileHashCacheTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File storeFile;
+    private File file;
+
+    @Before
+    public void setup() throws IOException {
+        storeFile = new File(temporaryFolder.getRoot(), "file-hashes");
+        file = temporaryFolder.newFile("form.xml");
+        write(file, "blah", System.currentTimeMillis() - 60000);
+    }
+
+    @Test
+    public void returnsTheSameHashAsFileUtils() {
+        assertThat(new FileHashCache(storeFile).getMd5Hash(file), is(FileUtils.getMd5Hash(file)));
+    }
+
+    @Test
+    public void hashesAreKeptBetweenInstances() throws IOException {
+        String md5 = new FileHashCache(storeFile).getMd5Hash(file);
+
+        // Same length and modification time, so the stored hash is returned without reading it
+        long lastModified = file.lastModified();
+        write(file, "blob", lastModified);
+
+        assertThat(new FileHashCache(storeFile).getMd5Hash(file), is(md5));
+    }
+
+    @Test
+    public void whenLengthChanges_fileIsHashedAgain() throws IOException {
+        FileHashCache fileHashCache = new FileHashCache(storeFile);
+        fileHashCache.getMd5Hash(file);
+
+        write(file, "blahblah", file.lastModified());
+
+        assertThat(fileHashCache.getMd5Hash(file), is(FileUtils.getMd5Hash(file)));
+        assertThat(new FileHashCache(storeFile).getMd5Hash(file), is(FileUtils.getMd5Hash(file)));
+    }
+
+    @Test
+    public void whenModificationTimeChanges_fileIsHashedAgain() throws IOException {
+        FileHashCache fileHashCache = new FileHashCache(storeFile);
+        fileHashCache.getMd5Hash(file);
+
+        write(file, "blob", file.lastModified() - 10000);
+
+        assertThat(fileHashCache.getMd5Hash(file), is(FileUtils.getMd5Hash(file)));
+        assertThat(new FileHashCache(storeFile).getMd5Hash(file), is(FileUtils.getMd5Hash(file)));
+    }
+
+    @Test
+    public void hashesOfRecentlyModifiedFiles_areNotKept() throws IOException {
+        long lastModified = System.currentTimeMillis();
+        write(file, "blah", lastModified);
+        new FileHashCache(storeFile).getMd5Hash(file);
+
+        write(file, "blob", lastModified);
+
+        assertThat(new FileHashCache(storeFile).getMd5Hash(file), is(FileUtils.getMd5Hash(file)));
+    }
+
+    @Test
+    public void missingFile_hasNoHash() {
+        assertThat(new FileHashCache(storeFile).getMd5Hash(new File(temporaryFolder.getRoot(), "missing.xml")), is(nullValue()));
+    }
+
+    private static void write(File file, String contents, long lastModified) throws IOException {
+        org.apache.commons.io.FileUtils.writeStringToFile(file, contents, StandardCharsets.UTF_8);
+        file.setLastModified(lastModified);
+    }
+}
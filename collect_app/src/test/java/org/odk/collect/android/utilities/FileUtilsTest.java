@@ -30,6 +30,14 @@ public class FileUtilsTest {
         }
     }
 
+    @Test
+    public void toMd5Hash_padsWithLeadingZeros() {
+        byte[] digest = new byte[16];
+        digest[15] = 1;
+
+        assertEquals("00000000000000000000000000000001", FileUtils.toMd5Hash(digest));
+    }
+
     @Test
     public void mediaDirNameIsCorrect() {
         String expected = "sample-file-media";
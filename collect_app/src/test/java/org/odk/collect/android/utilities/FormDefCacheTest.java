@@ -0,0 +1,104 @@
+package org.odk.collect.android.utilities;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class FormDefCacheTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @After
+    public void clearMemoryCache() {
+        FormDefCache.clearMemory();
+    }
+
+    @Test
+    public void readCacheFile_returnsWhatWasWritten() throws IOException {
+        File cacheFile = temporaryFolder.newFile();
+        byte[] payload = {1, 2, 3, 4, 5};
+
+        FormDefCache.writeCacheFile(cacheFile, payload, "3.1.0");
+
+        assertThat(FormDefCache.readCacheFile(cacheFile, "3.1.0"), equalTo(payload));
+        assertThat(cacheFile.exists(), is(true));
+    }
+
+    @Test
+    public void readCacheFile_whenJavaRosaVersionDiffers_returnsNullAndDeletesFile() throws IOException {
+        File cacheFile = temporaryFolder.newFile();
+        FormDefCache.writeCacheFile(cacheFile, new byte[]{1, 2, 3}, "3.0.0");
+
+        assertThat(FormDefCache.readCacheFile(cacheFile, "3.1.0"), nullValue());
+        assertThat(cacheFile.exists(), is(false));
+    }
+
+    @Test
+    public void readCacheFile_whenPayloadIsCorrupt_returnsNullAndDeletesFile() throws IOException {
+        File cacheFile = temporaryFolder.newFile();
+        FormDefCache.writeCacheFile(cacheFile, new byte[]{1, 2, 3}, "3.1.0");
+
+        try (RandomAccessFile file = new RandomAccessFile(cacheFile, "rw")) {
+            file.seek(file.length() - 1);
+            file.write(42);
+        }
+
+        assertThat(FormDefCache.readCacheFile(cacheFile, "3.1.0"), nullValue());
+        assertThat(cacheFile.exists(), is(false));
+    }
+
+    @Test
+    public void readCacheFile_whenFileHasNoHeader_returnsNullAndDeletesFile() throws IOException {
+        File cacheFile = temporaryFolder.newFile();
+        FileUtils.write(cacheFile, new byte[]{0, 0, 0, 1, 0, 0, 0, 2});
+
+        assertThat(FormDefCache.readCacheFile(cacheFile, "3.1.0"), nullValue());
+        assertThat(cacheFile.exists(), is(false));
+    }
+
+    @Test
+    public void deleteCacheFiles_deletesFilesForOtherVersionsOfTheSameFormOnly() throws IOException {
+        File cacheDir = temporaryFolder.newFolder();
+        File formXml = temporaryFolder.newFile("form.xml");
+        File otherFormXml = temporaryFolder.newFile("other-form.xml");
+
+        File oldCacheFile = FormDefCache.getCacheFile(cacheDir, formXml, "old-md5");
+        FileUtils.write(oldCacheFile, new byte[]{1});
+
+        File cacheFile = FormDefCache.getCacheFile(cacheDir, formXml, "md5");
+        FileUtils.write(cacheFile, new byte[]{1});
+
+        File otherCacheFile = FormDefCache.getCacheFile(cacheDir, otherFormXml, "md5");
+        FileUtils.write(otherCacheFile, new byte[]{1});
+
+        FormDefCache.deleteCacheFiles(cacheDir, formXml, cacheFile);
+
+        assertThat(oldCacheFile.exists(), is(false));
+        assertThat(cacheFile.exists(), is(true));
+        assertThat(otherCacheFile.exists(), is(true));
+    }
+
+    @Test
+    public void memoryCache_evictsLeastRecentlyUsedEntries() {
+        byte[] eightMegabytes = new byte[8 * 1024 * 1024];
+        FormDefCache.putInMemory("a", eightMegabytes);
+        FormDefCache.putInMemory("b", eightMegabytes);
+        FormDefCache.getFromMemory("a");
+        FormDefCache.putInMemory("c", eightMegabytes);
+
+        assertThat(FormDefCache.getFromMemory("a"), equalTo(eightMegabytes));
+        assertThat(FormDefCache.getFromMemory("b"), nullValue());
+        assertThat(FormDefCache.getFromMemory("c"), equalTo(eightMegabytes));
+    }
+}
@@ -0,0 +1,127 @@
+package org.odk.collect.android.utilities;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class FormMetadataReaderTest {
+
+    private static final String HEAD = "<?xml version=\"1.0\"?>\n"
+            + "<h:html xmlns=\"http://www.w3.org/2002/xforms\" xmlns:h=\"http://www.w3.org/1999/xhtml\"\n"
+            + "        xmlns:orx=\"http://openrosa.org/xforms\" xmlns:odk=\"http://www.opendatakit.org/xforms\">\n"
+            + "    <h:head>\n"
+            + "        <h:title>Geopoints</h:title>\n"
+            + "        <model>\n"
+            + "            <instance>\n"
+            + "                <data id=\"geopoints\" orx:version=\"2021030901\">\n"
+            + "                    <name/>\n"
+            + "                    <place>\n"
+            + "                        <location/>\n"
+            + "                    </place>\n"
+            + "                    <visit>\n"
+            + "                        <location/>\n"
+            + "                    </visit>\n"
+            + "                    <location/>\n"
+            + "                    <orx:meta>\n"
+            + "                        <orx:instanceID/>\n"
+            + "                    </orx:meta>\n"
+            + "                </data>\n"
+            + "            </instance>\n"
+            + "            <instance id=\"cities\">\n"
+            + "                <root><item><name>Nairobi</name></item></root>\n"
+            + "            </instance>\n"
+            + "            <submission action=\"https://example.com/submission\" orx:auto-send=\"true\" orx:auto-delete=\"false\" base64RsaPublicKey=\" key \"/>\n"
+            + "            <bind nodeset=\"name\" type=\"string\"/>\n"
+            + "            <bind nodeset=\"/data/place/location\" type=\"geopoint\" id=\"place-location\"/>\n"
+            + "            <bind nodeset=\"/data/visit/location\" type=\"geopoint\"/>\n"
+            + "            <bind nodeset=\"/data/location\" type=\"geopoint\"/>\n"
+            + "            <bind nodeset=\"/data/orx:meta/orx:instanceID\" preload=\"uid\" type=\"string\"/>\n";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void readsTheSameMetadataAsTheFullParse() throws IOException {
+        File form = createForm("",
+                "<input ref=\"name\"><label>Name</label></input>\n"
+                        + "<group ref=\"/data/visit\">\n"
+                        + "    <label>Visit</label>\n"
+                        + "    <repeat nodeset=\"/data/visit\">\n"
+                        + "        <input ref=\"/data/visit/location\"><label>Location</label></input>\n"
+                        + "    </repeat>\n"
+                        + "</group>\n"
+                        + "<group ref=\"/data/place\">\n"
+                        + "    <input ref=\"location\"><label>Location</label></input>\n"
+                        + "</group>\n"
+                        + "<input ref=\"/data/location\"><label>Location</label></input>\n");
+
+        assertThat(FormMetadataReader.read(form), is(FileUtils.getMetadataFromFormDefinition(form)));
+        assertThat(FormMetadataReader.read(form).get(FileUtils.TITLE), is("Geopoints"));
+        assertThat(FormMetadataReader.read(form).get(FileUtils.VERSION), is("2021030901"));
+        assertThat(FormMetadataReader.read(form).get(FileUtils.BASE64_RSA_PUBLIC_KEY), is("key"));
+        assertThat(FormMetadataReader.read(form).get(FileUtils.GEOMETRY_XPATH), is("/data/place/location"));
+    }
+
+    @Test
+    public void controlsBoundWithBindAttribute_areUsedForTheGeometry() throws IOException {
+        File form = createForm("",
+                "<input bind=\"place-location\"><label>Location</label></input>\n"
+                        + "<input ref=\"/data/location\"><label>Location</label></input>\n");
+
+        assertThat(FormMetadataReader.read(form), is(FileUtils.getMetadataFromFormDefinition(form)));
+        assertThat(FormMetadataReader.read(form).get(FileUtils.GEOMETRY_XPATH), is("/data/place/location"));
+    }
+
+    @Test
+    public void formWithoutGeopointInTheBody_hasNoGeometry() throws IOException {
+        File form = createForm("", "<input ref=\"/data/name\"><label>Name</label></input>\n");
+
+        assertThat(FormMetadataReader.read(form), is(FileUtils.getMetadataFromFormDefinition(form)));
+        assertThat(FormMetadataReader.read(form).get(FileUtils.GEOMETRY_XPATH), is(nullValue()));
+    }
+
+    @Test
+    public void formWithSetGeopoint_needsFullParse() throws IOException {
+        File form = createForm("<odk:setgeopoint ref=\"/data/visit/location\" event=\"odk-instance-first-load\"/>\n",
+                "<input ref=\"/data/location\"><label>Location</label></input>\n");
+
+        assertThat(FormMetadataReader.read(form), is(nullValue()));
+        assertThat(FileUtils.getMetadataFromFormDefinition(form), is(notNullValue()));
+    }
+
+    @Test
+    public void formWithRefThatIsNotAPlainPath_needsFullParse() throws IOException {
+        File form = createForm("", "<input ref=\"../location\"><label>Location</label></input>\n");
+
+        assertThat(FormMetadataReader.read(form), is(nullValue()));
+    }
+
+    @Test
+    public void formThatIsNotWellFormed_needsFullParse() throws IOException {
+        File form = temporaryFolder.newFile("broken.xml");
+        org.apache.commons.io.FileUtils.writeStringToFile(form, HEAD + "    </h:head>\n", StandardCharsets.UTF_8);
+
+        assertThat(FormMetadataReader.read(form), is(nullValue()));
+    }
+
+    private File createForm(String modelEnd, String body) throws IOException {
+        File form = temporaryFolder.newFile("form.xml");
+        org.apache.commons.io.FileUtils.writeStringToFile(form, HEAD + modelEnd
+                + "        </model>\n"
+                + "    </h:head>\n"
+                + "    <h:body>\n"
+                + body
+                + "    </h:body>\n"
+                + "</h:html>", StandardCharsets.UTF_8);
+        return form;
+    }
+}
@@ -0,0 +1,184 @@
+package org.odk.collect.android.utilities;
+
+import android.app.Application;
+import android.database.Cursor;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.backgroundwork.FormCacheWarmUpManager;
+import org.odk.collect.android.dao.FormsDao;
+import org.odk.collect.android.injection.config.AppDependencyModule;
+import org.odk.collect.android.provider.FormsProvider;
+import org.odk.collect.android.provider.FormsProviderAPI.FormsColumns;
+import org.odk.collect.android.storage.StorageInitializer;
+import org.odk.collect.android.storage.StoragePathProvider;
+import org.odk.collect.android.storage.StorageSubdirectory;
+import org.odk.collect.android.support.RobolectricHelpers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.mock;
+import static org.odk.collect.android.support.FormUtils.createXFormBody;
+
+@RunWith(AndroidJUnit4.class)
+public class FormsDirDiskFormsSynchronizerTest {
+
+    private static final String FALLBACK_FORM = "<?xml version=\"1.0\"?>\n"
+            + "<h:html xmlns=\"http://www.w3.org/2002/xforms\" xmlns:h=\"http://www.w3.org/1999/xhtml\" xmlns:odk=\"http://www.opendatakit.org/xforms\">\n"
+            + "    <h:head>\n"
+            + "        <h:title>Fallback</h:title>\n"
+            + "        <model>\n"
+            + "            <instance>\n"
+            + "                <data id=\"fallback\">\n"
+            + "                    <location/>\n"
+            + "                </data>\n"
+            + "            </instance>\n"
+            + "            <bind nodeset=\"/data/location\" type=\"geopoint\"/>\n"
+            + "            <odk:setgeopoint ref=\"/data/location\" event=\"odk-instance-first-load\"/>\n"
+            + "        </model>\n"
+            + "    </h:head>\n"
+            + "    <h:body>\n"
+            + "    </h:body>\n"
+            + "</h:html>";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final FormsDao formsDao = new FormsDao();
+
+    private FileHashCache fileHashCache;
+    private FormsDirDiskFormsSynchronizer synchronizer;
+    private File formsDir;
+
+    @Before
+    public void setup() {
+        RobolectricHelpers.mountExternalStorage();
+        new StorageInitializer().createOdkDirsOnStorage();
+
+        // The database helper is static so it could still point at another test's storage
+        FormsProvider.releaseDatabaseHelper();
+
+        // The provider hashes forms it saves with the same cache as the synchronizer
+        fileHashCache = new FileHashCache(new File(temporaryFolder.getRoot(), "file-hashes"));
+        RobolectricHelpers.overrideAppDependencyModule(new AppDependencyModule() {
+            @Override
+            public FileHashCache providesFileHashCache(Application application) {
+                return fileHashCache;
+            }
+        });
+
+        synchronizer = new FormsDirDiskFormsSynchronizer(mock(FormCacheWarmUpManager.class), fileHashCache);
+        formsDir = new File(new StoragePathProvider().getOdkDirPath(StorageSubdirectory.FORMS));
+    }
+
+    @After
+    public void teardown() {
+        FormsProvider.releaseDatabaseHelper();
+    }
+
+    @Test
+    public void newForms_areAddedWithoutAFullParse() throws IOException {
+        File form = write("new.xml", createXFormBody("new", "1", "New"), System.currentTimeMillis() - 60000);
+
+        assertThat(synchronizer.synchronizeAndReturnError(), is(""));
+
+        assertThat(getTitle(form), is("New"));
+        assertThat(FileUtils.getLastSavedFile(form).exists(), is(false));
+    }
+
+    @Test
+    public void whenAFormCantBeReadWithoutAFullParse_itIsFullyParsed() throws IOException {
+        File form = write("fallback.xml", FALLBACK_FORM, System.currentTimeMillis() - 60000);
+
+        assertThat(synchronizer.synchronizeAndReturnError(), is(""));
+
+        assertThat(getTitle(form), is("Fallback"));
+        assertThat(FileUtils.getLastSavedFile(form).exists(), is(true));
+    }
+
+    @Test
+    public void brokenForms_areRenamedAndReported() throws IOException {
+        File form = write("broken.xml", "<h:html><h:head>", System.currentTimeMillis() - 60000);
+
+        assertThat(synchronizer.synchronizeAndReturnError(), containsString("broken.xml"));
+
+        assertThat(form.exists(), is(false));
+        assertThat(new File(formsDir, "broken.xml.bad").exists(), is(true));
+        assertThat(getTitle(form), is(nullValue()));
+    }
+
+    @Test
+    public void unchangedForms_areNotReadAgain() throws IOException {
+        long lastModified = System.currentTimeMillis() - 60000;
+        File form = write("unchanged.xml", createXFormBody("unchanged", "1", "Form A"), lastModified);
+        synchronizer.synchronize();
+
+        // Same length and modification time, so the cached hash says it's the same form
+        write("unchanged.xml", createXFormBody("unchanged", "1", "Form B"), lastModified);
+        synchronizer.synchronize();
+
+        assertThat(getTitle(form), is("Form A"));
+    }
+
+    @Test
+    public void modifiedForms_areReadAgain() throws IOException {
+        File form = write("modified.xml", createXFormBody("modified", "1", "Form A"), System.currentTimeMillis() - 60000);
+        synchronizer.synchronize();
+
+        write("modified.xml", createXFormBody("modified", "1", "Form AB"), System.currentTimeMillis() - 30000);
+        synchronizer.synchronize();
+
+        assertThat(getTitle(form), is("Form AB"));
+    }
+
+    @Test
+    public void aFormsDirWithUnchangedModifiedNewAndBrokenForms_isSyncedInOnePass() throws IOException {
+        long lastModified = System.currentTimeMillis() - 60000;
+        File unchanged = write("unchanged.xml", createXFormBody("unchanged", "1", "Form A"), lastModified);
+        File modified = write("modified.xml", createXFormBody("modified", "1", "Form A"), lastModified);
+        synchronizer.synchronize();
+
+        write("unchanged.xml", createXFormBody("unchanged", "1", "Form B"), lastModified);
+        write("modified.xml", createXFormBody("modified", "1", "Form AB"), lastModified - 10000);
+        File added = write("new.xml", createXFormBody("new", "1", "New"), lastModified);
+        File fallback = write("fallback.xml", FALLBACK_FORM, lastModified);
+        write("broken.xml", "<h:html><h:head>", lastModified);
+
+        String errors = synchronizer.synchronizeAndReturnError();
+
+        assertThat(getTitle(unchanged), is("Form A"));
+        assertThat(getTitle(modified), is("Form AB"));
+        assertThat(getTitle(added), is("New"));
+        assertThat(getTitle(fallback), is("Fallback"));
+        assertThat(errors, containsString("broken.xml"));
+        assertThat(new File(formsDir, "broken.xml.bad").exists(), is(true));
+    }
+
+    private File write(String name, String contents, long lastModified) throws IOException {
+        File file = new File(formsDir, name);
+        org.apache.commons.io.FileUtils.writeStringToFile(file, contents, StandardCharsets.UTF_8);
+        file.setLastModified(lastModified);
+        return file;
+    }
+
+    private String getTitle(File form) {
+        try (Cursor cursor = formsDao.getFormsCursorForFormFilePath(form.getAbsolutePath())) {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            return cursor.getString(cursor.getColumnIndex(FormsColumns.DISPLAY_NAME));
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package org.odk.collect.android.utilities;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.storage.StorageInitializer;
+import org.odk.collect.android.storage.StoragePathProvider;
+import org.odk.collect.android.storage.StorageSubdirectory;
+import org.odk.collect.android.support.RobolectricHelpers;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowBitmapFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayWithSize;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.emptyArray;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+public class ImageCacheTest {
+
+    private File imageFile;
+    private File thumbnailDir;
+    private ImageCache imageCache;
+
+    @Before
+    public void setup() throws IOException {
+        RobolectricHelpers.mountExternalStorage();
+        new StorageInitializer().createOdkDirsOnStorage();
+
+        imageFile = File.createTempFile("image", ".jpg");
+        thumbnailDir = Files.createTempDirectory("thumbnails").toFile();
+        imageCache = new ImageCache(thumbnailDir, new StoragePathProvider(), 16 * 1024 * 1024, Runnable::run);
+    }
+
+    @Test
+    public void getBitmapScaledToDisplay_decodesFileOnce() {
+        Bitmap first = imageCache.getBitmapScaledToDisplay(imageFile, 1920, 1080);
+        Bitmap second = imageCache.getBitmapScaledToDisplay(imageFile, 1920, 1080);
+
+        assertThat(first, notNullValue());
+        assertThat(shadowOf(first).getCreatedFromPath(), equalTo(imageFile.getAbsolutePath()));
+        assertThat(second, sameInstance(first));
+        assertThat(imageCache.getHitRate(), closeTo(0.5, 0.001));
+    }
+
+    @Test
+    public void getBitmapScaledToDisplay_whenDisplaySizeChanges_decodesAgain() {
+        Bitmap portrait = imageCache.getBitmapScaledToDisplay(imageFile, 1920, 1080);
+        Bitmap landscape = imageCache.getBitmapScaledToDisplay(imageFile, 1080, 1920);
+
+        assertThat(landscape, not(sameInstance(portrait)));
+        assertThat(imageCache.getHitRate(), closeTo(0, 0.001));
+    }
+
+    @Test
+    public void getBitmapScaledToDisplay_whenFileChanges_decodesAgain() {
+        Bitmap before = imageCache.getBitmapScaledToDisplay(imageFile, 1920, 1080);
+        imageFile.setLastModified(imageFile.lastModified() - 60000);
+        Bitmap after = imageCache.getBitmapScaledToDisplay(imageFile, 1920, 1080);
+
+        assertThat(after, not(sameInstance(before)));
+    }
+
+    @Test
+    public void onTrimMemory_whenMemoryIsLow_evictsBitmaps() {
+        Bitmap before = imageCache.getBitmapScaledToDisplay(imageFile, 1920, 1080);
+        imageCache.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        Bitmap after = imageCache.getBitmapScaledToDisplay(imageFile, 1920, 1080);
+
+        assertThat(after, not(sameInstance(before)));
+    }
+
+    @Test
+    public void getBitmapScaledToDisplay_whenFormMediaIsScaledDown_writesThumbnail() throws IOException {
+        File mediaDir = new File(new StoragePathProvider().getOdkDirPath(StorageSubdirectory.FORMS), "form-media");
+        mediaDir.mkdirs();
+        File mediaFile = new File(mediaDir, "image.jpg");
+        mediaFile.createNewFile();
+        ShadowBitmapFactory.provideWidthAndHeightHints(mediaFile.getAbsolutePath(), 2000, 2000);
+
+        imageCache.getBitmapScaledToDisplay(mediaFile, 500, 500);
+
+        assertThat(thumbnailDir.listFiles(), arrayWithSize(1));
+    }
+
+    @Test
+    public void getBitmapScaledToDisplay_whenAnswerIsScaledDown_doesNotWriteThumbnail() throws IOException {
+        File instanceDir = new File(new StoragePathProvider().getOdkDirPath(StorageSubdirectory.INSTANCES), "instance");
+        instanceDir.mkdirs();
+        File answerFile = new File(instanceDir, "photo.jpg");
+        answerFile.createNewFile();
+        ShadowBitmapFactory.provideWidthAndHeightHints(answerFile.getAbsolutePath(), 2000, 2000);
+
+        imageCache.getBitmapScaledToDisplay(answerFile, 500, 500);
+
+        assertThat(thumbnailDir.listFiles(), emptyArray());
+    }
+}
@@ -0,0 +1,23 @@
+package org.odk.collect.android.utilities;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class ImageConverterTest {
+
+    @Test
+    public void getSampleSize_returnsLargestPowerOfTwoThatKeepsLongEdgeAtLeastTarget() {
+        assertThat(ImageConverter.getSampleSize(8000, 640), is(8));
+        assertThat(ImageConverter.getSampleSize(8000, 1024), is(4));
+        assertThat(ImageConverter.getSampleSize(4000, 2000), is(2));
+        assertThat(ImageConverter.getSampleSize(4000, 2001), is(1));
+    }
+
+    @Test
+    public void getSampleSize_whenImageIsNotBiggerThanTarget_returnsOne() {
+        assertThat(ImageConverter.getSampleSize(3000, 3000), is(1));
+        assertThat(ImageConverter.getSampleSize(3000, 4000), is(1));
+    }
+}
@@ -25,6 +25,8 @@ class FakeScheduler : Scheduler {
 
     override fun networkDeferred(tag: String, taskSpec: TaskSpec, repeatPeriod: Long) {}
 
+    override fun lowPriorityDeferred(tag: String, spec: TaskSpec) {}
+
     override fun repeat(foreground: Runnable, repeatPeriod: Long): Cancellable {
         foregroundTasks.add(foreground)
 